@@ -0,0 +1,59 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.dto.GroupBalances;
+import com.tomiscoding.billsplit.model.MemberBalance;
+import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.User;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calculates every member's outstanding balance and payment totals, once with SplitGroup's getters over
+ * the loaded entity graph and once from the balance ledger rows
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BalanceCalculationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int members;
+
+    @Param({"100", "10000"})
+    private int expenses;
+
+    @Param({"100", "1000"})
+    private int payments;
+
+    private GroupFixture fixture;
+    private GroupBalances groupBalances;
+
+    @Setup
+    public void setUp(){
+        fixture = new GroupFixture(members, expenses, payments, 42);
+        groupBalances = new GroupBalances(fixture.getMemberBalances());
+    }
+
+    @Benchmark
+    public void entityGraph(Blackhole blackhole){
+        SplitGroup splitGroup = fixture.getSplitGroup();
+        for (User user : fixture.getUsers()){
+            blackhole.consume(splitGroup.getOutstandingBalanceByUserId(user.getId()));
+            blackhole.consume(splitGroup.getConfirmedPaymentsTotalForUserId(user.getId()));
+            blackhole.consume(splitGroup.getNotConfirmedPaymentsTotalForUserId(user.getId()));
+        }
+    }
+
+    @Benchmark
+    public void ledger(Blackhole blackhole){
+        long seed = fixture.getSplitGroup().getId();
+        for (User user : fixture.getUsers()){
+            MemberBalance memberBalance = groupBalances.getMemberBalance(user.getId());
+            blackhole.consume(groupBalances.getOutstandingBalance(user.getId(), fixture.getUsers(), seed));
+            blackhole.consume(memberBalance.getConfirmedBalance());
+            blackhole.consume(memberBalance.getPendingBalance());
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.Expense;
+import com.tomiscoding.billsplit.service.ExpenseService;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures ExpenseService.saveExpense() - validation, scaling and currency conversion - with a fixed rate source in
+ * place of the currencyapi
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CurrencyConversionBenchmark {
+
+    @Param({"GBP", "EUR"})
+    private Currency currency;
+
+    private ExpenseService expenseService;
+    private Expense expense;
+
+    @Setup
+    public void setUp(){
+        GroupFixture fixture = new GroupFixture(2, 0, 0, 42);
+        ServiceStubs stubs = new ServiceStubs(fixture);
+        expenseService = new ExpenseService(stubs.expenseRepository(), StubCurrencyApiClient.currencyConversionService(),
+                stubs.balanceLedgerService());
+        expense = Expense.builder()
+                .name("benchmark")
+                .currencyAmount(new BigDecimal("123.45"))
+                .currency(currency)
+                .expenseDate(LocalDate.of(2023, 4, 20))
+                .user(fixture.getUsers().get(0))
+                .splitGroup(fixture.getSplitGroup())
+                .build();
+    }
+
+    @Benchmark
+    public Expense saveExpense() throws ValidationException, CurrencyConversionException {
+        return expenseService.saveExpense(expense);
+    }
+}
@@ -0,0 +1,105 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.model.*;
+import lombok.Getter;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * A synthetic SplitGroup object graph for benchmarks - members, expenses spread randomly across members with a mix of
+ * split and 'un-split', payments in every status and the ledger rows matching them. The same seed always produces
+ * the same group so that runs can be compared.
+ */
+@Getter
+public class GroupFixture {
+
+    private final SplitGroup splitGroup;
+    private final List<User> users = new ArrayList<>();
+    private final List<MemberBalance> memberBalances = new ArrayList<>();
+
+    public GroupFixture(int memberCount, int expenseCount, int paymentCount, long seed) {
+        Random random = new Random(seed);
+        splitGroup = SplitGroup.builder()
+                .id(1L)
+                .groupName("benchmark")
+                .inviteCode("bench123")
+                .baseCurrency(Currency.GBP)
+                .build();
+
+        for (int i = 1; i <= memberCount; i++){
+            User user = User.builder()
+                    .id(i)
+                    .username("user" + i + "@example.com")
+                    .fullName("user" + i)
+                    .build();
+            users.add(user);
+            splitGroup.getGroupMembers().add(GroupMember.builder()
+                    .id(i)
+                    .user(user)
+                    .splitGroup(splitGroup)
+                    .isAdmin(i == 1)
+                    .build());
+        }
+
+        LocalDate start = LocalDate.of(2023, 1, 1);
+        for (int i = 1; i <= expenseCount; i++){
+            BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(20_000), 2);
+            splitGroup.getExpenses().add(Expense.builder()
+                    .id(i)
+                    .name("expense" + i)
+                    .amount(amount)
+                    .currencyAmount(amount)
+                    .currency(Currency.GBP)
+                    .expenseDate(start.plusDays(random.nextInt(365)))
+                    .isSplit(random.nextInt(4) != 0)
+                    .user(users.get(random.nextInt(memberCount)))
+                    .splitGroup(splitGroup)
+                    .build());
+        }
+
+        PaymentStatus[] statuses = PaymentStatus.values();
+        for (int i = 1; i <= paymentCount && memberCount > 1; i++){
+            int from = random.nextInt(memberCount);
+            int to = (from + 1 + random.nextInt(memberCount - 1)) % memberCount;
+            splitGroup.getPayments().add(Payment.builder()
+                    .id(i)
+                    .fromUser(users.get(from))
+                    .toUser(users.get(to))
+                    .splitGroup(splitGroup)
+                    .amount(BigDecimal.valueOf(100 + random.nextInt(10_000), 2))
+                    .paymentStatus(statuses[random.nextInt(statuses.length)])
+                    .calculatedDate(start.plusDays(random.nextInt(365)))
+                    .build());
+        }
+
+        for (User user : users){
+            MemberBalance memberBalance = MemberBalance.builder()
+                    .splitGroup(splitGroup)
+                    .user(user)
+                    .unsplitSpend(splitGroup.getExpensesNotSplitTotalByUserId(user.getId()))
+                    .totalSpend(splitGroup.getExpensesTotalByUserId(user.getId()))
+                    .build();
+            for (Payment payment : splitGroup.getPayments()){
+                boolean confirmed = payment.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED);
+                if (payment.getToUser() == user){
+                    if (confirmed){
+                        memberBalance.setConfirmedIn(memberBalance.getConfirmedIn().add(payment.getAmount()));
+                    } else {
+                        memberBalance.setPendingIn(memberBalance.getPendingIn().add(payment.getAmount()));
+                    }
+                } else if (payment.getFromUser() == user){
+                    if (confirmed){
+                        memberBalance.setConfirmedOut(memberBalance.getConfirmedOut().add(payment.getAmount()));
+                    } else {
+                        memberBalance.setPendingOut(memberBalance.getPendingOut().add(payment.getAmount()));
+                    }
+                }
+            }
+            memberBalances.add(memberBalance);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.dto.GroupOverview;
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
+import com.tomiscoding.billsplit.service.GroupService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GroupService.generateGroupOverview() and generateAdminGroupOverview() against in-memory repositories, so
+ * the result is the cost of the service layer itself rather than of the queries
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class GroupOverviewBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int members;
+
+    @Param({"100", "10000"})
+    private int expenses;
+
+    @Param({"100"})
+    private int payments;
+
+    private GroupService groupService;
+
+    @Setup
+    public void setUp(){
+        ServiceStubs stubs = new ServiceStubs(new GroupFixture(members, expenses, payments, 42));
+        groupService = new GroupService(stubs.groupRepository(), null, stubs.expenseRepository(),
+                stubs.paymentRepository(), stubs.userRepository(), stubs.balanceLedgerService(),
+                stubs.groupMembershipIndex(), null, null);
+    }
+
+    @Benchmark
+    public GroupOverview userOverview() throws SplitGroupNotFoundException {
+        return groupService.generateGroupOverview(1L, 1L);
+    }
+
+    @Benchmark
+    public GroupOverview adminOverview() throws SplitGroupNotFoundException {
+        return groupService.generateAdminGroupOverview(1L);
+    }
+}
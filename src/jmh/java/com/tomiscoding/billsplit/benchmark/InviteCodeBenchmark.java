@@ -0,0 +1,51 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.service.GroupService;
+import com.tomiscoding.billsplit.service.InviteCodeAllocator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GroupService.createGroup(), which takes its invite code from the InviteCodeAllocator's pool, and the
+ * allocator alone with several threads taking codes at once
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InviteCodeBenchmark {
+
+    private GroupService groupService;
+    private InviteCodeAllocator inviteCodeAllocator;
+    private User user;
+
+    @Setup
+    public void setUp(){
+        GroupFixture fixture = new GroupFixture(1, 0, 0, 42);
+        ServiceStubs stubs = new ServiceStubs(fixture);
+        inviteCodeAllocator = stubs.inviteCodeAllocator();
+        groupService = new GroupService(stubs.groupRepository(), null, stubs.expenseRepository(),
+                stubs.paymentRepository(), stubs.userRepository(), stubs.balanceLedgerService(),
+                stubs.groupMembershipIndex(), inviteCodeAllocator, stubs.inviteCodeResolver());
+        user = fixture.getUsers().get(0);
+    }
+
+    @Benchmark
+    public SplitGroup createGroup() throws ValidationException {
+        SplitGroup splitGroup = SplitGroup.builder()
+                .groupName("benchmark")
+                .baseCurrency(Currency.GBP)
+                .build();
+        return groupService.createGroup(splitGroup, user);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String allocate(){
+        return inviteCodeAllocator.allocate();
+    }
+}
@@ -0,0 +1,69 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.model.MinorUnits;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sums a group's expenses and works out each member's share, once with BigDecimal arithmetic and once on long minor
+ * units - both converting from the BigDecimal amounts held by the entities and from amounts already in minor units.
+ * Run with the GC profiler to compare the allocation of each:
+ *
+ *     ./gradlew jmh -PjmhIncludes=MinorUnitsBenchmark -PjmhProfilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MinorUnitsBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    private int expenses;
+
+    @Param({"10", "100"})
+    private int members;
+
+    private BigDecimal[] amounts;
+    private long[] minorUnits;
+
+    @Setup
+    public void setUp(){
+        Random random = new Random(42);
+        amounts = new BigDecimal[expenses];
+        minorUnits = new long[expenses];
+        for (int i = 0; i < expenses; i++){
+            amounts[i] = BigDecimal.valueOf(1 + random.nextInt(100_000), 2);
+            minorUnits[i] = MinorUnits.toMinorUnits(amounts[i]);
+        }
+    }
+
+    @Benchmark
+    public BigDecimal bigDecimal(){
+        BigDecimal total = BigDecimal.ZERO;
+        for (BigDecimal amount : amounts){
+            total = total.add(amount);
+        }
+        return total.divide(BigDecimal.valueOf(members), 2, RoundingMode.HALF_EVEN);
+    }
+
+    @Benchmark
+    public BigDecimal convertedToMinorUnits(){
+        long total = 0;
+        for (BigDecimal amount : amounts){
+            total = Math.addExact(total, MinorUnits.toMinorUnits(amount));
+        }
+        return MinorUnits.fromMinorUnits(MinorUnits.divideHalfEven(total, members));
+    }
+
+    @Benchmark
+    public BigDecimal minorUnits(){
+        long total = 0;
+        for (long amount : minorUnits){
+            total = Math.addExact(total, amount);
+        }
+        return MinorUnits.fromMinorUnits(MinorUnits.divideHalfEven(total, members));
+    }
+}
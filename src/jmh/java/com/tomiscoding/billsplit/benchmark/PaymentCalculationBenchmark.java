@@ -0,0 +1,53 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
+import com.tomiscoding.billsplit.model.SettlementRun;
+import com.tomiscoding.billsplit.service.ExpenseService;
+import com.tomiscoding.billsplit.service.PaymentService;
+import com.tomiscoding.billsplit.settlement.GreedySettlementStrategy;
+import com.tomiscoding.billsplit.settlement.SettlementStrategy;
+import com.tomiscoding.billsplit.settlement.ZeroSumSubgroupSettlementStrategy;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures PaymentService.calculateAndSavePayments() end to end - claiming expenses, reading the claimed totals,
+ * settlement and building payments - with each settlement strategy. The stubbed bulk update leaves the fixture's
+ * expenses 'un-split', so every invocation settles the same expenses
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PaymentCalculationBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int members;
+
+    @Param({"1000"})
+    private int expenses;
+
+    @Param({"greedy", "zero-sum"})
+    private String strategyName;
+
+    private GroupFixture fixture;
+    private PaymentService paymentService;
+
+    @Setup
+    public void setUp(){
+        fixture = new GroupFixture(members, expenses, 0, 42);
+        ServiceStubs stubs = new ServiceStubs(fixture);
+        SettlementStrategy strategy = strategyName.equals("greedy")
+                ? new GreedySettlementStrategy()
+                : new ZeroSumSubgroupSettlementStrategy(20, 200);
+        ExpenseService expenseService = new ExpenseService(stubs.expenseRepository(),
+                StubCurrencyApiClient.currencyConversionService(), stubs.balanceLedgerService());
+        paymentService = new PaymentService(stubs.paymentRepository(), expenseService, stubs.userRepository(),
+                stubs.balanceLedgerService(), strategy, stubs.groupRepository(), stubs.settlementRunRepository());
+    }
+
+    @Benchmark
+    public SettlementRun calculateAndSavePayments() throws SplitGroupNotFoundException {
+        return paymentService.calculateAndSavePayments(fixture.getSplitGroup().getId(), "benchmark", fixture.getUsers().get(0));
+    }
+}
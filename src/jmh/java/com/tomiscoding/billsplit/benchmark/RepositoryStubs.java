@@ -0,0 +1,62 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Builds in-memory stand-ins for Spring Data repository interfaces so that services can be benchmarked without a
+ * database or application context. Only the methods given answers are implemented - any other call fails loudly so
+ * that a benchmark can't silently measure an unstubbed path.
+ */
+public class RepositoryStubs<T> {
+
+    private final Class<T> repositoryType;
+    private final Map<String, Function<Object[], Object>> answers = new HashMap<>();
+
+    private RepositoryStubs(Class<T> repositoryType) {
+        this.repositoryType = repositoryType;
+    }
+
+    public static <T> RepositoryStubs<T> of(Class<T> repositoryType){
+        return new RepositoryStubs<>(repositoryType);
+    }
+
+    /**
+     * @param methodName the repository method to answer - overloads share the same answer
+     * @param answer given the call arguments, returns the result
+     */
+    public RepositoryStubs<T> answer(String methodName, Function<Object[], Object> answer){
+        answers.put(methodName, answer);
+        return this;
+    }
+
+    public RepositoryStubs<T> returning(String methodName, Object result){
+        return answer(methodName, args -> result);
+    }
+
+    public T build(){
+        Object stub = Proxy.newProxyInstance(
+                repositoryType.getClassLoader(),
+                new Class<?>[]{repositoryType},
+                (proxy, method, args) -> {
+                    if (method.getDeclaringClass().equals(Object.class)){
+                        switch (method.getName()){
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            default:
+                                return repositoryType.getSimpleName() + " stub";
+                        }
+                    }
+                    Function<Object[], Object> answer = answers.get(method.getName());
+                    if (answer == null){
+                        throw new UnsupportedOperationException(repositoryType.getSimpleName() + "." + method.getName() + " is not stubbed");
+                    }
+                    return answer.apply(args);
+                });
+        return repositoryType.cast(stub);
+    }
+}
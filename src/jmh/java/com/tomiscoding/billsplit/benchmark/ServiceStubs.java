@@ -0,0 +1,152 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
+import com.tomiscoding.billsplit.model.Expense;
+import com.tomiscoding.billsplit.model.MemberBalance;
+import com.tomiscoding.billsplit.repository.*;
+import com.tomiscoding.billsplit.service.BalanceLedgerService;
+import com.tomiscoding.billsplit.service.GroupMembershipIndex;
+import com.tomiscoding.billsplit.service.InviteCodeAllocator;
+import com.tomiscoding.billsplit.service.InviteCodeResolver;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Repository stubs shared by the service benchmarks, answering from a GroupFixture
+ */
+public class ServiceStubs {
+
+    private final GroupFixture fixture;
+
+    public ServiceStubs(GroupFixture fixture) {
+        this.fixture = fixture;
+    }
+
+    public GroupRepository groupRepository(){
+        return RepositoryStubs.of(GroupRepository.class)
+                .returning("existsById", true)
+                .returning("findById", Optional.of(fixture.getSplitGroup()))
+                .returning("findForSettlementById", Optional.of(fixture.getSplitGroup()))
+                .returning("findByInviteCode", Optional.empty())
+                .returning("getIdByInviteCode", Optional.empty())
+                .answer("save", args -> args[0])
+                .build();
+    }
+
+    public UserRepository userRepository(){
+        return RepositoryStubs.of(UserRepository.class)
+                .returning("getByGroupMembers_SplitGroupId", fixture.getUsers())
+                .answer("getReferenceById", args -> fixture.getUsers().stream()
+                        .filter(u -> u.getId() == (Long) args[0])
+                        .findFirst()
+                        .orElseThrow())
+                .build();
+    }
+
+    public ExpenseRepository expenseRepository(){
+        return RepositoryStubs.of(ExpenseRepository.class)
+                .returning("findTop10BySplitGroupIdOrderByExpenseDateDescIdDesc", fixture.getSplitGroup().getExpenses().subList(0, Math.min(10, fixture.getSplitGroup().getExpenses().size())))
+                .returning("findTop10BySplitGroupIdAndIsSplitOrderByExpenseDateDescIdDesc", fixture.getSplitGroup().getExpenses().subList(0, Math.min(10, fixture.getSplitGroup().getExpenses().size())))
+                .returning("getMaxIdBySplitGroupId", Optional.of(Long.MAX_VALUE))
+                .answer("setSplitBySettlementRun", args -> (int) unsplitExpenses().count())
+                .answer("getUserTotalsBySettlementRunId", args -> unsplitExpenses()
+                        .collect(Collectors.groupingBy(e -> e.getUser().getId(), Collectors.toList()))
+                        .entrySet().stream()
+                        .map(entry -> new UserSettlementTotal(entry.getKey(),
+                                entry.getValue().stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add),
+                                (long) entry.getValue().size()))
+                        .collect(Collectors.toList()))
+                .answer("save", args -> args[0])
+                .answer("saveAll", args -> args[0])
+                .build();
+    }
+
+    // The bulk update isn't applied to the fixture, so the same expenses are claimed by every benchmark invocation
+    private Stream<Expense> unsplitExpenses(){
+        return fixture.getSplitGroup().getExpenses().stream().filter(e -> !e.isSplit());
+    }
+
+    public PaymentRepository paymentRepository(){
+        List<?> payments = fixture.getSplitGroup().getPayments();
+        return RepositoryStubs.of(PaymentRepository.class)
+                .returning("getPaymentsBySplitGroupIdAndUserIdAndPaymentStatusNot", payments.subList(0, Math.min(10, payments.size())))
+                .returning("getBySplitGroupIdAndPaymentStatusNot", payments)
+                .answer("saveAll", args -> args[0])
+                .build();
+    }
+
+    public SettlementRunRepository settlementRunRepository(){
+        return RepositoryStubs.of(SettlementRunRepository.class)
+                .returning("findByIdempotencyKey", Optional.empty())
+                .answer("saveAndFlush", args -> args[0])
+                .answer("save", args -> args[0])
+                .build();
+    }
+
+    /**
+     * Reads return the fixture's ledger rows, while deltas are applied to a fresh row each time so that repeated
+     * benchmark invocations don't change the balances being measured. No user has a row yet, so each group created
+     * opens one
+     */
+    public MemberBalanceRepository memberBalanceRepository(){
+        return RepositoryStubs.of(MemberBalanceRepository.class)
+                .returning("getBySplitGroupId", fixture.getMemberBalances())
+                .returning("findBySplitGroupId", fixture.getMemberBalances())
+                .answer("findBySplitGroupIdAndUserId", args -> Optional.of(MemberBalance.builder().build()))
+                .returning("existsBySplitGroupIdAndUserId", false)
+                .answer("save", args -> args[0])
+                .build();
+    }
+
+    public GroupMemberRepository groupMemberRepository(){
+        return RepositoryStubs.of(GroupMemberRepository.class)
+                .returning("getGroupSummariesByUserId", List.of())
+                .returning("getMemberSummariesBySplitGroupIdIn", List.of())
+                .build();
+    }
+
+    public InviteCodeReservationRepository inviteCodeReservationRepository(){
+        return RepositoryStubs.of(InviteCodeReservationRepository.class)
+                .returning("getReservedCodesIn", List.of())
+                .returning("getCodesAfter", List.of())
+                .returning("getCodesReservedSince", List.of())
+                .answer("saveAll", args -> args[0])
+                .build();
+    }
+
+    /**
+     * An allocator with a full pool, refilled from the stub repository in the background as it is used
+     */
+    public InviteCodeAllocator inviteCodeAllocator(){
+        InviteCodeAllocator inviteCodeAllocator = new InviteCodeAllocator(inviteCodeReservationRepository());
+        inviteCodeAllocator.refill();
+        return inviteCodeAllocator;
+    }
+
+    /**
+     * A resolver with an empty Bloom filter, which new groups are registered into as they are created
+     */
+    public InviteCodeResolver inviteCodeResolver(){
+        InviteCodeResolver inviteCodeResolver = new InviteCodeResolver(groupRepository(), inviteCodeReservationRepository(),
+                new DefaultListableBeanFactory().getBeanProvider(MeterRegistry.class), 3_600_000L, 60_000L, 10_000L);
+        inviteCodeResolver.load();
+        return inviteCodeResolver;
+    }
+
+    public GroupMembershipIndex groupMembershipIndex(){
+        return new GroupMembershipIndex(groupMemberRepository(),
+                new DefaultListableBeanFactory().getBeanProvider(StringRedisTemplate.class), 300_000L, 10_000L);
+    }
+
+    public BalanceLedgerService balanceLedgerService(){
+        return new BalanceLedgerService(memberBalanceRepository(), expenseRepository(), paymentRepository(),
+                groupRepository(), userRepository());
+    }
+}
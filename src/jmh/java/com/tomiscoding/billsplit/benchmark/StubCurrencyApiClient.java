@@ -0,0 +1,63 @@
+package com.tomiscoding.billsplit.benchmark;
+
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.ExchangeRate;
+import com.tomiscoding.billsplit.repository.ExchangeRateRepository;
+import com.tomiscoding.billsplit.service.CurrencyApiClient;
+import com.tomiscoding.billsplit.service.CurrencyConversionService;
+import com.tomiscoding.billsplit.service.CurrencyRateTable;
+import com.tomiscoding.billsplit.service.ExchangeRateHistoryService;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A rate source with fixed rates so that currency conversion can be benchmarked without the currencyapi
+ */
+public class StubCurrencyApiClient extends CurrencyApiClient {
+
+    public StubCurrencyApiClient() {
+        super(null);
+    }
+
+    /**
+     * @return a CurrencyConversionService whose rate table has been loaded from this stub and whose rate history
+     * holds one rate for every pair
+     */
+    public static CurrencyConversionService currencyConversionService(){
+        StubCurrencyApiClient currencyApiClient = new StubCurrencyApiClient();
+        CurrencyRateTable currencyRateTable = new CurrencyRateTable(currencyApiClient);
+        currencyRateTable.refresh();
+        ExchangeRateRepository exchangeRateRepository = RepositoryStubs.of(ExchangeRateRepository.class)
+                .answer("findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc",
+                        args -> Optional.of(ExchangeRate.builder()
+                                .baseCurrency((Currency) args[0])
+                                .quoteCurrency((Currency) args[1])
+                                .rateDate((LocalDate) args[2])
+                                .rate(currencyApiClient.getRate((Currency) args[0], (Currency) args[1]))
+                                .build()))
+                .build();
+        ExchangeRateHistoryService exchangeRateHistoryService =
+                new ExchangeRateHistoryService(exchangeRateRepository, currencyApiClient, 4096);
+        return new CurrencyConversionService(currencyRateTable, currencyApiClient, exchangeRateHistoryService, null);
+    }
+
+    @Override
+    public Map<Currency, BigDecimal> getRates(Currency baseCurrency) {
+        Map<Currency, BigDecimal> rates = new EnumMap<>(Currency.class);
+        for (Currency toCurrency : Currency.values()){
+            if (!toCurrency.equals(baseCurrency)){
+                rates.put(toCurrency, getRate(baseCurrency, toCurrency));
+            }
+        }
+        return rates;
+    }
+
+    @Override
+    public BigDecimal getRate(Currency fromCurrency, Currency toCurrency) {
+        return toCurrency.equals(Currency.GBP) ? new BigDecimal("0.8734") : new BigDecimal("1.1449");
+    }
+}
@@ -0,0 +1,59 @@
+package com.tomiscoding.billsplit.settlement;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the settlement strategies on groups of 10 to 10,000 members. Balances are drawn from a small set of
+ * amounts, as they are in a club where most members pay the same subscription, so some balances cancel exactly.
+ * The number of transfers produced is reported through the auxiliary 'transfers' counter.
+ * <p>
+ * Run with: ./gradlew jmh -PjmhIncludes=SettlementStrategyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SettlementStrategyBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int members;
+
+    @Param({"greedy", "zero-sum"})
+    private String strategyName;
+
+    private SettlementStrategy strategy;
+    private long[] balances;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class TransferCount {
+        public long transfers;
+    }
+
+    @Setup
+    public void setUp(){
+        strategy = strategyName.equals("greedy")
+                ? new GreedySettlementStrategy()
+                : new ZeroSumSubgroupSettlementStrategy(20, 200);
+
+        Random random = new Random(42);
+        balances = new long[members];
+        long total = 0;
+        for (int i = 0; i < members - 1; i++){
+            balances[i] = (random.nextInt(40) - 20) * 250L + (random.nextBoolean() ? 0 : random.nextInt(100));
+            total += balances[i];
+        }
+        balances[members - 1] = -total;
+    }
+
+    @Benchmark
+    public void settle(TransferCount transferCount, Blackhole blackhole){
+        List<Transfer> transfers = strategy.settle(balances);
+        transferCount.transfers = transfers.size();
+        blackhole.consume(transfers);
+    }
+}
@@ -0,0 +1,68 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import com.tomiscoding.billsplit.repository.*;
+import com.tomiscoding.billsplit.service.BalanceLedgerService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.nio.file.Path;
+import java.util.Collection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Boots the application against H2 in MySQL mode with an in-memory cache, seeds it and drives the request mix over
+ * HTTP. Run with ./gradlew loadTest - see LoadTestSettings for the properties controlling size and duration. The
+ * results are written per execution mode, so that a platform and a virtual thread run can be compared.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "billsplit.execution-mode=${loadtest.executionMode:platform}")
+@ActiveProfiles("loadtest")
+@Import(LoadTestConfig.class)
+class BillSplitLoadTest {
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    AuthorityRepository authorityRepository;
+
+    @Autowired
+    GroupRepository groupRepository;
+
+    @Autowired
+    ExpenseRepository expenseRepository;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    PasswordEncoder passwordEncoder;
+
+    @Test
+    void runLoadTest() throws Exception {
+        LoadTestSettings settings = new LoadTestSettings();
+        LoadTestDataSeeder.SeededData seededData = new LoadTestDataSeeder(userRepository, authorityRepository,
+                groupRepository, expenseRepository, paymentRepository, balanceLedgerService, passwordEncoder).seed(settings);
+
+        Collection<EndpointStats> stats = new LoadDriver(port, settings).run(seededData.getAdmins());
+
+        LoadTestReport report = new LoadTestReport(settings, stats);
+        System.out.println(report.toText());
+        report.writeJson(Path.of("build", "reports", "loadtest", "results-" + settings.getExecutionMode() + ".json"));
+
+        assertThat(stats).isNotEmpty();
+        assertThat(stats).allMatch(s -> s.getErrors().sum() == 0);
+    }
+}
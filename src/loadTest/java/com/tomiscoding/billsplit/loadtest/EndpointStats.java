@@ -0,0 +1,64 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import lombok.Getter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies, errors and SQL statement counts recorded for one endpoint of the mix
+ */
+@Getter
+public class EndpointStats {
+
+    private final String endpoint;
+    private final ConcurrentLinkedQueue<Long> latencyNanos = new ConcurrentLinkedQueue<>();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LongAdder requestsWithStatements = new LongAdder();
+
+    public EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    void record(long nanos, boolean error, int statementCount){
+        latencyNanos.add(nanos);
+        if (error){
+            errors.increment();
+        }
+        if (statementCount >= 0){
+            statements.add(statementCount);
+            requestsWithStatements.increment();
+        }
+    }
+
+    /**
+     * @param durationSeconds the length of the measured period, for throughput
+     * @return a single report line - see LoadTestReport.HEADER
+     */
+    String summarise(double durationSeconds){
+        long[] sorted = latencyNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        double avgStatements = requestsWithStatements.sum() == 0 ? 0 : (double) statements.sum() / requestsWithStatements.sum();
+        return String.format("%-28s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.1f",
+                endpoint, sorted.length, errors.sum(), sorted.length / durationSeconds,
+                percentileMillis(sorted, 50), percentileMillis(sorted, 95), percentileMillis(sorted, 99), avgStatements);
+    }
+
+    String toJson(double durationSeconds){
+        long[] sorted = latencyNanos.stream().mapToLong(Long::longValue).sorted().toArray();
+        double avgStatements = requestsWithStatements.sum() == 0 ? 0 : (double) statements.sum() / requestsWithStatements.sum();
+        return String.format("{\"endpoint\":\"%s\",\"requests\":%d,\"errors\":%d,\"throughput\":%.2f,"
+                        + "\"p50Ms\":%.3f,\"p95Ms\":%.3f,\"p99Ms\":%.3f,\"avgSqlStatements\":%.2f}",
+                endpoint, sorted.length, errors.sum(), sorted.length / durationSeconds,
+                percentileMillis(sorted, 50), percentileMillis(sorted, 95), percentileMillis(sorted, 99), avgStatements);
+    }
+
+    // Helper method for the nearest-rank percentile of sorted latencies
+    static double percentileMillis(long[] sorted, int percentile){
+        if (sorted.length == 0){
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(rank, 1) - 1] / 1_000_000.0;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import com.tomiscoding.billsplit.loadtest.LoadTestDataSeeder.VirtualUser;
+import lombok.extern.log4j.Log4j2;
+
+import java.io.IOException;
+import java.net.CookieManager;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Drives the booted application over HTTP. Each thread logs in as one virtual user with its own cookie store (so
+ * its own session) and repeatedly picks a request from the weighted mix. Redirects are not followed so each
+ * measurement is a single request.
+ */
+@Log4j2
+public class LoadDriver {
+
+    private static final Pattern CSRF_TOKEN = Pattern.compile("name=\"_csrf\"[^>]*value=\"([^\"]+)\"");
+
+    private final String baseUrl;
+    private final LoadTestSettings settings;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong requestIds = new AtomicLong();
+    private volatile boolean recording;
+
+    public LoadDriver(int port, LoadTestSettings settings) {
+        this.baseUrl = "http://localhost:" + port;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the warm-up period, discarding results, then the measured period
+     * @param virtualUsers the users to log in as - threads are assigned users round robin
+     * @return the stats of each endpoint for the measured period
+     */
+    public Collection<EndpointStats> run(List<VirtualUser> virtualUsers) throws InterruptedException {
+        // Virtual threads, so that the driver can hold thousands of concurrent requests open to compare execution modes
+        ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("load-driver-", 0).factory());
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(settings.getWarmupSeconds() + settings.getDurationSeconds());
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < settings.getThreads(); t++){
+            VirtualUser virtualUser = virtualUsers.get(t % virtualUsers.size());
+            long seed = settings.getSeed() + t;
+            futures.add(executor.submit(() -> {
+                runVirtualUser(virtualUser, new Random(seed), end);
+                return null;
+            }));
+        }
+
+        Thread.sleep(TimeUnit.SECONDS.toMillis(settings.getWarmupSeconds()));
+        stats.clear();
+        recording = true;
+
+        executor.shutdown();
+        executor.awaitTermination(settings.getDurationSeconds() + 60L, TimeUnit.SECONDS);
+        for (Future<?> future : futures){
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                log.error("Virtual user failed", e.getCause());
+            }
+        }
+        return stats.values();
+    }
+
+    private void runVirtualUser(VirtualUser virtualUser, Random random, long end) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder()
+                .cookieHandler(new CookieManager())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        login(client, virtualUser.getUsername());
+        // The token is replaced on login, so it is read from a page of the new session
+        String csrfToken = csrfToken(client, "/splitGroup/" + virtualUser.getAdminGroupIds().get(0));
+
+        int totalWeight = settings.getOverviewWeight() + settings.getSearchWeight()
+                + settings.getPaymentWeight() + settings.getCalculateWeight();
+        while (System.nanoTime() < end){
+            int pick = random.nextInt(totalWeight);
+            Long groupId = virtualUser.getGroupIds().get(random.nextInt(virtualUser.getGroupIds().size()));
+
+            if ((pick -= settings.getOverviewWeight()) < 0){
+                get(client, "GET /splitGroup/{id}", "/splitGroup/" + groupId);
+            } else if ((pick -= settings.getSearchWeight()) < 0) {
+                get(client, "GET /expense/search", "/expense/search?groupId=" + groupId);
+            } else if ((pick -= settings.getPaymentWeight()) < 0) {
+                Long paymentId = virtualUser.getUnpaidPaymentIds().poll();
+                if (paymentId != null){
+                    get(client, "GET /payment/{id}", "/payment/" + paymentId + "?status=PAID_PENDING");
+                }
+            } else {
+                Long adminGroupId = virtualUser.getAdminGroupIds().get(random.nextInt(virtualUser.getAdminGroupIds().size()));
+                post(client, "POST /splitGroup/{id}/calculate", "/splitGroup/" + adminGroupId + "/calculate",
+                        "idempotencyKey=" + UUID.randomUUID() + "&_csrf=" + URLEncoder.encode(csrfToken, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    // Helper method to log in through the form, reading the CSRF token from the login page first
+    private void login(HttpClient client, String username) throws IOException, InterruptedException {
+        String form = "username=" + URLEncoder.encode(username, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(LoadTestDataSeeder.PASSWORD, StandardCharsets.UTF_8)
+                + "&_csrf=" + URLEncoder.encode(csrfToken(client, "/login"), StandardCharsets.UTF_8);
+        HttpResponse<Void> response = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + "/login"))
+                        .header("Content-Type", "application/x-www-form-urlencoded")
+                        .POST(HttpRequest.BodyPublishers.ofString(form))
+                        .build(),
+                HttpResponse.BodyHandlers.discarding());
+        String location = response.headers().firstValue("Location").orElse("");
+        if (response.statusCode() != 302 || location.contains("error")){
+            throw new IllegalStateException("Login failed for " + username + " - " + response.statusCode() + " " + location);
+        }
+    }
+
+    // Helper method to read the CSRF token from the form on a page
+    private String csrfToken(HttpClient client, String path) throws IOException, InterruptedException {
+        HttpResponse<String> page = client.send(
+                HttpRequest.newBuilder(URI.create(baseUrl + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+        Matcher matcher = CSRF_TOKEN.matcher(page.body());
+        if (!matcher.find()){
+            throw new IllegalStateException("No CSRF token found on " + path);
+        }
+        return matcher.group(1);
+    }
+
+    private void get(HttpClient client, String endpoint, String path) throws IOException, InterruptedException {
+        send(client, endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path)).GET());
+    }
+
+    private void post(HttpClient client, String endpoint, String path, String form) throws IOException, InterruptedException {
+        send(client, endpoint, HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form)));
+    }
+
+    private void send(HttpClient client, String endpoint, HttpRequest.Builder builder) throws IOException, InterruptedException {
+        String requestId = Long.toString(requestIds.incrementAndGet());
+        HttpRequest request = builder
+                .header(SqlStatementCountFilter.REQUEST_ID_HEADER, requestId)
+                .build();
+
+        long start = System.nanoTime();
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        long nanos = System.nanoTime() - start;
+
+        // A redirect to the login page means the session was lost - any other redirect is the normal outcome
+        String location = response.headers().firstValue("Location").orElse("");
+        boolean error = response.statusCode() >= 400 || location.contains("/login");
+        int statementCount = SqlStatementCountFilter.take(requestId);
+        if (recording){
+            stats.computeIfAbsent(endpoint, EndpointStats::new).record(nanos, error, statementCount);
+        }
+    }
+}
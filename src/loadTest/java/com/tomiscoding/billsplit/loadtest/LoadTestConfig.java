@@ -0,0 +1,51 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.Ordered;
+
+import javax.servlet.Filter;
+import javax.servlet.ServletException;
+
+/**
+ * Beans added to the application for the load test. Redis is deliberately left out: the build has no embedded Redis
+ * and the load test must run without Docker, so the loadtest profile uses an in-memory cache in place of the Redis
+ * "currencies" cache and leaves billsplit.cache.two-tier and billsplit.membership-index.redis-invalidation off. The
+ * mix therefore measures the application and its SQL against one instance, not Redis round trips, the two-tier
+ * cache's Redis tier or membership index invalidation across instances.
+ */
+@TestConfiguration
+public class LoadTestConfig {
+
+    @Bean
+    FilterRegistrationBean<SqlStatementCountFilter> sqlStatementCountFilter(QueryMetricsRecorder queryMetricsRecorder){
+        FilterRegistrationBean<SqlStatementCountFilter> registration =
+                new FilterRegistrationBean<>(new SqlStatementCountFilter(queryMetricsRecorder));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    /**
+     * Holds the request thread for loadtest.blockingMillis before handling each request, as a call to currencyapi or
+     * MailerSend would, without holding a database connection
+     */
+    @Bean
+    FilterRegistrationBean<Filter> blockingCallFilter(){
+        int blockingMillis = new LoadTestSettings().getBlockingMillis();
+        FilterRegistrationBean<Filter> registration = new FilterRegistrationBean<>((request, response, chain) -> {
+            if (blockingMillis > 0){
+                try {
+                    Thread.sleep(blockingMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ServletException(e);
+                }
+            }
+            chain.doFilter(request, response);
+        });
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+}
@@ -0,0 +1,183 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.repository.*;
+import com.tomiscoding.billsplit.service.BalanceLedgerService;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Seeds the database with users, groups, expenses and unpaid payments through the application's repositories. Every
+ * group's first member is its admin and each virtual user of the load test logs in as the admin of one group, so
+ * that they are allowed to call every endpoint in the mix.
+ */
+@RequiredArgsConstructor
+@Log4j2
+public class LoadTestDataSeeder {
+
+    static final String PASSWORD = "LoadTest123!";
+    private static final int BATCH_SIZE = 1000;
+
+    private final UserRepository userRepository;
+    private final AuthorityRepository authorityRepository;
+    private final GroupRepository groupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final PaymentRepository paymentRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final PasswordEncoder passwordEncoder;
+
+    public SeededData seed(LoadTestSettings settings){
+        long start = System.currentTimeMillis();
+        Random random = new Random(settings.getSeed());
+
+        Authority userAuthority = authorityRepository.findByRole(Authority.Roles.ROLE_USER);
+        if (userAuthority == null){
+            userAuthority = authorityRepository.save(new Authority(Authority.Roles.ROLE_USER));
+        }
+
+        // Encoding is deliberately slow, so every user shares one hash
+        String encodedPassword = passwordEncoder.encode(PASSWORD);
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < settings.getUsers(); i++){
+            users.add(User.builder()
+                    .username("loadtest" + i + "@example.com")
+                    .password(encodedPassword)
+                    .fullName("Load Test " + i)
+                    .authorities(Collections.singletonList(userAuthority))
+                    .build());
+        }
+        users = userRepository.saveAll(users);
+
+        SeededData seededData = new SeededData();
+        List<SplitGroup> groups = new ArrayList<>();
+        List<List<User>> groupUsers = new ArrayList<>();
+        for (int g = 0; g < settings.getGroups(); g++){
+            User admin = users.get(g % users.size());
+            Set<User> members = new LinkedHashSet<>();
+            members.add(admin);
+            while (members.size() < Math.min(settings.getMembersPerGroup(), users.size())){
+                members.add(users.get(random.nextInt(users.size())));
+            }
+
+            SplitGroup splitGroup = SplitGroup.builder()
+                    .groupName("Load test group " + g)
+                    .inviteCode("lt" + String.format("%06d", g))
+                    .baseCurrency(Currency.GBP)
+                    .build();
+            List<GroupMember> groupMembers = new ArrayList<>();
+            for (User user : members){
+                groupMembers.add(GroupMember.builder()
+                        .user(user)
+                        .splitGroup(splitGroup)
+                        .isAdmin(user == admin)
+                        .build());
+            }
+            splitGroup.setGroupMembers(groupMembers);
+            groups.add(groupRepository.save(splitGroup));
+            groupUsers.add(new ArrayList<>(members));
+        }
+
+        for (int g = 0; g < groups.size(); g++){
+            SplitGroup splitGroup = groups.get(g);
+            for (User user : groupUsers.get(g)){
+                VirtualUser virtualUser = seededData.getOrCreate(user.getUsername());
+                virtualUser.getGroupIds().add(splitGroup.getId());
+                if (user == groupUsers.get(g).get(0)){
+                    virtualUser.getAdminGroupIds().add(splitGroup.getId());
+                }
+            }
+        }
+
+        LocalDate today = LocalDate.now();
+        List<Expense> expenses = new ArrayList<>(BATCH_SIZE);
+        for (int e = 0; e < settings.getExpenses(); e++){
+            int g = random.nextInt(groups.size());
+            List<User> members = groupUsers.get(g);
+            BigDecimal amount = BigDecimal.valueOf(100 + random.nextInt(20_000), 2);
+            expenses.add(Expense.builder()
+                    .name("Expense " + e)
+                    .expenseDescription("Seeded by the load test")
+                    .amount(amount)
+                    .currencyAmount(amount)
+                    .currency(Currency.GBP)
+                    .expenseDate(today.minusDays(random.nextInt(730)))
+                    .isSplit(random.nextInt(5) != 0)
+                    .user(members.get(random.nextInt(members.size())))
+                    .splitGroup(groups.get(g))
+                    .build());
+            if (expenses.size() == BATCH_SIZE){
+                expenseRepository.saveAll(expenses);
+                expenses = new ArrayList<>(BATCH_SIZE);
+            }
+        }
+        expenseRepository.saveAll(expenses);
+
+        List<Payment> payments = new ArrayList<>();
+        for (int g = 0; g < groups.size(); g++){
+            List<User> members = groupUsers.get(g);
+            for (int p = 0; p < settings.getPaymentsPerGroup() && members.size() > 1; p++){
+                int from = random.nextInt(members.size());
+                int to = (from + 1 + random.nextInt(members.size() - 1)) % members.size();
+                payments.add(Payment.builder()
+                        .fromUser(members.get(from))
+                        .toUser(members.get(to))
+                        .splitGroup(groups.get(g))
+                        .amount(BigDecimal.valueOf(100 + random.nextInt(10_000), 2))
+                        .calculatedDate(today.minusDays(random.nextInt(30)))
+                        .build());
+            }
+        }
+        for (Payment payment : paymentRepository.saveAll(payments)){
+            seededData.getOrCreate(payment.getFromUser().getUsername()).getUnpaidPaymentIds().add(payment.getId());
+        }
+        // Expenses and payments are saved directly, so the balance ledger is built from them afterwards
+        for (SplitGroup splitGroup : groups){
+            balanceLedgerService.rebuildGroup(splitGroup.getId());
+        }
+
+        log.info("Seeded {} in {}ms", settings, System.currentTimeMillis() - start);
+        return seededData;
+    }
+
+    /**
+     * The ids each seeded user can act on, keyed by username
+     */
+    public static class SeededData {
+
+        private final Map<String, VirtualUser> virtualUsers = new LinkedHashMap<>();
+
+        VirtualUser getOrCreate(String username){
+            return virtualUsers.computeIfAbsent(username, VirtualUser::new);
+        }
+
+        /**
+         * @return the users who are the admin of at least one group
+         */
+        public List<VirtualUser> getAdmins(){
+            List<VirtualUser> admins = new ArrayList<>();
+            for (VirtualUser virtualUser : virtualUsers.values()){
+                if (!virtualUser.getAdminGroupIds().isEmpty()){
+                    admins.add(virtualUser);
+                }
+            }
+            return admins;
+        }
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static class VirtualUser {
+        private final String username;
+        private final List<Long> groupIds = new ArrayList<>();
+        private final List<Long> adminGroupIds = new ArrayList<>();
+        private final Queue<Long> unpaidPaymentIds = new ConcurrentLinkedQueue<>();
+    }
+}
@@ -0,0 +1,53 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Prints the per-endpoint results and writes them as JSON so that runs can be compared
+ */
+public class LoadTestReport {
+
+    static final String HEADER = String.format("%-28s %8s %7s %9s %9s %9s %9s %9s",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "sql/req");
+
+    private final LoadTestSettings settings;
+    private final List<EndpointStats> stats;
+
+    public LoadTestReport(LoadTestSettings settings, Collection<EndpointStats> stats) {
+        this.settings = settings;
+        this.stats = stats.stream()
+                .sorted(Comparator.comparing(EndpointStats::getEndpoint))
+                .collect(Collectors.toList());
+    }
+
+    public String toText(){
+        StringBuilder builder = new StringBuilder()
+                .append(settings).append('\n')
+                .append(HEADER).append('\n');
+        stats.forEach(s -> builder.append(s.summarise(settings.getDurationSeconds())).append('\n'));
+        builder.append(String.format("%-28s %8d %7s %9.1f", "total", totalRequests(), "",
+                (double) totalRequests() / settings.getDurationSeconds())).append('\n');
+        return builder.toString();
+    }
+
+    public void writeJson(Path file) throws IOException {
+        String endpoints = stats.stream()
+                .map(s -> s.toJson(settings.getDurationSeconds()))
+                .collect(Collectors.joining(",\n    "));
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "{\n  \"settings\": \"" + settings + "\",\n  \"executionMode\": \""
+                + settings.getExecutionMode() + "\",\n  \"throughput\": "
+                + String.format("%.2f", (double) totalRequests() / settings.getDurationSeconds())
+                + ",\n  \"endpoints\": [\n    " + endpoints + "\n  ]\n}\n");
+    }
+
+    private long totalRequests(){
+        return stats.stream().mapToLong(s -> s.getLatencyNanos().size()).sum();
+    }
+}
@@ -0,0 +1,45 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import lombok.Getter;
+
+/**
+ * Size of the seeded data and shape of the load, read from system properties so that they can be set from gradle,
+ * e.g. ./gradlew loadTest -Ploadtest.users=2000 -Ploadtest.expenses=200000
+ */
+@Getter
+public class LoadTestSettings {
+
+    private final int users = intProperty("loadtest.users", 200);
+    private final int groups = intProperty("loadtest.groups", 50);
+    private final int membersPerGroup = intProperty("loadtest.membersPerGroup", 20);
+    private final int expenses = intProperty("loadtest.expenses", 20_000);
+    private final int paymentsPerGroup = intProperty("loadtest.paymentsPerGroup", 50);
+    private final int threads = intProperty("loadtest.threads", 8);
+    private final int warmupSeconds = intProperty("loadtest.warmupSeconds", 10);
+    private final int durationSeconds = intProperty("loadtest.durationSeconds", 60);
+    private final long seed = intProperty("loadtest.seed", 42);
+
+    // billsplit.execution-mode of the booted application - platform or virtual
+    private final String executionMode = System.getProperty("loadtest.executionMode", "platform");
+    // Time each request blocks for in the application, standing in for a slow call to an external API
+    private final int blockingMillis = intProperty("loadtest.blockingMillis", 0);
+
+    // Relative weights of each request in the mix
+    private final int overviewWeight = intProperty("loadtest.mix.overview", 50);
+    private final int searchWeight = intProperty("loadtest.mix.search", 30);
+    private final int paymentWeight = intProperty("loadtest.mix.payment", 15);
+    // POST /splitGroup/{id}/calculate with a new idempotency key each time - each records a settlement run, settling
+    // the group's expenses added since the previous one
+    private final int calculateWeight = intProperty("loadtest.mix.calculate", 5);
+
+    private static int intProperty(String name, int defaultValue){
+        return Integer.parseInt(System.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    @Override
+    public String toString() {
+        return users + " users, " + groups + " groups of " + membersPerGroup + ", " + expenses + " expenses, "
+                + paymentsPerGroup + " payments per group, " + threads + " threads for " + durationSeconds + "s, "
+                + executionMode + " execution mode, " + blockingMillis + "ms blocking per request";
+    }
+}
@@ -0,0 +1,54 @@
+package com.tomiscoding.billsplit.loadtest;
+
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import com.tomiscoding.billsplit.metrics.QueryStats;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wraps every request tagged by the load driver in a QueryMetricsRecorder scope so that the SQL statements it
+ * executes - including lazy loads made while rendering the view - are attributed to it, and keeps the count against
+ * the request id for the driver to take
+ */
+@RequiredArgsConstructor
+public class SqlStatementCountFilter extends OncePerRequestFilter {
+
+    static final String REQUEST_ID_HEADER = "X-Load-Request-Id";
+
+    private static final Map<String, Integer> COUNTS_BY_REQUEST = new ConcurrentHashMap<>();
+
+    private final QueryMetricsRecorder queryMetricsRecorder;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null){
+            filterChain.doFilter(request, response);
+            return;
+        }
+        QueryStats queryStats = queryMetricsRecorder.open(REQUEST_ID_HEADER + " " + requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            queryMetricsRecorder.close(queryStats);
+            COUNTS_BY_REQUEST.put(requestId, queryStats.getStatements());
+        }
+    }
+
+    /**
+     * @param requestId the value of the X-Load-Request-Id header sent with the request
+     * @return the number of statements the request executed, or -1 if it was not recorded
+     */
+    static int take(String requestId){
+        Integer count = COUNTS_BY_REQUEST.remove(requestId);
+        return count == null ? -1 : count;
+    }
+}
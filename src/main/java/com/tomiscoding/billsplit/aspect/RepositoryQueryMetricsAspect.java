@@ -0,0 +1,40 @@
+package com.tomiscoding.billsplit.aspect;
+
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import com.tomiscoding.billsplit.metrics.QueryStats;
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.annotation.Pointcut;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the SQL statements, rows and database time of every repository method as metrics tagged with the
+ * repository and method name - e.g. GroupRepository.findById
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class RepositoryQueryMetricsAspect {
+
+    private final QueryMetricsRecorder queryMetricsRecorder;
+
+    @Pointcut("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public void repositoryMethod(){}
+
+    @Around("repositoryMethod()")
+    public Object recordRepositoryQueries(ProceedingJoinPoint joinPoint) throws Throwable {
+        Class<?>[] interfaces = AopProxyUtils.proxiedUserInterfaces(joinPoint.getThis());
+        String name = (interfaces.length > 0 ? interfaces[0].getSimpleName() : joinPoint.getSignature().getDeclaringType().getSimpleName())
+                + "." + joinPoint.getSignature().getName();
+
+        QueryStats queryStats = queryMetricsRecorder.open(name);
+        try {
+            return joinPoint.proceed();
+        } finally {
+            queryMetricsRecorder.closeAndPublish(queryStats, "repository", name);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.tomiscoding.billsplit.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+
+import java.util.concurrent.Callable;
+
+/**
+ * A cache with a bounded in-process Caffeine tier in front of a shared Redis tier. Reads are served from the local
+ * tier when possible and otherwise from Redis, copying the value into the local tier. Writes and evictions go to both
+ * tiers and are published so that other instances drop their local copy. Keys are held locally by their string form,
+ * which is also how they are sent to other instances.
+ * <p>
+ * Every call to Redis goes through the TwoTierCacheManager, which skips Redis while it is unreachable - the cache
+ * then works as a local cache alone.
+ */
+public class TwoTierCache extends AbstractValueAdaptingCache {
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final Cache remote;
+    private final TwoTierCacheManager cacheManager;
+
+    TwoTierCache(String name, com.github.benmanes.caffeine.cache.Cache<String, Object> local, Cache remote,
+                 boolean allowNullValues, TwoTierCacheManager cacheManager) {
+        super(allowNullValues);
+        this.name = name;
+        this.local = local;
+        this.remote = remote;
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    /**
+     * @return the local tier, e.g. for its statistics
+     */
+    public com.github.benmanes.caffeine.cache.Cache<String, Object> getLocalCache(){
+        return local;
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String localKey = key.toString();
+        Object value = local.getIfPresent(localKey);
+        if (value == null){
+            value = lookupRemote(key);
+            if (value != null){
+                local.put(localKey, value);
+            }
+        }
+        return value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        return (T) fromStoreValue(local.get(key.toString(), localKey -> {
+            Object value = lookupRemote(key);
+            if (value != null){
+                return value;
+            }
+            T loaded;
+            try {
+                loaded = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            cacheManager.callRedis(() -> remote.put(key, loaded));
+            return toStoreValue(loaded);
+        }));
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        local.put(key.toString(), toStoreValue(value));
+        cacheManager.callRedis(() -> remote.put(key, value));
+        cacheManager.publishEviction(name, key.toString());
+    }
+
+    @Override
+    public void evict(Object key) {
+        local.invalidate(key.toString());
+        cacheManager.callRedis(() -> remote.evict(key));
+        cacheManager.publishEviction(name, key.toString());
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        cacheManager.callRedis(remote::clear);
+        cacheManager.publishClear(name);
+    }
+
+    void evictLocal(String key){
+        local.invalidate(key);
+    }
+
+    void clearLocal(){
+        local.invalidateAll();
+    }
+
+    // Helper method to read a value from Redis in its stored form, or null if it is missing or Redis is unreachable
+    private Object lookupRemote(Object key){
+        ValueWrapper remoteValue = cacheManager.callRedis(() -> remote.get(key), null);
+        return remoteValue == null ? null : toStoreValue(remoteValue.get());
+    }
+}
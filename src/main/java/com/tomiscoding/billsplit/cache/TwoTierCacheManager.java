@@ -0,0 +1,134 @@
+package com.tomiscoding.billsplit.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A CacheManager whose caches are TwoTierCaches - a Caffeine tier built from the spec for the cache name in front of
+ * the cache of the same name from the remote (Redis) CacheManager. Puts and evictions are published on a Redis channel
+ * so that every other instance drops its local copy (see TwoTierCacheConfig).
+ * <p>
+ * Calls to Redis go through a circuit breaker. While Redis is unreachable the circuit opens and the caches carry on
+ * with their local tier alone, without waiting on Redis timeouts. Invalidations can't be published meanwhile, so the
+ * local tier's TTL bounds how stale another instance's copy can be.
+ */
+@Log4j2
+public class TwoTierCacheManager implements CacheManager {
+
+    public static final String INVALIDATION_CHANNEL = "billsplit:cache-invalidation";
+    private static final String EVICT = "evict";
+    private static final String CLEAR = "clear";
+
+    // Identifies this instance's invalidations, which it has already applied
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, TwoTierCache> caches = new ConcurrentHashMap<>();
+    private final CacheManager remoteCacheManager;
+    private final Function<String, Caffeine<Object, Object>> localSpec;
+    private final StringRedisTemplate redisTemplate;
+    private final CircuitBreaker redis;
+    private final boolean allowNullValues;
+
+    /**
+     * @param remoteCacheManager the Redis caches
+     * @param localSpec the Caffeine builder, with size and expiry set, for the local tier of a cache name
+     * @param redisTemplate publishes invalidations
+     * @param redis guards every call to Redis
+     * @param allowNullValues whether null values are cached
+     * @param cacheNames the caches to create up front, so that their metrics are registered
+     */
+    public TwoTierCacheManager(CacheManager remoteCacheManager, Function<String, Caffeine<Object, Object>> localSpec,
+                               StringRedisTemplate redisTemplate, CircuitBreaker redis, boolean allowNullValues,
+                               Collection<String> cacheNames) {
+        this.remoteCacheManager = remoteCacheManager;
+        this.localSpec = localSpec;
+        this.redisTemplate = redisTemplate;
+        this.redis = redis;
+        this.allowNullValues = allowNullValues;
+        cacheNames.forEach(this::getCache);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name, n -> {
+            Cache remote = remoteCacheManager.getCache(n);
+            if (remote == null){
+                throw new IllegalStateException("No remote cache named " + n);
+            }
+            return new TwoTierCache(n, localSpec.apply(n).build(), remote, allowNullValues, this);
+        });
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Collections.unmodifiableSet(caches.keySet());
+    }
+
+    /**
+     * Applies an invalidation published by another instance to the local tier
+     * @param message '{instance}|evict|{cache}|{key}' or '{instance}|clear|{cache}|'
+     */
+    public void onInvalidation(String message){
+        String[] parts = message.split("\\|", 4);
+        if (parts.length < 4){
+            log.warn("Ignoring malformed cache invalidation: {}", message);
+            return;
+        }
+        if (parts[0].equals(instanceId)){
+            return;
+        }
+        TwoTierCache cache = caches.get(parts[2]);
+        if (cache == null){
+            return;
+        }
+        if (parts[1].equals(CLEAR)){
+            cache.clearLocal();
+        } else {
+            cache.evictLocal(parts[3]);
+        }
+    }
+
+    void publishEviction(String cacheName, String key){
+        publish(instanceId + "|" + EVICT + "|" + cacheName + "|" + key);
+    }
+
+    void publishClear(String cacheName){
+        publish(instanceId + "|" + CLEAR + "|" + cacheName + "|");
+    }
+
+    /**
+     * @param call a call to Redis
+     * @param fallback the result if Redis is unreachable
+     * @return the result of the call, or the fallback if it failed or the circuit is open
+     */
+    <T> T callRedis(Supplier<T> call, T fallback){
+        try {
+            return redis.executeSupplier(call);
+        } catch (CallNotPermittedException e) {
+            return fallback;
+        } catch (RuntimeException e) {
+            log.warn("Redis cache call failed - using the local cache tier: {}", e.getMessage());
+            return fallback;
+        }
+    }
+
+    void callRedis(Runnable call){
+        callRedis(() -> {
+            call.run();
+            return null;
+        }, null);
+    }
+
+    private void publish(String message){
+        callRedis(() -> redisTemplate.convertAndSend(INVALIDATION_CHANNEL, message));
+    }
+}
@@ -1,36 +1,40 @@
 package com.tomiscoding.billsplit.config;
 
-import com.tomiscoding.billsplit.exceptions.ExpenseNotFoundException;
-import com.tomiscoding.billsplit.exceptions.PaymentNotFoundException;
-import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
-import com.tomiscoding.billsplit.model.Expense;
-import com.tomiscoding.billsplit.model.Payment;
-import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.dto.ExpenseOwnership;
+import com.tomiscoding.billsplit.dto.PaymentParties;
 import com.tomiscoding.billsplit.model.User;
 import com.tomiscoding.billsplit.repository.ExpenseRepository;
-import com.tomiscoding.billsplit.repository.GroupMemberRepository;
 import com.tomiscoding.billsplit.repository.GroupRepository;
 import com.tomiscoding.billsplit.repository.PaymentRepository;
-import com.tomiscoding.billsplit.service.ExpenseService;
-import com.tomiscoding.billsplit.service.GroupService;
-import com.tomiscoding.billsplit.service.PaymentService;
+import com.tomiscoding.billsplit.service.GroupMembershipIndex;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.PermissionEvaluator;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
 
+/**
+ * Resolves @PreAuthorize hasPermission checks. Group membership comes from GroupMembershipIndex and expenses and
+ * payments are read as id-only projections, so a check costs at most one small query. Decisions are also memoised
+ * for the rest of the request. A target which doesn't exist is permitted so that the controller can report it as
+ * not found.
+ */
 @Component
 @RequiredArgsConstructor
 public class CustomPermissionEvaluator implements PermissionEvaluator {
 
+    private static final String DECISIONS_ATTRIBUTE = CustomPermissionEvaluator.class.getName() + ".decisions";
 
     private final ExpenseRepository expenseRepository;
-    private final GroupMemberRepository groupMemberRepository;
     private final GroupRepository groupRepository;
     private final PaymentRepository paymentRepository;
+    private final GroupMembershipIndex groupMembershipIndex;
 
     @Override
     public boolean hasPermission(Authentication authentication, Object targetDomainObject, Object permission) {
@@ -40,48 +44,82 @@ public class CustomPermissionEvaluator implements PermissionEvaluator {
     @Override
     public boolean hasPermission(Authentication authentication, Serializable targetId, String targetType, Object permission) {
         User activeUser = (User) authentication.getPrincipal();
+        if (targetId == null || permission == null){
+            return false;
+        }
+
+        Map<String, Boolean> decisions = requestDecisions();
+        String key = activeUser.getId() + ":" + targetType.toLowerCase() + ":" + targetId + ":" + permission;
+        if (decisions != null){
+            Boolean decision = decisions.get(key);
+            if (decision != null){
+                return decision;
+            }
+        }
 
+        boolean decision = resolve(activeUser.getId(), Long.parseLong(targetId.toString()), targetType, permission);
+        if (decisions != null){
+            decisions.put(key, decision);
+        }
+        return decision;
+    }
+
+    private boolean resolve(Long userId, Long targetId, String targetType, Object permission){
         if (targetType.equalsIgnoreCase("expense")){
-            try {
-                Expense expense = expenseRepository.findById(Long.parseLong(targetId.toString())).orElseThrow(
-                        () -> new ExpenseNotFoundException("Could not find an expense with id: " + targetId)
-                );
-                return activeUser.getId() == expense.getUser().getId() ||
-                        groupMemberRepository.existsByUserIdAndSplitGroupIdAndIsAdmin(activeUser.getId(), expense.getSplitGroup().getId(), true);
-            } catch (ExpenseNotFoundException e) {
+            Optional<ExpenseOwnership> expense = expenseRepository.getOwnershipById(targetId);
+            if (expense.isEmpty()){
                 return true;
             }
+            return userId.equals(expense.get().getUserId()) || isAdmin(userId, expense.get().getSplitGroupId());
         } else if (targetType.equalsIgnoreCase("splitGroup")) {
-            try {
-                SplitGroup splitGroup = groupRepository.findById(Long.parseLong(targetId.toString())).orElseThrow(
-                        () -> new SplitGroupNotFoundException("Could not find group with id: " + targetId)
-                );
-                if (permission.equals("user")) {
-                    return groupMemberRepository.existsByUserAndSplitGroup(activeUser, splitGroup);
-                } else if (permission.equals("admin")) {
-                    return groupMemberRepository.existsByUserIdAndSplitGroupIdAndIsAdmin(activeUser.getId(), splitGroup.getId(), true);
-                } else {
-                    return false;
-                }
-            } catch (SplitGroupNotFoundException e) {
+            Boolean isAdmin = groupMembershipIndex.getMemberships(userId).get(targetId);
+            if (isAdmin == null){
+                // Not a member - only look the group up to tell a missing group from a forbidden one
+                return !groupRepository.existsById(targetId);
+            }
+            if (permission.equals("user")) {
                 return true;
+            } else if (permission.equals("admin")) {
+                return isAdmin;
+            } else {
+                return false;
             }
         } else if (targetType.equalsIgnoreCase("payment")){
-            try {
-                Payment payment = paymentRepository.findById(Long.parseLong(targetId.toString())).orElseThrow(
-                        () -> new PaymentNotFoundException("There is no payment with id: " + targetId)
-                );
-                if (permission.equals("PAID_PENDING")){
-                    return activeUser.getId() == payment.getFromUser().getId();
-                } else if (permission.equals("PAID_CONFIRMED")) {
-                    return activeUser.getId() == payment.getToUser().getId();
-                } else {
-                    return false;
-                }
-            } catch (PaymentNotFoundException e) {
+            Optional<PaymentParties> payment = paymentRepository.getPartiesById(targetId);
+            if (payment.isEmpty()){
                 return true;
             }
+            if (permission.equals("PAID_PENDING")){
+                return userId.equals(payment.get().getFromUserId());
+            } else if (permission.equals("PAID_CONFIRMED")) {
+                return userId.equals(payment.get().getToUserId());
+            } else {
+                return false;
+            }
         }
         return false;
     }
+
+    // Helper method to check whether a user is an admin of a group
+    private boolean isAdmin(Long userId, Long splitGroupId){
+        return Boolean.TRUE.equals(groupMembershipIndex.getMemberships(userId).get(splitGroupId));
+    }
+
+    /**
+     * Helper method to get the decisions already made during the current request
+     * @return the decisions keyed by user, target and permission, or null outside of a request
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Boolean> requestDecisions(){
+        RequestAttributes requestAttributes = RequestContextHolder.getRequestAttributes();
+        if (requestAttributes == null){
+            return null;
+        }
+        Map<String, Boolean> decisions = (Map<String, Boolean>) requestAttributes.getAttribute(DECISIONS_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (decisions == null){
+            decisions = new HashMap<>();
+            requestAttributes.setAttribute(DECISIONS_ATTRIBUTE, decisions, RequestAttributes.SCOPE_REQUEST);
+        }
+        return decisions;
+    }
 }
@@ -0,0 +1,70 @@
+package com.tomiscoding.billsplit.config;
+
+import com.tomiscoding.billsplit.service.JoinRateLimiter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Throttles the requests which look up an invite code - following an invite link, submitting the join form and
+ * returning from login with an invite cookie - with a JoinRateLimiter bucket per logged in user, or per address for
+ * anonymous requests. Runs after Spring Security so that the user is known.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class JoinRateLimitFilter extends OncePerRequestFilter {
+
+    private final JoinRateLimiter joinRateLimiter;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getServletPath();
+        return !(path.startsWith("/splitGroup/join/")
+                || (path.equals("/splitGroup/join") && request.getMethod().equals("POST"))
+                || (path.equals("/loginSuccess") && hasInviteCookie(request)));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        String clientKey = clientKey(request);
+        if (!joinRateLimiter.tryAcquire(clientKey)){
+            log.warn("Throttled join attempt by {} to {}", clientKey, request.getRequestURI());
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(joinRateLimiter.getRetryAfterSeconds()));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getWriter().write("Too many attempts to join a group, please try again later");
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    // Helper method to identify the client by username when logged in, otherwise by address
+    private String clientKey(HttpServletRequest request){
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication != null && authentication.isAuthenticated() && !(authentication instanceof AnonymousAuthenticationToken)){
+            return "user:" + authentication.getName();
+        }
+        return "address:" + request.getRemoteAddr();
+    }
+
+    private boolean hasInviteCookie(HttpServletRequest request){
+        Cookie[] cookies = request.getCookies();
+        return cookies != null && Arrays.stream(cookies)
+                .anyMatch(c -> c.getName().equals("inviteCode") && !c.getValue().isBlank());
+    }
+}
@@ -0,0 +1,31 @@
+package com.tomiscoding.billsplit.config;
+
+import com.tomiscoding.billsplit.service.GroupMembershipIndex;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Subscribes to the membership index invalidation channel so that evictions made by any instance are applied to
+ * this instance's GroupMembershipIndex
+ */
+@Configuration
+@ConditionalOnProperty(name = "billsplit.membership-index.redis-invalidation", havingValue = "true")
+public class MembershipIndexConfig {
+
+    @Bean
+    RedisMessageListenerContainer membershipIndexListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                   GroupMembershipIndex groupMembershipIndex){
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> groupMembershipIndex.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(GroupMembershipIndex.INVALIDATION_CHANNEL));
+        return container;
+    }
+}
@@ -0,0 +1,46 @@
+package com.tomiscoding.billsplit.config;
+
+import com.tomiscoding.billsplit.metrics.QueryMetricsListener;
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the DataSource with datasource-proxy so that every statement executed is reported to the QueryMetricsRecorder.
+ * Can be turned off with billsplit.query-metrics.enabled=false. Rows are only counted with
+ * billsplit.query-metrics.count-rows=true, as that proxies every result set and intercepts each call to next().
+ */
+@Configuration
+@ConditionalOnProperty(name = "billsplit.query-metrics.enabled", havingValue = "true", matchIfMissing = true)
+public class QueryMetricsConfig {
+
+    @Bean
+    static BeanPostProcessor queryMetricsDataSourcePostProcessor(ObjectProvider<QueryMetricsRecorder> queryMetricsRecorder,
+                                                                 Environment environment){
+        boolean countRows = environment.getProperty("billsplit.query-metrics.count-rows", Boolean.class, false);
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)){
+                    QueryMetricsListener listener = new QueryMetricsListener(queryMetricsRecorder.getObject());
+                    ProxyDataSourceBuilder builder = ProxyDataSourceBuilder.create((DataSource) bean)
+                            .name(beanName)
+                            .listener(listener);
+                    if (countRows){
+                        builder.methodListener(listener).proxyResultSet();
+                    }
+                    return builder.build();
+                }
+                return bean;
+            }
+        };
+    }
+}
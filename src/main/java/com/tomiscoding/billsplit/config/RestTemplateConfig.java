@@ -1,15 +1,142 @@
 package com.tomiscoding.billsplit.config;
 
+import com.tomiscoding.billsplit.service.HttpDownstream;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.httpcomponents.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a HttpDownstream for each service called over HTTP. Each has its own pool of keep-alive connections, sized by
+ * billsplit.http.[service].max-connections, which also limits the calls in flight through its bulkhead, and its own
+ * connect and read timeouts. The RestTemplates come from Boot's RestTemplateBuilder so that http.client.requests
+ * metrics are still recorded.
+ */
 @Configuration
 public class RestTemplateConfig {
 
+    @Value("${billsplit.http.currencyapi.max-connections:20}")
+    private int currencyApiMaxConnections;
+
+    @Value("${billsplit.http.currencyapi.connect-timeout-ms:2000}")
+    private int currencyApiConnectTimeoutMillis;
+
+    @Value("${billsplit.http.currencyapi.read-timeout-ms:5000}")
+    private int currencyApiReadTimeoutMillis;
+
+    @Value("${billsplit.http.mailersend.max-connections:4}")
+    private int mailerSendMaxConnections;
+
+    @Value("${billsplit.http.mailersend.connect-timeout-ms:2000}")
+    private int mailerSendConnectTimeoutMillis;
+
+    @Value("${billsplit.http.mailersend.read-timeout-ms:15000}")
+    private int mailerSendReadTimeoutMillis;
+
+    @Value("${billsplit.http.idle-timeout-ms:30000}")
+    private long idleTimeoutMillis;
+
+    @Value("${billsplit.http.bulkhead-wait-ms:100}")
+    private long bulkheadWaitMillis;
+
+    @Value("${billsplit.http.circuit.failure-rate-threshold:50}")
+    private float failureRateThreshold;
+
+    @Value("${billsplit.http.circuit.sliding-window-size:20}")
+    private int slidingWindowSize;
+
+    @Value("${billsplit.http.circuit.open-ms:30000}")
+    private long openMillis;
+
     @Bean
-    RestTemplate restTemplate(RestTemplateBuilder builder){
-        return builder.build();
+    CircuitBreakerRegistry circuitBreakerRegistry(ObjectProvider<MeterRegistry> meterRegistry){
+        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(failureRateThreshold)
+                .slidingWindowSize(slidingWindowSize)
+                .minimumNumberOfCalls(Math.min(slidingWindowSize, 10))
+                .waitDurationInOpenState(Duration.ofMillis(openMillis))
+                .permittedNumberOfCallsInHalfOpenState(3)
+                .ignoreExceptions(HttpClientErrorException.class)
+                .build());
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(registry)
+                .bindTo(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        return registry;
+    }
+
+    @Bean
+    BulkheadRegistry bulkheadRegistry(ObjectProvider<MeterRegistry> meterRegistry){
+        BulkheadRegistry registry = BulkheadRegistry.ofDefaults();
+        TaggedBulkheadMetrics.ofBulkheadRegistry(registry)
+                .bindTo(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        return registry;
+    }
+
+    @Bean
+    HttpDownstream currencyApi(ObjectProvider<RestTemplateBuilder> builder, ObjectProvider<MeterRegistry> meterRegistry,
+                               CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry){
+        return downstream("currencyapi", currencyApiMaxConnections, currencyApiConnectTimeoutMillis,
+                currencyApiReadTimeoutMillis, builder, meterRegistry, circuitBreakerRegistry, bulkheadRegistry);
+    }
+
+    @Bean
+    HttpDownstream mailerSend(ObjectProvider<RestTemplateBuilder> builder, ObjectProvider<MeterRegistry> meterRegistry,
+                              CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry){
+        return downstream("mailersend", mailerSendMaxConnections, mailerSendConnectTimeoutMillis,
+                mailerSendReadTimeoutMillis, builder, meterRegistry, circuitBreakerRegistry, bulkheadRegistry);
+    }
+
+    // Helper method to build the connection pool, RestTemplate, bulkhead and circuit breaker of one service
+    private HttpDownstream downstream(String name, int maxConnections, int connectTimeoutMillis, int readTimeoutMillis,
+                                      ObjectProvider<RestTemplateBuilder> builder, ObjectProvider<MeterRegistry> meterRegistry,
+                                      CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry){
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+        // Check connections the server may have closed before reusing them
+        connectionManager.setValidateAfterInactivity(2000);
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, name)
+                .bindTo(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout(connectTimeoutMillis)
+                        .setSocketTimeout(readTimeoutMillis)
+                        // The bulkhead admits no more calls than connections, so the wait for one is short
+                        .setConnectionRequestTimeout(connectTimeoutMillis)
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS)
+                .build();
+        RestTemplate restTemplate = builder.getIfAvailable(RestTemplateBuilder::new)
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+
+        return new HttpDownstream(name, restTemplate, httpClient,
+                bulkheadRegistry.bulkhead(name, BulkheadConfig.custom()
+                        .maxConcurrentCalls(maxConnections)
+                        .maxWaitDuration(Duration.ofMillis(bulkheadWaitMillis))
+                        .build()),
+                circuitBreakerRegistry.circuitBreaker(name));
     }
 }
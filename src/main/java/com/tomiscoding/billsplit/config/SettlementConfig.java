@@ -0,0 +1,39 @@
+package com.tomiscoding.billsplit.config;
+
+import com.tomiscoding.billsplit.settlement.GreedySettlementStrategy;
+import com.tomiscoding.billsplit.settlement.MeteredSettlementStrategy;
+import com.tomiscoding.billsplit.settlement.SettlementStrategy;
+import com.tomiscoding.billsplit.settlement.ZeroSumSubgroupSettlementStrategy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SettlementConfig {
+
+    @Value("${billsplit.settlement.strategy:greedy}")
+    private String strategy;
+
+    @Value("${billsplit.settlement.exact-max-members:20}")
+    private int exactMaxMembers;
+
+    @Value("${billsplit.settlement.time-budget-ms:200}")
+    private long timeBudgetMillis;
+
+    @Bean
+    SettlementStrategy settlementStrategy(ObjectProvider<MeterRegistry> meterRegistry){
+        SettlementStrategy settlementStrategy;
+        if (strategy.equalsIgnoreCase("greedy")){
+            settlementStrategy = new GreedySettlementStrategy();
+        } else if (strategy.equalsIgnoreCase("zero-sum")) {
+            settlementStrategy = new ZeroSumSubgroupSettlementStrategy(exactMaxMembers, timeBudgetMillis);
+        } else {
+            throw new IllegalStateException(strategy + " is not a valid settlement strategy - use 'greedy' or 'zero-sum'");
+        }
+        return new MeteredSettlementStrategy(settlementStrategy, strategy.toLowerCase(),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+}
@@ -0,0 +1,123 @@
+package com.tomiscoding.billsplit.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomiscoding.billsplit.cache.TwoTierCache;
+import com.tomiscoding.billsplit.cache.TwoTierCacheManager;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.cache.RedisCacheConfiguration;
+import org.springframework.data.redis.cache.RedisCacheManager;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * With billsplit.cache.two-tier enabled, replaces Boot's Redis CacheManager with a TwoTierCacheManager. Each cache's
+ * TTL in Redis, and the TTL and size of its local tier, can be set per cache with billsplit.cache.[name].ttl-ms,
+ * local-ttl-ms and max-entries. Values are stored in Redis as JSON under a new key prefix, so entries written with
+ * JDK serialization are never read and simply expire.
+ */
+@Configuration
+@ConditionalOnProperty(name = "billsplit.cache.two-tier", havingValue = "true")
+public class TwoTierCacheConfig {
+
+    private static final String KEY_PREFIX = "billsplit:";
+
+    @Value("${spring.cache.cache-names:}")
+    private String[] cacheNames;
+
+    @Value("${spring.cache.redis.cache-null-values:true}")
+    private boolean cacheNullValues;
+
+    @Value("${billsplit.cache.ttl-ms:${spring.cache.redis.time-to-live:86400000}}")
+    private long ttlMillis;
+
+    @Value("${billsplit.cache.local-ttl-ms:300000}")
+    private long localTtlMillis;
+
+    @Value("${billsplit.cache.max-entries:10000}")
+    private long maxEntries;
+
+    @Value("${billsplit.cache.redis-retry-ms:30000}")
+    private long redisRetryMillis;
+
+    @Bean
+    TwoTierCacheManager cacheManager(RedisConnectionFactory redisConnectionFactory, StringRedisTemplate redisTemplate,
+                                     CircuitBreakerRegistry circuitBreakerRegistry, Environment environment){
+        Map<String, RedisCacheConfiguration> remoteConfigurations = new HashMap<>();
+        for (String cacheName : cacheNames){
+            remoteConfigurations.put(cacheName, remoteConfiguration(
+                    environment.getProperty("billsplit.cache." + cacheName + ".ttl-ms", Long.class, ttlMillis)));
+        }
+        RedisCacheManager remoteCacheManager = RedisCacheManager.builder(redisConnectionFactory)
+                .cacheDefaults(remoteConfiguration(ttlMillis))
+                .withInitialCacheConfigurations(remoteConfigurations)
+                .enableStatistics()
+                .build();
+        remoteCacheManager.afterPropertiesSet();
+
+        return new TwoTierCacheManager(remoteCacheManager,
+                cacheName -> Caffeine.newBuilder()
+                        .maximumSize(environment.getProperty("billsplit.cache." + cacheName + ".max-entries", Long.class, maxEntries))
+                        .expireAfterWrite(Duration.ofMillis(
+                                environment.getProperty("billsplit.cache." + cacheName + ".local-ttl-ms", Long.class, localTtlMillis)))
+                        .recordStats(),
+                redisTemplate,
+                circuitBreakerRegistry.circuitBreaker("redis-cache", CircuitBreakerConfig.custom()
+                        .slidingWindowSize(10)
+                        .minimumNumberOfCalls(5)
+                        .waitDurationInOpenState(Duration.ofMillis(redisRetryMillis))
+                        .build()),
+                cacheNullValues,
+                Arrays.asList(cacheNames));
+    }
+
+    @Bean
+    RedisMessageListenerContainer cacheInvalidationListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                     TwoTierCacheManager cacheManager){
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(redisConnectionFactory);
+        container.addMessageListener(
+                (message, pattern) -> cacheManager.onInvalidation(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(TwoTierCacheManager.INVALIDATION_CHANNEL));
+        return container;
+    }
+
+    /**
+     * Registers the cache.* metrics of each cache's local tier
+     */
+    @Bean
+    CacheMeterBinderProvider<TwoTierCache> twoTierCacheMeterBinderProvider(){
+        return (cache, tags) -> new CaffeineCacheMetrics(cache.getLocalCache(), cache.getName(), tags);
+    }
+
+    static RedisSerializer<Object> valueSerializer(){
+        return new GenericJackson2JsonRedisSerializer();
+    }
+
+    // Helper method for the Redis tier's configuration of a cache - JSON values and the given TTL
+    private RedisCacheConfiguration remoteConfiguration(long ttlMillis){
+        RedisCacheConfiguration configuration = RedisCacheConfiguration.defaultCacheConfig()
+                .entryTtl(Duration.ofMillis(ttlMillis))
+                .computePrefixWith(cacheName -> KEY_PREFIX + cacheName + "::")
+                .serializeValuesWith(RedisSerializationContext.SerializationPair.fromSerializer(valueSerializer()));
+        return cacheNullValues ? configuration : configuration.disableCachingNullValues();
+    }
+}
@@ -0,0 +1,47 @@
+package com.tomiscoding.billsplit.config;
+
+import lombok.extern.log4j.Log4j2;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+
+import java.util.concurrent.Executors;
+
+/**
+ * With billsplit.execution-mode=virtual, runs Tomcat request handling and the application's async work (such as
+ * streaming group exports) on a new virtual thread per task in place of the platform thread pools. A request blocked
+ * on JDBC, Redis or a slow call to currencyapi or MailerSend then unmounts from its carrier thread rather than holding
+ * one of server.tomcat.threads.max, so concurrency is limited by the Hikari pool and the remote services instead.
+ * <p>
+ * Only applies to the embedded server - a war deployed to an external Tomcat keeps the container's executor. Scheduled
+ * jobs keep the single platform scheduler thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "billsplit.execution-mode", havingValue = "virtual")
+@Log4j2
+public class VirtualThreadConfig {
+
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(){
+        log.info("Handling requests on virtual threads");
+        return protocolHandler -> protocolHandler.setExecutor(
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("http-virtual-", 0).factory()));
+    }
+
+    /**
+     * Replaces the auto-configured thread pool used for MVC async requests and @Async methods
+     */
+    @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+            AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+    AsyncTaskExecutor applicationTaskExecutor(){
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor();
+        executor.setThreadFactory(Thread.ofVirtual().name("task-virtual-", 0).factory());
+        return executor;
+    }
+}
@@ -1,6 +1,7 @@
 package com.tomiscoding.billsplit.controller;
 
 import com.tomiscoding.billsplit.dto.ExpenseSearchFilter;
+import com.tomiscoding.billsplit.dto.KeysetSlice;
 import com.tomiscoding.billsplit.exceptions.*;
 import com.tomiscoding.billsplit.model.Currency;
 import com.tomiscoding.billsplit.model.Expense;
@@ -10,7 +11,6 @@ import com.tomiscoding.billsplit.service.ExpenseService;
 import com.tomiscoding.billsplit.service.GroupService;
 import com.tomiscoding.billsplit.service.SearchService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.data.domain.Page;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
@@ -59,12 +59,10 @@ public class ExpenseController {
     // Only accessed by group member
     @PreAuthorize("hasPermission(#groupId,'splitGroup','user')")
     @GetMapping("/search")
-    public String showExpenseSearch(@RequestParam(required = false, defaultValue = "0") Long groupId ,Model model, Authentication authentication) throws SplitGroupNotFoundException, SplitGroupListNotFoundException {
+    public String showExpenseSearch(@RequestParam(required = false, defaultValue = "0") Long groupId ,Model model, Authentication authentication) throws SplitGroupNotFoundException, SplitGroupListNotFoundException, ValidationException {
         User activeUser = (User) authentication.getPrincipal();
         ExpenseSearchFilter expenseSearchFilter = searchService.populateExpenseSearchOptions(activeUser);
         expenseSearchFilter.setUser(null);
-        expenseSearchFilter.setCurrentPageNum(0);
-        expenseSearchFilter.setNumPages(1);
         expenseSearchFilter.setIsSplit(false);
 
         SplitGroup splitGroup;
@@ -77,16 +75,16 @@ public class ExpenseController {
 
         expenseSearchFilter.setSplitGroup(splitGroup);
 
-        Page<Expense> expensesPage = expenseService.getExpenseBySplitGroupIdAndIsSplit(
+        String cursor = searchService.selectPage(new ExpenseSearchFilter(), expenseSearchFilter);
+        KeysetSlice<Expense> expenses = searchService.searchExpenses(
                 expenseSearchFilter.getSplitGroup().getId(),
+                null,
                 expenseSearchFilter.getIsSplit(),
-                expenseSearchFilter.getCurrentPageNum());
-
-        expenseSearchFilter.setNumPages(expensesPage.getTotalPages());
-        List<Expense> expenses = expensesPage.getContent();
+                cursor);
+        searchService.applySlice(expenseSearchFilter, expenses);
 
         model.addAttribute("filterOptions", expenseSearchFilter);
-        model.addAttribute("expenses", expenses);
+        model.addAttribute("expenses", expenses.getContent());
 
         return "expense-search";
     }
@@ -94,36 +92,26 @@ public class ExpenseController {
     // Only accessed by group member
     @PreAuthorize("hasPermission(#filterOptions.splitGroup.id,'splitGroup','user')")
     @PostMapping("/search")
-    public String updateExpenseSearch(@ModelAttribute ExpenseSearchFilter filterOptions ,Model model, Authentication authentication) throws SplitGroupListNotFoundException {
+    public String updateExpenseSearch(@ModelAttribute ExpenseSearchFilter filterOptions ,Model model, Authentication authentication) throws SplitGroupListNotFoundException, ValidationException {
         User activeUser = (User) authentication.getPrincipal();
-        Integer pageNum = filterOptions.getSelectedPageNum() == null ? 0 : filterOptions.getSelectedPageNum();
 
         ExpenseSearchFilter expenseSearchFilter = searchService.populateExpenseSearchOptions(activeUser);
         expenseSearchFilter.setUser(filterOptions.getUser());
         expenseSearchFilter.setSplitGroup(filterOptions.getSplitGroup());
         expenseSearchFilter.setIsSplit(filterOptions.getIsSplit());
-        expenseSearchFilter.setCurrentPageNum(pageNum);
 
         // Get search results and add to model
 
-        Page<Expense> expensesPage;
-        if (filterOptions.getUser() == null){
-            expensesPage = expenseService.getExpenseBySplitGroupIdAndIsSplit(
-                    expenseSearchFilter.getSplitGroup().getId(),
-                    expenseSearchFilter.getIsSplit(),
-                    expenseSearchFilter.getCurrentPageNum());
-        } else {
-            expensesPage = expenseService.getExpenseByUserIdAndSplitGroupIdAndIsSplit(
-                    expenseSearchFilter.getUser().getId(),
-                    expenseSearchFilter.getSplitGroup().getId(),
-                    expenseSearchFilter.getIsSplit(),
-                    expenseSearchFilter.getCurrentPageNum());
-        }
-        expenseSearchFilter.setNumPages(expensesPage.getTotalPages());
-        List<Expense> expenses = expensesPage.getContent();
+        String cursor = searchService.selectPage(filterOptions, expenseSearchFilter);
+        KeysetSlice<Expense> expenses = searchService.searchExpenses(
+                expenseSearchFilter.getSplitGroup().getId(),
+                expenseSearchFilter.getUser() == null ? null : expenseSearchFilter.getUser().getId(),
+                expenseSearchFilter.getIsSplit(),
+                cursor);
+        searchService.applySlice(expenseSearchFilter, expenses);
 
         model.addAttribute("filterOptions", expenseSearchFilter);
-        model.addAttribute("expenses", expenses);
+        model.addAttribute("expenses", expenses.getContent());
 
         return "expense-search";
     }
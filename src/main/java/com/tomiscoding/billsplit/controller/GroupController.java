@@ -1,22 +1,35 @@
 package com.tomiscoding.billsplit.controller;
 
+import com.tomiscoding.billsplit.dto.ExpenseImportResult;
 import com.tomiscoding.billsplit.dto.GroupOverview;
+import com.tomiscoding.billsplit.dto.GroupSummary;
+import com.tomiscoding.billsplit.dto.FileFormat;
 import com.tomiscoding.billsplit.exceptions.*;
 import com.tomiscoding.billsplit.model.*;
 import com.tomiscoding.billsplit.service.*;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.UUID;
 import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
 @Controller
 @RequestMapping("/splitGroup")
@@ -24,15 +37,18 @@ import java.util.stream.Collectors;
 public class GroupController {
 
     private final GroupService groupService;
-    private final PaymentService paymentService;
+    private final SettlementService settlementService;
     private final GroupMemberService groupMemberService;
-    private final MailerSendService mailerSendService;
+    private final OutboundEmailService outboundEmailService;
     private final ExpenseService expenseService;
+    private final ExpenseImportService expenseImportService;
+    private final GroupExportService groupExportService;
+    private final GroupMembershipIndex groupMembershipIndex;
 
     @GetMapping
     public String showGroupsOfUser(Authentication authentication, Model model){
         User user = (User) authentication.getPrincipal();
-        List<SplitGroup> splitGroups = groupService.getGroupsByUser(user);
+        List<GroupSummary> splitGroups = groupMembershipIndex.getGroupsOfUser(user.getId());
         model.addAttribute("splitGroups", splitGroups);
         return "splitGroups";
     }
@@ -59,6 +75,8 @@ public class GroupController {
 
         model.addAttribute("groupOverview", groupOverview);
         model.addAttribute("splitGroup", splitGroup);
+        // Submitted with the 'Calculate payments' form so that submitting it twice only settles once
+        model.addAttribute("settlementKey", UUID.randomUUID().toString());
         return "splitGroup-admin";
     }
 
@@ -86,10 +104,11 @@ public class GroupController {
     public String sendInviteEmail(@PathVariable Long id,
                                   @RequestParam String emailAddress,
                                   Authentication authentication,
-                                  Model model) throws SplitGroupNotFoundException, EmailSendException {
+                                  Model model) throws SplitGroupNotFoundException {
         User user = (User) authentication.getPrincipal();
         SplitGroup splitGroup = groupService.getGroupById(id);
-        mailerSendService.sendInviteEmail(emailAddress, splitGroup, user);
+        // Sent in the background by OutboundEmailDispatchJob
+        outboundEmailService.queueInviteEmail(emailAddress, splitGroup, user);
         return "redirect:/splitGroup/" + id;
     }
 
@@ -102,10 +121,10 @@ public class GroupController {
 
     // Only allow group admin to access
     @PreAuthorize("hasPermission(#id,'splitGroup','admin')")
-    @GetMapping("/{id}/calculate")
-    public String calculatePayments(@PathVariable Long id, Model model) throws SplitGroupNotFoundException {
-        SplitGroup splitGroup = groupService.getGroupById(id);
-        paymentService.calculateAndSavePayments(splitGroup);
+    @PostMapping("/{id}/calculate")
+    public String calculatePayments(@PathVariable Long id, @RequestParam String idempotencyKey, Authentication authentication) throws SplitGroupNotFoundException, ValidationException {
+        User user = (User) authentication.getPrincipal();
+        settlementService.settle(id, idempotencyKey, user);
         return "redirect:/splitGroup/" + id;
     }
 
@@ -179,4 +198,82 @@ public class GroupController {
         expenseService.saveExpense(expense);
         return "redirect:/splitGroup/" + splitGroupId;
     }
+
+    // Only allow group member to access
+    @PreAuthorize("hasPermission(#splitGroupId,'splitGroup','user')")
+    @GetMapping("/{splitGroupId}/expense/import")
+    public String showImportExpenses(@PathVariable Long splitGroupId, Model model) throws SplitGroupNotFoundException {
+        model.addAttribute("splitGroup", groupService.getGroupById(splitGroupId));
+        return "expense-import";
+    }
+
+    // Only allow group member to access
+    @PreAuthorize("hasPermission(#splitGroupId,'splitGroup','user')")
+    @PostMapping("/{splitGroupId}/expense/import")
+    public String importExpenses(@RequestParam MultipartFile file,
+                                 @PathVariable Long splitGroupId,
+                                 Authentication authentication,
+                                 Model model) throws SplitGroupNotFoundException, ValidationException, IOException {
+        if (file.isEmpty()){
+            throw new ValidationException("Select a CSV or JSON file to import");
+        }
+        User user = (User) authentication.getPrincipal();
+        SplitGroup splitGroup = groupService.getGroupById(splitGroupId);
+        ExpenseImportResult importResult;
+        try (InputStream inputStream = file.getInputStream()) {
+            importResult = expenseImportService.importExpenses(splitGroup, user, inputStream,
+                    FileFormat.fromFilename(file.getOriginalFilename()));
+        }
+        model.addAttribute("splitGroup", splitGroup);
+        model.addAttribute("importResult", importResult);
+        return "expense-import";
+    }
+
+    // Only allow group admin to access
+    @PreAuthorize("hasPermission(#splitGroupId,'splitGroup','admin')")
+    @GetMapping("/{splitGroupId}/export/expenses")
+    public ResponseEntity<StreamingResponseBody> exportExpenses(@PathVariable Long splitGroupId,
+                                                                @RequestParam(defaultValue = "CSV") FileFormat format,
+                                                                @RequestParam(defaultValue = "0") long after,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("expenses-" + splitGroupId, format, gzip,
+                outputStream -> groupExportService.exportExpenses(splitGroupId, after, format, outputStream));
+    }
+
+    // Only allow group admin to access
+    @PreAuthorize("hasPermission(#splitGroupId,'splitGroup','admin')")
+    @GetMapping("/{splitGroupId}/export/payments")
+    public ResponseEntity<StreamingResponseBody> exportPayments(@PathVariable Long splitGroupId,
+                                                                @RequestParam(defaultValue = "CSV") FileFormat format,
+                                                                @RequestParam(defaultValue = "0") long after,
+                                                                @RequestParam(defaultValue = "false") boolean gzip) {
+        return export("payments-" + splitGroupId, format, gzip,
+                outputStream -> groupExportService.exportPayments(splitGroupId, after, format, outputStream));
+    }
+
+    /**
+     * Helper method to stream an export as a file download. The rows are written on an async request thread after
+     * this method returns, and can be compressed as a .gz file
+     * @param filename the name of the file without an extension
+     * @param format the format of the rows
+     * @param gzip whether to compress the file
+     * @param body writes the rows to the response
+     * @return the response, which is written to as the rows are read
+     */
+    private ResponseEntity<StreamingResponseBody> export(String filename, FileFormat format, boolean gzip, StreamingResponseBody body){
+        String attachment = filename + format.getExtension() + (gzip ? ".gz" : "");
+        StreamingResponseBody responseBody = outputStream -> {
+            if (gzip){
+                try (OutputStream gzipOutputStream = new GZIPOutputStream(outputStream, 8192)) {
+                    body.writeTo(gzipOutputStream);
+                }
+            } else {
+                body.writeTo(outputStream);
+            }
+        };
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + attachment + "\"")
+                .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : format.getContentType()))
+                .body(responseBody);
+    }
 }
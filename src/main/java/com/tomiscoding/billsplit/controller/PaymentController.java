@@ -1,17 +1,26 @@
 package com.tomiscoding.billsplit.controller;
 
+import com.tomiscoding.billsplit.dto.KeysetSlice;
+import com.tomiscoding.billsplit.dto.PaymentSearchFilter;
 import com.tomiscoding.billsplit.exceptions.PaymentNotFoundException;
+import com.tomiscoding.billsplit.exceptions.SplitGroupListNotFoundException;
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.Payment;
+import com.tomiscoding.billsplit.model.PaymentStatus;
+import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.service.GroupService;
 import com.tomiscoding.billsplit.service.PaymentService;
+import com.tomiscoding.billsplit.service.SearchService;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.PathVariable;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.ui.Model;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
 
 @Controller
 @RequestMapping("/payment")
@@ -19,6 +28,8 @@ import org.springframework.web.bind.annotation.RequestParam;
 public class PaymentController {
 
     private final PaymentService paymentService;
+    private final GroupService groupService;
+    private final SearchService searchService;
 
     // If status = PAID_PENDING only allow fromUser. If status = PAID_CONFIRMED only allow toUser
     @PreAuthorize("hasPermission(#id,'payment',#status)")
@@ -29,4 +40,60 @@ public class PaymentController {
         paymentService.updatePaymentStatus(payment, status);
         return "redirect:/splitGroup/" + payment.getSplitGroup().getId();
     }
+
+    // Only accessed by group member
+    @PreAuthorize("hasPermission(#groupId,'splitGroup','user')")
+    @GetMapping("/search")
+    public String showPaymentSearch(@RequestParam(required = false, defaultValue = "0") Long groupId, Model model, Authentication authentication) throws SplitGroupNotFoundException, SplitGroupListNotFoundException, ValidationException {
+        User activeUser = (User) authentication.getPrincipal();
+        PaymentSearchFilter paymentSearchFilter = searchService.populatePaymentSearchOptions(activeUser);
+
+        SplitGroup splitGroup;
+
+        if (groupId == 0){
+            splitGroup = paymentSearchFilter.getSplitGroups().get(0);
+        } else{
+            splitGroup = groupService.getGroupById(groupId);
+        }
+
+        paymentSearchFilter.setSplitGroup(splitGroup);
+
+        String cursor = searchService.selectPage(new PaymentSearchFilter(), paymentSearchFilter);
+        KeysetSlice<Payment> payments = searchService.searchPayments(splitGroup.getId(), null, null, null, cursor);
+        searchService.applySlice(paymentSearchFilter, payments);
+
+        model.addAttribute("filterOptions", paymentSearchFilter);
+        model.addAttribute("paymentStatuses", List.of(PaymentStatus.values()));
+        model.addAttribute("payments", payments.getContent());
+
+        return "payment-search";
+    }
+
+    // Only accessed by group member
+    @PreAuthorize("hasPermission(#filterOptions.splitGroup.id,'splitGroup','user')")
+    @PostMapping("/search")
+    public String updatePaymentSearch(@ModelAttribute PaymentSearchFilter filterOptions, Model model, Authentication authentication) throws SplitGroupListNotFoundException, ValidationException {
+        User activeUser = (User) authentication.getPrincipal();
+
+        PaymentSearchFilter paymentSearchFilter = searchService.populatePaymentSearchOptions(activeUser);
+        paymentSearchFilter.setSplitGroup(filterOptions.getSplitGroup());
+        paymentSearchFilter.setFromUser(filterOptions.getFromUser());
+        paymentSearchFilter.setToUser(filterOptions.getToUser());
+        paymentSearchFilter.setPaymentStatus(filterOptions.getPaymentStatus());
+
+        String cursor = searchService.selectPage(filterOptions, paymentSearchFilter);
+        KeysetSlice<Payment> payments = searchService.searchPayments(
+                paymentSearchFilter.getSplitGroup().getId(),
+                paymentSearchFilter.getFromUser() == null ? null : paymentSearchFilter.getFromUser().getId(),
+                paymentSearchFilter.getToUser() == null ? null : paymentSearchFilter.getToUser().getId(),
+                paymentSearchFilter.getPaymentStatus(),
+                cursor);
+        searchService.applySlice(paymentSearchFilter, payments);
+
+        model.addAttribute("filterOptions", paymentSearchFilter);
+        model.addAttribute("paymentStatuses", List.of(PaymentStatus.values()));
+        model.addAttribute("payments", payments.getContent());
+
+        return "payment-search";
+    }
 }
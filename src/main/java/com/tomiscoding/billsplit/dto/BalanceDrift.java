@@ -0,0 +1,27 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * A difference found between a ledger row and the value recomputed from the group's expenses and payments
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BalanceDrift {
+
+    private Long splitGroupId;
+    private Long userId;
+    private String field;
+    private BigDecimal ledgerValue;
+    private BigDecimal actualValue;
+
+    @Override
+    public String toString() {
+        return "group " + splitGroupId + " user " + userId + " " + field + ": ledger=" + ledgerValue + " actual=" + actualValue;
+    }
+}
@@ -0,0 +1,32 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.tomiscoding.billsplit.model.Currency;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection of an expense as written to an export, populated by a streaming query in ExpenseRepository rather than
+ * by loading Expense entities
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonPropertyOrder({"id", "expenseDate", "name", "description", "userId", "userName", "currency", "currencyAmount", "amount", "split"})
+public class ExpenseExportRow {
+
+    private Long id;
+    private LocalDate expenseDate;
+    private String name;
+    private String description;
+    private Long userId;
+    private String userName;
+    private Currency currency;
+    private BigDecimal currencyAmount;
+    private BigDecimal amount;
+    private boolean split;
+}
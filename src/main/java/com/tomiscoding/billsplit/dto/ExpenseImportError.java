@@ -0,0 +1,14 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseImportError {
+
+    private long rowNumber;
+    private String message;
+}
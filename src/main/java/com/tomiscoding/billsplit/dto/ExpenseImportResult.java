@@ -0,0 +1,31 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of an expense import. Only the first billsplit.import.max-reported-errors errors are kept, so that a file
+ * of bad rows can't exhaust the heap, but every failed row is counted
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseImportResult {
+
+    private long importedRows;
+    private long failedRows;
+    private long elapsedMillis;
+    private boolean completed;
+
+    @Builder.Default
+    private List<ExpenseImportError> errors = new ArrayList<>();
+
+    public long getRowsPerSecond(){
+        long rows = importedRows + failedRows;
+        return elapsedMillis == 0 ? rows : rows * 1000 / elapsedMillis;
+    }
+}
@@ -0,0 +1,23 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.*;
+
+/**
+ * A row of an uploaded expense file, as read from a CSV column or JSON field of the same name. Values are kept as
+ * text so that a badly formatted value is reported against its row rather than stopping the import
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ExpenseImportRow {
+
+    private String name;
+    private String description;
+    private String amount;
+    private String currency;
+    private String date;
+}
@@ -0,0 +1,18 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+/**
+ * Projection of the ids needed to authorise access to an expense, populated by ExpenseRepository without loading
+ * the expense, its user or its group
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExpenseOwnership {
+
+    private Long splitGroupId;
+    private Long userId;
+}
@@ -12,7 +12,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class ExpenseSearchFilter {
+public class ExpenseSearchFilter implements KeysetSearch {
 
     private List<SplitGroup> splitGroups;
     private Set<User> users;
@@ -21,7 +21,10 @@ public class ExpenseSearchFilter {
     private User user;
     private Boolean isSplit;
 
-    private Integer selectedPageNum;
+    private String cursor;
+    private String nextCursor;
+    private String previousCursors;
+    private String direction;
     private Integer currentPageNum;
-    private Integer numPages;
+    private Long approximateTotal;
 }
@@ -0,0 +1,33 @@
+package com.tomiscoding.billsplit.dto;
+
+public enum FileFormat {
+    CSV("text/csv", ".csv"),
+    JSON("application/json", ".json");
+
+    private final String contentType;
+    private final String extension;
+
+    FileFormat(String contentType, String extension){
+        this.contentType = contentType;
+        this.extension = extension;
+    }
+
+    public String getContentType(){
+        return contentType;
+    }
+
+    public String getExtension(){
+        return extension;
+    }
+
+    /**
+     * @param filename the name of the uploaded file
+     * @return JSON for a .json file, otherwise CSV
+     */
+    public static FileFormat fromFilename(String filename){
+        if (filename != null && filename.toLowerCase().endsWith(".json")){
+            return JSON;
+        }
+        return CSV;
+    }
+}
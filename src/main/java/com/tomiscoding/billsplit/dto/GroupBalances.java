@@ -0,0 +1,79 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.tomiscoding.billsplit.model.MemberBalance;
+import com.tomiscoding.billsplit.model.MinorUnits;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.settlement.LargestRemainderAllocator;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * The ledger rows of a group along with the group totals derived from them
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupBalances {
+
+    private List<MemberBalance> memberBalances;
+
+    public BigDecimal getUnsplitTotal(){
+        return MinorUnits.fromMinorUnits(unsplitTotal());
+    }
+
+    public BigDecimal getTotal(){
+        return MinorUnits.fromMinorUnits(memberBalances.stream()
+                .mapToLong(b -> MinorUnits.toMinorUnits(b.getTotalSpend()))
+                .reduce(0, Math::addExact));
+    }
+
+    /**
+     * @param userId the user to return the ledger row for
+     * @return the ledger row of the user or an empty balance if the user has no expenses or payments in the group
+     */
+    public MemberBalance getMemberBalance(Long userId){
+        return memberBalances.stream()
+                .filter(b -> b.getUser().getId() == userId)
+                .findFirst()
+                .orElse(MemberBalance.builder().build());
+    }
+
+    /**
+     * Equivalent of SplitGroup.getOutstandingBalanceByUserId() - the user's share of the 'un-split' expenses less the
+     * 'un-split' expenses they have paid for. The shares are allocated with LargestRemainderAllocator so that the
+     * balances of the members sum exactly to zero
+     * @param userId the user to calculate the balance for
+     * @param members the members the 'un-split' expenses are shared between
+     * @param seed decides which members get the leftover minor units of an uneven split - the group id, as used by
+     *             PaymentService when the expenses are settled
+     * @return a positive balance if the user owes the group, negative if they are owed
+     */
+    public BigDecimal getOutstandingBalance(Long userId, List<User> members, long seed){
+        if (members.isEmpty()){
+            return BigDecimal.ZERO;
+        }
+        long[] memberIds = new long[members.size()];
+        long share = 0;
+        for (int i = 0; i < memberIds.length; i++){
+            memberIds[i] = members.get(i).getId();
+        }
+        long[] shares = LargestRemainderAllocator.allocateEqually(unsplitTotal(), memberIds, seed);
+        for (int i = 0; i < memberIds.length; i++){
+            if (memberIds[i] == userId){
+                share = shares[i];
+            }
+        }
+        return MinorUnits.fromMinorUnits(Math.subtractExact(share, MinorUnits.toMinorUnits(getMemberBalance(userId).getUnsplitSpend())));
+    }
+
+    // Helper method to sum the 'un-split' spend of the group in minor units
+    private long unsplitTotal(){
+        return memberBalances.stream()
+                .mapToLong(b -> MinorUnits.toMinorUnits(b.getUnsplitSpend()))
+                .reduce(0, Math::addExact);
+    }
+}
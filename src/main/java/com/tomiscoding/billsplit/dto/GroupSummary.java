@@ -0,0 +1,22 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.tomiscoding.billsplit.model.Currency;
+import lombok.*;
+
+/**
+ * Projection of a group as seen by one of its members, populated by GroupMemberRepository for GroupMembershipIndex.
+ * Property names match SplitGroup so that views can render either
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GroupSummary {
+
+    private Long id;
+    private String groupName;
+    private String groupDescription;
+    private Currency baseCurrency;
+    private boolean admin;
+}
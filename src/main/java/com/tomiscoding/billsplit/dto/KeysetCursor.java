@@ -0,0 +1,50 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import lombok.*;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position in a search ordered by (date DESC, id DESC) - the next page holds the rows which sort after it. Sent to
+ * the browser as an opaque url-safe token so that pages are fetched with an index seek rather than an OFFSET
+ */
+@Getter
+@AllArgsConstructor
+@EqualsAndHashCode
+public class KeysetCursor {
+
+    /**
+     * Sorts before every row, so it is the position of the first page. The date is the largest a MySQL DATE can hold
+     */
+    public static final KeysetCursor FIRST = new KeysetCursor(LocalDate.of(9999, 12, 31), Long.MAX_VALUE);
+
+    private final LocalDate date;
+    private final long id;
+
+    public String encode(){
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token created by encode()
+     * @return the cursor, or FIRST if the token is empty
+     * @throws ValidationException if the token isn't a valid cursor
+     */
+    public static KeysetCursor decode(String token) throws ValidationException {
+        if (token == null || token.isBlank()){
+            return FIRST;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = decoded.indexOf('|');
+            return new KeysetCursor(LocalDate.parse(decoded.substring(0, separator)), Long.parseLong(decoded.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ValidationException("Invalid search page: " + token);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tomiscoding.billsplit.dto;
+
+/**
+ * Search filter state for paging through keyset results. The trail of earlier page cursors is round-tripped through
+ * the search form so that the previous page can be fetched without an OFFSET
+ */
+public interface KeysetSearch {
+
+    String getCursor();
+
+    void setCursor(String cursor);
+
+    String getNextCursor();
+
+    void setNextCursor(String nextCursor);
+
+    String getPreviousCursors();
+
+    void setPreviousCursors(String previousCursors);
+
+    String getDirection();
+
+    Integer getCurrentPageNum();
+
+    void setCurrentPageNum(Integer currentPageNum);
+
+    void setApproximateTotal(Long approximateTotal);
+}
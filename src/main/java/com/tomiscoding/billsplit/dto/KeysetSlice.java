@@ -0,0 +1,40 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A page of search results fetched by keyset. Unlike a Page there is no exact total - only whether another page
+ * follows and, if enabled, an approximate total which may be up to billsplit.search.count-ttl-ms old
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class KeysetSlice<T> {
+
+    private List<T> content;
+    private String nextCursor;
+    private Long approximateTotal;
+
+    public boolean hasNext(){
+        return nextCursor != null;
+    }
+
+    /**
+     * @param rows the rows fetched for the page - one more than the page size if another page follows
+     * @param pageSize the number of rows in a page
+     * @param cursorOf the position of a row
+     * @return the slice holding the first pageSize rows, with the cursor of its last row if another page follows
+     */
+    public static <T> KeysetSlice<T> of(List<T> rows, int pageSize, Function<T, KeysetCursor> cursorOf){
+        if (rows.size() <= pageSize){
+            return new KeysetSlice<>(rows, null, null);
+        }
+        List<T> content = rows.subList(0, pageSize);
+        return new KeysetSlice<>(content, cursorOf.apply(content.get(pageSize - 1)).encode(), null);
+    }
+}
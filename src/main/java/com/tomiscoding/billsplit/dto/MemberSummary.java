@@ -0,0 +1,19 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+/**
+ * Projection of a member of a group, populated by GroupMemberRepository for GroupMembershipIndex
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MemberSummary {
+
+    private Long splitGroupId;
+    private Long userId;
+    private String fullName;
+    private boolean admin;
+}
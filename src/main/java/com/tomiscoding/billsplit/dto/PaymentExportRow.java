@@ -0,0 +1,30 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.tomiscoding.billsplit.model.PaymentStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Projection of a payment as written to an export, populated by a streaming query in PaymentRepository rather than
+ * by loading Payment entities
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonPropertyOrder({"id", "calculatedDate", "fromUserId", "fromUserName", "toUserId", "toUserName", "amount", "paymentStatus"})
+public class PaymentExportRow {
+
+    private Long id;
+    private LocalDate calculatedDate;
+    private Long fromUserId;
+    private String fromUserName;
+    private Long toUserId;
+    private String toUserName;
+    private BigDecimal amount;
+    private PaymentStatus paymentStatus;
+}
@@ -0,0 +1,19 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+/**
+ * Projection of the ids needed to authorise a payment status change, populated by PaymentRepository without loading
+ * the payment or its users
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PaymentParties {
+
+    private Long splitGroupId;
+    private Long fromUserId;
+    private Long toUserId;
+}
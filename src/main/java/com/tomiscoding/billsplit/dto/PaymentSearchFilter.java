@@ -13,7 +13,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-public class PaymentSearchFilter {
+public class PaymentSearchFilter implements KeysetSearch {
 
     private List<SplitGroup> splitGroups;
     private Set<User> users;
@@ -23,7 +23,10 @@ public class PaymentSearchFilter {
     private User toUser;
     private PaymentStatus paymentStatus;
 
-    private Integer selectedPageNum;
+    private String cursor;
+    private String nextCursor;
+    private String previousCursors;
+    private String direction;
     private Integer currentPageNum;
-    private Integer numPages;
+    private Long approximateTotal;
 }
@@ -0,0 +1,21 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of the expense totals for a single user within a group, populated by an aggregate query
+ * in ExpenseRepository rather than by loading the group's expenses
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserExpenseTotal {
+
+    private Long userId;
+    private BigDecimal total;
+    private BigDecimal notSplitTotal;
+}
@@ -0,0 +1,21 @@
+package com.tomiscoding.billsplit.dto;
+
+import com.tomiscoding.billsplit.model.PaymentStatus;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of the sum of payments to or from a single user within a group for one payment status
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserPaymentStatusTotal {
+
+    private Long userId;
+    private PaymentStatus paymentStatus;
+    private BigDecimal total;
+}
@@ -0,0 +1,21 @@
+package com.tomiscoding.billsplit.dto;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Projection of the expenses a settlement run claimed from a single user, populated by an aggregate query over the
+ * rows the run tagged in ExpenseRepository rather than by loading the expenses
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class UserSettlementTotal {
+
+    private Long userId;
+    private BigDecimal total;
+    private Long expenseCount;
+}
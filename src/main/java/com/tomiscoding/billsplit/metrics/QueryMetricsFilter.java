@@ -0,0 +1,49 @@
+package com.tomiscoding.billsplit.metrics;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Records the SQL statements, rows and database time of each request - including lazy loads made while the view is
+ * rendered - tagged with the matched request pattern, and logs a warning when a request executes more statements
+ * than billsplit.query-metrics.warn-statements, which usually means an N+1 select
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class QueryMetricsFilter extends OncePerRequestFilter {
+
+    private final QueryMetricsRecorder queryMetricsRecorder;
+
+    @Value("${billsplit.query-metrics.warn-statements:30}")
+    private int warnStatements;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain) throws ServletException, IOException {
+        QueryStats queryStats = queryMetricsRecorder.open(request.getRequestURI());
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            // Tag with the pattern (e.g. /splitGroup/{id}) rather than the URI to keep the number of metrics bounded
+            Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+            queryMetricsRecorder.closeAndPublish(queryStats, "http",
+                    request.getMethod() + " " + (pattern == null ? "UNMAPPED" : pattern));
+
+            if (queryStats.getStatements() > warnStatements){
+                log.warn("{} {} executed {} SQL statements ({} rows, {}ms) - more than the threshold of {}",
+                        request.getMethod(), request.getRequestURI(), queryStats.getStatements(),
+                        queryStats.getRows(), queryStats.getElapsedMillis(), warnStatements);
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.tomiscoding.billsplit.metrics;
+
+import lombok.RequiredArgsConstructor;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.MethodExecutionContext;
+import net.ttddyy.dsproxy.listener.MethodExecutionListener;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+import java.sql.ResultSet;
+import java.util.List;
+
+/**
+ * datasource-proxy listener passing every statement executed, and every row read from a result set when result sets
+ * are proxied (see QueryMetricsConfig), to the QueryMetricsRecorder
+ */
+@RequiredArgsConstructor
+public class QueryMetricsListener implements QueryExecutionListener, MethodExecutionListener {
+
+    private final QueryMetricsRecorder queryMetricsRecorder;
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        int statements = execInfo.isBatch() ? execInfo.getBatchSize() : queryInfoList.size();
+        queryMetricsRecorder.recordStatements(statements, execInfo.getElapsedTime());
+    }
+
+    @Override
+    public void beforeMethod(MethodExecutionContext executionContext) {
+    }
+
+    @Override
+    public void afterMethod(MethodExecutionContext executionContext) {
+        if (executionContext.getTarget() instanceof ResultSet
+                && executionContext.getMethod().getName().equals("next")
+                && Boolean.TRUE.equals(executionContext.getResult())){
+            queryMetricsRecorder.recordRow();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.tomiscoding.billsplit.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Attributes the statements executed on a thread to every scope open on that thread, so a repository call made
+ * during a request counts towards both. Statements are reported by QueryMetricsListener, which sits on the proxied
+ * DataSource, and published as metrics tagged with the scope type and name when a scope closes.
+ */
+@Component
+public class QueryMetricsRecorder {
+
+    private final ThreadLocal<Deque<QueryStats>> openScopes = ThreadLocal.withInitial(ArrayDeque::new);
+    // Resolved when the first scope is published - the registry's binders depend on the DataSource this recorder proxies
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public QueryMetricsRecorder(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Opens a scope on the current thread - it must be closed with close() on the same thread
+     * @param name identifies the scope in logs and metrics, e.g. the request pattern or repository method
+     * @return the stats which will be updated until the scope is closed
+     */
+    public QueryStats open(String name){
+        QueryStats queryStats = new QueryStats(name);
+        openScopes.get().push(queryStats);
+        return queryStats;
+    }
+
+    public void close(QueryStats queryStats){
+        openScopes.get().remove(queryStats);
+    }
+
+    /**
+     * Closes the scope and records its stats as metrics
+     * @param queryStats the scope to close
+     * @param scope the type of scope - 'http' or 'repository'
+     * @param name the name tag of the metrics, which must have a bounded number of values
+     */
+    public void closeAndPublish(QueryStats queryStats, String scope, String name){
+        close(queryStats);
+        MeterRegistry meterRegistry = this.meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        DistributionSummary.builder("billsplit.sql.statements")
+                .tags("scope", scope, "name", name)
+                .register(meterRegistry)
+                .record(queryStats.getStatements());
+        if (queryStats.getRows() > 0){
+            DistributionSummary.builder("billsplit.sql.rows")
+                    .tags("scope", scope, "name", name)
+                    .register(meterRegistry)
+                    .record(queryStats.getRows());
+        }
+        Timer.builder("billsplit.sql.time")
+                .tags("scope", scope, "name", name)
+                .register(meterRegistry)
+                .record(Duration.ofMillis(queryStats.getElapsedMillis()));
+    }
+
+    void recordStatements(int count, long elapsedMillis){
+        for (QueryStats queryStats : openScopes.get()){
+            queryStats.addStatements(count, elapsedMillis);
+        }
+    }
+
+    void recordRow(){
+        for (QueryStats queryStats : openScopes.get()){
+            queryStats.addRow();
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.tomiscoding.billsplit.metrics;
+
+import lombok.Getter;
+
+/**
+ * The SQL statements, rows read and database time recorded while a scope - a request, a repository call or a test
+ * capture - was open on a thread
+ */
+@Getter
+public class QueryStats {
+
+    private final String name;
+    private int statements;
+    private long rows;
+    private long elapsedMillis;
+
+    public QueryStats(String name) {
+        this.name = name;
+    }
+
+    void addStatements(int count, long millis){
+        statements += count;
+        elapsedMillis += millis;
+    }
+
+    void addRow(){
+        rows++;
+    }
+
+    @Override
+    public String toString() {
+        return name + ": " + statements + " statements, " + rows + " rows, " + elapsedMillis + "ms";
+    }
+}
@@ -14,6 +14,7 @@ import javax.persistence.*;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_authority_role", columnNames = "role"))
 public class Authority implements GrantedAuthority {
 
     @Id
@@ -0,0 +1,8 @@
+package com.tomiscoding.billsplit.model;
+
+public enum EmailStatus {
+
+    PENDING,
+    SENT,
+    FAILED
+}
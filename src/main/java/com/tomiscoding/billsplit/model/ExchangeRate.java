@@ -0,0 +1,41 @@
+package com.tomiscoding.billsplit.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The exchange rate from one currency to another at the end of a day. The unique index leads with the currency pair
+ * so that 'latest rate on or before a date' is a single index range scan.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "exchange_rate",
+        uniqueConstraints = @UniqueConstraint(name = "uk_exchange_rate_pair_date",
+                columnNames = {"base_currency", "quote_currency", "rate_date"}))
+public class ExchangeRate {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @Column(name = "rate_date", nullable = false)
+    private LocalDate rateDate;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "base_currency", nullable = false, length = 3)
+    private Currency baseCurrency;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(name = "quote_currency", nullable = false, length = 3)
+    private Currency quoteCurrency;
+
+    @Column(nullable = false, precision = 19, scale = 8)
+    private BigDecimal rate;
+}
@@ -14,10 +14,16 @@ import java.util.Date;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+        @Index(name = "idx_expense_group_split_date", columnList = "split_group_id, is_split, expense_date, id"),
+        @Index(name = "idx_expense_group_user_split_date", columnList = "split_group_id, user_id, is_split, expense_date, id"),
+        @Index(name = "idx_expense_group_id", columnList = "split_group_id, id")})
 public class Expense {
 
+    // Pooled so that batches of imported expenses don't need a round trip to the sequence table per row
     @Id
-    @GeneratedValue
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "expense_seq")
+    @SequenceGenerator(name = "expense_seq", sequenceName = "expense_seq", allocationSize = 50)
     private long id;
 
     @Column(nullable = false)
@@ -36,10 +42,10 @@ public class Expense {
     private Currency currency;
 
     @DateTimeFormat(pattern="yyyy-MM-dd")
-    @Column(nullable = false)
+    @Column(name = "expense_date", nullable = false)
     private LocalDate expenseDate;
 
-    @Column(nullable = false)
+    @Column(name = "is_split", nullable = false)
     @Builder.Default
     private boolean isSplit = false;
 
@@ -49,4 +55,12 @@ public class Expense {
     @ManyToOne(optional = false, fetch = FetchType.EAGER)
     @JoinColumn(name = "split_group_id")
     private SplitGroup splitGroup;
+
+    // The settlement run which marked the expense as split
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "settlement_run_id")
+    private SettlementRun settlementRun;
+
+    @Version
+    private long version;
 }
@@ -10,6 +10,8 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_group_member_user_group", columnNames = {"user_id", "split_group_id"}),
+        indexes = @Index(name = "idx_group_member_group_admin", columnList = "split_group_id, is_admin"))
 public class GroupMember {
 
     @Id
@@ -24,6 +26,6 @@ public class GroupMember {
     referencedColumnName = "id")
     private SplitGroup splitGroup;
 
-    @Column(nullable = false)
+    @Column(name = "is_admin", nullable = false)
     private boolean isAdmin;
 }
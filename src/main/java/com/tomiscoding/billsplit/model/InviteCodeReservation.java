@@ -0,0 +1,40 @@
+package com.tomiscoding.billsplit.model;
+
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * An invite code reserved by an InviteCodeAllocator. Every code ever handed out has a row, so the primary key is what
+ * makes codes unique - a code is reserved in the background before it is given to a new group. Rows are only ever
+ * inserted, so isNew() is always true and saving a reservation never selects it first.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "invite_code_reservation",
+        indexes = @Index(name = "idx_invite_code_reservation_reserved_at", columnList = "reserved_at"))
+public class InviteCodeReservation implements Persistable<String> {
+
+    @Id
+    private String code;
+
+    @Column(name = "reserved_at", nullable = false)
+    private Instant reservedAt;
+
+    @Override
+    public String getId() {
+        return code;
+    }
+
+    @Override
+    @Transient
+    public boolean isNew() {
+        return true;
+    }
+}
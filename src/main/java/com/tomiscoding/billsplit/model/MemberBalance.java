@@ -0,0 +1,68 @@
+package com.tomiscoding.billsplit.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+
+/**
+ * Running balance of a user within a group. Rows are maintained incrementally by BalanceLedgerService as expenses
+ * and payments change so that overviews and settlement read one row per member rather than summing the group history.
+ * Pending amounts are payments which have not yet been confirmed (NOT_PAID or PAID_PENDING).
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "member_balance",
+        uniqueConstraints = @UniqueConstraint(name = "uk_member_balance_group_user", columnNames = {"split_group_id", "user_id"}))
+public class MemberBalance {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "split_group_id")
+    private SplitGroup splitGroup;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_id")
+    private User user;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal unsplitSpend = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal totalSpend = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal confirmedIn = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal confirmedOut = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal pendingIn = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal pendingOut = BigDecimal.ZERO;
+
+    @Transient
+    public BigDecimal getConfirmedBalance(){
+        return confirmedIn.subtract(confirmedOut);
+    }
+
+    @Transient
+    public BigDecimal getPendingBalance(){
+        return pendingIn.subtract(pendingOut);
+    }
+}
@@ -0,0 +1,56 @@
+package com.tomiscoding.billsplit.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Arithmetic on amounts of money held as a whole number of minor units (e.g. pence). Balance totals and shares are
+ * computed on long minor units so that they don't allocate a BigDecimal per step - amounts are converted from
+ * BigDecimal once, at the edge, with the same HALF_EVEN rounding to 2 decimal places used throughout the application.
+ */
+public final class MinorUnits {
+
+    // All supported currencies have two decimal places
+    public static final int SCALE = 2;
+
+    private MinorUnits() {
+    }
+
+    /**
+     * @param amount an amount in major units, e.g. 12.34
+     * @return the amount in minor units, e.g. 1234, rounded HALF_EVEN if it has more than 2 decimal places
+     * @throws ArithmeticException if the amount is too large to be held in a long
+     */
+    public static long toMinorUnits(BigDecimal amount){
+        return amount.setScale(SCALE, RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal fromMinorUnits(long minorUnits){
+        return BigDecimal.valueOf(minorUnits, SCALE);
+    }
+
+    /**
+     * Integer division rounding HALF_EVEN, equivalent to dividing the BigDecimal amount to 2 decimal places
+     * @param minorUnits the amount to divide
+     * @param divisor a positive divisor
+     * @return the quotient rounded to the nearest whole minor unit, ties to even
+     * @throws ArithmeticException if the divisor is not positive
+     */
+    public static long divideHalfEven(long minorUnits, long divisor){
+        if (divisor <= 0){
+            throw new ArithmeticException("Cannot divide an amount into " + divisor + " parts");
+        }
+        long quotient = minorUnits / divisor;
+        long remainder = minorUnits % divisor;
+        if (remainder == 0){
+            return quotient;
+        }
+        // Compare twice the remainder with the divisor without overflowing
+        long absRemainder = Math.abs(remainder);
+        int half = Long.compare(absRemainder, divisor - absRemainder);
+        if (half > 0 || (half == 0 && (quotient & 1) != 0)){
+            return minorUnits < 0 ? quotient - 1 : quotient + 1;
+        }
+        return quotient;
+    }
+}
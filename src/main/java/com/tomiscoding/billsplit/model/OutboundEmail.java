@@ -0,0 +1,61 @@
+package com.tomiscoding.billsplit.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+/**
+ * An email waiting to be sent, or which has been sent, by the OutboundEmailService dispatcher. The template
+ * substitutions are captured when the email is queued so that sending it doesn't need to load the group or sender.
+ * Rows sharing a dedupe key are repeats of the same email, e.g. an invite of one address to one group.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "outbound_email",
+        indexes = {
+                @Index(name = "idx_outbound_email_status_next_attempt", columnList = "status, next_attempt_at"),
+                @Index(name = "idx_outbound_email_dedupe_key", columnList = "dedupe_key")})
+public class OutboundEmail {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @Column(nullable = false)
+    private String recipient;
+
+    @Column(name = "dedupe_key", nullable = false)
+    private String dedupeKey;
+
+    private Long splitGroupId;
+
+    private String senderName;
+
+    private String groupName;
+
+    private String inviteCode;
+
+    @Column(nullable = false, length = 16)
+    @Enumerated(value = EnumType.STRING)
+    @Builder.Default
+    private EmailStatus status = EmailStatus.PENDING;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    private Instant sentAt;
+
+    @Column(length = 500)
+    private String lastError;
+}
@@ -13,6 +13,11 @@ import java.time.LocalDate;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
+@Table(indexes = {
+        @Index(name = "idx_payment_group_date", columnList = "split_group_id, calculated_date, id"),
+        @Index(name = "idx_payment_group_from_status", columnList = "split_group_id, from_user_id, payment_status"),
+        @Index(name = "idx_payment_group_to_status", columnList = "split_group_id, to_user_id, payment_status"),
+        @Index(name = "idx_payment_group_id", columnList = "split_group_id, id")})
 public class Payment {
 
     @Id
@@ -34,12 +39,16 @@ public class Payment {
     @Column(nullable = false)
     private BigDecimal amount;
 
-    @Column(nullable = false)
+    @Column(name = "payment_status", nullable = false)
     @Enumerated(value = EnumType.STRING)
     @Builder.Default
     private PaymentStatus paymentStatus = PaymentStatus.NOT_PAID;
 
     @DateTimeFormat(pattern="yyyy-MM-dd")
-    @Column(nullable = false)
+    @Column(name = "calculated_date", nullable = false)
     private LocalDate calculatedDate;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "settlement_run_id")
+    private SettlementRun settlementRun;
 }
@@ -0,0 +1,55 @@
+package com.tomiscoding.billsplit.model;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * One calculation of payments for a group. A run claims the group's 'un-split' expenses, marks them as split and
+ * creates the payments which settle them, all in one transaction. The idempotency key identifies the request which
+ * started the run, so that submitting the same request again returns this run rather than settling twice.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@Table(name = "settlement_run",
+        uniqueConstraints = @UniqueConstraint(name = "uk_settlement_run_idempotency_key", columnNames = "idempotency_key"),
+        indexes = @Index(name = "idx_settlement_run_group_created", columnList = "split_group_id, created_at"))
+public class SettlementRun {
+
+    @Id
+    @GeneratedValue
+    private long id;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "split_group_id")
+    private SplitGroup splitGroup;
+
+    @ManyToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "created_by_user_id")
+    private User createdBy;
+
+    @Column(name = "idempotency_key", nullable = false, length = 64)
+    private String idempotencyKey;
+
+    // The highest expense id of the group when the run started - the run only claims expenses up to this id
+    private Long highWaterExpenseId;
+
+    @Column(nullable = false)
+    private int expenseCount;
+
+    @Column(nullable = false)
+    @Builder.Default
+    private BigDecimal expenseTotal = BigDecimal.ZERO;
+
+    @Column(nullable = false)
+    private int paymentCount;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
@@ -1,10 +1,10 @@
 package com.tomiscoding.billsplit.model;
 
+import com.tomiscoding.billsplit.settlement.LargestRemainderAllocator;
 import lombok.*;
 
 import javax.persistence.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -14,7 +14,8 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Builder
-@Table(name = "split_group")
+@Table(name = "split_group",
+        uniqueConstraints = @UniqueConstraint(name = "uk_split_group_invite_code", columnNames = "invite_code"))
 public class SplitGroup {
 
     @Id
@@ -26,7 +27,7 @@ public class SplitGroup {
 
     private String groupDescription;
 
-    @Column(nullable = false)
+    @Column(name = "invite_code", nullable = false)
     private String inviteCode;
 
     @Enumerated(value = EnumType.STRING)
@@ -45,36 +46,18 @@ public class SplitGroup {
     @Builder.Default
     private List<Payment> payments = new ArrayList<>();
 
+    // Incremented by each settlement run so that only one of two concurrent runs of the group can commit
+    @Version
+    private long version;
+
     @Transient
     public BigDecimal getConfirmedPaymentsTotalForUserId(Long id){
-        return payments.stream()
-                .filter(p -> p.getToUser().getId() == id
-                    && p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .subtract(
-                        payments.stream()
-                        .filter(p -> p.getFromUser().getId() == id
-                                && p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                        .map(Payment::getAmount)
-                        .reduce(BigDecimal.ZERO, BigDecimal::add)
-                );
+        return MinorUnits.fromMinorUnits(paymentsBalanceForUserId(id, true));
     }
 
     @Transient
     public BigDecimal getNotConfirmedPaymentsTotalForUserId(Long id){
-        return payments.stream()
-                .filter(p -> p.getToUser().getId() == id
-                        && !p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                .map(Payment::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .subtract(
-                        payments.stream()
-                                .filter(p -> p.getFromUser().getId() == id
-                                        && !p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                                .map(Payment::getAmount)
-                                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                );
+        return MinorUnits.fromMinorUnits(paymentsBalanceForUserId(id, false));
     }
 
     @Transient
@@ -88,40 +71,72 @@ public class SplitGroup {
 
     @Transient
     public BigDecimal getExpensesTotal(){
-        return expenses.stream()
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return MinorUnits.fromMinorUnits(expensesTotal(null, false));
     }
 
     @Transient
     public BigDecimal getExpensesNotSplitTotal(){
-        return expenses.stream()
-                .filter(e -> !e.isSplit())
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO,BigDecimal::add);
+        return MinorUnits.fromMinorUnits(expensesTotal(null, true));
     }
 
     @Transient
     public BigDecimal getExpensesTotalByUserId(Long userId){
-        return expenses.stream()
-                .filter(e -> e.getUser().getId() == userId)
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return MinorUnits.fromMinorUnits(expensesTotal(userId, false));
     }
 
     @Transient
     public BigDecimal getExpensesNotSplitTotalByUserId(Long userId){
-        return expenses.stream()
-                .filter(e -> e.getUser().getId() == userId
-                && !e.isSplit())
-                .map(Expense::getAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        return MinorUnits.fromMinorUnits(expensesTotal(userId, true));
     }
 
+    /**
+     * @param userId the user to calculate the balance for
+     * @return the user's share of the 'un-split' expenses, allocated with LargestRemainderAllocator seeded by the group
+     * id so that the balances of the members sum exactly to zero, less the 'un-split' expenses they have paid for
+     */
     @Transient
     public BigDecimal getOutstandingBalanceByUserId(Long userId){
-        return getExpensesNotSplitTotal().divide(BigDecimal.valueOf(groupMembers.size()),2, RoundingMode.HALF_EVEN)
-                .subtract(getExpensesNotSplitTotalByUserId(userId));
+        long[] memberIds = new long[groupMembers.size()];
+        long share = 0;
+        for (int i = 0; i < memberIds.length; i++){
+            memberIds[i] = groupMembers.get(i).getUser().getId();
+        }
+        long[] shares = LargestRemainderAllocator.allocateEqually(expensesTotal(null, true), memberIds, id);
+        for (int i = 0; i < memberIds.length; i++){
+            if (memberIds[i] == userId){
+                share = shares[i];
+            }
+        }
+        return MinorUnits.fromMinorUnits(Math.subtractExact(share, expensesTotal(userId, true)));
+    }
+
+    // Helper method to sum the expenses of a user, or of everyone if userId is null, in minor units
+    private long expensesTotal(Long userId, boolean notSplitOnly){
+        long total = 0;
+        for (Expense expense : expenses){
+            if ((userId == null || expense.getUser().getId() == userId) && !(notSplitOnly && expense.isSplit())){
+                total = Math.addExact(total, MinorUnits.toMinorUnits(expense.getAmount()));
+            }
+        }
+        return total;
+    }
+
+    // Helper method to net the payments to a user against the payments from them, in minor units
+    private long paymentsBalanceForUserId(Long id, boolean confirmed){
+        long balance = 0;
+        for (Payment payment : payments){
+            if (payment.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED) != confirmed){
+                continue;
+            }
+            long amount = MinorUnits.toMinorUnits(payment.getAmount());
+            if (payment.getToUser().getId() == id){
+                balance = Math.addExact(balance, amount);
+            }
+            if (payment.getFromUser().getId() == id){
+                balance = Math.subtractExact(balance, amount);
+            }
+        }
+        return balance;
     }
 
 }
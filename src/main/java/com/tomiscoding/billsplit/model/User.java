@@ -13,7 +13,8 @@ import java.util.Objects;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table(name = "user")
+@Table(name = "user",
+        uniqueConstraints = @UniqueConstraint(name = "uk_user_username", columnNames = "username"))
 @Builder
 public class User implements UserDetails {
 
@@ -0,0 +1,19 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.ExchangeRate;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+public interface ExchangeRateRepository extends JpaRepository<ExchangeRate, Long> {
+
+    // Latest rate on or before the date - uses uk_exchange_rate_pair_date
+    Optional<ExchangeRate> findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc(Currency baseCurrency, Currency quoteCurrency, LocalDate rateDate);
+
+    @Query("SELECT DISTINCT r.rateDate FROM ExchangeRate r WHERE r.baseCurrency = :baseCurrency AND r.rateDate BETWEEN :fromDate AND :toDate")
+    List<LocalDate> getRateDatesByBaseCurrencyBetween(Currency baseCurrency, LocalDate fromDate, LocalDate toDate);
+}
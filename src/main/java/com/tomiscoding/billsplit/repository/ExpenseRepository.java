@@ -1,13 +1,27 @@
 package com.tomiscoding.billsplit.repository;
 
+import com.tomiscoding.billsplit.dto.ExpenseExportRow;
+import com.tomiscoding.billsplit.dto.ExpenseOwnership;
+import com.tomiscoding.billsplit.dto.UserExpenseTotal;
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
 import com.tomiscoding.billsplit.model.Expense;
+import com.tomiscoding.billsplit.model.SettlementRun;
 import com.tomiscoding.billsplit.model.SplitGroup;
 import com.tomiscoding.billsplit.model.User;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
@@ -17,7 +31,94 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
 
     List<Expense> getExpensesByUserIdAndSplitGroupId(Long userId, Long splitGroupId);
 
-    Page<Expense> getExpensesByUserIdAndSplitGroupIdAndIsSplit(Long userId, Long splitGroupId, Boolean isSplit, Pageable pageable);
+    /**
+     * Keyset search - the expenses of a group which sort after the cursor by (expenseDate DESC, id DESC). The
+     * leading expenseDate <= :expenseDate bound lets the group/isSplit/date index seek straight to the cursor
+     */
+    @EntityGraph(attributePaths = {"user", "splitGroup"})
+    @Query(value = "SELECT e FROM Expense e WHERE e.splitGroup.id = :splitGroupId AND e.isSplit = :isSplit " +
+            "AND e.expenseDate <= :expenseDate AND (e.expenseDate < :expenseDate OR e.id < :id) " +
+            "ORDER BY e.expenseDate DESC, e.id DESC")
+    List<Expense> getExpensesBySplitGroupIdAndIsSplitAfterCursor(@Param("splitGroupId") Long splitGroupId,
+                                                                 @Param("isSplit") Boolean isSplit,
+                                                                 @Param("expenseDate") LocalDate expenseDate,
+                                                                 @Param("id") Long id,
+                                                                 Pageable pageable);
 
-    Page<Expense> getExpensesBySplitGroupIdAndIsSplit(Long splitGroupId, Boolean isSplit, Pageable pageable);
+    @EntityGraph(attributePaths = {"user", "splitGroup"})
+    @Query(value = "SELECT e FROM Expense e WHERE e.splitGroup.id = :splitGroupId AND e.user.id = :userId AND e.isSplit = :isSplit " +
+            "AND e.expenseDate <= :expenseDate AND (e.expenseDate < :expenseDate OR e.id < :id) " +
+            "ORDER BY e.expenseDate DESC, e.id DESC")
+    List<Expense> getExpensesByUserIdAndSplitGroupIdAndIsSplitAfterCursor(@Param("userId") Long userId,
+                                                                          @Param("splitGroupId") Long splitGroupId,
+                                                                          @Param("isSplit") Boolean isSplit,
+                                                                          @Param("expenseDate") LocalDate expenseDate,
+                                                                          @Param("id") Long id,
+                                                                          Pageable pageable);
+
+    long countBySplitGroupIdAndIsSplit(Long splitGroupId, Boolean isSplit);
+
+    long countByUserIdAndSplitGroupIdAndIsSplit(Long userId, Long splitGroupId, Boolean isSplit);
+
+    @EntityGraph(attributePaths = {"user", "splitGroup"})
+    List<Expense> findTop10BySplitGroupIdOrderByExpenseDateDescIdDesc(Long splitGroupId);
+
+    @EntityGraph(attributePaths = {"user", "splitGroup"})
+    List<Expense> findTop10BySplitGroupIdAndIsSplitOrderByExpenseDateDescIdDesc(Long splitGroupId, Boolean isSplit);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.UserExpenseTotal(e.user.id, SUM(e.amount), " +
+            "SUM(CASE WHEN e.isSplit = false THEN e.amount ELSE 0 END)) " +
+            "FROM Expense e WHERE e.splitGroup.id = :splitGroupId GROUP BY e.user.id")
+    List<UserExpenseTotal> getUserExpenseTotalsBySplitGroupId(@Param("splitGroupId") Long splitGroupId);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.ExpenseOwnership(e.splitGroup.id, e.user.id) " +
+            "FROM Expense e WHERE e.id = :id")
+    Optional<ExpenseOwnership> getOwnershipById(@Param("id") Long id);
+
+    @Query(value = "SELECT MAX(e.id) FROM Expense e WHERE e.splitGroup.id = :splitGroupId")
+    Optional<Long> getMaxIdBySplitGroupId(@Param("splitGroupId") Long splitGroupId);
+
+    /**
+     * Claims the 'un-split' expenses of a group up to a high-water mark for a settlement run with a single UPDATE,
+     * rather than loading and saving each expense. The version is incremented as Hibernate would, so an edit of an
+     * expense which read it before it was claimed fails its optimistic lock check
+     * @return the number of expenses claimed
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "UPDATE Expense e SET e.isSplit = true, e.settlementRun = :settlementRun, e.version = e.version + 1 " +
+            "WHERE e.splitGroup.id = :splitGroupId AND e.isSplit = false AND e.id <= :maxId")
+    int setSplitBySettlementRun(@Param("settlementRun") SettlementRun settlementRun,
+                                @Param("splitGroupId") Long splitGroupId,
+                                @Param("maxId") Long maxId);
+
+    /**
+     * Deletes the given expenses with a single DELETE which skips any that have been split, so an expense claimed by a
+     * settlement run which committed after it was read is never deleted
+     * @return the number of expenses deleted
+     */
+    @Modifying(flushAutomatically = true)
+    @Query(value = "DELETE FROM Expense e WHERE e.id IN :ids AND e.isSplit = false")
+    int deleteUnsplitByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.UserSettlementTotal(e.user.id, SUM(e.amount), COUNT(e)) " +
+            "FROM Expense e WHERE e.settlementRun.id = :settlementRunId GROUP BY e.user.id")
+    List<UserSettlementTotal> getUserTotalsBySettlementRunId(@Param("settlementRunId") Long settlementRunId);
+
+    @Query(value = "SELECT e.id FROM Expense e WHERE e.settlementRun.id = :settlementRunId")
+    List<Long> getIdsBySettlementRunId(@Param("settlementRunId") Long settlementRunId);
+
+    /**
+     * Streams the expenses of a group in id order, starting after an id so that an interrupted export can resume.
+     * A fetch size of Integer.MIN_VALUE makes the MySQL driver stream rows from the server one at a time instead of
+     * reading the whole result, and rows are projections so nothing accumulates in the persistence context. Must be
+     * consumed and closed within a transaction
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.ExpenseExportRow(e.id, e.expenseDate, e.name, e.expenseDescription, " +
+            "u.id, u.fullName, e.currency, e.currencyAmount, e.amount, e.isSplit) " +
+            "FROM Expense e JOIN e.user u WHERE e.splitGroup.id = :splitGroupId AND e.id > :afterId ORDER BY e.id")
+    Stream<ExpenseExportRow> streamExportRowsBySplitGroupId(@Param("splitGroupId") Long splitGroupId,
+                                                            @Param("afterId") Long afterId);
 }
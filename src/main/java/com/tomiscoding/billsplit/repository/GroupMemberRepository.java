@@ -1,10 +1,15 @@
 package com.tomiscoding.billsplit.repository;
 
+import com.tomiscoding.billsplit.dto.GroupSummary;
+import com.tomiscoding.billsplit.dto.MemberSummary;
 import com.tomiscoding.billsplit.model.GroupMember;
 import com.tomiscoding.billsplit.model.SplitGroup;
 import com.tomiscoding.billsplit.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +22,12 @@ public interface GroupMemberRepository extends JpaRepository<GroupMember, Long>
     Optional<GroupMember> getByUserIdAndSplitGroupId(Long userId, Long splitGroupId);
 
     List<GroupMember> getGroupMembersBySplitGroupIdAndIsAdmin(Long splitGroupId, Boolean isAdmin);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.GroupSummary(g.id, g.groupName, g.groupDescription, g.baseCurrency, gm.isAdmin) " +
+            "FROM GroupMember gm JOIN gm.splitGroup g WHERE gm.user.id = :userId ORDER BY g.groupName, g.id")
+    List<GroupSummary> getGroupSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.MemberSummary(gm.splitGroup.id, u.id, u.fullName, gm.isAdmin) " +
+            "FROM GroupMember gm JOIN gm.user u WHERE gm.splitGroup.id IN :splitGroupIds ORDER BY u.fullName, u.id")
+    List<MemberSummary> getMemberSummariesBySplitGroupIdIn(@Param("splitGroupIds") Collection<Long> splitGroupIds);
 }
@@ -4,7 +4,11 @@ import com.tomiscoding.billsplit.model.SplitGroup;
 import com.tomiscoding.billsplit.model.User;
 import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import javax.persistence.LockModeType;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,6 +16,9 @@ public interface GroupRepository extends JpaRepository<SplitGroup, Long> {
 
     Optional<SplitGroup> findByInviteCode(String code);
 
+    @Query(value = "SELECT g.id FROM SplitGroup g WHERE g.inviteCode = :inviteCode")
+    Optional<Long> getIdByInviteCode(@Param("inviteCode") String inviteCode);
+
     List<SplitGroup> getByGroupMembers_User(User user);
 
     @EntityGraph(attributePaths = {"groupMembers"})
@@ -26,4 +33,14 @@ public interface GroupRepository extends JpaRepository<SplitGroup, Long> {
     @EntityGraph(attributePaths = {"payments"})
     Optional<SplitGroup> getSplitGroupWithPaymentsById(Long id);
 
+    /**
+     * Loads a group for a settlement run. The version of the group is incremented when the transaction commits, so
+     * if two runs of the same group overlap the second to commit fails with an optimistic locking failure
+     */
+    @Lock(LockModeType.OPTIMISTIC_FORCE_INCREMENT)
+    Optional<SplitGroup> findForSettlementById(Long id);
+
+    @Query(value = "SELECT g.id FROM SplitGroup g")
+    List<Long> getAllIds();
+
 }
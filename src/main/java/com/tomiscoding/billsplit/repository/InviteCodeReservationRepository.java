@@ -0,0 +1,23 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.model.InviteCodeReservation;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface InviteCodeReservationRepository extends JpaRepository<InviteCodeReservation, String> {
+
+    @Query("SELECT r.code FROM InviteCodeReservation r WHERE r.code IN :codes")
+    List<String> getReservedCodesIn(@Param("codes") Collection<String> codes);
+
+    @Query("SELECT r.code FROM InviteCodeReservation r WHERE r.code > :after ORDER BY r.code")
+    List<String> getCodesAfter(@Param("after") String after, Pageable pageable);
+
+    @Query("SELECT r.code FROM InviteCodeReservation r WHERE r.reservedAt >= :since")
+    List<String> getCodesReservedSince(@Param("since") Instant since);
+}
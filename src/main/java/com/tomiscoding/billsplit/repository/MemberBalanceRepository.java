@@ -0,0 +1,24 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.model.MemberBalance;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+import java.util.Optional;
+
+public interface MemberBalanceRepository extends JpaRepository<MemberBalance, Long> {
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<MemberBalance> findBySplitGroupIdAndUserId(Long splitGroupId, Long userId);
+
+    boolean existsBySplitGroupIdAndUserId(Long splitGroupId, Long userId);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    List<MemberBalance> findBySplitGroupId(Long splitGroupId);
+
+    @EntityGraph(attributePaths = {"user"})
+    List<MemberBalance> getBySplitGroupId(Long splitGroupId);
+}
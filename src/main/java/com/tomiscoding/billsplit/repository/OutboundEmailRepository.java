@@ -0,0 +1,29 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.model.EmailStatus;
+import com.tomiscoding.billsplit.model.OutboundEmail;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.QueryHints;
+
+import javax.persistence.LockModeType;
+import javax.persistence.QueryHint;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface OutboundEmailRepository extends JpaRepository<OutboundEmail, Long> {
+
+    /**
+     * Claims the emails which are due for sending. A lock timeout of -2 is Hibernate's SKIP LOCKED, so on MySQL 8
+     * concurrent dispatchers each claim different rows rather than waiting on each other
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @QueryHints(@QueryHint(name = "javax.persistence.lock.timeout", value = "-2"))
+    List<OutboundEmail> findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(EmailStatus status, Instant now, Pageable pageable);
+
+    Optional<OutboundEmail> findFirstByDedupeKeyOrderByCreatedAtDesc(String dedupeKey);
+
+    long countByStatus(EmailStatus status);
+}
@@ -1,14 +1,24 @@
 package com.tomiscoding.billsplit.repository;
 
+import com.tomiscoding.billsplit.dto.PaymentExportRow;
+import com.tomiscoding.billsplit.dto.PaymentParties;
+import com.tomiscoding.billsplit.dto.UserPaymentStatusTotal;
 import com.tomiscoding.billsplit.model.Payment;
 import com.tomiscoding.billsplit.model.PaymentStatus;
 import com.tomiscoding.billsplit.model.SplitGroup;
 import com.tomiscoding.billsplit.model.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
+import javax.persistence.QueryHint;
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
@@ -19,6 +29,67 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
 
     List<Payment> getBySplitGroupId(Long splitGroupId);
 
+    @EntityGraph(attributePaths = {"fromUser", "toUser", "splitGroup"})
+    @Query(value = "SELECT p FROM Payment p WHERE p.splitGroup.id = :splitGroupId " +
+            "AND (p.fromUser.id = :userId OR p.toUser.id = :userId) " +
+            "AND p.paymentStatus <> :paymentStatus")
+    List<Payment> getPaymentsBySplitGroupIdAndUserIdAndPaymentStatusNot(@Param("splitGroupId") Long splitGroupId,
+                                                                        @Param("userId") Long userId,
+                                                                        @Param("paymentStatus") PaymentStatus paymentStatus);
 
+    @EntityGraph(attributePaths = {"fromUser", "toUser", "splitGroup"})
+    List<Payment> getBySplitGroupIdAndPaymentStatusNot(Long splitGroupId, PaymentStatus paymentStatus);
 
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.UserPaymentStatusTotal(p.toUser.id, p.paymentStatus, SUM(p.amount)) " +
+            "FROM Payment p WHERE p.splitGroup.id = :splitGroupId GROUP BY p.toUser.id, p.paymentStatus")
+    List<UserPaymentStatusTotal> getPaymentTotalsToUserBySplitGroupId(@Param("splitGroupId") Long splitGroupId);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.UserPaymentStatusTotal(p.fromUser.id, p.paymentStatus, SUM(p.amount)) " +
+            "FROM Payment p WHERE p.splitGroup.id = :splitGroupId GROUP BY p.fromUser.id, p.paymentStatus")
+    List<UserPaymentStatusTotal> getPaymentTotalsFromUserBySplitGroupId(@Param("splitGroupId") Long splitGroupId);
+
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.PaymentParties(p.splitGroup.id, p.fromUser.id, p.toUser.id) " +
+            "FROM Payment p WHERE p.id = :id")
+    Optional<PaymentParties> getPartiesById(@Param("id") Long id);
+
+    /**
+     * Keyset search - the payments of a group which sort after the cursor by (calculatedDate DESC, id DESC),
+     * optionally filtered by the paying user, the receiving user and status
+     */
+    @EntityGraph(attributePaths = {"fromUser", "toUser", "splitGroup"})
+    @Query(value = "SELECT p FROM Payment p WHERE p.splitGroup.id = :splitGroupId " +
+            "AND (:fromUserId IS NULL OR p.fromUser.id = :fromUserId) " +
+            "AND (:toUserId IS NULL OR p.toUser.id = :toUserId) " +
+            "AND (:paymentStatus IS NULL OR p.paymentStatus = :paymentStatus) " +
+            "AND p.calculatedDate <= :calculatedDate AND (p.calculatedDate < :calculatedDate OR p.id < :id) " +
+            "ORDER BY p.calculatedDate DESC, p.id DESC")
+    List<Payment> searchPaymentsAfterCursor(@Param("splitGroupId") Long splitGroupId,
+                                            @Param("fromUserId") Long fromUserId,
+                                            @Param("toUserId") Long toUserId,
+                                            @Param("paymentStatus") PaymentStatus paymentStatus,
+                                            @Param("calculatedDate") LocalDate calculatedDate,
+                                            @Param("id") Long id,
+                                            Pageable pageable);
+
+    @Query(value = "SELECT COUNT(p) FROM Payment p WHERE p.splitGroup.id = :splitGroupId " +
+            "AND (:fromUserId IS NULL OR p.fromUser.id = :fromUserId) " +
+            "AND (:toUserId IS NULL OR p.toUser.id = :toUserId) " +
+            "AND (:paymentStatus IS NULL OR p.paymentStatus = :paymentStatus)")
+    long countPayments(@Param("splitGroupId") Long splitGroupId,
+                       @Param("fromUserId") Long fromUserId,
+                       @Param("toUserId") Long toUserId,
+                       @Param("paymentStatus") PaymentStatus paymentStatus);
+
+    /**
+     * Streams the payments of a group in id order, starting after an id - see
+     * ExpenseRepository.streamExportRowsBySplitGroupId
+     */
+    @QueryHints({
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "-2147483648"),
+            @QueryHint(name = org.hibernate.jpa.QueryHints.HINT_READONLY, value = "true")})
+    @Query(value = "SELECT new com.tomiscoding.billsplit.dto.PaymentExportRow(p.id, p.calculatedDate, f.id, f.fullName, " +
+            "t.id, t.fullName, p.amount, p.paymentStatus) " +
+            "FROM Payment p JOIN p.fromUser f JOIN p.toUser t WHERE p.splitGroup.id = :splitGroupId AND p.id > :afterId ORDER BY p.id")
+    Stream<PaymentExportRow> streamExportRowsBySplitGroupId(@Param("splitGroupId") Long splitGroupId,
+                                                            @Param("afterId") Long afterId);
 }
@@ -0,0 +1,13 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.model.SettlementRun;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface SettlementRunRepository extends JpaRepository<SettlementRun, Long> {
+
+    @EntityGraph(attributePaths = {"splitGroup"})
+    Optional<SettlementRun> findByIdempotencyKey(String idempotencyKey);
+}
@@ -0,0 +1,260 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.BalanceDrift;
+import com.tomiscoding.billsplit.dto.GroupBalances;
+import com.tomiscoding.billsplit.dto.UserExpenseTotal;
+import com.tomiscoding.billsplit.dto.UserPaymentStatusTotal;
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.*;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Maintains the member_balance ledger - a running total per (group, user) of spend and payments. Every change to an
+ * expense or payment is applied as a delta to the affected rows within the caller's transaction, so reading the
+ * balances of a group is O(members) rather than O(expenses + payments). rebuildGroup() recomputes the rows from
+ * scratch and reports any drift.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class BalanceLedgerService {
+
+    private final MemberBalanceRepository memberBalanceRepository;
+    private final ExpenseRepository expenseRepository;
+    private final PaymentRepository paymentRepository;
+    private final GroupRepository groupRepository;
+    private final UserRepository userRepository;
+
+    /**
+     * Returns the ledger rows of a group. Groups with history from before the ledger existed were filled by the
+     * V13 migration, so a group without rows has no expenses or payments
+     * @param splitGroupId the group to load balances for
+     * @return GroupBalances with the users of each row loaded
+     */
+    public GroupBalances getGroupBalances(Long splitGroupId){
+        return new GroupBalances(memberBalanceRepository.getBySplitGroupId(splitGroupId));
+    }
+
+    /**
+     * Creates the empty ledger row of a user who has joined a group, unless they had one from an earlier membership.
+     * Opening the row with the membership means that deltas only ever update an existing row under its lock, rather
+     * than two transactions each inserting the first row and one failing on uk_member_balance_group_user
+     * @param splitGroup the group joined
+     * @param user the user who joined
+     */
+    @Transactional
+    public void openBalance(SplitGroup splitGroup, User user){
+        if (!memberBalanceRepository.existsBySplitGroupIdAndUserId(splitGroup.getId(), user.getId())){
+            memberBalanceRepository.save(MemberBalance.builder()
+                    .splitGroup(splitGroup)
+                    .user(user)
+                    .build());
+        }
+    }
+
+    @Transactional
+    public void recordExpenseAdded(Expense expense){
+        BigDecimal amount = expense.getAmount();
+        applyDelta(expense.getSplitGroup(), expense.getUser(), b -> {
+            b.setTotalSpend(b.getTotalSpend().add(amount));
+            if (!expense.isSplit()){
+                b.setUnsplitSpend(b.getUnsplitSpend().add(amount));
+            }
+        });
+    }
+
+    /**
+     * @param expenses 'un-split' expenses which have been added together - totals are applied with one update per
+     *                 (group, user)
+     */
+    @Transactional
+    public void recordExpensesAdded(List<Expense> expenses){
+        forEachUserTotal(expenses, (expense, amount) -> b -> {
+            b.setTotalSpend(b.getTotalSpend().add(amount));
+            b.setUnsplitSpend(b.getUnsplitSpend().add(amount));
+        });
+    }
+
+    /**
+     * @param expense the expense after it has been edited
+     * @param previousAmount the converted amount of the expense before it was edited
+     */
+    @Transactional
+    public void recordExpenseAmountChanged(Expense expense, BigDecimal previousAmount){
+        BigDecimal delta = expense.getAmount().subtract(previousAmount);
+        if (delta.signum() == 0){
+            return;
+        }
+        applyDelta(expense.getSplitGroup(), expense.getUser(), b -> {
+            b.setTotalSpend(b.getTotalSpend().add(delta));
+            if (!expense.isSplit()){
+                b.setUnsplitSpend(b.getUnsplitSpend().add(delta));
+            }
+        });
+    }
+
+    /**
+     * @param expenses 'un-split' expenses which have been deleted - totals are applied with one update per (group, user)
+     */
+    @Transactional
+    public void recordExpensesRemoved(List<Expense> expenses){
+        forEachUserTotal(expenses, (expense, amount) -> b -> {
+            b.setTotalSpend(b.getTotalSpend().subtract(amount));
+            b.setUnsplitSpend(b.getUnsplitSpend().subtract(amount));
+        });
+    }
+
+    /**
+     * @param splitGroup the group whose expenses have just been marked as split by a settlement run
+     * @param totals the total of the expenses split for each user - applied with one update per user
+     */
+    @Transactional
+    public void recordExpensesSplit(SplitGroup splitGroup, List<UserSettlementTotal> totals){
+        for (UserSettlementTotal total : totals){
+            applyDelta(splitGroup, userRepository.getReferenceById(total.getUserId()),
+                    b -> b.setUnsplitSpend(b.getUnsplitSpend().subtract(total.getTotal())));
+        }
+    }
+
+    /**
+     * @param payments newly created payments, which are all in a not confirmed status
+     */
+    @Transactional
+    public void recordPaymentsCreated(List<Payment> payments){
+        for (Payment payment : payments){
+            BigDecimal amount = payment.getAmount();
+            applyDelta(payment.getSplitGroup(), payment.getToUser(), b -> b.setPendingIn(b.getPendingIn().add(amount)));
+            applyDelta(payment.getSplitGroup(), payment.getFromUser(), b -> b.setPendingOut(b.getPendingOut().add(amount)));
+        }
+    }
+
+    /**
+     * @param payment a payment which has just moved to PAID_CONFIRMED
+     */
+    @Transactional
+    public void recordPaymentConfirmed(Payment payment){
+        BigDecimal amount = payment.getAmount();
+        applyDelta(payment.getSplitGroup(), payment.getToUser(), b -> {
+            b.setPendingIn(b.getPendingIn().subtract(amount));
+            b.setConfirmedIn(b.getConfirmedIn().add(amount));
+        });
+        applyDelta(payment.getSplitGroup(), payment.getFromUser(), b -> {
+            b.setPendingOut(b.getPendingOut().subtract(amount));
+            b.setConfirmedOut(b.getConfirmedOut().add(amount));
+        });
+    }
+
+    /**
+     * Recomputes the ledger rows of a group from its expenses and payments using aggregate queries, overwrites the
+     * stored rows and reports every value which differed. Current members without a row are given one. The ledger rows are locked before the aggregates are read
+     * so that deltas from concurrent transactions are applied after the rebuilt values rather than lost.
+     * @param splitGroupId the group to rebuild
+     * @return the differences found, empty if the ledger was correct
+     */
+    @Transactional
+    public List<BalanceDrift> rebuildGroup(Long splitGroupId){
+        Map<Long, MemberBalance> ledger = memberBalanceRepository.findBySplitGroupId(splitGroupId).stream()
+                .collect(Collectors.toMap(b -> b.getUser().getId(), Function.identity()));
+
+        Map<Long, MemberBalance> actual = new HashMap<>();
+        Function<Long, MemberBalance> actualRow = userId -> actual.computeIfAbsent(userId, id -> MemberBalance.builder().build());
+
+        for (UserExpenseTotal total : expenseRepository.getUserExpenseTotalsBySplitGroupId(splitGroupId)){
+            MemberBalance b = actualRow.apply(total.getUserId());
+            b.setTotalSpend(total.getTotal());
+            b.setUnsplitSpend(total.getNotSplitTotal());
+        }
+        for (UserPaymentStatusTotal total : paymentRepository.getPaymentTotalsToUserBySplitGroupId(splitGroupId)){
+            MemberBalance b = actualRow.apply(total.getUserId());
+            if (total.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED)){
+                b.setConfirmedIn(b.getConfirmedIn().add(total.getTotal()));
+            } else {
+                b.setPendingIn(b.getPendingIn().add(total.getTotal()));
+            }
+        }
+        for (UserPaymentStatusTotal total : paymentRepository.getPaymentTotalsFromUserBySplitGroupId(splitGroupId)){
+            MemberBalance b = actualRow.apply(total.getUserId());
+            if (total.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED)){
+                b.setConfirmedOut(b.getConfirmedOut().add(total.getTotal()));
+            } else {
+                b.setPendingOut(b.getPendingOut().add(total.getTotal()));
+            }
+        }
+
+        List<BalanceDrift> drift = new ArrayList<>();
+        Set<Long> userIds = new HashSet<>(ledger.keySet());
+        userIds.addAll(actual.keySet());
+        userRepository.getByGroupMembers_SplitGroupId(splitGroupId).forEach(u -> userIds.add(u.getId()));
+        for (Long userId : userIds){
+            MemberBalance expected = actual.getOrDefault(userId, MemberBalance.builder().build());
+            MemberBalance row = ledger.get(userId);
+            if (row == null){
+                row = MemberBalance.builder()
+                        .splitGroup(groupRepository.getReferenceById(splitGroupId))
+                        .user(userRepository.getReferenceById(userId))
+                        .build();
+            }
+            compare(drift, splitGroupId, userId, "unsplitSpend", row.getUnsplitSpend(), expected.getUnsplitSpend());
+            compare(drift, splitGroupId, userId, "totalSpend", row.getTotalSpend(), expected.getTotalSpend());
+            compare(drift, splitGroupId, userId, "confirmedIn", row.getConfirmedIn(), expected.getConfirmedIn());
+            compare(drift, splitGroupId, userId, "confirmedOut", row.getConfirmedOut(), expected.getConfirmedOut());
+            compare(drift, splitGroupId, userId, "pendingIn", row.getPendingIn(), expected.getPendingIn());
+            compare(drift, splitGroupId, userId, "pendingOut", row.getPendingOut(), expected.getPendingOut());
+
+            row.setUnsplitSpend(expected.getUnsplitSpend());
+            row.setTotalSpend(expected.getTotalSpend());
+            row.setConfirmedIn(expected.getConfirmedIn());
+            row.setConfirmedOut(expected.getConfirmedOut());
+            row.setPendingIn(expected.getPendingIn());
+            row.setPendingOut(expected.getPendingOut());
+            memberBalanceRepository.save(row);
+        }
+
+        if (!ledger.isEmpty() && !drift.isEmpty()){
+            log.warn("Balance ledger drift corrected for group {}: {}", splitGroupId, drift);
+        }
+        return drift;
+    }
+
+    // Helper method to load and lock the ledger row for a user before changing it. Members' rows are opened when they
+    // join, so a row is only created here for a user with no membership
+    private void applyDelta(SplitGroup splitGroup, User user, Consumer<MemberBalance> delta){
+        MemberBalance memberBalance = memberBalanceRepository.findBySplitGroupIdAndUserId(splitGroup.getId(), user.getId())
+                .orElseGet(() -> MemberBalance.builder()
+                        .splitGroup(splitGroup)
+                        .user(user)
+                        .build());
+        delta.accept(memberBalance);
+        memberBalanceRepository.save(memberBalance);
+    }
+
+    // Helper method to sum expenses by (group, user) and apply one delta per row
+    private void forEachUserTotal(List<Expense> expenses, BiFunction<Expense, BigDecimal, Consumer<MemberBalance>> delta){
+        Map<List<Long>, List<Expense>> byGroupAndUser = expenses.stream()
+                .collect(Collectors.groupingBy(e -> List.of(e.getSplitGroup().getId(), e.getUser().getId())));
+        for (List<Expense> userExpenses : byGroupAndUser.values()){
+            Expense first = userExpenses.get(0);
+            BigDecimal amount = MinorUnits.fromMinorUnits(userExpenses.stream()
+                    .mapToLong(e -> MinorUnits.toMinorUnits(e.getAmount()))
+                    .reduce(0, Math::addExact));
+            applyDelta(first.getSplitGroup(), first.getUser(), delta.apply(first, amount));
+        }
+    }
+
+    private void compare(List<BalanceDrift> drift, Long splitGroupId, Long userId, String field, BigDecimal ledgerValue, BigDecimal actualValue){
+        if (ledgerValue.compareTo(actualValue) != 0){
+            drift.add(new BalanceDrift(splitGroupId, userId, field, ledgerValue, actualValue));
+        }
+    }
+}
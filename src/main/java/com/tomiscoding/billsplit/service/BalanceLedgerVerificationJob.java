@@ -0,0 +1,41 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.BalanceDrift;
+import com.tomiscoding.billsplit.repository.GroupRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Periodically rebuilds the balance ledger of every group from its expenses and payments, correcting and logging any
+ * drift. Each group is rebuilt in its own transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class BalanceLedgerVerificationJob {
+
+    private final BalanceLedgerService balanceLedgerService;
+    private final GroupRepository groupRepository;
+
+    @Scheduled(cron = "${billsplit.ledger.verify-cron:0 0 4 * * *}")
+    public void verifyAllGroups(){
+        int groupsWithDrift = 0;
+        int driftCount = 0;
+        for (Long splitGroupId : groupRepository.getAllIds()){
+            try {
+                List<BalanceDrift> drift = balanceLedgerService.rebuildGroup(splitGroupId);
+                if (!drift.isEmpty()){
+                    groupsWithDrift++;
+                    driftCount += drift.size();
+                }
+            } catch (RuntimeException e) {
+                log.error("Could not verify balance ledger for group {}", splitGroupId, e);
+            }
+        }
+        log.info("Balance ledger verified - {} values corrected across {} groups", driftCount, groupsWithDrift);
+    }
+}
@@ -0,0 +1,131 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.CurrencyConversionData;
+import com.tomiscoding.billsplit.dto.CurrencyConversionResponse;
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.Currency;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Makes the calls to currencyapi. Used by CurrencyRateTable to fetch every rate for a base currency in one request,
+ * and by CurrencyConversionService for a single pair (cached in Redis) when the rate table is stale. Requests go
+ * through the currencyapi HttpDownstream, so they fail fast with a CurrencyConversionException while currencyapi is
+ * down.
+ */
+@Component
+public class CurrencyApiClient {
+
+    @Value("${currencyapi.key}")
+    private String apiKey;
+
+    @Value("${currencyapi.baseUrl}")
+    private String currencyAPIUrl;
+
+    @Value("${currencyapi.historicalUrl}")
+    private String historicalAPIUrl;
+
+    private final HttpDownstream currencyApi;
+
+    public CurrencyApiClient(@Qualifier("currencyApi") HttpDownstream currencyApi) {
+        this.currencyApi = currencyApi;
+    }
+
+    /**
+     * Queries the currencyapi for the rates from the base currency to every other Currency in a single request
+     * @param baseCurrency the currency to convert from
+     * @return the rate to each other currency
+     * @throws CurrencyConversionException if a non-2xx response is received or a rate is missing from the response
+     */
+    public Map<Currency, BigDecimal> getRates(Currency baseCurrency) throws CurrencyConversionException {
+        return getRates(baseCurrency, null);
+    }
+
+    /**
+     * Queries the currencyapi for the end of day rates on a past date from the base currency to every other Currency
+     * in a single request
+     * @param baseCurrency the currency to convert from
+     * @param date the date of the rates, or null for the latest rates
+     * @return the rate to each other currency
+     * @throws CurrencyConversionException if a non-2xx response is received or a rate is missing from the response
+     */
+    public Map<Currency, BigDecimal> getRates(Currency baseCurrency, LocalDate date) throws CurrencyConversionException {
+        Set<Currency> toCurrencies = EnumSet.allOf(Currency.class);
+        toCurrencies.remove(baseCurrency);
+        Map<String, CurrencyConversionData> data = fetch(baseCurrency, toCurrencies, date);
+
+        Map<Currency, BigDecimal> rates = new EnumMap<>(Currency.class);
+        for (Currency toCurrency : toCurrencies){
+            CurrencyConversionData rate = data.get(toCurrency.name());
+            if (rate == null || rate.getValue() == null){
+                throw new CurrencyConversionException("Could not retrieve exchange rate for: " + baseCurrency + ":" + toCurrency);
+            }
+            rates.put(toCurrency, rate.getValue());
+        }
+        return rates;
+    }
+
+    /**
+     * Queries the currencyapi for a single exchange rate - the result is cached
+     * @param fromCurrency
+     * @param toCurrency
+     * @return BigDecimal containing the exchange rate
+     * @throws CurrencyConversionException if a non-2xx response is received from the api
+     */
+    @Cacheable(value = "currencies", key = "#fromCurrency.name+#toCurrency.name")
+    public BigDecimal getRate(Currency fromCurrency, Currency toCurrency) throws CurrencyConversionException {
+        CurrencyConversionData rate = fetch(fromCurrency, EnumSet.of(toCurrency), null).get(toCurrency.name());
+        if (rate == null || rate.getValue() == null){
+            throw new CurrencyConversionException("Could not retrieve exchange rate for: " + fromCurrency + ":" + toCurrency);
+        }
+        return rate.getValue();
+    }
+
+    private Map<String, CurrencyConversionData> fetch(Currency baseCurrency, Set<Currency> toCurrencies, LocalDate date) throws CurrencyConversionException {
+        // Set http request headers with apikey
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.add("apikey", apiKey);
+        httpHeaders.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
+        HttpEntity<String> httpEntity = new HttpEntity<>(httpHeaders);
+
+        // Query params for currency conversion
+        Map<String, String> params = new HashMap<>();
+        params.put("base_currency", baseCurrency.name());
+        params.put("currencies", toCurrencies.stream().map(Currency::name).collect(Collectors.joining(",")));
+        String url = currencyAPIUrl + "?base_currency={base_currency}&currencies={currencies}";
+        if (date != null){
+            params.put("date", date.toString());
+            url = historicalAPIUrl + "?date={date}&base_currency={base_currency}&currencies={currencies}";
+        }
+
+        String requestUrl = url;
+        ResponseEntity<CurrencyConversionResponse> responseEntity;
+        try {
+            responseEntity = currencyApi.call(restTemplate -> restTemplate.exchange(
+                    requestUrl,
+                    HttpMethod.GET,
+                    httpEntity,
+                    CurrencyConversionResponse.class,
+                    params
+            ));
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw new CurrencyConversionException("currencyapi is unavailable: " + e.getMessage());
+        }
+
+        if (!responseEntity.getStatusCode().is2xxSuccessful() || !responseEntity.hasBody()
+                || responseEntity.getBody().getData() == null){
+            throw new CurrencyConversionException("Could not retrieve exchange rates for: " + baseCurrency + ":" + toCurrencies);
+        }
+        return responseEntity.getBody().getData();
+    }
+}
@@ -1,71 +1,90 @@
 package com.tomiscoding.billsplit.service;
 
-import com.tomiscoding.billsplit.dto.CurrencyConversionResponse;
 import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
 import com.tomiscoding.billsplit.model.Currency;
-import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.http.*;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 import java.math.BigDecimal;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.Map;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
-@RequiredArgsConstructor
 public class CurrencyConversionService {
 
-    @Value("${currencyapi.key}")
-    private String apiKey;
+    private final CurrencyRateTable currencyRateTable;
+    private final CurrencyApiClient currencyApiClient;
+    private final ExchangeRateHistoryService exchangeRateHistoryService;
+    private final HttpDownstream currencyApi;
 
-    @Value("${currencyapi.baseUrl}")
-    private String currencyAPIUrl;
-
-    private final RestTemplate restTemplate;
+    public CurrencyConversionService(CurrencyRateTable currencyRateTable,
+                                     CurrencyApiClient currencyApiClient,
+                                     ExchangeRateHistoryService exchangeRateHistoryService,
+                                     @Qualifier("currencyApi") HttpDownstream currencyApi) {
+        this.currencyRateTable = currencyRateTable;
+        this.currencyApiClient = currencyApiClient;
+        this.exchangeRateHistoryService = exchangeRateHistoryService;
+        this.currencyApi = currencyApi;
+    }
 
     /**
-     * Queries the currencyapi using RestTemplate to obtain currency conversion rate for supplied currencies
+     * Returns the exchange rate from the in-memory rate table, which involves no I/O. Only if the table is stale
+     * (e.g. the currencyapi has been unreachable) is the rate read from the Redis cache or, failing that, the
+     * currencyapi
      * @param fromCurrency
      * @param toCurrency
      * @return BigDecimal containing the exchange rate
-     * @throws CurrencyConversionException if a non-2xx response is received from the api
+     * @throws CurrencyConversionException if the rate is not in the table and a non-2xx response is received from the api
      */
-    @Cacheable(value = "currencies", key = "#fromCurrency.name+#toCurrency.name")
     public BigDecimal getCurrencyConversion(Currency fromCurrency, Currency toCurrency) throws CurrencyConversionException {
-        // Set http request headers with apikey
-        HttpHeaders httpHeaders = new HttpHeaders();
-        httpHeaders.add("apikey", apiKey);
-        httpHeaders.setAccept(Collections.singletonList(MediaType.APPLICATION_JSON));
-        HttpEntity<String> httpEntity = new HttpEntity<>(httpHeaders);
-
-        // Query params for currency conversion
-        Map<String, String> params = new HashMap<>();
-        params.put("base_currency", fromCurrency.name());
-        params.put("currencies", toCurrency.name());
-
-        ResponseEntity<CurrencyConversionResponse> responseEntity = restTemplate.exchange(
-                currencyAPIUrl + "?base_currency={base_currency}&currencies={currencies}",
-                HttpMethod.GET,
-                httpEntity,
-                CurrencyConversionResponse.class,
-                params
-        );
-
-        BigDecimal conversionRate = BigDecimal.ONE;
+        if (fromCurrency.equals(toCurrency)){
+            return BigDecimal.ONE;
+        }
+        BigDecimal rate = currencyRateTable.getRate(fromCurrency, toCurrency).orElse(null);
+        if (rate == null){
+            rate = currencyApiClient.getRate(fromCurrency, toCurrency);
+        }
+        return rate;
+    }
 
-        if (responseEntity.getStatusCode().is2xxSuccessful() && responseEntity.hasBody()){
-            CurrencyConversionResponse currencyConversionResponse = responseEntity.getBody();
-            conversionRate = currencyConversionResponse.getData()
-                    .get(toCurrency.name())
-                    .getValue();
-        } else {
-            throw new CurrencyConversionException("Could not retrieve exchange rate for: " + fromCurrency + ":" + toCurrency);
+    /**
+     * Returns the exchange rate which applied on a date from the stored rate history. Today's (or a future) date,
+     * or a date before the history begins, uses the latest rate
+     * @param fromCurrency
+     * @param toCurrency
+     * @param date the date of the expense being converted
+     * @return BigDecimal containing the exchange rate
+     * @throws CurrencyConversionException if the latest rate is needed and can't be retrieved
+     */
+    public BigDecimal getCurrencyConversion(Currency fromCurrency, Currency toCurrency, LocalDate date) throws CurrencyConversionException {
+        if (fromCurrency.equals(toCurrency)){
+            return BigDecimal.ONE;
+        }
+        if (date != null && date.isBefore(LocalDate.now(ZoneOffset.UTC))){
+            Optional<BigDecimal> rate = exchangeRateHistoryService.getRate(fromCurrency, toCurrency, date);
+            if (rate.isPresent()){
+                return rate.get();
+            }
         }
+        return getCurrencyConversion(fromCurrency, toCurrency);
+    }
 
-        return conversionRate;
-//        return BigDecimal.valueOf(1.1);
+    /**
+     * Non-blocking variant of getCurrencyConversion(). A rate in the in-memory rate table is returned already
+     * completed, otherwise the lookup runs on a currencyapi HttpDownstream thread
+     * @param fromCurrency
+     * @param toCurrency
+     * @return completed with the exchange rate, or exceptionally with a CurrencyConversionException
+     */
+    public CompletableFuture<BigDecimal> getCurrencyConversionAsync(Currency fromCurrency, Currency toCurrency){
+        if (fromCurrency.equals(toCurrency)){
+            return CompletableFuture.completedFuture(BigDecimal.ONE);
+        }
+        Optional<BigDecimal> rate = currencyRateTable.getRate(fromCurrency, toCurrency);
+        if (rate.isPresent()){
+            return CompletableFuture.completedFuture(rate.get());
+        }
+        return currencyApi.callAsync(() -> currencyApiClient.getRate(fromCurrency, toCurrency));
     }
 }
@@ -0,0 +1,85 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.Currency;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds every exchange rate between the Currency values in memory so that conversions need no I/O. The rates are an
+ * immutable snapshot which is refreshed in the background - one currencyapi request per base currency - and swapped
+ * in atomically, so readers never see a partly updated table. If a base currency can't be fetched its previous rates
+ * are kept, with their original fetch time, so that they go stale rather than disappearing.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class CurrencyRateTable {
+
+    private final CurrencyApiClient currencyApiClient;
+    private final AtomicReference<Map<Currency, BaseRates>> snapshot = new AtomicReference<>(Collections.emptyMap());
+
+    // Six hours, also used when the table is created outside of Spring
+    @Value("${billsplit.currency.max-age-ms:21600000}")
+    private long maxAgeMillis = 21_600_000L;
+
+    private Clock clock = Clock.systemUTC();
+
+    /**
+     * Fetches the rates for every base currency and swaps in the new table. Runs on startup and then every
+     * billsplit.currency.refresh-ms
+     */
+    @Scheduled(fixedDelayString = "${billsplit.currency.refresh-ms:3600000}")
+    public void refresh(){
+        Map<Currency, BaseRates> current = snapshot.get();
+        Map<Currency, BaseRates> updated = new EnumMap<>(Currency.class);
+        updated.putAll(current);
+
+        for (Currency baseCurrency : Currency.values()){
+            try {
+                updated.put(baseCurrency, new BaseRates(currencyApiClient.getRates(baseCurrency), clock.instant()));
+            } catch (CurrencyConversionException | RuntimeException e) {
+                log.warn("Could not refresh exchange rates for {} - keeping previous rates: {}", baseCurrency, e.getMessage());
+            }
+        }
+        snapshot.set(Collections.unmodifiableMap(updated));
+    }
+
+    /**
+     * @param fromCurrency
+     * @param toCurrency
+     * @return the rate if the table holds one fetched within billsplit.currency.max-age-ms, otherwise empty
+     */
+    public Optional<BigDecimal> getRate(Currency fromCurrency, Currency toCurrency){
+        BaseRates baseRates = snapshot.get().get(fromCurrency);
+        if (baseRates == null || Duration.between(baseRates.fetchedAt, clock.instant()).toMillis() > maxAgeMillis){
+            return Optional.empty();
+        }
+        return Optional.ofNullable(baseRates.rates.get(toCurrency));
+    }
+
+    // Used by tests to move time forward
+    void setClock(Clock clock){
+        this.clock = clock;
+    }
+
+    private static class BaseRates {
+        private final Map<Currency, BigDecimal> rates;
+        private final Instant fetchedAt;
+
+        private BaseRates(Map<Currency, BigDecimal> rates, Instant fetchedAt) {
+            this.rates = Collections.unmodifiableMap(new EnumMap<>(rates));
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.ExchangeRate;
+import com.tomiscoding.billsplit.repository.ExchangeRateRepository;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Stores the end of day exchange rates of every Currency pair and looks up the rate which applied on a date. Lookups
+ * go through an in-process LRU cache keyed by (from, to, date), as expenses cluster around recent dates and an import
+ * converts many expenses of the same date, so only the first lookup of a date reads the database and the currencyapi
+ * is never called from the request path.
+ */
+@Service
+@Log4j2
+public class ExchangeRateHistoryService {
+
+    private final ExchangeRateRepository exchangeRateRepository;
+    private final CurrencyApiClient currencyApiClient;
+    private final Map<RateKey, Optional<BigDecimal>> recentLookups;
+
+    public ExchangeRateHistoryService(ExchangeRateRepository exchangeRateRepository,
+                                      CurrencyApiClient currencyApiClient,
+                                      @Value("${billsplit.exchange-rates.cache-size:4096}") int cacheSize) {
+        this.exchangeRateRepository = exchangeRateRepository;
+        this.currencyApiClient = currencyApiClient;
+        this.recentLookups = Collections.synchronizedMap(new LinkedHashMap<>(cacheSize, 0.75f, true){
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<RateKey, Optional<BigDecimal>> eldest) {
+                return size() > cacheSize;
+            }
+        });
+    }
+
+    /**
+     * @param fromCurrency
+     * @param toCurrency
+     * @param date the date of the expense
+     * @return the latest stored rate on or before the date, or empty if the history doesn't go back that far
+     */
+    public Optional<BigDecimal> getRate(Currency fromCurrency, Currency toCurrency, LocalDate date){
+        if (fromCurrency.equals(toCurrency)){
+            return Optional.of(BigDecimal.ONE);
+        }
+        RateKey key = new RateKey(fromCurrency, toCurrency, date);
+        Optional<BigDecimal> rate = recentLookups.get(key);
+        if (rate == null){
+            rate = exchangeRateRepository
+                    .findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc(fromCurrency, toCurrency, date)
+                    .map(ExchangeRate::getRate);
+            recentLookups.put(key, rate);
+        }
+        return rate;
+    }
+
+    /**
+     * Fetches and stores the rates of every Currency pair for a date - one currencyapi request per base currency.
+     * Base currencies which already have rates for the date are skipped
+     * @param date the date to ingest
+     * @return the number of rates stored
+     * @throws CurrencyConversionException if the rates can't be fetched
+     */
+    public int ingest(LocalDate date) throws CurrencyConversionException {
+        int stored = 0;
+        for (Currency baseCurrency : Currency.values()){
+            if (exchangeRateRepository.getRateDatesByBaseCurrencyBetween(baseCurrency, date, date).isEmpty()){
+                stored += store(baseCurrency, date, currencyApiClient.getRates(baseCurrency, date));
+            }
+        }
+        if (stored > 0){
+            // Lookups for later dates may have fallen back to an earlier rate
+            recentLookups.clear();
+        }
+        return stored;
+    }
+
+    /**
+     * Ingests every date in the range which is missing for any base currency. Stops at the first failure so that it
+     * can be resumed by running it again
+     * @param fromDate the first date to backfill
+     * @param toDate the last date to backfill
+     * @return the number of rates stored
+     */
+    public int backfill(LocalDate fromDate, LocalDate toDate){
+        Map<Currency, Set<LocalDate>> storedDates = new EnumMap<>(Currency.class);
+        for (Currency baseCurrency : Currency.values()){
+            storedDates.put(baseCurrency, new HashSet<>(
+                    exchangeRateRepository.getRateDatesByBaseCurrencyBetween(baseCurrency, fromDate, toDate)));
+        }
+
+        int stored = 0;
+        try {
+            for (LocalDate date = fromDate; !date.isAfter(toDate); date = date.plusDays(1)){
+                for (Currency baseCurrency : Currency.values()){
+                    if (!storedDates.get(baseCurrency).contains(date)){
+                        stored += store(baseCurrency, date, currencyApiClient.getRates(baseCurrency, date));
+                    }
+                }
+            }
+        } catch (CurrencyConversionException | RuntimeException e) {
+            log.error("Exchange rate backfill stopped after storing {} rates: {}", stored, e.getMessage());
+        }
+        recentLookups.clear();
+        log.info("Exchange rate backfill from {} to {} stored {} rates", fromDate, toDate, stored);
+        return stored;
+    }
+
+    private int store(Currency baseCurrency, LocalDate date, Map<Currency, BigDecimal> rates){
+        List<ExchangeRate> exchangeRates = new ArrayList<>();
+        rates.forEach((quoteCurrency, rate) -> exchangeRates.add(ExchangeRate.builder()
+                .rateDate(date)
+                .baseCurrency(baseCurrency)
+                .quoteCurrency(quoteCurrency)
+                .rate(rate)
+                .build()));
+        exchangeRateRepository.saveAll(exchangeRates);
+        return exchangeRates.size();
+    }
+
+    private static class RateKey {
+        private final Currency fromCurrency;
+        private final Currency toCurrency;
+        private final LocalDate date;
+
+        private RateKey(Currency fromCurrency, Currency toCurrency, LocalDate date) {
+            this.fromCurrency = fromCurrency;
+            this.toCurrency = toCurrency;
+            this.date = date;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof RateKey)) return false;
+            RateKey rateKey = (RateKey) o;
+            return fromCurrency == rateKey.fromCurrency && toCurrency == rateKey.toCurrency && date.equals(rateKey.date);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(fromCurrency, toCurrency, date);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Stores the previous day's exchange rates every night and, if billsplit.exchange-rates.backfill-days is set,
+ * backfills any missing days of history once the application has started
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class ExchangeRateIngestJob {
+
+    private final ExchangeRateHistoryService exchangeRateHistoryService;
+
+    @Value("${billsplit.exchange-rates.backfill-days:0}")
+    private int backfillDays;
+
+    @Scheduled(cron = "${billsplit.exchange-rates.ingest-cron:0 30 0 * * *}", zone = "UTC")
+    public void ingestYesterday(){
+        LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+        try {
+            int stored = exchangeRateHistoryService.ingest(yesterday);
+            log.info("Stored {} exchange rates for {}", stored, yesterday);
+        } catch (CurrencyConversionException | RuntimeException e) {
+            log.error("Could not ingest exchange rates for {}", yesterday, e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillOnStartup(){
+        if (backfillDays > 0){
+            LocalDate yesterday = LocalDate.now(ZoneOffset.UTC).minusDays(1);
+            exchangeRateHistoryService.backfill(yesterday.minusDays(backfillDays - 1L), yesterday);
+        }
+    }
+}
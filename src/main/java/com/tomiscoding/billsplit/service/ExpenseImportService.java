@@ -0,0 +1,190 @@
+package com.tomiscoding.billsplit.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.tomiscoding.billsplit.dto.ExpenseImportError;
+import com.tomiscoding.billsplit.dto.ExpenseImportResult;
+import com.tomiscoding.billsplit.dto.ExpenseImportRow;
+import com.tomiscoding.billsplit.dto.FileFormat;
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.Expense;
+import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.User;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imports expenses from an uploaded CSV or JSON file. The file is read a row at a time and rows are persisted in
+ * batches of billsplit.import.batch-size, each in its own transaction, so memory use depends on the batch size rather
+ * than the size of the file. Rows are validated with the same rules as ExpenseService and converted at the rate of
+ * their date, which is looked up once per (currency, date) for the whole file.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class ExpenseImportService {
+
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+    private static final ObjectMapper JSON_MAPPER = new ObjectMapper();
+
+    private final ExpenseService expenseService;
+    private final CurrencyConversionService currencyConversionService;
+
+    @Value("${billsplit.import.batch-size:500}")
+    private int batchSize = 500;
+
+    @Value("${billsplit.import.max-reported-errors:100}")
+    private int maxReportedErrors = 100;
+
+    /**
+     * Rows which fail validation or conversion are reported in the result and skipped. If the file turns out to be
+     * malformed part way through the import stops, keeping the batches which have already been persisted
+     * @param splitGroup the group to import the expenses into
+     * @param user the user the expenses are assigned to
+     * @param inputStream the contents of the file
+     * @param format whether the file is a CSV file with a header row or a JSON array of objects
+     * @return the number of rows imported and failed, the first errors and the import rate
+     */
+    public ExpenseImportResult importExpenses(SplitGroup splitGroup, User user, InputStream inputStream, FileFormat format){
+        long start = System.currentTimeMillis();
+        ExpenseImportResult result = new ExpenseImportResult();
+        Map<String, BigDecimal> rates = new HashMap<>();
+        List<Expense> batch = new ArrayList<>(batchSize);
+        long rowNumber = 0;
+
+        // A value the row can't be read into means the file itself is malformed, so the import stops there
+        try (MappingIterator<ExpenseImportRow> rows = openRows(inputStream, format)) {
+            for (rowNumber = 1; rows.hasNextValue(); rowNumber++){
+                try {
+                    batch.add(toExpense(rows.nextValue(), splitGroup, user, rates));
+                } catch (ValidationException | CurrencyConversionException e) {
+                    addError(result, rowNumber, e.getMessage());
+                }
+                if (batch.size() >= batchSize){
+                    result.setImportedRows(result.getImportedRows() + expenseService.saveImportedExpenses(batch));
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()){
+                result.setImportedRows(result.getImportedRows() + expenseService.saveImportedExpenses(batch));
+            }
+            result.setCompleted(true);
+        } catch (JsonProcessingException e) {
+            addError(result, rowNumber, "File is not valid " + format + ": " + e.getOriginalMessage());
+        } catch (IOException e) {
+            addError(result, rowNumber, "File could not be read: " + e.getMessage());
+        }
+
+        result.setElapsedMillis(System.currentTimeMillis() - start);
+        log.info("Imported {} expenses into group {} ({} failed) at {} rows/s",
+                result.getImportedRows(), splitGroup.getId(), result.getFailedRows(), result.getRowsPerSecond());
+        return result;
+    }
+
+    // Helper method to open a streaming reader over the rows of the file
+    private MappingIterator<ExpenseImportRow> openRows(InputStream inputStream, FileFormat format) throws IOException {
+        if (format == FileFormat.JSON){
+            return JSON_MAPPER.readerFor(ExpenseImportRow.class).readValues(inputStream);
+        }
+        return CSV_MAPPER.readerFor(ExpenseImportRow.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(inputStream);
+    }
+
+    /**
+     * Helper method to parse, validate and convert a row
+     * @param row a row of the file
+     * @param splitGroup the group being imported into
+     * @param user the user the expense is assigned to
+     * @param rates exchange rates already looked up during this import, keyed by currency and date
+     * @return an expense ready to be persisted
+     * @throws ValidationException if a value can't be parsed or the expense isn't valid
+     * @throws CurrencyConversionException if the exchange rate can't be found
+     */
+    private Expense toExpense(ExpenseImportRow row, SplitGroup splitGroup, User user, Map<String, BigDecimal> rates) throws ValidationException, CurrencyConversionException {
+        Expense expense = Expense.builder()
+                .name(row.getName())
+                .expenseDescription(row.getDescription())
+                .currencyAmount(parseAmount(row.getAmount()))
+                .currency(parseCurrency(row.getCurrency()))
+                .expenseDate(parseDate(row.getDate()))
+                .user(user)
+                .splitGroup(splitGroup)
+                .build();
+        expenseService.validateExpense(expense);
+        expense.setCurrencyAmount(expense.getCurrencyAmount().setScale(2, RoundingMode.HALF_EVEN));
+
+        Currency baseCurrency = splitGroup.getBaseCurrency();
+        if (expense.getCurrency().equals(baseCurrency)){
+            expense.setAmount(expense.getCurrencyAmount());
+        } else {
+            String key = expense.getCurrency() + ":" + expense.getExpenseDate();
+            BigDecimal rate = rates.get(key);
+            if (rate == null){
+                rate = currencyConversionService.getCurrencyConversion(expense.getCurrency(), baseCurrency, expense.getExpenseDate());
+                rates.put(key, rate);
+            }
+            expense.setAmount(expense.getCurrencyAmount().multiply(rate).setScale(2, RoundingMode.HALF_EVEN));
+        }
+        return expense;
+    }
+
+    private BigDecimal parseAmount(String amount) throws ValidationException {
+        if (amount == null || amount.isBlank()){
+            return null;
+        }
+        try {
+            return new BigDecimal(amount.trim());
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Amount is not a number: " + amount);
+        }
+    }
+
+    private Currency parseCurrency(String currency) throws ValidationException {
+        if (currency == null || currency.isBlank()){
+            return null;
+        }
+        try {
+            return Currency.valueOf(currency.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Currency is not supported: " + currency);
+        }
+    }
+
+    private LocalDate parseDate(String date) throws ValidationException {
+        if (date == null || date.isBlank()){
+            return null;
+        }
+        try {
+            return LocalDate.parse(date.trim());
+        } catch (DateTimeParseException e) {
+            throw new ValidationException("Date must be in the format yyyy-MM-dd: " + date);
+        }
+    }
+
+    // Helper method to count a failed row, keeping its error if fewer than maxReportedErrors have been kept
+    private void addError(ExpenseImportResult result, long rowNumber, String message){
+        result.setFailedRows(result.getFailedRows() + 1);
+        if (result.getErrors().size() < maxReportedErrors){
+            result.getErrors().add(new ExpenseImportError(rowNumber, message));
+        }
+    }
+}
@@ -1,21 +1,22 @@
 package com.tomiscoding.billsplit.service;
 
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
 import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
 import com.tomiscoding.billsplit.exceptions.ExpenseNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.Currency;
 import com.tomiscoding.billsplit.model.Expense;
-import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.SettlementRun;
 import com.tomiscoding.billsplit.repository.ExpenseRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import javax.transaction.Transactional;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,20 +26,22 @@ public class ExpenseService {
 
     private final ExpenseRepository expenseRepository;
     private final CurrencyConversionService currencyConversionService;
+    private final BalanceLedgerService balanceLedgerService;
 
     /**
      * First validates an expense object, ensures correct scale of BigDecimal and converts currency before persisting
+     * and adding the expense to the balance ledger
      * @param expense to be persisted
      * @return persisted expense object
      * @throws ValidationException
      * @throws CurrencyConversionException
      */
+    @Transactional(rollbackOn = Exception.class)
     public Expense saveExpense(Expense expense) throws ValidationException, CurrencyConversionException {
-        validateExpense(expense);
-        expense.setCurrencyAmount(expense.getCurrencyAmount().setScale(2, RoundingMode.HALF_EVEN));
-        BigDecimal convertedAmount = convertExpenseAmount(expense);
-        expense.setAmount(convertedAmount);
-        return expenseRepository.save(expense);
+        prepareExpense(expense, true);
+        Expense savedExpense = expenseRepository.save(expense);
+        balanceLedgerService.recordExpenseAdded(savedExpense);
+        return savedExpense;
     }
 
     public Expense getExpense(Long id) throws ExpenseNotFoundException {
@@ -55,17 +58,41 @@ public class ExpenseService {
      * @throws ValidationException if the expense being updated has isSplit == true
      * @throws CurrencyConversionException
      */
+    @Transactional(rollbackOn = Exception.class)
     public Expense editExpense(Long id, Expense expense) throws ExpenseNotFoundException, ValidationException, CurrencyConversionException {
         Expense expense1 = getExpense(id);
         if (expense1.isSplit()){
             throw new ValidationException(expense1.getName().toString() + " has already been split so cannot be edited");
         }
+        BigDecimal previousAmount = expense1.getAmount();
+        boolean conversionChanged = !Objects.equals(expense1.getExpenseDate(), expense.getExpenseDate())
+                || !Objects.equals(expense1.getCurrency(), expense.getCurrency())
+                || expense.getCurrencyAmount() == null
+                || expense1.getCurrencyAmount().compareTo(expense.getCurrencyAmount()) != 0;
         expense1.setExpenseDate(expense.getExpenseDate());
         expense1.setExpenseDescription(expense.getExpenseDescription());
         expense1.setCurrencyAmount(expense.getCurrencyAmount());
         expense1.setCurrency(expense.getCurrency());
         expense1.setName(expense.getName());
-        return saveExpense(expense1);
+        // Only convert again if the amount, currency or date has changed
+        prepareExpense(expense1, conversionChanged);
+        Expense savedExpense = expenseRepository.save(expense1);
+        balanceLedgerService.recordExpenseAmountChanged(savedExpense, previousAmount);
+        return savedExpense;
+    }
+
+    /**
+     * Persists a batch of imported expenses, which have already been validated and converted, in a single
+     * transaction. The inserts are sent as JDBC batches and the batch is added to the balance ledger with one delta
+     * per user
+     * @param expenses the expenses to be persisted
+     * @return the number of expenses persisted
+     */
+    @Transactional
+    public int saveImportedExpenses(List<Expense> expenses){
+        expenseRepository.saveAll(expenses);
+        balanceLedgerService.recordExpensesAdded(expenses);
+        return expenses.size();
     }
 
     /**
@@ -73,55 +100,70 @@ public class ExpenseService {
      * @throws ExpenseNotFoundException if an expense with the id does not exist
      * @throws ValidationException if the expense has isSplit == true
      */
+    @Transactional(rollbackOn = Exception.class)
     public void deleteExpense(Long id) throws ExpenseNotFoundException, ValidationException {
         Expense expense = getExpense(id);
         if (expense.isSplit()){
             throw new ValidationException(expense.getName().toString() + " has already been split so cannot be deleted");
         }
         expenseRepository.delete(expense);
+        balanceLedgerService.recordExpensesRemoved(Collections.singletonList(expense));
     }
 
     /**
+     * Deletes the expenses which have not been split. The DELETE re-checks isSplit, so if a settlement run has split
+     * any of them since they were read nothing is deleted and the balance ledger is left unchanged
      * @param expenses a list of expenses to be deleted
+     * @throws ValidationException if any of the 'un-split' expenses has been split since it was read
      */
-    public void deleteExpensesList(List<Expense> expenses){
+    @Transactional(rollbackOn = Exception.class)
+    public void deleteExpensesList(List<Expense> expenses) throws ValidationException {
         expenses = expenses.stream()
                 .filter(e -> !e.isSplit())
                 .collect(Collectors.toList());
+        if (expenses.isEmpty()){
+            return;
+        }
 
-        expenseRepository.deleteAllInBatch(expenses);
+        int deleted = expenseRepository.deleteUnsplitByIdIn(expenses.stream()
+                .map(Expense::getId)
+                .collect(Collectors.toList()));
+        if (deleted != expenses.size()){
+            throw new ValidationException("Some of the expenses have been split since they were loaded so cannot be deleted");
+        }
+        balanceLedgerService.recordExpensesRemoved(expenses);
     }
 
     /**
-     * @param splitGroup containing the expenses which are to be split
-     * @return a list of the updated expenses
+     * Claims the 'un-split' expenses of the run's group with one set-based UPDATE, bounded by the highest expense id
+     * of the group when the run started, which tags each claimed expense with the run. The run's totals are then
+     * read back by aggregating over that tag, so they cover exactly the expenses claimed - including any committed
+     * just before the UPDATE - without loading them. The run's high-water mark and expense count are set
+     * @param settlementRun the run which is splitting the expenses - must already be persisted
+     * @return the total and number of the claimed expenses of each user
      */
-    public List<Expense> setExpensesAsSplitByGroup(SplitGroup splitGroup){
-        List<Expense> expenses = splitGroup.getExpenses().stream()
-                .filter(e -> !e.isSplit())
-                .collect(Collectors.toList());
-
-        expenses.forEach(e -> e.setSplit(true));
-        return expenseRepository.saveAll(expenses);
+    @Transactional
+    public List<UserSettlementTotal> setExpensesAsSplitBySettlementRun(SettlementRun settlementRun){
+        Long splitGroupId = settlementRun.getSplitGroup().getId();
+        long maxId = expenseRepository.getMaxIdBySplitGroupId(splitGroupId).orElse(0L);
+        int claimed = expenseRepository.setSplitBySettlementRun(settlementRun, splitGroupId, maxId);
+        List<UserSettlementTotal> totals = claimed == 0
+                ? Collections.emptyList()
+                : expenseRepository.getUserTotalsBySettlementRunId(settlementRun.getId());
+
+        settlementRun.setHighWaterExpenseId(maxId);
+        settlementRun.setExpenseCount(claimed);
+        balanceLedgerService.recordExpensesSplit(settlementRun.getSplitGroup(), totals);
+        return totals;
     }
 
     public List<Expense> getExpenseByUserIdAndSplitGroupId(Long userId, Long splitGroupId){
         return expenseRepository.getExpensesByUserIdAndSplitGroupId(userId, splitGroupId);
     }
 
-    public Page<Expense> getExpenseByUserIdAndSplitGroupIdAndIsSplit(Long userId, Long splitGroupId, Boolean isSplit, Integer pageNum){
-        PageRequest pageRequest = PageRequest.of(pageNum, 10).withSort(Sort.Direction.DESC,"expenseDate");
-        return expenseRepository.getExpensesByUserIdAndSplitGroupIdAndIsSplit(userId, splitGroupId, isSplit, pageRequest);
-    }
-
-    public Page<Expense> getExpenseBySplitGroupIdAndIsSplit(Long splitGroupId, Boolean isSplit, Integer pageNum){
-        PageRequest pageRequest = PageRequest.of(pageNum, 10).withSort(Sort.Direction.DESC,"expenseDate");
-        return expenseRepository.getExpensesBySplitGroupIdAndIsSplit(splitGroupId, isSplit, pageRequest);
-    }
-
     /**
-     * Retrieves currency conversion rate with getCurrencyConversion() and converts amount of expense with correct
-     * and rounding of BigDecimal
+     * Retrieves the currency conversion rate for the date of the expense with getCurrencyConversion() and converts
+     * amount of expense with correct and rounding of BigDecimal
      * @param expense expense with amount to be converted
      * @return BigDecimal with the converted amount
      * @throws CurrencyConversionException
@@ -134,13 +176,23 @@ public class ExpenseService {
         if (fromCurrency.equals(toCurrency)){
             convertedAmount = expense.getCurrencyAmount();
         } else {
-            BigDecimal conversionRate = currencyConversionService.getCurrencyConversion(fromCurrency, toCurrency);
+            BigDecimal conversionRate = currencyConversionService.getCurrencyConversion(fromCurrency, toCurrency, expense.getExpenseDate());
             convertedAmount = expense.getCurrencyAmount().multiply(conversionRate).setScale(2, RoundingMode.HALF_EVEN);
         }
         return convertedAmount;
     }
 
-    private void validateExpense(Expense expense) throws ValidationException {
+    // Helper method to validate, ensure correct scale of BigDecimal and convert currency before persisting
+    private void prepareExpense(Expense expense, boolean convert) throws ValidationException, CurrencyConversionException {
+        validateExpense(expense);
+        expense.setCurrencyAmount(expense.getCurrencyAmount().setScale(2, RoundingMode.HALF_EVEN));
+        if (convert){
+            BigDecimal convertedAmount = convertExpenseAmount(expense);
+            expense.setAmount(convertedAmount);
+        }
+    }
+
+    void validateExpense(Expense expense) throws ValidationException {
         if (expense.getName() == null || expense.getName().isBlank()){
             throw new ValidationException("Name must not be blank");
         } else if (expense.getCurrencyAmount() == null || expense.getCurrencyAmount().compareTo(BigDecimal.ZERO) < 0){
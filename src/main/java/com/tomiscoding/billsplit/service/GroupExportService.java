@@ -0,0 +1,98 @@
+package com.tomiscoding.billsplit.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.tomiscoding.billsplit.dto.ExpenseExportRow;
+import com.tomiscoding.billsplit.dto.FileFormat;
+import com.tomiscoding.billsplit.dto.PaymentExportRow;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * Writes the expenses or payments of a group to an output stream as CSV or JSON. Rows are streamed from the
+ * database and written one at a time, so memory use is constant however large the group is. Every row includes its
+ * id and rows are written in id order, so an interrupted export can be resumed from the last id received.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class GroupExportService {
+
+    private static final CsvMapper CSV_MAPPER = CsvMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+    private static final JsonMapper JSON_MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    private final ExpenseRepository expenseRepository;
+    private final PaymentRepository paymentRepository;
+
+    /**
+     * @param splitGroupId the group to export
+     * @param afterId only export expenses with a greater id - 0 to export all of them
+     * @param format CSV with a header row, or a JSON array
+     * @param outputStream the stream to write to, which is left open
+     * @return the number of expenses written
+     * @throws IOException if the output stream can't be written to
+     */
+    @Transactional
+    public long exportExpenses(Long splitGroupId, long afterId, FileFormat format, OutputStream outputStream) throws IOException {
+        try (Stream<ExpenseExportRow> rows = expenseRepository.streamExportRowsBySplitGroupId(splitGroupId, afterId)) {
+            long count = write(rows.iterator(), ExpenseExportRow.class, format, outputStream);
+            log.info("Exported {} expenses of group {} after id {}", count, splitGroupId, afterId);
+            return count;
+        }
+    }
+
+    /**
+     * @param splitGroupId the group to export
+     * @param afterId only export payments with a greater id - 0 to export all of them
+     * @param format CSV with a header row, or a JSON array
+     * @param outputStream the stream to write to, which is left open
+     * @return the number of payments written
+     * @throws IOException if the output stream can't be written to
+     */
+    @Transactional
+    public long exportPayments(Long splitGroupId, long afterId, FileFormat format, OutputStream outputStream) throws IOException {
+        try (Stream<PaymentExportRow> rows = paymentRepository.streamExportRowsBySplitGroupId(splitGroupId, afterId)) {
+            long count = write(rows.iterator(), PaymentExportRow.class, format, outputStream);
+            log.info("Exported {} payments of group {} after id {}", count, splitGroupId, afterId);
+            return count;
+        }
+    }
+
+    // Helper method to write each row as it is read, flushing the writer but leaving the output stream open
+    private <T> long write(Iterator<T> rows, Class<T> type, FileFormat format, OutputStream outputStream) throws IOException {
+        ObjectWriter writer = format == FileFormat.JSON
+                ? JSON_MAPPER.writerFor(type)
+                : CSV_MAPPER.writerFor(type).with(CSV_MAPPER.schemaFor(type).withHeader());
+        writer = writer.without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        long count = 0;
+        try (SequenceWriter sequenceWriter = format == FileFormat.JSON
+                ? writer.writeValuesAsArray(outputStream)
+                : writer.writeValues(outputStream)) {
+            while (rows.hasNext()){
+                sequenceWriter.write(rows.next());
+                count++;
+            }
+        }
+        return count;
+    }
+}
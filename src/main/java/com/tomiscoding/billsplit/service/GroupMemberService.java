@@ -22,25 +22,37 @@ public class GroupMemberService {
     private final GroupMemberRepository groupMemberRepository;
     private final ExpenseService expenseService;
     private final PaymentRepository paymentRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final GroupMembershipIndex groupMembershipIndex;
 
     /**
-     *
+     * Saves the group member, opens their row in the balance ledger and evicts the user and group from the
+     * GroupMembershipIndex, which evicts them again and publishes the eviction once the save commits
      * @param groupMember to be persisted
      * @return GroupMember which has been saved
      * @throws ValidationException if group member fields not correctly populated
      * @throws DuplicateGroupMemberException if group member already exists
      */
+    @Transactional
     public GroupMember createGroupMember(GroupMember groupMember) throws ValidationException, DuplicateGroupMemberException {
         validateGroupMember(groupMember);
         if (groupMemberRepository.existsByUserAndSplitGroup(groupMember.getUser(), groupMember.getSplitGroup())){
             throw new DuplicateGroupMemberException(groupMember.getUser().toString() + " is already a member of group: " + groupMember.getSplitGroup());
         }
-        return groupMemberRepository.save(groupMember);
+        GroupMember savedGroupMember = groupMemberRepository.save(groupMember);
+        balanceLedgerService.openBalance(groupMember.getSplitGroup(), groupMember.getUser());
+        groupMembershipIndex.evictUser(groupMember.getUser().getId());
+        groupMembershipIndex.evictGroup(groupMember.getSplitGroup().getId());
+        return savedGroupMember;
     }
 
+    @Transactional
     public GroupMember updateGroupMember(GroupMember groupMember) throws ValidationException {
         validateGroupMember(groupMember);
-        return groupMemberRepository.save(groupMember);
+        GroupMember savedGroupMember = groupMemberRepository.save(groupMember);
+        groupMembershipIndex.evictUser(groupMember.getUser().getId());
+        groupMembershipIndex.evictGroup(groupMember.getSplitGroup().getId());
+        return savedGroupMember;
     }
 
     public GroupMember makeGroupMemberAdmin(GroupMember groupMember) throws ValidationException {
@@ -69,14 +81,17 @@ public class GroupMemberService {
      * which have not yet been split
      * @param groupMember the group member to be deleted
      * @param splitGroupId the group to be removed from
-     * @throws ValidationException from removeGroupMemberAdmin() method call
+     * @throws ValidationException from removeGroupMemberAdmin() or deleteExpensesList() method calls, rolling back the
+     * expenses already deleted
      */
-    @Transactional
+    @Transactional(rollbackOn = Exception.class)
     public void deleteGroupMember(GroupMember groupMember, Long splitGroupId) throws ValidationException {
         List<Expense> expenses = expenseService.getExpenseByUserIdAndSplitGroupId(groupMember.getUser().getId(), splitGroupId);
         assertGroupMemberHasNoOutstandingPayments(groupMember);
         expenseService.deleteExpensesList(expenses);
         removeGroupMemberAdmin(groupMember, splitGroupId);
+        groupMembershipIndex.evictUser(groupMember.getUser().getId());
+        groupMembershipIndex.evictGroup(splitGroupId);
         groupMemberRepository.delete(groupMember);
     }
 
@@ -0,0 +1,182 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.GroupSummary;
+import com.tomiscoding.billsplit.dto.MemberSummary;
+import com.tomiscoding.billsplit.repository.GroupMemberRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * In-process index of group membership - the groups each user belongs to and the members of each group - used to
+ * authorise requests, list a user's groups and populate the search filters without walking group members lazily.
+ * Each index is a Caffeine cache of up to billsplit.membership-index.max-entries entries which expire after
+ * billsplit.membership-index.ttl-ms, and entries are evicted by GroupMemberService and GroupService when membership
+ * changes. With billsplit.membership-index.redis-invalidation enabled evictions are also published on a
+ * Redis channel so that every instance evicts its copy (see MembershipIndexConfig).
+ */
+@Component
+@Log4j2
+public class GroupMembershipIndex {
+
+    public static final String INVALIDATION_CHANNEL = "billsplit:membership-index";
+    private static final String USER_PREFIX = "user:";
+    private static final String GROUP_PREFIX = "group:";
+
+    private final GroupMemberRepository groupMemberRepository;
+    private final ObjectProvider<StringRedisTemplate> redisTemplate;
+    private final Cache<Long, UserGroups> userGroups;
+    private final Cache<Long, List<MemberSummary>> groupMembers;
+
+    @Value("${billsplit.membership-index.redis-invalidation:false}")
+    private boolean redisInvalidation;
+
+    public GroupMembershipIndex(GroupMemberRepository groupMemberRepository,
+                                ObjectProvider<StringRedisTemplate> redisTemplate,
+                                @Value("${billsplit.membership-index.ttl-ms:300000}") long ttlMillis,
+                                @Value("${billsplit.membership-index.max-entries:10000}") long maxEntries) {
+        this.groupMemberRepository = groupMemberRepository;
+        this.redisTemplate = redisTemplate;
+        this.userGroups = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+        this.groupMembers = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * @param userId the user to look up
+     * @return the groups the user is a member of, ordered by name
+     */
+    public List<GroupSummary> getGroupsOfUser(Long userId){
+        return loadUserGroups(userId).groups;
+    }
+
+    /**
+     * @param userId the user to look up
+     * @return the ids of the groups the user is a member of, mapped to whether they are an admin of the group
+     */
+    public Map<Long, Boolean> getMemberships(Long userId){
+        return loadUserGroups(userId).admin;
+    }
+
+    /**
+     * Members of groups which aren't indexed yet are loaded in a single query
+     * @param splitGroupIds the groups to look up
+     * @return the members of each of the groups, keyed by group id
+     */
+    public Map<Long, List<MemberSummary>> getMembersOfGroups(Collection<Long> splitGroupIds){
+        Map<Long, List<MemberSummary>> members = new LinkedHashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (Long splitGroupId : splitGroupIds){
+            List<MemberSummary> cached = groupMembers.getIfPresent(splitGroupId);
+            if (cached == null){
+                missing.add(splitGroupId);
+            } else {
+                members.put(splitGroupId, cached);
+            }
+        }
+
+        if (!missing.isEmpty()){
+            Map<Long, List<MemberSummary>> loaded = groupMemberRepository.getMemberSummariesBySplitGroupIdIn(missing).stream()
+                    .collect(Collectors.groupingBy(MemberSummary::getSplitGroupId));
+            for (Long splitGroupId : missing){
+                List<MemberSummary> groupMemberList = List.copyOf(loaded.getOrDefault(splitGroupId, List.of()));
+                groupMembers.put(splitGroupId, groupMemberList);
+                members.put(splitGroupId, groupMemberList);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Evicts a user's groups on this instance now and on every instance once the current transaction commits, so a
+     * request which reads them in between can't index the uncommitted state
+     * @param userId the user whose memberships have changed
+     */
+    public void evictUser(Long userId){
+        evict(USER_PREFIX + userId);
+    }
+
+    /**
+     * Evicts a group's members on this instance now and on every instance once the current transaction commits
+     * @param splitGroupId the group whose members have changed
+     */
+    public void evictGroup(Long splitGroupId){
+        evict(GROUP_PREFIX + splitGroupId);
+    }
+
+    /**
+     * Applies an eviction published by any instance, including this one
+     * @param message 'user:{id}' or 'group:{id}'
+     */
+    public void onInvalidation(String message){
+        try {
+            if (message.startsWith(USER_PREFIX)){
+                userGroups.invalidate(Long.parseLong(message.substring(USER_PREFIX.length())));
+            } else if (message.startsWith(GROUP_PREFIX)){
+                groupMembers.invalidate(Long.parseLong(message.substring(GROUP_PREFIX.length())));
+            }
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring malformed membership index invalidation: {}", message);
+        }
+    }
+
+    private UserGroups loadUserGroups(Long userId){
+        return userGroups.get(userId, id -> new UserGroups(groupMemberRepository.getGroupSummariesByUserId(id)));
+    }
+
+    private void evict(String message){
+        onInvalidation(message);
+        if (TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    onInvalidation(message);
+                    publish(message);
+                }
+            });
+        } else {
+            publish(message);
+        }
+    }
+
+    private void publish(String message){
+        if (!redisInvalidation){
+            return;
+        }
+        try {
+            redisTemplate.getObject().convertAndSend(INVALIDATION_CHANNEL, message);
+        } catch (RuntimeException e) {
+            // Other instances fall back to the ttl
+            log.warn("Could not publish membership index invalidation {}: {}", message, e.getMessage());
+        }
+    }
+
+    private static class UserGroups {
+        private final List<GroupSummary> groups;
+        private final Map<Long, Boolean> admin;
+
+        private UserGroups(List<GroupSummary> groups) {
+            this.groups = List.copyOf(groups);
+            Map<Long, Boolean> adminByGroup = new HashMap<>();
+            for (GroupSummary groupSummary : groups){
+                adminByGroup.put(groupSummary.getId(), groupSummary.isAdmin());
+            }
+            this.admin = Collections.unmodifiableMap(adminByGroup);
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package com.tomiscoding.billsplit.service;
 
 import com.tomiscoding.billsplit.dto.GroupOverview;
+import com.tomiscoding.billsplit.dto.GroupBalances;
 import com.tomiscoding.billsplit.exceptions.DuplicateGroupMemberException;
 import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
 import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
+import com.tomiscoding.billsplit.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import javax.transaction.Transactional;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Handles CRUD operations for SplitGroup objects, as well as handling joining groups by invite code and
@@ -22,10 +25,18 @@ public class GroupService {
 
     private final GroupRepository groupRepository;
     private final GroupMemberService groupMemberService;
+    private final ExpenseRepository expenseRepository;
+    private final PaymentRepository paymentRepository;
+    private final UserRepository userRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final GroupMembershipIndex groupMembershipIndex;
+    private final InviteCodeAllocator inviteCodeAllocator;
+    private final InviteCodeResolver inviteCodeResolver;
 
     /**
-     * Creates a splitGroup and in the process, generates an invitation code for the group using generateCode() and
-     * creates a group member and sets them as admin. Will revert if group member cannot be added
+     * Creates a splitGroup and in the process, takes an invitation code for the group from the InviteCodeAllocator's
+     * pool of reserved codes and creates a group member and sets them as admin, opening their row in the balance ledger.
+     * Will revert if group member cannot be added
      * @param splitGroup the group to be created
      * @param user the user to be added as group admin
      * @return the saved splitGroup with group member admin
@@ -36,13 +47,7 @@ public class GroupService {
 
         validateGroupProperties(splitGroup);
 
-        while (true){
-            String code = generateCode();
-            if (groupRepository.findByInviteCode(code).isEmpty()){
-                splitGroup.setInviteCode(code);
-                break;
-            }
-        }
+        splitGroup.setInviteCode(inviteCodeAllocator.allocate());
 
         GroupMember groupMember = GroupMember.builder()
                 .user(user)
@@ -52,7 +57,11 @@ public class GroupService {
 
         splitGroup.setGroupMembers(Collections.singletonList(groupMember));
 
-        return groupRepository.save(splitGroup);
+        groupMembershipIndex.evictUser(user.getId());
+        SplitGroup savedGroup = groupRepository.save(splitGroup);
+        balanceLedgerService.openBalance(savedGroup, user);
+        inviteCodeResolver.register(savedGroup.getInviteCode(), savedGroup.getId());
+        return savedGroup;
     }
 
     public SplitGroup getGroupById(Long id) throws SplitGroupNotFoundException {
@@ -62,29 +71,8 @@ public class GroupService {
     }
 
     /**
-     *
-     * @param id the id of the group to load
-     * @return A splitGroup with expenses, members and payments loaded by Hibernate
-     * @throws SplitGroupNotFoundException
-     */
-    public SplitGroup getGroupWithExpensesMembersPaymentsById(Long id) throws SplitGroupNotFoundException {
-        SplitGroup group = groupRepository.getSplitGroupWithExpensesById(id).orElseThrow(
-                () -> new SplitGroupNotFoundException("Could not find group with id: " + id)
-        );
-
-        group = groupRepository.getSplitGroupWithGroupMembersById(id).orElseThrow(
-                () -> new SplitGroupNotFoundException("Could not find group with id: " + id)
-        );
-
-        group = groupRepository.getSplitGroupWithPaymentsById(id).orElseThrow(
-                () -> new SplitGroupNotFoundException("Could not find group with id: " + id)
-        );
-
-        return group;
-    }
-
-    /**
-     * Creates and saves a group member and thus adding a user to a group.
+     * Creates and saves a group member and thus adding a user to a group. The code is resolved by the
+     * InviteCodeResolver, so unknown and repeated codes usually don't query the database
      * @param user the user to be added to a group
      * @param inviteCode the invite code for the group to be joined
      * @throws SplitGroupNotFoundException
@@ -92,9 +80,10 @@ public class GroupService {
      * @throws DuplicateGroupMemberException
      */
     public void addUserToGroupByInviteCode(User user, String inviteCode) throws SplitGroupNotFoundException, ValidationException, DuplicateGroupMemberException {
-        SplitGroup splitGroup = groupRepository.findByInviteCode(inviteCode).orElseThrow(
+        Long splitGroupId = inviteCodeResolver.resolve(inviteCode).orElseThrow(
                 () -> new SplitGroupNotFoundException("Could not find group with invite code: " + inviteCode)
         );
+        SplitGroup splitGroup = groupRepository.getReferenceById(splitGroupId);
 
         GroupMember groupMember = GroupMember.builder()
                 .user(user)
@@ -110,40 +99,36 @@ public class GroupService {
     }
 
     /**
-     * Filters users, payments and expenses and calculates expense and payment balances and totals to be displyed
-     * to the user in a group overview
+     * Calculates expense and payment balances and totals to be displayed to the user in a group overview. Totals are
+     * read from the balance ledger so the cost of the overview does not depend on the size of the group's history -
+     * only the ten most recent expenses and the user's unconfirmed payments are loaded as entities
      * @param splitGroupId the group to generate a GroupOverview for
      * @param userId the user to generate the GroupOverview for
      * @return GroupOverview
      * @throws SplitGroupNotFoundException
      */
     public GroupOverview generateGroupOverview(Long splitGroupId, Long userId) throws SplitGroupNotFoundException {
-        SplitGroup splitGroup = getGroupWithExpensesMembersPaymentsById(splitGroupId);
+        assertGroupExists(splitGroupId);
 
-        List<User> users = splitGroup.getGroupMembers().stream()
-                .map(GroupMember::getUser)
-                .collect(Collectors.toList());
+        List<User> users = userRepository.getByGroupMembers_SplitGroupId(splitGroupId);
 
-        List<Payment> payments = splitGroup.getPayments().stream()
-                .filter(p -> p.getToUser().getId() == userId
-                        || p .getFromUser().getId() == userId)
-                .filter(p -> !p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                .collect(Collectors.toList());
+        GroupBalances groupBalances = balanceLedgerService.getGroupBalances(splitGroupId);
+        MemberBalance userBalance = groupBalances.getMemberBalance(userId);
 
-        List<Expense> expenses = splitGroup.getExpenses().stream()
-                .sorted((e1,e2) -> e2.getExpenseDate().compareTo(e1.getExpenseDate()))
-                .limit(10)
-                .collect(Collectors.toList());
+        List<Payment> payments = paymentRepository.getPaymentsBySplitGroupIdAndUserIdAndPaymentStatusNot(
+                splitGroupId, userId, PaymentStatus.PAID_CONFIRMED);
+
+        List<Expense> expenses = expenseRepository.findTop10BySplitGroupIdOrderByExpenseDateDescIdDesc(splitGroupId);
 
         return GroupOverview.builder()
                 .userId(userId)
-                .currentGroupExpenses(splitGroup.getExpensesNotSplitTotal())
-                .currentUserExpenses(splitGroup.getExpensesNotSplitTotalByUserId(userId))
-                .currentUserBalance(splitGroup.getOutstandingBalanceByUserId(userId))
-                .totalGroupExpenses(splitGroup.getExpensesTotal())
-                .totalUserExpenses(splitGroup.getExpensesTotalByUserId(userId))
-                .confirmedUserPayments(splitGroup.getConfirmedPaymentsTotalForUserId(userId))
-                .notConfirmedUserPayments(splitGroup.getNotConfirmedPaymentsTotalForUserId(userId))
+                .currentGroupExpenses(groupBalances.getUnsplitTotal())
+                .currentUserExpenses(userBalance.getUnsplitSpend())
+                .currentUserBalance(groupBalances.getOutstandingBalance(userId, users, splitGroupId))
+                .totalGroupExpenses(groupBalances.getTotal())
+                .totalUserExpenses(userBalance.getTotalSpend())
+                .confirmedUserPayments(userBalance.getConfirmedBalance())
+                .notConfirmedUserPayments(userBalance.getPendingBalance())
                 .userPayments(payments)
                 .recentExpenses(expenses)
                 .groupMemberUsers(users)
@@ -151,43 +136,33 @@ public class GroupService {
     }
 
     /**
-     * Filters users, payments and expenses and calculates expense and payment balances and totals to be displayed
-     * to the user in a group overview
+     * Calculates expense totals and loads the unconfirmed payments and most recent 'un-split' expenses to be displayed
+     * to an admin in a group overview
      * @param splitGroupId the group to generate a GroupOverview for
      * @return GroupOverview
      * @throws SplitGroupNotFoundException
      */
     public GroupOverview generateAdminGroupOverview(Long splitGroupId) throws SplitGroupNotFoundException {
-        SplitGroup splitGroup = getGroupWithExpensesMembersPaymentsById(splitGroupId);
+        assertGroupExists(splitGroupId);
+
+        GroupBalances groupBalances = balanceLedgerService.getGroupBalances(splitGroupId);
 
-        List<Payment> payments = splitGroup.getPayments().stream()
-                .filter(p -> !p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
-                .collect(Collectors.toList());
+        List<Payment> payments = paymentRepository.getBySplitGroupIdAndPaymentStatusNot(splitGroupId, PaymentStatus.PAID_CONFIRMED);
 
-        List<Expense> expenses = splitGroup.getExpenses().stream()
-                .filter(e -> !e.isSplit())
-                .sorted((e1,e2) -> e2.getExpenseDate().compareTo(e1.getExpenseDate()))
-                .limit(10)
-                .collect(Collectors.toList());
+        List<Expense> expenses = expenseRepository.findTop10BySplitGroupIdAndIsSplitOrderByExpenseDateDescIdDesc(splitGroupId, false);
 
         return GroupOverview.builder()
-                .currentGroupExpenses(splitGroup.getExpensesNotSplitTotal())
-                .totalGroupExpenses(splitGroup.getExpensesTotal())
+                .currentGroupExpenses(groupBalances.getUnsplitTotal())
+                .totalGroupExpenses(groupBalances.getTotal())
                 .userPayments(payments)
                 .recentExpenses(expenses)
                 .build();
     }
 
-    // Helper function to generate a random code to externally identify the group
-    private String generateCode(){
-        String chars = "abcdefghijkmnopqrstuvwxyzABCDEFGHJKLMNPQRSTUVWXYZ1234567890";
-        int ub = chars.length() - 1;
-        Random random = new Random();
-        StringBuilder builder = new StringBuilder(8);
-        for (int i = 0; i < 8; i++){
-            builder.append(chars.charAt(random.nextInt(ub)));
+    private void assertGroupExists(Long splitGroupId) throws SplitGroupNotFoundException {
+        if (!groupRepository.existsById(splitGroupId)){
+            throw new SplitGroupNotFoundException("Could not find group with id: " + splitGroupId);
         }
-        return builder.toString();
     }
 
     private void validateGroupProperties(SplitGroup splitGroup) throws ValidationException {
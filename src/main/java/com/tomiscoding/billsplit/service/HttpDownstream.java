@@ -0,0 +1,96 @@
+package com.tomiscoding.billsplit.service;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import lombok.extern.log4j.Log4j2;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * A service called over HTTP, such as currencyapi or MailerSend. Requests are made with a RestTemplate over the
+ * service's own connection pool and go through a bulkhead, which limits the calls in flight so that a slow service
+ * can't tie up every request thread, and a circuit breaker, which fails calls fast while the service is failing.
+ * Built for each service by RestTemplateConfig.
+ */
+@Log4j2
+public class HttpDownstream implements AutoCloseable {
+
+    private final String name;
+    private final RestTemplate restTemplate;
+    private final CloseableHttpClient httpClient;
+    private final Bulkhead bulkhead;
+    private final CircuitBreaker circuitBreaker;
+    private final ExecutorService asyncExecutor;
+
+    public HttpDownstream(String name, RestTemplate restTemplate, CloseableHttpClient httpClient,
+                          Bulkhead bulkhead, CircuitBreaker circuitBreaker) {
+        this.name = name;
+        this.restTemplate = restTemplate;
+        this.httpClient = httpClient;
+        this.bulkhead = bulkhead;
+        this.circuitBreaker = circuitBreaker;
+        // A call waiting on the service holds a virtual thread rather than a pooled one - the bulkhead bounds them
+        this.asyncExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(name + "-async-", 0).factory());
+    }
+
+    /**
+     * Makes a request through the bulkhead and circuit breaker. Error responses and I/O failures count towards
+     * opening the circuit, except 4xx responses, which are the caller's fault rather than the service's
+     * @param request makes the request with the service's RestTemplate
+     * @return the result of the request
+     * @throws BulkheadFullException if the calls in flight are at the limit for longer than billsplit.http.bulkhead-wait-ms
+     * @throws CallNotPermittedException if the circuit is open
+     */
+    public <T> T call(Function<RestTemplate, T> request){
+        return Bulkhead.decorateSupplier(bulkhead,
+                CircuitBreaker.decorateSupplier(circuitBreaker, () -> request.apply(restTemplate))).get();
+    }
+
+    /**
+     * Runs a call to the service on a virtual thread, so that the caller isn't blocked waiting for the response
+     * @param call the call, which makes its requests through call()
+     * @return completed with the result of the call, or exceptionally with the exception it threw
+     */
+    public <T> CompletableFuture<T> callAsync(AsyncCall<T> call){
+        CompletableFuture<T> future = new CompletableFuture<>();
+        asyncExecutor.execute(() -> {
+            try {
+                future.complete(call.call());
+            } catch (Exception e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    public String getName(){
+        return name;
+    }
+
+    public CircuitBreaker.State getCircuitState(){
+        return circuitBreaker.getState();
+    }
+
+    @Override
+    public void close(){
+        asyncExecutor.shutdown();
+        try {
+            httpClient.close();
+        } catch (IOException e) {
+            log.warn("Could not close the {} connection pool", name, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface AsyncCall<T> {
+        T call() throws Exception;
+    }
+}
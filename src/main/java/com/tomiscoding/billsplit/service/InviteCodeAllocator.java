@@ -0,0 +1,183 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.model.InviteCodeReservation;
+import com.tomiscoding.billsplit.repository.InviteCodeReservationRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out unique invite codes for new groups without touching the database. Codes are generated in the background,
+ * reserved in batches in the invite_code_reservation table - whose primary key keeps them unique across every
+ * instance - and held in a lock-free queue. The pool is filled on startup, topped up every
+ * billsplit.invite-codes.refill-ms and refilled straight away on a background thread when it drops below the low water
+ * mark. Only if the pool runs dry does a caller wait for codes to be reserved.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class InviteCodeAllocator {
+
+    // Omits l, I and O, which are easily mistaken for 1 and 0
+    static final String ALPHABET = "abcdefghijkmnopqrstuvwxyzABCDEFGHJKLMNPQRSTUVWXYZ1234567890";
+    static final int CODE_LENGTH = 8;
+    private static final long REFILL_TIMEOUT_SECONDS = 10;
+
+    // Invite codes grant access to a group, so they must not be predictable
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final InviteCodeReservationRepository inviteCodeReservationRepository;
+    private final Queue<String> pool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger available = new AtomicInteger();
+    private final AtomicBoolean refillRequested = new AtomicBoolean();
+    // A lock rather than synchronized, so that a virtual thread waiting on the reservation queries doesn't pin its
+    // carrier thread
+    private final Lock refillLock = new ReentrantLock();
+    private final ExecutorService refillExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invite-code-refill");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${billsplit.invite-codes.pool-size:1000}")
+    private int poolSize = 1000;
+
+    @Value("${billsplit.invite-codes.low-water:250}")
+    private int lowWater = 250;
+
+    @Value("${billsplit.invite-codes.batch-size:250}")
+    private int batchSize = 250;
+
+    /**
+     * @return an invite code which has not been given to any other group
+     * @throws IllegalStateException if no codes could be reserved
+     */
+    public String allocate(){
+        String code = pool.poll();
+        if (code == null){
+            log.warn("Invite code pool is empty - waiting for codes to be reserved");
+            code = allocateAfterRefill();
+        }
+        if (available.decrementAndGet() < lowWater){
+            requestRefill();
+        }
+        return code;
+    }
+
+    /**
+     * Tops the pool up to billsplit.invite-codes.pool-size. Runs on startup, every billsplit.invite-codes.refill-ms and
+     * whenever the pool drops below the low water mark
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${billsplit.invite-codes.refill-ms:60000}")
+    public void refill(){
+        refillLock.lock();
+        try {
+            int wanted;
+            while ((wanted = Math.min(batchSize, poolSize - available.get())) > 0){
+                List<String> reserved = reserve(wanted);
+                if (reserved.isEmpty()){
+                    return;
+                }
+                // Counted before the codes are offered so that a concurrent allocate() never takes the count below zero
+                available.addAndGet(reserved.size());
+                pool.addAll(reserved);
+            }
+        } finally {
+            refillLock.unlock();
+        }
+    }
+
+    /**
+     * Generates and reserves a batch of codes. Candidates which are already reserved are dropped with one query, and
+     * if another instance reserves one of the rest first the unique key fails the insert and the batch is abandoned
+     * for the next refill to retry
+     * @param count the number of codes to generate
+     * @return the codes reserved, possibly fewer than count
+     */
+    List<String> reserve(int count){
+        Set<String> candidates = new LinkedHashSet<>();
+        while (candidates.size() < count){
+            candidates.add(generateCode());
+        }
+        candidates.removeAll(inviteCodeReservationRepository.getReservedCodesIn(candidates));
+
+        Instant reservedAt = Instant.now();
+        List<InviteCodeReservation> reservations = new ArrayList<>(candidates.size());
+        for (String candidate : candidates){
+            reservations.add(new InviteCodeReservation(candidate, reservedAt));
+        }
+        try {
+            inviteCodeReservationRepository.saveAll(reservations);
+        } catch (DataIntegrityViolationException e) {
+            log.info("Invite codes were reserved concurrently by another instance - retrying on the next refill: {}",
+                    e.getMostSpecificCause().getMessage());
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(candidates);
+    }
+
+    // Helper method to generate a random code over the full alphabet
+    static String generateCode(){
+        char[] code = new char[CODE_LENGTH];
+        for (int i = 0; i < CODE_LENGTH; i++){
+            code[i] = ALPHABET.charAt(RANDOM.nextInt(ALPHABET.length()));
+        }
+        return new String(code);
+    }
+
+    // Helper method to wait for a refill when the pool has run dry. The refill runs on the refill thread so that the
+    // reservations are committed in their own transaction rather than joining the caller's
+    private String allocateAfterRefill(){
+        for (int attempt = 0; attempt < 3; attempt++){
+            try {
+                refillExecutor.submit(this::refill).get(REFILL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException | TimeoutException e) {
+                log.warn("Could not refill the invite code pool", e);
+            }
+            String code = pool.poll();
+            if (code != null){
+                return code;
+            }
+        }
+        throw new IllegalStateException("Could not reserve an invite code");
+    }
+
+    // Helper method to start one background refill, however many callers find the pool low at once
+    private void requestRefill(){
+        if (refillRequested.compareAndSet(false, true)){
+            refillExecutor.execute(() -> {
+                try {
+                    refill();
+                } catch (RuntimeException e) {
+                    log.warn("Could not refill the invite code pool", e);
+                } finally {
+                    refillRequested.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        refillExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,253 @@
+package com.tomiscoding.billsplit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.InviteCodeReservationRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Resolves invite codes to group ids for joining a group, so that repeated and guessed codes rarely reach the
+ * database. Every code ever reserved by an InviteCodeAllocator is added to a Bloom filter - loaded on startup and
+ * topped up every billsplit.invite.bloom-refresh-ms with the codes reserved since - so a code which was never issued
+ * is rejected without a query. Codes which pass the filter are cached, including the occasional false positive which
+ * is cached as not found in a second cache with the shorter billsplit.invite.negative-ttl-ms.
+ * <p>
+ * A code reserved by another instance is only known here after the next refresh. Codes are reserved in the background
+ * well before they are handed out, so in practice a code is known to every instance before it can be shared.
+ */
+@Component
+@Log4j2
+public class InviteCodeResolver {
+
+    private static final int LOAD_PAGE_SIZE = 10_000;
+    // Reservations committed late, or by an instance with a slower clock, are still picked up by the next refresh
+    private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(1);
+
+    private final GroupRepository groupRepository;
+    private final InviteCodeReservationRepository inviteCodeReservationRepository;
+    private final Cache<String, Long> codes;
+    private final Cache<String, Boolean> missingCodes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter rejections;
+
+    private volatile BloomFilter bloomFilter;
+    private volatile Instant refreshedAt;
+
+    @Value("${billsplit.invite.bloom-expected-codes:1000000}")
+    private int expectedCodes = 1_000_000;
+
+    @Value("${billsplit.invite.bloom-false-positive-rate:0.01}")
+    private double falsePositiveRate = 0.01;
+
+    public InviteCodeResolver(GroupRepository groupRepository,
+                              InviteCodeReservationRepository inviteCodeReservationRepository,
+                              ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${billsplit.invite.ttl-ms:3600000}") long ttlMillis,
+                              @Value("${billsplit.invite.negative-ttl-ms:60000}") long negativeTtlMillis,
+                              @Value("${billsplit.invite.max-entries:10000}") long maxEntries) {
+        this.groupRepository = groupRepository;
+        this.inviteCodeReservationRepository = inviteCodeReservationRepository;
+        this.codes = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+        this.missingCodes = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(negativeTtlMillis))
+                .build();
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.hits = lookupCounter(registry, "hit", "Invite codes resolved from the cache");
+        this.misses = lookupCounter(registry, "miss", "Invite codes looked up in the database");
+        this.rejections = lookupCounter(registry, "rejected", "Invite codes rejected by the Bloom filter");
+    }
+
+    /**
+     * @param inviteCode the code entered or followed by a user
+     * @return the id of the group with the invite code, or empty if there is none
+     */
+    public Optional<Long> resolve(String inviteCode){
+        BloomFilter filter = bloomFilter;
+        if (filter != null && !filter.mightContain(inviteCode)){
+            rejections.increment();
+            return Optional.empty();
+        }
+
+        Long cached = codes.getIfPresent(inviteCode);
+        if (cached != null){
+            hits.increment();
+            return Optional.of(cached);
+        }
+        if (missingCodes.getIfPresent(inviteCode) != null){
+            hits.increment();
+            return Optional.empty();
+        }
+
+        misses.increment();
+        Optional<Long> splitGroupId = groupRepository.getIdByInviteCode(inviteCode);
+        if (splitGroupId.isPresent()){
+            codes.put(inviteCode, splitGroupId.get());
+        } else {
+            missingCodes.put(inviteCode, Boolean.TRUE);
+        }
+        return splitGroupId;
+    }
+
+    /**
+     * Records the code of a group created on this instance, replacing any cached 'not found', once the current
+     * transaction commits
+     * @param inviteCode the code of the new group
+     * @param splitGroupId the id of the new group
+     */
+    public void register(String inviteCode, Long splitGroupId){
+        if (TransactionSynchronizationManager.isSynchronizationActive()){
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    add(inviteCode, splitGroupId);
+                }
+            });
+        } else {
+            add(inviteCode, splitGroupId);
+        }
+    }
+
+    /**
+     * Builds the Bloom filter from every reserved code, a page at a time in code order. Until it completes codes are
+     * resolved through the cache alone
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        Instant startedAt = Instant.now();
+        BloomFilter filter = new BloomFilter(expectedCodes, falsePositiveRate);
+        String after = "";
+        int count = 0;
+        List<String> page;
+        do {
+            page = inviteCodeReservationRepository.getCodesAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE));
+            for (String code : page){
+                filter.put(code);
+            }
+            count += page.size();
+            if (!page.isEmpty()){
+                after = page.get(page.size() - 1);
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+
+        if (count > expectedCodes){
+            log.warn("{} invite codes are reserved - more than the {} the Bloom filter is sized for, so more guesses " +
+                    "will reach the database", count, expectedCodes);
+        }
+        refreshedAt = startedAt;
+        bloomFilter = filter;
+        log.info("Loaded {} invite codes into the Bloom filter in {}ms", count, Duration.between(startedAt, Instant.now()).toMillis());
+    }
+
+    /**
+     * Adds the codes reserved by any instance since the last load or refresh to the Bloom filter
+     */
+    @Scheduled(fixedDelayString = "${billsplit.invite.bloom-refresh-ms:10000}")
+    public void refresh(){
+        BloomFilter filter = bloomFilter;
+        Instant since = refreshedAt;
+        if (filter == null || since == null){
+            return;
+        }
+        Instant startedAt = Instant.now();
+        for (String code : inviteCodeReservationRepository.getCodesReservedSince(since.minus(REFRESH_OVERLAP))){
+            filter.put(code);
+        }
+        refreshedAt = startedAt;
+    }
+
+    private void add(String inviteCode, Long splitGroupId){
+        BloomFilter filter = bloomFilter;
+        if (filter != null){
+            filter.put(inviteCode);
+        }
+        codes.put(inviteCode, splitGroupId);
+        missingCodes.invalidate(inviteCode);
+    }
+
+    private static Counter lookupCounter(MeterRegistry registry, String result, String description){
+        return Counter.builder("billsplit.invite.lookups")
+                .tag("result", result)
+                .description(description)
+                .register(registry);
+    }
+
+    /**
+     * A Bloom filter over strings - mightContain() is never false for a string which was put, and is true for a string
+     * which was not with about the false positive rate the filter was sized for. Bits are set with compare-and-set so
+     * that codes can be added while other threads read
+     */
+    static class BloomFilter {
+        private final AtomicLongArray bits;
+        private final long bitCount;
+        private final int hashCount;
+
+        BloomFilter(int expectedInsertions, double falsePositiveRate){
+            long optimalBits = (long) Math.ceil(-Math.max(expectedInsertions, 1) * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            this.bits = new AtomicLongArray((int) Math.min((optimalBits + 63) / 64, Integer.MAX_VALUE));
+            this.bitCount = bits.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / Math.max(expectedInsertions, 1) * Math.log(2)));
+        }
+
+        void put(String value){
+            long hash1 = hash(value, 0x9e3779b97f4a7c15L);
+            long hash2 = hash(value, 0xc2b2ae3d27d4eb4fL) | 1;
+            for (int i = 0; i < hashCount; i++){
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word;
+                do {
+                    word = bits.get(index);
+                } while ((word & mask) == 0 && !bits.compareAndSet(index, word, word | mask));
+            }
+        }
+
+        boolean mightContain(String value){
+            long hash1 = hash(value, 0x9e3779b97f4a7c15L);
+            long hash2 = hash(value, 0xc2b2ae3d27d4eb4fL) | 1;
+            for (int i = 0; i < hashCount; i++){
+                long bit = Math.floorMod(hash1 + i * hash2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        // Helper method for a seeded 64 bit hash of the UTF-8 bytes - FNV-1a followed by the SplitMix64 finaliser
+        private static long hash(String value, long seed){
+            long hash = 0xcbf29ce484222325L ^ seed;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)){
+                hash = (hash ^ (b & 0xff)) * 0x100000001b3L;
+            }
+            hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+            hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+            return hash ^ (hash >>> 31);
+        }
+    }
+}
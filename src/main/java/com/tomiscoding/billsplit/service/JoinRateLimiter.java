@@ -0,0 +1,102 @@
+package com.tomiscoding.billsplit.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket per client for attempts to join a group, so that guessing invite codes is slow. Each client may make
+ * billsplit.invite.rate-limit.capacity attempts in a burst, then billsplit.invite.rate-limit.per-minute attempts a
+ * minute. A bucket is a single AtomicLong holding the time at which it will be full again (the generic cell rate
+ * algorithm), so an attempt is one compare-and-set with no locking. Full buckets hold no state and are dropped when
+ * the number of clients reaches billsplit.invite.rate-limit.max-clients.
+ */
+@Component
+public class JoinRateLimiter {
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+    private final Counter allowed;
+    private final Counter throttled;
+
+    @Value("${billsplit.invite.rate-limit.capacity:10}")
+    private int capacity = 10;
+
+    @Value("${billsplit.invite.rate-limit.per-minute:10}")
+    private int perMinute = 10;
+
+    @Value("${billsplit.invite.rate-limit.max-clients:100000}")
+    private int maxClients = 100_000;
+
+    private LongSupplier nanoTime = System::nanoTime;
+
+    public JoinRateLimiter(ObjectProvider<MeterRegistry> meterRegistry) {
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        this.allowed = attemptCounter(registry, "allowed");
+        this.throttled = attemptCounter(registry, "throttled");
+    }
+
+    /**
+     * @param clientKey identifies the client, e.g. by username or address
+     * @return true if the client may attempt to join now, false if it has run out of tokens
+     */
+    public boolean tryAcquire(String clientKey){
+        long now = nanoTime.getAsLong();
+        long interval = tokenIntervalNanos();
+        long burst = interval * capacity;
+
+        AtomicLong bucket = buckets.get(clientKey);
+        if (bucket == null){
+            if (buckets.size() >= maxClients){
+                buckets.values().removeIf(b -> b.get() - now <= 0);
+            }
+            bucket = buckets.computeIfAbsent(clientKey, k -> new AtomicLong(now));
+        }
+
+        while (true){
+            long fullAt = bucket.get();
+            // An empty bucket is full again capacity intervals later
+            long start = fullAt - now < 0 ? now : fullAt;
+            long next = start + interval;
+            if (next - now > burst){
+                throttled.increment();
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)){
+                allowed.increment();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return the number of seconds until a throttled client has another token
+     */
+    public long getRetryAfterSeconds(){
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(tokenIntervalNanos() + 999_999_999L));
+    }
+
+    // Used by tests to move time forward
+    void setNanoTime(LongSupplier nanoTime){
+        this.nanoTime = nanoTime;
+    }
+
+    private long tokenIntervalNanos(){
+        return TimeUnit.MINUTES.toNanos(1) / Math.max(perMinute, 1);
+    }
+
+    private static Counter attemptCounter(MeterRegistry registry, String result){
+        return Counter.builder("billsplit.invite.join.attempts")
+                .tag("result", result)
+                .description("Attempts to join a group, by whether the client was within its rate limit")
+                .register(registry);
+    }
+}
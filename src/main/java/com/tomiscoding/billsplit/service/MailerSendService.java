@@ -5,32 +5,35 @@ import com.tomiscoding.billsplit.dto.EmailRequest;
 import com.tomiscoding.billsplit.dto.EmailSubstitution;
 import com.tomiscoding.billsplit.dto.EmailVariableGroup;
 import com.tomiscoding.billsplit.exceptions.EmailSendException;
-import com.tomiscoding.billsplit.model.SplitGroup;
-import com.tomiscoding.billsplit.model.User;
-import lombok.RequiredArgsConstructor;
+import com.tomiscoding.billsplit.model.OutboundEmail;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
- * Class to handle api calls to MailerSend using RestTemplate to send emails to users/invited users.
- * Requires api key and url defined in properties and template/sender information for creating the email.
+ * Class to handle api calls to MailerSend through the mailersend HttpDownstream to send emails to users/invited users.
+ * Requires api key and bulk email url defined in properties and template/sender information for creating the email.
+ * Emails are queued by OutboundEmailService rather than sent from the request thread.
  */
 @Service
-@RequiredArgsConstructor
 public class MailerSendService {
 
-    private final RestTemplate restTemplate;
+    private final HttpDownstream mailerSend;
 
     @Value(value = "${mailersend.key}")
     private String apiKey;
 
-    @Value(value = "${mailersend.url}")
-    private String url;
+    @Value(value = "${mailersend.bulkurl}")
+    private String bulkUrl;
 
     @Value(value = "${myapplication.domainurl}")
     private String domainUrl;
@@ -41,34 +44,36 @@ public class MailerSendService {
     @Value(value = "${myapplication.fromemail}")
     private String fromEmail;
 
+    public MailerSendService(@Qualifier("mailerSend") HttpDownstream mailerSend) {
+        this.mailerSend = mailerSend;
+    }
+
     /**
-     * Creates an EmailRequest object including to/from email address and required variables for the email template.
-     * Then calls sendEmail() passing the constructed EmailRequest object as an argument.
-     * @param emailAddress a valid email address for the email to be sent to.
-     * @param splitGroup the group which the user is being invited to
-     * @param user the user which is sending the invite email
-     * @throws EmailSendException thrown from sendEmail()
+     * Creates an EmailRequest object including to/from email address and required variables for the invite email
+     * template, using the substitutions captured when the email was queued.
+     * @param outboundEmail a queued invite email
+     * @return the EmailRequest to be sent to MailerSend
      */
-    public void sendInviteEmail(String emailAddress, SplitGroup splitGroup, User user) throws EmailSendException {
+    public EmailRequest createInviteEmail(OutboundEmail outboundEmail) {
         EmailSubstitution userName = EmailSubstitution.builder()
                 .var("userName")
-                .value(user.getFullName())
+                .value(outboundEmail.getSenderName())
                 .build();
         EmailSubstitution groupName = EmailSubstitution.builder()
                 .var("groupName")
-                .value(splitGroup.getGroupName())
+                .value(outboundEmail.getGroupName())
                 .build();
         EmailSubstitution inviteCode = EmailSubstitution.builder()
                 .var("inviteCode")
-                .value(splitGroup.getInviteCode())
+                .value(outboundEmail.getInviteCode())
                 .build();
         EmailSubstitution inviteLink = EmailSubstitution.builder()
                 .var("inviteLink")
-                .value(domainUrl + "splitGroup/join/" + splitGroup.getInviteCode())
+                .value(domainUrl + "splitGroup/join/" + outboundEmail.getInviteCode())
                 .build();
 
         EmailVariableGroup emailVariableGroup = EmailVariableGroup.builder()
-                .email(emailAddress)
+                .email(outboundEmail.getRecipient())
                 .substitutions(List.of(
                         userName,
                         groupName,
@@ -76,22 +81,21 @@ public class MailerSendService {
                         inviteLink))
                 .build();
 
-        EmailRequest emailRequest = EmailRequest.builder()
+        return EmailRequest.builder()
                 .from(new EmailAddress(fromEmail))
-                .to(Collections.singletonList(new EmailAddress(emailAddress)))
+                .to(Collections.singletonList(new EmailAddress(outboundEmail.getRecipient())))
                 .variables(Collections.singletonList(emailVariableGroup))
                 .templateId(templateId).build();
-
-        sendEmail(emailRequest);
     }
 
     /**
-     * Constructs an HttpEntity with correct headers and the supplied EmailRequest object, then send request and handles
-     * response.
-     * @param emailRequest the request body object to be sent in the request
-     * @throws EmailSendException if a non-2xx status response is received with the response body in the error message
+     * Sends a batch of emails in a single MailerSend bulk email request. MailerSend accepts the batch and sends the
+     * emails asynchronously, so a 2xx response means the batch was queued by MailerSend rather than delivered.
+     * @param emailRequests the emails to send - at most 500
+     * @throws EmailSendException if the request fails or a non-2xx status response is received, with the response
+     * body in the error message, or straight away while MailerSend is failing
      */
-    private void sendEmail(EmailRequest emailRequest) throws EmailSendException {
+    public void sendBulkEmail(List<EmailRequest> emailRequests) throws EmailSendException {
         // Set http request headers with apikey
         HttpHeaders httpHeaders = new HttpHeaders();
         httpHeaders.setBearerAuth(apiKey);
@@ -99,13 +103,22 @@ public class MailerSendService {
         httpHeaders.setContentType(MediaType.APPLICATION_JSON);
         httpHeaders.add("X-Requested-With", "XMLHttpRequest");
 
-        HttpEntity<EmailRequest> httpEntity = new HttpEntity<>(emailRequest,httpHeaders);
-
-        ResponseEntity<String> responseEntity = restTemplate.exchange(
-                url,
-                HttpMethod.POST,
-                httpEntity,
-                String.class);
+        HttpEntity<List<EmailRequest>> httpEntity = new HttpEntity<>(emailRequests, httpHeaders);
+
+        ResponseEntity<String> responseEntity;
+        try {
+            responseEntity = mailerSend.call(restTemplate -> restTemplate.exchange(
+                    bulkUrl,
+                    HttpMethod.POST,
+                    httpEntity,
+                    String.class));
+        } catch (CallNotPermittedException | BulkheadFullException e) {
+            throw new EmailSendException("MailerSend is unavailable: " + e.getMessage());
+        } catch (RestClientResponseException e) {
+            throw new EmailSendException(e.getRawStatusCode() + " " + e.getResponseBodyAsString());
+        } catch (RestClientException e) {
+            throw new EmailSendException(e.getMessage());
+        }
 
         if (!responseEntity.getStatusCode().is2xxSuccessful()){
             String msg = "";
@@ -115,4 +128,16 @@ public class MailerSendService {
             throw new EmailSendException(msg);
         }
     }
+
+    /**
+     * Non-blocking variant of sendBulkEmail(), sending the batch on a mailersend HttpDownstream thread
+     * @param emailRequests the emails to send - at most 500
+     * @return completed once MailerSend accepts the batch, or exceptionally with an EmailSendException
+     */
+    public CompletableFuture<Void> sendBulkEmailAsync(List<EmailRequest> emailRequests){
+        return mailerSend.callAsync(() -> {
+            sendBulkEmail(emailRequests);
+            return null;
+        });
+    }
 }
@@ -0,0 +1,36 @@
+package com.tomiscoding.billsplit.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Sends queued emails in the background. Each run dispatches batches until nothing is due, up to
+ * billsplit.email.max-batches-per-run, with each batch in its own transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Log4j2
+public class OutboundEmailDispatchJob {
+
+    private final OutboundEmailService outboundEmailService;
+
+    @Value("${billsplit.email.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    @Scheduled(fixedDelayString = "${billsplit.email.dispatch-delay-ms:5000}")
+    public void dispatch(){
+        try {
+            for (int batches = 0; batches < maxBatchesPerRun; batches++){
+                if (outboundEmailService.dispatchBatch() == 0){
+                    break;
+                }
+            }
+            outboundEmailService.refreshQueueDepth();
+        } catch (RuntimeException e) {
+            log.error("Could not dispatch outbound emails", e);
+        }
+    }
+}
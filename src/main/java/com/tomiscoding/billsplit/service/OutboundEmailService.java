@@ -0,0 +1,197 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.EmailRequest;
+import com.tomiscoding.billsplit.exceptions.EmailSendException;
+import com.tomiscoding.billsplit.model.EmailStatus;
+import com.tomiscoding.billsplit.model.OutboundEmail;
+import com.tomiscoding.billsplit.model.SplitGroup;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import javax.transaction.Transactional;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent queue of outbound emails. Invites are queued from the request thread and sent in batches by
+ * OutboundEmailDispatchJob, one MailerSend bulk email request per batch. A failed batch is retried with exponential
+ * backoff until billsplit.email.max-attempts, after which its emails are marked FAILED.
+ */
+@Service
+@Log4j2
+public class OutboundEmailService {
+
+    private final OutboundEmailRepository outboundEmailRepository;
+    private final MailerSendService mailerSendService;
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong queueDepth = new AtomicLong();
+
+    @Value("${billsplit.email.batch-size:100}")
+    private int batchSize;
+
+    @Value("${billsplit.email.max-attempts:8}")
+    private int maxAttempts;
+
+    @Value("${billsplit.email.backoff-ms:30000}")
+    private long backoffMillis;
+
+    @Value("${billsplit.email.max-backoff-ms:3600000}")
+    private long maxBackoffMillis;
+
+    @Value("${billsplit.email.dedupe-window-ms:3600000}")
+    private long dedupeWindowMillis;
+
+    public OutboundEmailService(OutboundEmailRepository outboundEmailRepository,
+                                MailerSendService mailerSendService,
+                                ObjectProvider<MeterRegistry> meterRegistry) {
+        this.outboundEmailRepository = outboundEmailRepository;
+        this.mailerSendService = mailerSendService;
+        this.meterRegistry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        Gauge.builder("billsplit.email.queue.depth", queueDepth, AtomicLong::get)
+                .description("Emails waiting to be sent, as of the last dispatch")
+                .register(this.meterRegistry);
+    }
+
+    /**
+     * Queues an invite email to be sent by the dispatcher. A repeat invite of the same address to the same group is
+     * dropped if the previous invite is still pending or was sent within billsplit.email.dedupe-window-ms - a pending
+     * invite is updated with the current invite code and sender instead.
+     * @param emailAddress a valid email address for the email to be sent to
+     * @param splitGroup the group which the user is being invited to
+     * @param user the user which is sending the invite email
+     * @return true if a new email was queued, false if it was a repeat
+     */
+    @Transactional
+    public boolean queueInviteEmail(String emailAddress, SplitGroup splitGroup, User user){
+        Instant now = Instant.now();
+        String dedupeKey = "invite:" + splitGroup.getId() + ":" + emailAddress.trim().toLowerCase(Locale.ROOT);
+
+        Optional<OutboundEmail> previous = outboundEmailRepository.findFirstByDedupeKeyOrderByCreatedAtDesc(dedupeKey);
+        if (previous.isPresent()){
+            OutboundEmail previousEmail = previous.get();
+            if (previousEmail.getStatus() == EmailStatus.PENDING){
+                previousEmail.setSenderName(user.getFullName());
+                previousEmail.setGroupName(splitGroup.getGroupName());
+                previousEmail.setInviteCode(splitGroup.getInviteCode());
+                outboundEmailRepository.save(previousEmail);
+                return false;
+            }
+            if (previousEmail.getStatus() == EmailStatus.SENT
+                    && previousEmail.getSentAt().isAfter(now.minusMillis(dedupeWindowMillis))){
+                log.info("Invite to group {} was sent to {} at {} - not sending again",
+                        splitGroup.getId(), emailAddress, previousEmail.getSentAt());
+                return false;
+            }
+        }
+
+        outboundEmailRepository.save(OutboundEmail.builder()
+                .recipient(emailAddress.trim())
+                .dedupeKey(dedupeKey)
+                .splitGroupId(splitGroup.getId())
+                .senderName(user.getFullName())
+                .groupName(splitGroup.getGroupName())
+                .inviteCode(splitGroup.getInviteCode())
+                .nextAttemptAt(now)
+                .createdAt(now)
+                .build());
+        return true;
+    }
+
+    /**
+     * Claims up to billsplit.email.batch-size emails which are due and sends them in one bulk email request. Rows are
+     * claimed with SKIP LOCKED so that several instances can dispatch at once, and stay locked until the outcome is
+     * committed. Emails in the batch which share a dedupe key are only sent once.
+     * @return the number of emails claimed - zero when nothing is due
+     */
+    @Transactional
+    public int dispatchBatch(){
+        Instant now = Instant.now();
+        List<OutboundEmail> batch = outboundEmailRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                EmailStatus.PENDING, now, PageRequest.of(0, batchSize));
+        if (batch.isEmpty()){
+            return 0;
+        }
+
+        Map<String, OutboundEmail> uniqueEmails = new LinkedHashMap<>();
+        for (OutboundEmail outboundEmail : batch){
+            uniqueEmails.putIfAbsent(outboundEmail.getDedupeKey(), outboundEmail);
+        }
+        List<EmailRequest> emailRequests = uniqueEmails.values().stream()
+                .map(mailerSendService::createInviteEmail)
+                .collect(Collectors.toList());
+
+        String outcome;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            mailerSendService.sendBulkEmail(emailRequests);
+            outcome = "success";
+            Instant sentAt = Instant.now();
+            Timer deliveryDelay = Timer.builder("billsplit.email.delivery.delay")
+                    .description("Time from an email being queued to it being accepted by MailerSend")
+                    .register(meterRegistry);
+            for (OutboundEmail outboundEmail : batch){
+                outboundEmail.setStatus(EmailStatus.SENT);
+                outboundEmail.setAttempts(outboundEmail.getAttempts() + 1);
+                outboundEmail.setSentAt(sentAt);
+                outboundEmail.setLastError(null);
+                deliveryDelay.record(Duration.between(outboundEmail.getCreatedAt(), sentAt));
+            }
+        } catch (EmailSendException e) {
+            outcome = "failure";
+            log.warn("MailerSend bulk email of {} emails failed: {}", emailRequests.size(), e.getMessage());
+            for (OutboundEmail outboundEmail : batch){
+                recordFailure(outboundEmail, e.getMessage(), now);
+            }
+        }
+        sample.stop(Timer.builder("billsplit.email.send")
+                .description("Latency of MailerSend bulk email requests")
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+        Counter.builder("billsplit.email.sent")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment(batch.size());
+
+        outboundEmailRepository.saveAll(batch);
+        return batch.size();
+    }
+
+    /**
+     * Updates the queue depth gauge - counted once per dispatch run rather than on every scrape
+     */
+    public void refreshQueueDepth(){
+        queueDepth.set(outboundEmailRepository.countByStatus(EmailStatus.PENDING));
+    }
+
+    /**
+     * @param attempts the number of failed attempts so far, at least 1
+     * @return the delay before the next attempt - backoff-ms doubled for each earlier failure, capped at max-backoff-ms
+     */
+    long nextBackoffMillis(int attempts){
+        int doublings = Math.min(attempts - 1, 30);
+        return Math.min(backoffMillis << doublings, maxBackoffMillis);
+    }
+
+    // Helper method to reschedule an email after a failed attempt, or give up on it after max-attempts
+    private void recordFailure(OutboundEmail outboundEmail, String error, Instant now){
+        int attempts = outboundEmail.getAttempts() + 1;
+        outboundEmail.setAttempts(attempts);
+        outboundEmail.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), 500)));
+        if (attempts >= maxAttempts){
+            outboundEmail.setStatus(EmailStatus.FAILED);
+            log.error("Giving up on email {} to {} after {} attempts", outboundEmail.getId(), outboundEmail.getRecipient(), attempts);
+        } else {
+            outboundEmail.setNextAttemptAt(now.plusMillis(nextBackoffMillis(attempts)));
+        }
+    }
+}
@@ -1,18 +1,26 @@
 package com.tomiscoding.billsplit.service;
 
-import com.tomiscoding.billsplit.dto.UserBalance;
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
 import com.tomiscoding.billsplit.exceptions.PaymentNotFoundException;
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.GroupRepository;
 import com.tomiscoding.billsplit.repository.PaymentRepository;
+import com.tomiscoding.billsplit.repository.SettlementRunRepository;
 import com.tomiscoding.billsplit.repository.UserRepository;
+import com.tomiscoding.billsplit.settlement.LargestRemainderAllocator;
+import com.tomiscoding.billsplit.settlement.SettlementStrategy;
+import com.tomiscoding.billsplit.settlement.Transfer;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import java.math.BigDecimal;
+import javax.transaction.Transactional;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 /**
  * This service class provides methods to create, retrieve, update and delete payment objects
@@ -24,6 +32,10 @@ public class PaymentService {
     private final PaymentRepository paymentRepository;
     private final ExpenseService expenseService;
     private final UserRepository userRepository;
+    private final BalanceLedgerService balanceLedgerService;
+    private final SettlementStrategy settlementStrategy;
+    private final GroupRepository groupRepository;
+    private final SettlementRunRepository settlementRunRepository;
 
     public Payment getPaymentById(Long id) throws PaymentNotFoundException {
         return paymentRepository.findById(id).orElseThrow(
@@ -35,6 +47,7 @@ public class PaymentService {
         return paymentRepository.saveAll(payments);
     }
 
+    @Transactional
     public Payment updatePaymentStatus(Payment payment, String status) throws ValidationException {
         if (status.equals("PAID_PENDING")){
             return editPaymentAsPaid(payment);
@@ -55,106 +68,121 @@ public class PaymentService {
         return paymentRepository.save(payment);
     }
 
-    // Helper method to update the status of a payment to 'PAID_CONFIRMED'
+    // Helper method to update the status of a payment to 'PAID_CONFIRMED' and move the amount from pending to
+    // confirmed in the balance ledger
     // Validation to ensure only a payment in status 'PAID_PENDING' can be edited
+    @Transactional
     public Payment editPaymentAsConfirmed(Payment payment) throws ValidationException {
         if (!payment.getPaymentStatus().equals(PaymentStatus.PAID_PENDING)){
             throw new ValidationException("This payment (id = " + payment.getId() + ") must be in a status of 'Paid - Pending' to be changed to 'Paid - Confirmed'");
         }
         payment.setPaymentStatus(PaymentStatus.PAID_CONFIRMED);
-        return paymentRepository.save(payment);
+        Payment savedPayment = paymentRepository.save(payment);
+        balanceLedgerService.recordPaymentConfirmed(savedPayment);
+        return savedPayment;
     }
 
     /**
-     * Will calculate payments for the group from 'un-split' expenses using calculatePayments() and then set the
-     * expenses to a 'split' status
-     * @param splitGroup the group for calculating payments - must have expenses and group members loaded
-     * @return a list of the newly created payments in the default 'NOT_PAID' status
+     * Creates a settlement run for the group which claims its 'un-split' expenses, marks them as split and creates the
+     * payments which settle exactly those expenses, all in one transaction. The group's version is incremented on
+     * commit so that two overlapping runs of a group can't both commit, and the idempotency key is unique so that a
+     * repeated request can't create a second run. Either conflict is thrown as a DataAccessException for
+     * SettlementService to retry.
+     * @param splitGroupId the group for calculating payments
+     * @param idempotencyKey identifies the request which started the run
+     * @param user the user who started the run
+     * @return the completed run
+     * @throws SplitGroupNotFoundException if the group does not exist
      */
-    public List<Payment> calculateAndSavePayments(SplitGroup splitGroup){
-        List<Payment> payments = calculatePayments(splitGroup);
-        expenseService.setExpensesAsSplitByGroup(splitGroup);
-        return savePayments(payments);
+    @Transactional
+    public SettlementRun calculateAndSavePayments(Long splitGroupId, String idempotencyKey, User user) throws SplitGroupNotFoundException {
+        SplitGroup splitGroup = groupRepository.findForSettlementById(splitGroupId).orElseThrow(
+                () -> new SplitGroupNotFoundException("Could not find group with id: " + splitGroupId)
+        );
+        // Flushed straight away so that a duplicate request fails on the idempotency key before doing any work
+        SettlementRun settlementRun = settlementRunRepository.saveAndFlush(SettlementRun.builder()
+                .splitGroup(splitGroup)
+                .createdBy(user)
+                .idempotencyKey(idempotencyKey)
+                .createdAt(Instant.now())
+                .build());
+
+        List<UserSettlementTotal> totals = expenseService.setExpensesAsSplitBySettlementRun(settlementRun);
+        List<Payment> payments = calculatePayments(splitGroup, totals);
+        payments.forEach(p -> p.setSettlementRun(settlementRun));
+        List<Payment> savedPayments = savePayments(payments);
+        balanceLedgerService.recordPaymentsCreated(savedPayments);
+
+        settlementRun.setExpenseTotal(MinorUnits.fromMinorUnits(totals.stream()
+                .mapToLong(t -> MinorUnits.toMinorUnits(t.getTotal()))
+                .reduce(0, Math::addExact)));
+        settlementRun.setPaymentCount(savedPayments.size());
+        return settlementRunRepository.save(settlementRun);
     }
 
     /**
-     * Calculates the payments from/to each user based on the value of expenses a user has entered that has not
-     * yet been split. Uses groupService.calculateUserBalances() to retrieve the sum of 'un-split' expenses for each user
-     * and then sorts the list from 'most owed' (-ve balance) to 'owes most' (+ve balance). Then iterates over user balances
-     * to allocate payments from +ve balances to -ve balances so that all balances equal 0 and creates the corresponding payment objects.
-     * @param splitGroup the group for calculating payments - must have expenses and group members loaded
+     * Calculates the payments from/to each user based on the total of the claimed expenses each user has entered.
+     * Uses calculateBalances() to work out the outstanding balance of each user in minor currency units and passes
+     * them to the configured SettlementStrategy, then creates a payment for each transfer it returns.
+     * @param splitGroup the group for calculating payments
+     * @param totals the total of the expenses claimed from each user
      * @return a list of the payments for the group
      */
-    private List<Payment> calculatePayments(SplitGroup splitGroup){
-        // Sort user balances list
-        List<UserBalance> amountsOwed = calculateUserBalances(splitGroup).stream()
-                .sorted()
-                .collect(Collectors.toList());
+    private List<Payment> calculatePayments(SplitGroup splitGroup, List<UserSettlementTotal> totals){
+        List<User> users = userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId());
+        // Seeded by the group id, as the group overview is, so that each member settles the balance they were shown
+        long[] balances = calculateBalances(users, totals, splitGroup.getId());
 
         List<Payment> payments = new ArrayList<>();
-        int i = 0;
-        int j = amountsOwed.size() - 1;
-
-        while (i < j){
-            if (amountsOwed.get(i).getBalanceOwed().abs().compareTo(amountsOwed.get(j).getBalanceOwed().abs()) > 0){
-
-                payments.add(Payment.builder()
-                        .amount(amountsOwed.get(j).getBalanceOwed().abs())
-                        .fromUser(amountsOwed.get(j).getUser())
-                        .toUser(amountsOwed.get(i).getUser())
-                        .splitGroup(splitGroup)
-                        .calculatedDate(LocalDate.now())
-                        .build());
-
-                amountsOwed.get(i).setBalanceOwed(amountsOwed.get(i).getBalanceOwed().add(amountsOwed.get(j).getBalanceOwed()));
-                amountsOwed.get(j).setBalanceOwed(BigDecimal.ZERO);
-                j--;
-            } else if (amountsOwed.get(i).getBalanceOwed().abs().compareTo(amountsOwed.get(j).getBalanceOwed().abs()) < 0) {
-
-                payments.add(Payment.builder()
-                        .amount(amountsOwed.get(i).getBalanceOwed().abs())
-                        .fromUser(amountsOwed.get(j).getUser())
-                        .toUser(amountsOwed.get(i).getUser())
-                        .splitGroup(splitGroup)
-                        .calculatedDate(LocalDate.now())
-                        .build());
-
-                amountsOwed.get(j).setBalanceOwed(amountsOwed.get(j).getBalanceOwed().add(amountsOwed.get(i).getBalanceOwed()));
-                amountsOwed.get(i).setBalanceOwed(BigDecimal.ZERO);
-                i++;
-            } else {
-
-                payments.add(Payment.builder()
-                        .amount(amountsOwed.get(i).getBalanceOwed().abs())
-                        .fromUser(amountsOwed.get(j).getUser())
-                        .toUser(amountsOwed.get(i).getUser())
-                        .splitGroup(splitGroup)
-                        .calculatedDate(LocalDate.now())
-                        .build());
-
-                amountsOwed.get(j).setBalanceOwed(amountsOwed.get(j).getBalanceOwed().add(amountsOwed.get(i).getBalanceOwed()));
-                amountsOwed.get(i).setBalanceOwed(BigDecimal.ZERO);
-                i++;
-                j--;
-            }
+        for (Transfer transfer : settlementStrategy.settle(balances)){
+            payments.add(Payment.builder()
+                    .amount(MinorUnits.fromMinorUnits(transfer.getAmount()))
+                    .fromUser(users.get(transfer.getFromIndex()))
+                    .toUser(users.get(transfer.getToIndex()))
+                    .splitGroup(splitGroup)
+                    .calculatedDate(LocalDate.now())
+                    .build());
         }
         return payments;
     }
 
     /**
-     * Helper method to populate UserBalances list for calculating payments. Sums all 'un-split' expenses for each user
-     * within a group
-     * @param splitGroup for which the user balances should be calculated
-     * @return A list of UserBalances objects containing the amount spent by each user based on their outstanding expenses
+     * Helper method to calculate the balance of each member for calculating payments. Balances come from the totals of
+     * the expenses claimed by the run rather than from the balance ledger, which may already include expenses added
+     * since they were claimed. The total is split with LargestRemainderAllocator so the balances sum exactly to zero
+     * and the settlement leaves no stray minor units
+     * @param users the members of the group
+     * @param totals the total of the expenses claimed from each user
+     * @param seed decides which users get the leftover minor units of an uneven split
+     * @return each user's share of the expenses less what they paid, in minor units and in the order of users -
+     * positive if the user owes the group, negative if they are owed
      */
-    private List<UserBalance> calculateUserBalances(SplitGroup splitGroup){
-        List<User> users = userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId());
+    private long[] calculateBalances(List<User> users, List<UserSettlementTotal> totals, long seed){
+        long[] balances = new long[users.size()];
+        if (balances.length == 0){
+            return balances;
+        }
+        long[] userIds = new long[balances.length];
+        Map<Long, Integer> indexByUserId = new HashMap<>();
+        for (int i = 0; i < balances.length; i++){
+            userIds[i] = users.get(i).getId();
+            indexByUserId.put(userIds[i], i);
+        }
 
-        return users.stream().map(
-                        u -> UserBalance.builder()
-                                .user(u)
-                                .balanceOwed(splitGroup.getOutstandingBalanceByUserId(u.getId()))
-                                .build())
-                .collect(Collectors.toList());
+        long total = 0;
+        for (UserSettlementTotal userTotal : totals){
+            long spend = MinorUnits.toMinorUnits(userTotal.getTotal());
+            total = Math.addExact(total, spend);
+            Integer index = indexByUserId.get(userTotal.getUserId());
+            if (index != null){
+                balances[index] = -spend;
+            }
+        }
+
+        long[] shares = LargestRemainderAllocator.allocateEqually(total, userIds, seed);
+        for (int i = 0; i < balances.length; i++){
+            balances[i] = Math.addExact(balances[i], shares[i]);
+        }
+        return balances;
     }
 }
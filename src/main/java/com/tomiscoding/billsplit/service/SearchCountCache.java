@@ -0,0 +1,42 @@
+package com.tomiscoding.billsplit.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Caches the total number of search results for billsplit.search.count-ttl-ms so that paging through a search
+ * doesn't run a COUNT on every page. The totals shown are therefore approximate
+ */
+@Component
+public class SearchCountCache {
+
+    private final boolean enabled;
+    private final Cache<String, Long> counts;
+
+    public SearchCountCache(@Value("${billsplit.search.count-enabled:true}") boolean enabled,
+                            @Value("${billsplit.search.count-ttl-ms:60000}") long ttlMillis,
+                            @Value("${billsplit.search.count-max-entries:10000}") long maxEntries) {
+        this.enabled = enabled;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .build();
+    }
+
+    /**
+     * @param key identifies the search, including every filter
+     * @param counter runs the count query
+     * @return the cached or freshly counted total, or null if approximate totals are disabled
+     */
+    public Long count(String key, LongSupplier counter){
+        if (!enabled){
+            return null;
+        }
+        return counts.get(key, k -> counter.getAsLong());
+    }
+}
@@ -1,18 +1,16 @@
 package com.tomiscoding.billsplit.service;
 
-import com.tomiscoding.billsplit.dto.ExpenseSearchFilter;
-import com.tomiscoding.billsplit.dto.PaymentSearchFilter;
+import com.tomiscoding.billsplit.dto.*;
 import com.tomiscoding.billsplit.exceptions.SplitGroupListNotFoundException;
-import com.tomiscoding.billsplit.model.GroupMember;
-import com.tomiscoding.billsplit.model.SplitGroup;
-import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
 import lombok.RequiredArgsConstructor;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
-import java.util.List;
-import java.util.Set;
+import java.util.*;
 import java.util.stream.Collectors;
 
 /**
@@ -24,7 +22,12 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SearchService {
 
-    private final GroupService groupService;
+    public static final int PAGE_SIZE = 10;
+
+    private final GroupMembershipIndex groupMembershipIndex;
+    private final ExpenseRepository expenseRepository;
+    private final PaymentRepository paymentRepository;
+    private final SearchCountCache searchCountCache;
 
     /**
      * @param user a User object
@@ -32,32 +35,152 @@ public class SearchService {
      * are members of those groups
      */
     public ExpenseSearchFilter populateExpenseSearchOptions(User user) throws SplitGroupListNotFoundException {
-        List<SplitGroup> splitGroups = groupService.getGroupsByUser(user);
-        if (splitGroups.isEmpty()){
-            throw new SplitGroupListNotFoundException("No groups could be found for user with id: " + user.getId());
-        }
-        Set<User> users = splitGroups.stream()
-                .flatMap(sg -> sg.getGroupMembers().stream()
-                        .map(GroupMember::getUser))
-                .collect(Collectors.toSet());
+        List<SplitGroup> splitGroups = getSearchGroups(user);
         return ExpenseSearchFilter.builder()
                 .splitGroups(splitGroups)
-                .users(users)
+                .users(getSearchUsers(splitGroups))
                 .build();
     }
 
     public PaymentSearchFilter populatePaymentSearchOptions(User user) throws SplitGroupListNotFoundException {
-        List<SplitGroup> splitGroups = groupService.getGroupsByUser(user);
-        if (splitGroups.isEmpty()){
-            throw new SplitGroupListNotFoundException("No groups could be found for user with id: " + user.getId());
-        }
-        Set<User> users = splitGroups.stream()
-                .flatMap(sg -> sg.getGroupMembers().stream()
-                        .map(GroupMember::getUser))
-                .collect(Collectors.toSet());
+        List<SplitGroup> splitGroups = getSearchGroups(user);
         return PaymentSearchFilter.builder()
                 .splitGroups(splitGroups)
-                .users(users)
+                .users(getSearchUsers(splitGroups))
                 .build();
     }
+
+    /**
+     * Fetches a page of a group's expenses, newest first, by keyset rather than OFFSET
+     * @param splitGroupId the group to search
+     * @param userId the user who paid the expenses, or null for all users
+     * @param isSplit whether to search split or unsplit expenses
+     * @param cursor the cursor of the page, from a previous slice - null or empty for the first page
+     * @return the page of expenses with the cursor of the next page and the approximate total
+     * @throws ValidationException if the cursor isn't valid
+     */
+    public KeysetSlice<Expense> searchExpenses(Long splitGroupId, Long userId, Boolean isSplit, String cursor) throws ValidationException {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        PageRequest limit = PageRequest.of(0, PAGE_SIZE + 1);
+        List<Expense> expenses;
+        Long approximateTotal;
+        if (userId == null){
+            expenses = expenseRepository.getExpensesBySplitGroupIdAndIsSplitAfterCursor(
+                    splitGroupId, isSplit, after.getDate(), after.getId(), limit);
+            approximateTotal = searchCountCache.count("expense:" + splitGroupId + ":" + isSplit,
+                    () -> expenseRepository.countBySplitGroupIdAndIsSplit(splitGroupId, isSplit));
+        } else {
+            expenses = expenseRepository.getExpensesByUserIdAndSplitGroupIdAndIsSplitAfterCursor(
+                    userId, splitGroupId, isSplit, after.getDate(), after.getId(), limit);
+            approximateTotal = searchCountCache.count("expense:" + splitGroupId + ":" + isSplit + ":" + userId,
+                    () -> expenseRepository.countByUserIdAndSplitGroupIdAndIsSplit(userId, splitGroupId, isSplit));
+        }
+        KeysetSlice<Expense> slice = KeysetSlice.of(expenses, PAGE_SIZE, e -> new KeysetCursor(e.getExpenseDate(), e.getId()));
+        slice.setApproximateTotal(approximateTotal);
+        return slice;
+    }
+
+    /**
+     * Fetches a page of a group's payments, most recently calculated first, by keyset rather than OFFSET
+     * @param splitGroupId the group to search
+     * @param fromUserId the paying user, or null for all users
+     * @param toUserId the receiving user, or null for all users
+     * @param paymentStatus the status of the payments, or null for all statuses
+     * @param cursor the cursor of the page, from a previous slice - null or empty for the first page
+     * @return the page of payments with the cursor of the next page and the approximate total
+     * @throws ValidationException if the cursor isn't valid
+     */
+    public KeysetSlice<Payment> searchPayments(Long splitGroupId, Long fromUserId, Long toUserId,
+                                               PaymentStatus paymentStatus, String cursor) throws ValidationException {
+        KeysetCursor after = KeysetCursor.decode(cursor);
+        List<Payment> payments = paymentRepository.searchPaymentsAfterCursor(splitGroupId, fromUserId, toUserId,
+                paymentStatus, after.getDate(), after.getId(), PageRequest.of(0, PAGE_SIZE + 1));
+        KeysetSlice<Payment> slice = KeysetSlice.of(payments, PAGE_SIZE, p -> new KeysetCursor(p.getCalculatedDate(), p.getId()));
+        slice.setApproximateTotal(searchCountCache.count(
+                "payment:" + splitGroupId + ":" + fromUserId + ":" + toUserId + ":" + paymentStatus,
+                () -> paymentRepository.countPayments(splitGroupId, fromUserId, toUserId, paymentStatus)));
+        return slice;
+    }
+
+    /**
+     * Works out which page a submitted search form asked for. 'next' moves to the submitted next cursor and
+     * 'previous' back to the last cursor in the trail, while any other submission - such as a filter change - starts
+     * again from the first page. The cursor, trail and page number are set on the filter being rendered
+     * @param submitted the search filter submitted by the form
+     * @param target the search filter to be rendered
+     * @return the cursor of the page to fetch
+     */
+    public String selectPage(KeysetSearch submitted, KeysetSearch target){
+        Deque<String> previousCursors = new ArrayDeque<>();
+        if (submitted.getPreviousCursors() != null && !submitted.getPreviousCursors().isBlank()){
+            previousCursors.addAll(Arrays.asList(submitted.getPreviousCursors().split(",")));
+        }
+
+        String cursor;
+        if ("next".equals(submitted.getDirection()) && submitted.getNextCursor() != null && !submitted.getNextCursor().isBlank()){
+            previousCursors.addLast(submitted.getCursor() == null || submitted.getCursor().isBlank()
+                    ? KeysetCursor.FIRST.encode()
+                    : submitted.getCursor());
+            cursor = submitted.getNextCursor();
+        } else if ("previous".equals(submitted.getDirection()) && !previousCursors.isEmpty()) {
+            cursor = previousCursors.removeLast();
+        } else {
+            previousCursors.clear();
+            cursor = KeysetCursor.FIRST.encode();
+        }
+
+        target.setCursor(cursor);
+        target.setPreviousCursors(String.join(",", previousCursors));
+        target.setCurrentPageNum(previousCursors.size());
+        return cursor;
+    }
+
+    /**
+     * Sets the next cursor and approximate total of a fetched slice on the filter being rendered
+     * @param target the search filter to be rendered
+     * @param slice the fetched page of results
+     */
+    public void applySlice(KeysetSearch target, KeysetSlice<?> slice){
+        target.setNextCursor(slice.getNextCursor());
+        target.setApproximateTotal(slice.getApproximateTotal());
+    }
+
+    /**
+     * Helper method to get the groups of a user from the GroupMembershipIndex. The groups are detached copies holding
+     * only the fields the search views display
+     * @param user a User object
+     * @return the groups which the user belongs to
+     * @throws SplitGroupListNotFoundException if the user doesn't belong to any groups
+     */
+    private List<SplitGroup> getSearchGroups(User user) throws SplitGroupListNotFoundException {
+        List<GroupSummary> groupSummaries = groupMembershipIndex.getGroupsOfUser(user.getId());
+        if (groupSummaries.isEmpty()){
+            throw new SplitGroupListNotFoundException("No groups could be found for user with id: " + user.getId());
+        }
+        return groupSummaries.stream()
+                .map(g -> SplitGroup.builder()
+                        .id(g.getId())
+                        .groupName(g.getGroupName())
+                        .groupDescription(g.getGroupDescription())
+                        .baseCurrency(g.getBaseCurrency())
+                        .build())
+                .collect(Collectors.toList());
+    }
+
+    // Helper method to get the distinct members of the groups from the GroupMembershipIndex as detached users
+    private Set<User> getSearchUsers(List<SplitGroup> splitGroups){
+        List<Long> splitGroupIds = splitGroups.stream()
+                .map(SplitGroup::getId)
+                .collect(Collectors.toList());
+        Map<Long, User> users = new LinkedHashMap<>();
+        for (List<MemberSummary> members : groupMembershipIndex.getMembersOfGroups(splitGroupIds).values()){
+            for (MemberSummary member : members){
+                users.computeIfAbsent(member.getUserId(), id -> User.builder()
+                        .id(id)
+                        .fullName(member.getFullName())
+                        .build());
+            }
+        }
+        return new LinkedHashSet<>(users.values());
+    }
 }
@@ -0,0 +1,74 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.SettlementRun;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.repository.SettlementRunRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+
+/**
+ * Starts settlement runs for a group. Each request carries an idempotency key, so a repeated request (a double click
+ * or a resubmitted form) returns the run it already created. A run which conflicts with a concurrent run of the same
+ * group is rolled back by PaymentService and retried here, when it finds the expenses already claimed by the other run.
+ */
+@Service
+@RequiredArgsConstructor
+@Log4j2
+public class SettlementService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final PaymentService paymentService;
+    private final SettlementRunRepository settlementRunRepository;
+
+    @Value("${billsplit.settlement.max-attempts:3}")
+    private int maxAttempts = 3;
+
+    /**
+     * @param splitGroupId the group to settle
+     * @param idempotencyKey identifies the request - the same key always returns the same run
+     * @param user the user starting the run
+     * @return the run created for the key, either now or by an earlier request
+     * @throws SplitGroupNotFoundException if the group does not exist
+     * @throws ValidationException if the key is missing or too long, or belongs to a run of another group
+     */
+    public SettlementRun settle(Long splitGroupId, String idempotencyKey, User user) throws SplitGroupNotFoundException, ValidationException {
+        if (idempotencyKey == null || idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH){
+            throw new ValidationException("A settlement request must have an idempotency key of up to " + MAX_KEY_LENGTH + " characters");
+        }
+        for (int attempt = 1; ; attempt++){
+            Optional<SettlementRun> existing = settlementRunRepository.findByIdempotencyKey(idempotencyKey);
+            if (existing.isPresent()){
+                return checkGroup(existing.get(), splitGroupId);
+            }
+            try {
+                SettlementRun settlementRun = paymentService.calculateAndSavePayments(splitGroupId, idempotencyKey, user);
+                log.info("Settlement run {} of group {} split {} expenses into {} payments", settlementRun.getId(),
+                        splitGroupId, settlementRun.getExpenseCount(), settlementRun.getPaymentCount());
+                return settlementRun;
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                if (attempt >= maxAttempts){
+                    throw e;
+                }
+                log.info("Settlement run of group {} conflicted with a concurrent run (attempt {}): {}",
+                        splitGroupId, attempt, e.getMostSpecificCause().getMessage());
+            }
+        }
+    }
+
+    // Helper method to stop a key being replayed against a different group
+    private SettlementRun checkGroup(SettlementRun settlementRun, Long splitGroupId) throws ValidationException {
+        if (settlementRun.getSplitGroup().getId() != splitGroupId){
+            throw new ValidationException("This settlement request has already been used for another group");
+        }
+        return settlementRun;
+    }
+}
@@ -0,0 +1,70 @@
+package com.tomiscoding.billsplit.settlement;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * The original settlement algorithm - sorts balances from 'most owed' to 'owes most' and pairs the two ends, so that
+ * every transfer settles at least one member. Produces at most n - 1 transfers in O(n log n).
+ */
+public class GreedySettlementStrategy implements SettlementStrategy {
+
+    @Override
+    public List<Transfer> settle(long[] balances) {
+        long[] remaining = balances.clone();
+        List<Transfer> transfers = new ArrayList<>();
+        settle(remaining, IntStream.range(0, remaining.length).toArray(), transfers);
+        return transfers;
+    }
+
+    /**
+     * Settles a subset of members, updating their remaining balances in place
+     * @param remaining the balance of every member - the balances of the members settled are set to zero
+     * @param indices the members to settle between
+     * @param transfers the list to add the transfers to
+     */
+    static void settle(long[] remaining, int[] indices, List<Transfer> transfers){
+        int[] sorted = IntStream.of(indices)
+                .boxed()
+                .sorted(Comparator.comparingLong(index -> remaining[index]))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        int i = 0;
+        int j = sorted.length - 1;
+
+        while (i < j){
+            int to = sorted[i];
+            int from = sorted[j];
+            long owed = Math.abs(remaining[to]);
+            long owes = Math.abs(remaining[from]);
+
+            if (owed > owes){
+                addTransfer(transfers, from, to, owes);
+                remaining[to] += remaining[from];
+                remaining[from] = 0;
+                j--;
+            } else if (owed < owes) {
+                addTransfer(transfers, from, to, owed);
+                remaining[from] += remaining[to];
+                remaining[to] = 0;
+                i++;
+            } else {
+                addTransfer(transfers, from, to, owed);
+                remaining[from] += remaining[to];
+                remaining[to] = 0;
+                i++;
+                j--;
+            }
+        }
+    }
+
+    // Helper method to skip the zero transfers produced by members who are already settled
+    private static void addTransfer(List<Transfer> transfers, int from, int to, long amount){
+        if (amount != 0){
+            transfers.add(new Transfer(from, to, amount));
+        }
+    }
+}
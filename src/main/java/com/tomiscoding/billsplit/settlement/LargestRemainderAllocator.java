@@ -0,0 +1,141 @@
+package com.tomiscoding.billsplit.settlement;
+
+import java.util.Arrays;
+
+/**
+ * Splits an amount in minor currency units into shares which always sum exactly to the amount, using the largest
+ * remainder method. Each member first gets the whole-unit floor of their exact share, then the units left over (fewer
+ * than the number of members) go one each to the members with the largest remainders. Members with equal remainders,
+ * such as every member of an equal split, are ordered by a hash of their id mixed with a seed - so the same members
+ * always get the extra units for the same seed. The group overview and settlement both seed with the group id, so the
+ * share a member is shown is the share they settle.
+ * <p>
+ * The shares are calculated in a single O(n) pass with long arithmetic, and the members to receive the leftover units
+ * are chosen with a quickselect, which is O(n) on average.
+ */
+public final class LargestRemainderAllocator {
+
+    private LargestRemainderAllocator() {
+    }
+
+    /**
+     * @param total the amount to split, in minor units
+     * @param ids the id of each member, used to order members with equal remainders
+     * @param seed mixed into the ordering of members with equal remainders
+     * @return the share of each member in the order of ids, each within one minor unit of total / ids.length
+     * @throws IllegalArgumentException if there are no members to split a non-zero total between
+     */
+    public static long[] allocateEqually(long total, long[] ids, long seed){
+        long[] weights = new long[ids.length];
+        Arrays.fill(weights, 1);
+        return allocate(total, weights, ids, seed);
+    }
+
+    /**
+     * @param total the amount to split, in minor units
+     * @param weights the non-negative weight of each member - a member's exact share is total * weight / sum of weights
+     * @param ids the id of each member, used to order members with equal remainders
+     * @param seed mixed into the ordering of members with equal remainders
+     * @return the share of each member in the order of weights, which sum to total
+     * @throws IllegalArgumentException if the weights and ids differ in length, a weight is negative, or the weights
+     * sum to zero with a non-zero total
+     * @throws ArithmeticException if total * weight overflows a long
+     */
+    public static long[] allocate(long total, long[] weights, long[] ids, long seed){
+        if (weights.length != ids.length){
+            throw new IllegalArgumentException("There must be one id for each weight");
+        }
+        long weightTotal = 0;
+        for (long weight : weights){
+            if (weight < 0){
+                throw new IllegalArgumentException("Weights must not be negative");
+            }
+            weightTotal = Math.addExact(weightTotal, weight);
+        }
+        long[] shares = new long[weights.length];
+        if (weightTotal == 0){
+            if (total != 0){
+                throw new IllegalArgumentException("Cannot split " + total + " between members with no weight");
+            }
+            return shares;
+        }
+
+        long[] remainders = new long[weights.length];
+        long allocated = 0;
+        for (int i = 0; i < weights.length; i++){
+            long exact = Math.multiplyExact(total, weights[i]);
+            shares[i] = Math.floorDiv(exact, weightTotal);
+            remainders[i] = Math.floorMod(exact, weightTotal);
+            allocated += shares[i];
+        }
+
+        // Each share is short of its exact value by less than one unit, so fewer than n units are left over
+        int leftover = (int) (total - allocated);
+        if (leftover == 0){
+            return shares;
+        }
+        long[] priorities = new long[ids.length];
+        int[] order = new int[ids.length];
+        for (int i = 0; i < ids.length; i++){
+            priorities[i] = mix(ids[i] ^ mix(seed));
+            order[i] = i;
+        }
+        selectFirst(order, leftover, remainders, priorities, ids);
+        for (int i = 0; i < leftover; i++){
+            shares[order[i]]++;
+        }
+        return shares;
+    }
+
+    /**
+     * Quickselect which moves the k members who should receive a leftover unit to the front of order, in no particular
+     * order among themselves
+     */
+    private static void selectFirst(int[] order, int k, long[] remainders, long[] priorities, long[] ids){
+        int low = 0;
+        int high = order.length - 1;
+        while (low < high){
+            int pivot = order[(low + high) >>> 1];
+            int i = low;
+            int j = high;
+            while (i <= j){
+                while (compare(order[i], pivot, remainders, priorities, ids) < 0){
+                    i++;
+                }
+                while (compare(order[j], pivot, remainders, priorities, ids) > 0){
+                    j--;
+                }
+                if (i <= j){
+                    int swap = order[i];
+                    order[i++] = order[j];
+                    order[j--] = swap;
+                }
+            }
+            // order[low..j] come before order[i..high], with anything between them equal to the pivot
+            if (k - 1 <= j){
+                high = j;
+            } else if (k - 1 >= i){
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    // Helper method to order members by largest remainder, then by seeded hash, then by id so that the order is total
+    private static int compare(int a, int b, long[] remainders, long[] priorities, long[] ids){
+        int byRemainder = Long.compare(remainders[b], remainders[a]);
+        if (byRemainder != 0){
+            return byRemainder;
+        }
+        int byPriority = Long.compare(priorities[a], priorities[b]);
+        return byPriority != 0 ? byPriority : Long.compare(ids[a], ids[b]);
+    }
+
+    // Helper method to scramble the bits of a value - the SplitMix64 finaliser
+    private static long mix(long value){
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
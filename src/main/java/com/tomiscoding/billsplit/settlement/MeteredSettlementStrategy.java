@@ -0,0 +1,40 @@
+package com.tomiscoding.billsplit.settlement;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.List;
+
+/**
+ * Records the size of each settlement - members settled and transfers produced - and the time taken, tagged with
+ * the name of the strategy it wraps
+ */
+public class MeteredSettlementStrategy implements SettlementStrategy {
+
+    private final SettlementStrategy delegate;
+    private final Timer timer;
+    private final DistributionSummary members;
+    private final DistributionSummary transfers;
+
+    public MeteredSettlementStrategy(SettlementStrategy delegate, String strategyName, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.timer = Timer.builder("billsplit.settlement")
+                .tag("strategy", strategyName)
+                .register(meterRegistry);
+        this.members = DistributionSummary.builder("billsplit.settlement.members")
+                .tag("strategy", strategyName)
+                .register(meterRegistry);
+        this.transfers = DistributionSummary.builder("billsplit.settlement.transfers")
+                .tag("strategy", strategyName)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<Transfer> settle(long[] balances) {
+        List<Transfer> result = timer.record(() -> delegate.settle(balances));
+        members.record(balances.length);
+        transfers.record(result.size());
+        return result;
+    }
+}
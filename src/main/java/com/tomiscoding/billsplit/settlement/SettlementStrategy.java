@@ -0,0 +1,18 @@
+package com.tomiscoding.billsplit.settlement;
+
+import java.util.List;
+
+/**
+ * Calculates the transfers needed to settle a group. Balances are in minor currency units (e.g. pence) with a
+ * positive balance meaning the member owes the group and a negative balance meaning they are owed. Balances should
+ * sum to zero, which PaymentService guarantees by allocating shares with LargestRemainderAllocator - any residual
+ * from other callers is left with the last member settled.
+ */
+public interface SettlementStrategy {
+
+    /**
+     * @param balances the balance of each member in minor units - not modified
+     * @return the transfers to make, each with a positive amount
+     */
+    List<Transfer> settle(long[] balances);
+}
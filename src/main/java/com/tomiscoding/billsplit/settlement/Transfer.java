@@ -0,0 +1,20 @@
+package com.tomiscoding.billsplit.settlement;
+
+import lombok.*;
+
+/**
+ * A single transfer calculated by a SettlementStrategy - indices refer to the positions in the balances array passed
+ * to the strategy and the amount is in minor currency units
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@ToString
+public class Transfer {
+
+    private int fromIndex;
+    private int toIndex;
+    private long amount;
+}
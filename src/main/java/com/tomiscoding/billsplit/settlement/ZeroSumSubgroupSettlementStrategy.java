@@ -0,0 +1,143 @@
+package com.tomiscoding.billsplit.settlement;
+
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Minimises the number of transfers by splitting the group into as many subgroups as possible whose balances sum to
+ * zero - a subgroup of k members can always be settled with k - 1 transfers, so n members in g subgroups need n - g.
+ * <p>
+ * Members whose balances exactly cancel are paired first using a hash lookup, which is O(n) and usually covers most
+ * of a large group with equal shares. The remaining members are partitioned exactly with a dynamic programme over
+ * subsets when there are at most maxExactMembers of them and it completes within the time budget, otherwise they are
+ * settled with the greedy algorithm.
+ */
+public class ZeroSumSubgroupSettlementStrategy implements SettlementStrategy {
+
+    // Number of subsets evaluated between checks of the deadline
+    private static final int DEADLINE_CHECK_INTERVAL = 1 << 12;
+
+    private final int maxExactMembers;
+    private final long timeBudgetNanos;
+
+    /**
+     * @param maxExactMembers the largest number of unpaired members to partition exactly - memory and time are
+     *                        O(2^n), so this should be no more than around 22
+     * @param timeBudgetMillis the time allowed for the exact partition before falling back to greedy
+     */
+    public ZeroSumSubgroupSettlementStrategy(int maxExactMembers, long timeBudgetMillis) {
+        if (maxExactMembers < 0 || maxExactMembers > 24){
+            throw new IllegalArgumentException("maxExactMembers must be between 0 and 24");
+        }
+        this.maxExactMembers = maxExactMembers;
+        this.timeBudgetNanos = timeBudgetMillis * 1_000_000L;
+    }
+
+    @Override
+    public List<Transfer> settle(long[] balances) {
+        long deadline = System.nanoTime() + timeBudgetNanos;
+        long[] remaining = balances.clone();
+        List<Transfer> transfers = new ArrayList<>();
+
+        settleMatchingPairs(remaining, transfers);
+
+        int[] unsettled = IntStream.range(0, remaining.length)
+                .filter(i -> remaining[i] != 0)
+                .toArray();
+        if (unsettled.length == 0){
+            return transfers;
+        }
+
+        List<int[]> subgroups = unsettled.length <= maxExactMembers
+                ? partitionIntoZeroSumSubgroups(remaining, unsettled, deadline)
+                : null;
+        if (subgroups == null){
+            GreedySettlementStrategy.settle(remaining, unsettled, transfers);
+        } else {
+            for (int[] subgroup : subgroups){
+                GreedySettlementStrategy.settle(remaining, subgroup, transfers);
+            }
+        }
+        return transfers;
+    }
+
+    // Helper method to settle every debtor whose balance exactly cancels a creditor's with a single transfer
+    private void settleMatchingPairs(long[] remaining, List<Transfer> transfers){
+        Map<Long, Deque<Integer>> debtorsByAmount = new HashMap<>();
+        for (int i = 0; i < remaining.length; i++){
+            if (remaining[i] > 0){
+                debtorsByAmount.computeIfAbsent(remaining[i], amount -> new ArrayDeque<>()).add(i);
+            }
+        }
+        for (int i = 0; i < remaining.length; i++){
+            if (remaining[i] < 0){
+                Deque<Integer> debtors = debtorsByAmount.get(-remaining[i]);
+                if (debtors != null && !debtors.isEmpty()){
+                    int debtor = debtors.poll();
+                    transfers.add(new Transfer(debtor, i, remaining[debtor]));
+                    remaining[debtor] = 0;
+                    remaining[i] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the partition of members with the most zero-sum subgroups. maxGroups[mask] holds the most zero-sum
+     * subsets that a chain of single member additions from the empty set to mask can pass through, which is the
+     * most zero-sum subgroups mask can be partitioned into (plus one for a non zero-sum remainder).
+     * @param remaining the balance of every member
+     * @param members the members to partition, all with non-zero balances
+     * @param deadline System.nanoTime() after which the search is abandoned
+     * @return the subgroups as arrays of member indices, or null if the deadline passed
+     */
+    private List<int[]> partitionIntoZeroSumSubgroups(long[] remaining, int[] members, long deadline){
+        int n = members.length;
+        int full = (1 << n) - 1;
+        long[] sums = new long[full + 1];
+        byte[] maxGroups = new byte[full + 1];
+
+        for (int mask = 1; mask <= full; mask++){
+            if ((mask & (DEADLINE_CHECK_INTERVAL - 1)) == 0 && System.nanoTime() > deadline){
+                return null;
+            }
+            int lowest = Integer.numberOfTrailingZeros(mask);
+            sums[mask] = sums[mask & (mask - 1)] + remaining[members[lowest]];
+
+            int best = 0;
+            for (int bits = mask; bits != 0; bits &= bits - 1){
+                best = Math.max(best, maxGroups[mask ^ Integer.lowestOneBit(bits)]);
+            }
+            maxGroups[mask] = (byte) (sums[mask] == 0 ? best + 1 : best);
+        }
+
+        // Walk back from the full set - each zero-sum subset on the chain closes off a subgroup
+        List<int[]> subgroups = new ArrayList<>();
+        int boundary = full;
+        int mask = full;
+        while (mask != 0){
+            int target = maxGroups[mask] - (sums[mask] == 0 ? 1 : 0);
+            int next = mask;
+            for (int bits = mask; bits != 0; bits &= bits - 1){
+                int candidate = mask ^ Integer.lowestOneBit(bits);
+                if (maxGroups[candidate] == target){
+                    next = candidate;
+                    break;
+                }
+            }
+            mask = next;
+            if (sums[mask] == 0){
+                subgroups.add(toMembers(boundary ^ mask, members));
+                boundary = mask;
+            }
+        }
+        return subgroups;
+    }
+
+    private int[] toMembers(int mask, int[] members){
+        return IntStream.range(0, members.length)
+                .filter(i -> (mask & (1 << i)) != 0)
+                .map(i -> members[i])
+                .toArray();
+    }
+}
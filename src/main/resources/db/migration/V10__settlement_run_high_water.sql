@@ -0,0 +1,3 @@
+-- A settlement run claims its group's 'un-split' expenses with one UPDATE bounded by the highest expense id of the
+-- group when the run started, and reads its totals back through the settlement_run_id foreign key index
+ALTER TABLE settlement_run ADD COLUMN high_water_expense_id BIGINT;
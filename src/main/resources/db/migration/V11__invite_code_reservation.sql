@@ -0,0 +1,10 @@
+-- Invite codes are reserved in batches in the background and handed out to new groups from an in-memory pool. The
+-- primary key makes a code unique across every instance, and existing codes are reserved so that none is reused.
+CREATE TABLE invite_code_reservation (
+    code        VARCHAR(255) NOT NULL,
+    reserved_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (code)
+) ENGINE = InnoDB;
+
+INSERT INTO invite_code_reservation (code, reserved_at)
+SELECT invite_code, NOW(6) FROM split_group;
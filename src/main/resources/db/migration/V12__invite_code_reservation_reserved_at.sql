@@ -0,0 +1,2 @@
+-- InviteCodeResolver adds the codes reserved by every instance to its Bloom filter by polling for recent reservations
+CREATE INDEX idx_invite_code_reservation_reserved_at ON invite_code_reservation (reserved_at);
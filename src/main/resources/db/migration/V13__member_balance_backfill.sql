@@ -0,0 +1,32 @@
+-- Fills the balance ledger of every group with expenses or payments from before the ledger existed, the same way
+-- BalanceLedgerService.rebuildGroup() does. From then on the ledger is only changed by deltas, so a group without
+-- ledger rows would otherwise only ever get rows for the users whose balances change after the upgrade.
+-- Ids continue from hibernate_sequence, which is then moved past them.
+INSERT INTO member_balance (id, confirmed_in, confirmed_out, pending_in, pending_out, total_spend, unsplit_spend,
+                            split_group_id, user_id)
+SELECT (SELECT MAX(next_val) FROM hibernate_sequence) + ROW_NUMBER() OVER (ORDER BY t.split_group_id, t.user_id) - 1,
+       SUM(t.confirmed_in), SUM(t.confirmed_out), SUM(t.pending_in), SUM(t.pending_out), SUM(t.total_spend),
+       SUM(t.unsplit_spend), t.split_group_id, t.user_id
+FROM (
+    SELECT split_group_id, user_id,
+           0 AS confirmed_in, 0 AS confirmed_out, 0 AS pending_in, 0 AS pending_out,
+           amount AS total_spend, CASE WHEN is_split = 1 THEN 0 ELSE amount END AS unsplit_spend
+    FROM expense
+    UNION ALL
+    SELECT split_group_id, to_user_id,
+           CASE WHEN payment_status = 'PAID_CONFIRMED' THEN amount ELSE 0 END, 0,
+           CASE WHEN payment_status = 'PAID_CONFIRMED' THEN 0 ELSE amount END, 0,
+           0, 0
+    FROM payment
+    UNION ALL
+    SELECT split_group_id, from_user_id,
+           0, CASE WHEN payment_status = 'PAID_CONFIRMED' THEN amount ELSE 0 END,
+           0, CASE WHEN payment_status = 'PAID_CONFIRMED' THEN 0 ELSE amount END,
+           0, 0
+    FROM payment
+) t
+WHERE NOT EXISTS (SELECT 1 FROM member_balance b WHERE b.split_group_id = t.split_group_id)
+GROUP BY t.split_group_id, t.user_id;
+
+UPDATE hibernate_sequence
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM member_balance));
@@ -0,0 +1,15 @@
+-- Opens an empty balance ledger row for every group member without one. New members get their row when they join,
+-- so BalanceLedgerService only ever updates existing rows and two first deltas for a member can't both insert one.
+-- Ids continue from hibernate_sequence, which is then moved past them.
+INSERT INTO member_balance (id, confirmed_in, confirmed_out, pending_in, pending_out, total_spend, unsplit_spend,
+                            split_group_id, user_id)
+SELECT (SELECT MAX(next_val) FROM hibernate_sequence) + ROW_NUMBER() OVER (ORDER BY m.split_group_id, m.user_id) - 1,
+       0, 0, 0, 0, 0, 0, m.split_group_id, m.user_id
+FROM (
+    SELECT DISTINCT split_group_id, user_id
+    FROM group_member
+) m
+WHERE NOT EXISTS (SELECT 1 FROM member_balance b WHERE b.split_group_id = m.split_group_id AND b.user_id = m.user_id);
+
+UPDATE hibernate_sequence
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 1 FROM member_balance));
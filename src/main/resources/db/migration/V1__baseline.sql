@@ -0,0 +1,83 @@
+-- Baseline schema - the tables as previously generated by spring.jpa.hibernate.ddl-auto=update, before any of the
+-- later migrations. Databases created that way are baselined at version 1 (spring.flyway.baseline-on-migrate) and skip
+-- this script, so nothing may be added here - later tables and indexes each go in a new migration.
+
+CREATE TABLE hibernate_sequence (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO hibernate_sequence VALUES (1);
+
+CREATE TABLE authority (
+    id   BIGINT       NOT NULL,
+    role VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE `user` (
+    id                      BIGINT       NOT NULL,
+    account_non_expired     BIT          NOT NULL,
+    account_non_locked      BIT          NOT NULL,
+    credentials_non_expired BIT          NOT NULL,
+    full_name               VARCHAR(255) NOT NULL,
+    is_enabled              BIT          NOT NULL,
+    password                VARCHAR(255) NOT NULL,
+    username                VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE user_authority (
+    user_id      BIGINT NOT NULL,
+    authority_id BIGINT NOT NULL,
+    CONSTRAINT fk_user_authority_user FOREIGN KEY (user_id) REFERENCES `user` (id),
+    CONSTRAINT fk_user_authority_authority FOREIGN KEY (authority_id) REFERENCES authority (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE split_group (
+    id                BIGINT       NOT NULL,
+    base_currency     VARCHAR(255) NOT NULL,
+    group_description VARCHAR(255),
+    group_name        VARCHAR(255) NOT NULL,
+    invite_code       VARCHAR(255) NOT NULL,
+    PRIMARY KEY (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE group_member (
+    id             BIGINT NOT NULL,
+    is_admin       BIT    NOT NULL,
+    split_group_id BIGINT NOT NULL,
+    user_id        BIGINT NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_group_member_split_group FOREIGN KEY (split_group_id) REFERENCES split_group (id),
+    CONSTRAINT fk_group_member_user FOREIGN KEY (user_id) REFERENCES `user` (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE expense (
+    id                  BIGINT         NOT NULL,
+    amount              DECIMAL(19, 2) NOT NULL,
+    currency            VARCHAR(255)   NOT NULL,
+    currency_amount     DECIMAL(19, 2) NOT NULL,
+    expense_date        DATE           NOT NULL,
+    expense_description VARCHAR(255),
+    is_split            BIT            NOT NULL,
+    name                VARCHAR(255)   NOT NULL,
+    split_group_id      BIGINT         NOT NULL,
+    user_id             BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_expense_split_group FOREIGN KEY (split_group_id) REFERENCES split_group (id),
+    CONSTRAINT fk_expense_user FOREIGN KEY (user_id) REFERENCES `user` (id)
+) ENGINE = InnoDB;
+
+CREATE TABLE payment (
+    id              BIGINT         NOT NULL,
+    amount          DECIMAL(19, 2) NOT NULL,
+    calculated_date DATE           NOT NULL,
+    payment_status  VARCHAR(255)   NOT NULL,
+    from_user_id    BIGINT         NOT NULL,
+    split_group_id  BIGINT         NOT NULL,
+    to_user_id      BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT fk_payment_from_user FOREIGN KEY (from_user_id) REFERENCES `user` (id),
+    CONSTRAINT fk_payment_split_group FOREIGN KEY (split_group_id) REFERENCES split_group (id),
+    CONSTRAINT fk_payment_to_user FOREIGN KEY (to_user_id) REFERENCES `user` (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,16 @@
+-- Balance ledger - a running total per (group, user) of spend and payments, updated with deltas by BalanceLedgerService
+CREATE TABLE member_balance (
+    id             BIGINT         NOT NULL,
+    confirmed_in   DECIMAL(19, 2) NOT NULL,
+    confirmed_out  DECIMAL(19, 2) NOT NULL,
+    pending_in     DECIMAL(19, 2) NOT NULL,
+    pending_out    DECIMAL(19, 2) NOT NULL,
+    total_spend    DECIMAL(19, 2) NOT NULL,
+    unsplit_spend  DECIMAL(19, 2) NOT NULL,
+    split_group_id BIGINT         NOT NULL,
+    user_id        BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_member_balance_group_user UNIQUE (split_group_id, user_id),
+    CONSTRAINT fk_member_balance_split_group FOREIGN KEY (split_group_id) REFERENCES split_group (id),
+    CONSTRAINT fk_member_balance_user FOREIGN KEY (user_id) REFERENCES `user` (id)
+) ENGINE = InnoDB;
@@ -0,0 +1,10 @@
+-- Daily exchange rates, so that expenses are converted at the rate of their date
+CREATE TABLE exchange_rate (
+    id             BIGINT         NOT NULL,
+    base_currency  VARCHAR(3)     NOT NULL,
+    quote_currency VARCHAR(3)     NOT NULL,
+    rate           DECIMAL(19, 8) NOT NULL,
+    rate_date      DATE           NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_exchange_rate_pair_date UNIQUE (base_currency, quote_currency, rate_date)
+) ENGINE = InnoDB;
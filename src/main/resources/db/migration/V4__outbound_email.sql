@@ -0,0 +1,19 @@
+-- Queue of outbound emails, sent in the background as MailerSend bulk requests
+CREATE TABLE outbound_email (
+    id              BIGINT       NOT NULL,
+    attempts        INTEGER      NOT NULL,
+    created_at      DATETIME(6)  NOT NULL,
+    dedupe_key      VARCHAR(255) NOT NULL,
+    group_name      VARCHAR(255),
+    invite_code     VARCHAR(255),
+    last_error      VARCHAR(500),
+    next_attempt_at DATETIME(6)  NOT NULL,
+    recipient       VARCHAR(255) NOT NULL,
+    sender_name     VARCHAR(255),
+    sent_at         DATETIME(6),
+    split_group_id  BIGINT,
+    status          VARCHAR(16)  NOT NULL,
+    PRIMARY KEY (id),
+    INDEX idx_outbound_email_status_next_attempt (status, next_attempt_at),
+    INDEX idx_outbound_email_dedupe_key (dedupe_key)
+) ENGINE = InnoDB;
@@ -0,0 +1,5 @@
+-- Expense and payment search reads a page by seeking to the last row of the previous one in (date, id) order, filtered
+-- by group and, for expenses, by whether they have been split and the user who paid
+CREATE INDEX idx_expense_group_split_date ON expense (split_group_id, is_split, expense_date, id);
+CREATE INDEX idx_expense_group_user_split_date ON expense (split_group_id, user_id, is_split, expense_date, id);
+CREATE INDEX idx_payment_group_date ON payment (split_group_id, calculated_date, id);
@@ -0,0 +1,23 @@
+-- Indexes for the lookups made by the repositories. The unique indexes also enforce what the services already check
+-- before inserting - one account per username, one membership per user and group and one group per invite code.
+
+-- AuthorityRepository.findByRole - one row per role
+ALTER TABLE authority ADD CONSTRAINT uk_authority_role UNIQUE (role);
+
+-- UserRepository.findByUsername - every login
+ALTER TABLE `user` ADD CONSTRAINT uk_user_username UNIQUE (username);
+
+-- GroupRepository.findByInviteCode - joining a group and generating a new invite code
+ALTER TABLE split_group ADD CONSTRAINT uk_split_group_invite_code UNIQUE (invite_code);
+
+-- GroupMemberRepository.existsByUserIdAndSplitGroupIdAndIsAdmin, getByUserIdAndSplitGroupId,
+-- getGroupSummariesByUserId and GroupRepository.getByGroupMembers_User
+ALTER TABLE group_member ADD CONSTRAINT uk_group_member_user_group UNIQUE (user_id, split_group_id);
+
+-- GroupMemberRepository.getGroupMembersBySplitGroupIdAndIsAdmin and getMemberSummariesBySplitGroupIdIn
+CREATE INDEX idx_group_member_group_admin ON group_member (split_group_id, is_admin);
+
+-- PaymentRepository lookups of a group's payments by the paying or receiving user and status - the payments of a
+-- user, the per-user totals and the search filters
+CREATE INDEX idx_payment_group_from_status ON payment (split_group_id, from_user_id, payment_status);
+CREATE INDEX idx_payment_group_to_status ON payment (split_group_id, to_user_id, payment_status);
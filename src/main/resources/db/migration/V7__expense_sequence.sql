@@ -0,0 +1,10 @@
+-- Expense ids come from their own pooled sequence (allocationSize 50) so that imports can insert in batches. MySQL
+-- has no sequences, so Hibernate keeps it in a table. The pooled optimizer hands out the 50 ids below the value it
+-- reads, so the sequence starts a full allocation above every id already issued by hibernate_sequence.
+
+CREATE TABLE expense_seq (
+    next_val BIGINT
+) ENGINE = InnoDB;
+
+INSERT INTO expense_seq
+SELECT GREATEST(COALESCE((SELECT MAX(id) FROM expense), 0), COALESCE((SELECT MAX(next_val) FROM hibernate_sequence), 0)) + 100;
@@ -0,0 +1,3 @@
+-- Group exports read a group's expenses and payments in id order, resuming after the last id exported
+CREATE INDEX idx_expense_group_id ON expense (split_group_id, id);
+CREATE INDEX idx_payment_group_id ON payment (split_group_id, id);
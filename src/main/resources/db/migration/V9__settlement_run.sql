@@ -0,0 +1,30 @@
+-- A settlement run records each calculation of payments for a group. The idempotency key is generated when the
+-- admin page is rendered, so a repeated submission of the same form finds the run it already created.
+CREATE TABLE settlement_run (
+    id                 BIGINT         NOT NULL,
+    created_at         DATETIME(6)    NOT NULL,
+    expense_count      INTEGER        NOT NULL,
+    expense_total      DECIMAL(19, 2) NOT NULL,
+    idempotency_key    VARCHAR(64)    NOT NULL,
+    payment_count      INTEGER        NOT NULL,
+    created_by_user_id BIGINT         NOT NULL,
+    split_group_id     BIGINT         NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uk_settlement_run_idempotency_key UNIQUE (idempotency_key),
+    INDEX idx_settlement_run_group_created (split_group_id, created_at),
+    CONSTRAINT fk_settlement_run_split_group FOREIGN KEY (split_group_id) REFERENCES split_group (id),
+    CONSTRAINT fk_settlement_run_user FOREIGN KEY (created_by_user_id) REFERENCES `user` (id)
+) ENGINE = InnoDB;
+
+-- Optimistic locking: a run increments the version of its group, so concurrent runs of one group can't both commit,
+-- and an expense edited while a run is summing it fails one of the two transactions rather than being split unseen
+ALTER TABLE split_group ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE expense ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- The run which split an expense, or created a payment
+ALTER TABLE expense
+    ADD COLUMN settlement_run_id BIGINT,
+    ADD CONSTRAINT fk_expense_settlement_run FOREIGN KEY (settlement_run_id) REFERENCES settlement_run (id);
+ALTER TABLE payment
+    ADD COLUMN settlement_run_id BIGINT,
+    ADD CONSTRAINT fk_payment_settlement_run FOREIGN KEY (settlement_run_id) REFERENCES settlement_run (id);
@@ -0,0 +1,56 @@
+package com.tomiscoding.billsplit.aspect;
+
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.stereotype.Service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ServiceMetricsAspectTest {
+
+    @Service
+    static class ExampleService {
+        public String succeed(){
+            return "ok";
+        }
+
+        public void fail() throws ValidationException {
+            throw new ValidationException("invalid");
+        }
+    }
+
+    ExampleService proxy(SimpleMeterRegistry meterRegistry){
+        AspectJProxyFactory factory = new AspectJProxyFactory(new ExampleService());
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new ServiceMetricsAspect(meterRegistry));
+        return factory.getProxy();
+    }
+
+    @Test
+    void timesServiceMethods() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExampleService exampleService = proxy(meterRegistry);
+
+        exampleService.succeed();
+        exampleService.succeed();
+
+        assertThat(meterRegistry.get("billsplit.service")
+                .tags("class", "ExampleService", "method", "succeed", "exception", "none")
+                .timer().count()).isEqualTo(2);
+    }
+
+    @Test
+    void tagsExceptions() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ExampleService exampleService = proxy(meterRegistry);
+
+        assertThrows(ValidationException.class, exampleService::fail);
+
+        assertThat(meterRegistry.get("billsplit.service")
+                .tags("method", "fail", "exception", "ValidationException")
+                .timer().count()).isEqualTo(1);
+    }
+}
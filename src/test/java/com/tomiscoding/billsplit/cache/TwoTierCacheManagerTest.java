@@ -0,0 +1,131 @@
+package com.tomiscoding.billsplit.cache;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class TwoTierCacheManagerTest {
+
+    CacheManager remoteCacheManager;
+    StringRedisTemplate redisTemplate;
+    CircuitBreaker redis;
+    TwoTierCacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        remoteCacheManager = new ConcurrentMapCacheManager("currencies");
+        redisTemplate = mock(StringRedisTemplate.class);
+        redis = CircuitBreaker.of("redis-cache", CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .build());
+        cacheManager = manager(remoteCacheManager);
+    }
+
+    TwoTierCacheManager manager(CacheManager remote){
+        return new TwoTierCacheManager(remote, name -> Caffeine.newBuilder().maximumSize(100),
+                redisTemplate, redis, true, List.of("currencies"));
+    }
+
+    @Test
+    void cachesAreCreatedUpFront() {
+        assertThat(cacheManager.getCacheNames()).containsExactly("currencies");
+        assertThat(cacheManager.getCache("currencies")).isInstanceOf(TwoTierCache.class);
+    }
+
+    @Test
+    void remoteValuesAreCopiedToTheLocalTier() {
+        remoteCacheManager.getCache("currencies").put("EURGBP", new BigDecimal("0.8734"));
+        Cache cache = cacheManager.getCache("currencies");
+
+        assertThat(cache.get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+        remoteCacheManager.getCache("currencies").clear();
+        assertThat(cache.get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+    }
+
+    @Test
+    void putWritesBothTiersAndPublishesAnEviction() {
+        Cache cache = cacheManager.getCache("currencies");
+        cache.put("EURGBP", new BigDecimal("0.8734"));
+        cache.put("EURUSD", null);
+
+        assertThat(remoteCacheManager.getCache("currencies").get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+        assertThat(cache.get("EURUSD")).isNotNull();
+        assertThat(cache.get("EURUSD").get()).isNull();
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(2)).convertAndSend(eq(TwoTierCacheManager.INVALIDATION_CHANNEL), message.capture());
+        assertThat(message.getAllValues().get(0)).endsWith("|evict|currencies|EURGBP");
+    }
+
+    @Test
+    void invalidationsFromOtherInstancesEvictTheLocalTier() {
+        Cache cache = cacheManager.getCache("currencies");
+        cache.put("EURGBP", new BigDecimal("0.8734"));
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(TwoTierCacheManager.INVALIDATION_CHANNEL), message.capture());
+
+        // This instance's own message is ignored
+        cacheManager.onInvalidation(message.getValue());
+        remoteCacheManager.getCache("currencies").put("EURGBP", new BigDecimal("0.9000"));
+        assertThat(cache.get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+
+        cacheManager.onInvalidation("other|evict|currencies|EURGBP");
+        assertThat(cache.get("EURGBP").get()).isEqualTo(new BigDecimal("0.9000"));
+
+        cacheManager.onInvalidation("other|clear|currencies|");
+        remoteCacheManager.getCache("currencies").clear();
+        assertThat(cache.get("EURGBP")).isNull();
+        cacheManager.onInvalidation("malformed");
+    }
+
+    @Test
+    void getLoadsOnceAcrossBothTiers() {
+        Cache cache = cacheManager.getCache("currencies");
+
+        assertThat(cache.get("EURGBP", () -> new BigDecimal("0.8734"))).isEqualTo(new BigDecimal("0.8734"));
+        assertThat(cache.get("EURGBP", () -> new BigDecimal("0.9000"))).isEqualTo(new BigDecimal("0.8734"));
+        assertThat(remoteCacheManager.getCache("currencies").get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+    }
+
+    @Test
+    void unreachableRedisFallsBackToTheLocalTier() {
+        Cache remote = mock(Cache.class);
+        when(remote.get(any())).thenThrow(new RedisConnectionFailureException("Connection refused"));
+        doThrow(new RedisConnectionFailureException("Connection refused")).when(remote).put(any(), any());
+        CacheManager failingRemote = mock(CacheManager.class);
+        when(failingRemote.getCache("currencies")).thenReturn(remote);
+        doThrow(new RedisConnectionFailureException("Connection refused")).when(redisTemplate).convertAndSend(any(), any());
+        Cache cache = manager(failingRemote).getCache("currencies");
+
+        cache.put("EURGBP", new BigDecimal("0.8734"));
+        assertThat(cache.get("EURGBP").get()).isEqualTo(new BigDecimal("0.8734"));
+        assertThat(cache.get("EURUSD")).isNull();
+        assertThat(cache.get("EURUSD")).isNull();
+
+        // Once the circuit opens Redis isn't called at all
+        assertThat(redis.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        clearInvocations(remote, redisTemplate);
+        cache.put("USDGBP", new BigDecimal("0.7629"));
+        assertThat(cache.get("USDGBP").get()).isEqualTo(new BigDecimal("0.7629"));
+        assertThat(cache.get("GBPUSD")).isNull();
+        verifyNoInteractions(remote, redisTemplate);
+    }
+}
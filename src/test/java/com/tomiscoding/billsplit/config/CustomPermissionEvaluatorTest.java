@@ -0,0 +1,146 @@
+package com.tomiscoding.billsplit.config;
+
+import com.tomiscoding.billsplit.dto.ExpenseOwnership;
+import com.tomiscoding.billsplit.dto.GroupSummary;
+import com.tomiscoding.billsplit.dto.PaymentParties;
+import com.tomiscoding.billsplit.model.User;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import com.tomiscoding.billsplit.repository.GroupMemberRepository;
+import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
+import com.tomiscoding.billsplit.service.GroupMembershipIndex;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {CustomPermissionEvaluator.class, GroupMembershipIndex.class})
+class CustomPermissionEvaluatorTest {
+
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    GroupRepository groupRepository;
+
+    @MockBean
+    PaymentRepository paymentRepository;
+
+    @MockBean
+    GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    CustomPermissionEvaluator customPermissionEvaluator;
+
+    @Autowired
+    GroupMembershipIndex groupMembershipIndex;
+
+    Authentication authentication(long userId){
+        User user = User.builder()
+                .id(userId)
+                .username("user" + userId)
+                .build();
+        return new UsernamePasswordAuthenticationToken(user, null);
+    }
+
+    GroupSummary membership(long splitGroupId, boolean admin){
+        return GroupSummary.builder()
+                .id(splitGroupId)
+                .groupName("group" + splitGroupId)
+                .admin(admin)
+                .build();
+    }
+
+    @BeforeEach
+    void setUp(){
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        groupMembershipIndex.evictUser(1L);
+        groupMembershipIndex.evictUser(2L);
+        when(groupMemberRepository.getGroupSummariesByUserId(1L)).thenReturn(List.of(
+                membership(10L, true),
+                membership(11L, false)));
+        when(groupMemberRepository.getGroupSummariesByUserId(2L)).thenReturn(List.of(
+                membership(11L, true)));
+    }
+
+    @AfterEach
+    void tearDown(){
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    void splitGroupMembership() {
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 10L, "splitGroup", "admin")).isTrue();
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 11L, "splitGroup", "user")).isTrue();
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 11L, "splitGroup", "admin")).isFalse();
+        verify(groupMemberRepository, times(1)).getGroupSummariesByUserId(1L);
+    }
+
+    @Test
+    void splitGroupNotMember() {
+        when(groupRepository.existsById(12L)).thenReturn(true);
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 12L, "splitGroup", "user")).isFalse();
+        // A missing group is left for the controller to report as not found
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 13L, "splitGroup", "user")).isTrue();
+    }
+
+    @Test
+    void decisionsMemoisedPerRequest() {
+        when(expenseRepository.getOwnershipById(5L)).thenReturn(Optional.of(new ExpenseOwnership(11L, 1L)));
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 5L, "expense", "all")).isTrue();
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 5L, "expense", "all")).isTrue();
+        verify(expenseRepository, times(1)).getOwnershipById(5L);
+
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+        customPermissionEvaluator.hasPermission(authentication(1L), 5L, "expense", "all");
+        verify(expenseRepository, times(2)).getOwnershipById(5L);
+    }
+
+    @Test
+    void expenseOwnerOrGroupAdmin() {
+        when(expenseRepository.getOwnershipById(5L)).thenReturn(Optional.of(new ExpenseOwnership(11L, 1L)));
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 5L, "expense", "all")).isTrue();
+        when(groupMemberRepository.getGroupSummariesByUserId(3L)).thenReturn(List.of(membership(11L, false)));
+        assertThat(customPermissionEvaluator.hasPermission(authentication(3L), 5L, "expense", "all")).isFalse();
+    }
+
+    @Test
+    void paymentParties() {
+        when(paymentRepository.getPartiesById(7L)).thenReturn(Optional.of(new PaymentParties(11L, 1L, 2L)));
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 7L, "payment", "PAID_PENDING")).isTrue();
+        assertThat(customPermissionEvaluator.hasPermission(authentication(1L), 7L, "payment", "PAID_CONFIRMED")).isFalse();
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 7L, "payment", "PAID_CONFIRMED")).isTrue();
+    }
+
+    @Test
+    void membershipChangeEvictsCache() {
+        when(groupRepository.existsById(10L)).thenReturn(true);
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 10L, "splitGroup", "user")).isFalse();
+
+        when(groupMemberRepository.getGroupSummariesByUserId(2L)).thenReturn(List.of(
+                membership(10L, false),
+                membership(11L, true)));
+        groupMembershipIndex.evictUser(2L);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(new MockHttpServletRequest()));
+
+        assertThat(customPermissionEvaluator.hasPermission(authentication(2L), 10L, "splitGroup", "user")).isTrue();
+    }
+}
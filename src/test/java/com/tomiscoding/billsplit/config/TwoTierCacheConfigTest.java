@@ -0,0 +1,21 @@
+package com.tomiscoding.billsplit.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwoTierCacheConfigTest {
+
+    RedisSerializer<Object> serializer = TwoTierCacheConfig.valueSerializer();
+
+    @Test
+    void ratesRoundTripExactlyAsCompactJson() {
+        byte[] json = serializer.serialize(new BigDecimal("1.14490"));
+
+        assertThat(serializer.deserialize(json)).isEqualTo(new BigDecimal("1.14490"));
+        assertThat(json.length).isLessThan(64);
+    }
+}
@@ -0,0 +1,45 @@
+package com.tomiscoding.billsplit.config;
+
+import org.apache.coyote.ProtocolHandler;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.core.task.AsyncTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(classes = VirtualThreadConfig.class, properties = "billsplit.execution-mode=virtual")
+class VirtualThreadConfigTest {
+
+    @Autowired
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer;
+
+    @Autowired
+    AsyncTaskExecutor applicationTaskExecutor;
+
+    @Test
+    void requestsAreHandledOnVirtualThreads() throws Exception {
+        ProtocolHandler protocolHandler = mock(ProtocolHandler.class);
+        virtualThreadProtocolHandlerCustomizer.customize(protocolHandler);
+
+        ArgumentCaptor<Executor> executor = ArgumentCaptor.forClass(Executor.class);
+        verify(protocolHandler).setExecutor(executor.capture());
+        CompletableFuture<Boolean> isVirtual = new CompletableFuture<>();
+        executor.getValue().execute(() -> isVirtual.complete(Thread.currentThread().isVirtual()));
+
+        assertThat(isVirtual.get(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void asyncTasksRunOnVirtualThreads() throws Exception {
+        assertThat(applicationTaskExecutor.submit(() -> Thread.currentThread().isVirtual()).get(5, TimeUnit.SECONDS)).isTrue();
+    }
+}
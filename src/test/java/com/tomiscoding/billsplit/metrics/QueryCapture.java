@@ -0,0 +1,42 @@
+package com.tomiscoding.billsplit.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Test helper to count the SQL statements a block of code executes. Requires the QueryMetricsRecorder and
+ * QueryMetricsConfig to be in the test context so that the DataSource is proxied, e.g.
+ * <pre>
+ * QueryCapture.assertStatementCount(queryMetricsRecorder, 4, () -> groupService.generateGroupOverview(1L, 1L));
+ * </pre>
+ */
+public final class QueryCapture {
+
+    private QueryCapture() {
+    }
+
+    @FunctionalInterface
+    public interface Action {
+        void run() throws Exception;
+    }
+
+    /**
+     * @return the statements, rows and time recorded while the action ran
+     */
+    public static QueryStats capture(QueryMetricsRecorder queryMetricsRecorder, Action action) throws Exception {
+        QueryStats queryStats = queryMetricsRecorder.open("test");
+        try {
+            action.run();
+        } finally {
+            queryMetricsRecorder.close(queryStats);
+        }
+        return queryStats;
+    }
+
+    public static QueryStats assertStatementCount(QueryMetricsRecorder queryMetricsRecorder, int expected, Action action) throws Exception {
+        QueryStats queryStats = capture(queryMetricsRecorder, action);
+        assertThat(queryStats.getStatements())
+                .as("SQL statements executed - %s", queryStats)
+                .isEqualTo(expected);
+        return queryStats;
+    }
+}
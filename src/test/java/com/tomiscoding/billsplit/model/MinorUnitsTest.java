@@ -0,0 +1,124 @@
+package com.tomiscoding.billsplit.model;
+
+import com.tomiscoding.billsplit.dto.GroupBalances;
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.*;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Property tests checking that arithmetic on minor units gives the same results as the BigDecimal arithmetic it
+ * replaced - HALF_EVEN rounding to 2 decimal places
+ */
+class MinorUnitsTest {
+
+    @Property
+    void toMinorUnitsRoundsLikeSetScale(@ForAll @BigRange(min = "-1000000000000", max = "1000000000000") @Scale(5) BigDecimal amount) {
+        BigDecimal expected = amount.setScale(2, RoundingMode.HALF_EVEN);
+
+        assertThat(MinorUnits.toMinorUnits(amount)).isEqualTo(expected.unscaledValue().longValueExact());
+        assertThat(MinorUnits.fromMinorUnits(MinorUnits.toMinorUnits(amount))).isEqualTo(expected);
+    }
+
+    @Property
+    void divideHalfEvenMatchesBigDecimalDivide(@ForAll @LongRange(min = -100_000_000_000L, max = 100_000_000_000L) long minorUnits,
+                                               @ForAll @IntRange(min = 1, max = 1000) int parts) {
+        BigDecimal expected = MinorUnits.fromMinorUnits(minorUnits).divide(BigDecimal.valueOf(parts), 2, RoundingMode.HALF_EVEN);
+
+        assertThat(MinorUnits.fromMinorUnits(MinorUnits.divideHalfEven(minorUnits, parts))).isEqualTo(expected);
+    }
+
+    @Property
+    void sumOfMinorUnitsMatchesBigDecimalSum(@ForAll @Size(max = 200) List<@BigRange(min = "-10000000", max = "10000000") @Scale(2) BigDecimal> amounts) {
+        BigDecimal expected = amounts.stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        long total = amounts.stream()
+                .mapToLong(MinorUnits::toMinorUnits)
+                .reduce(0, Math::addExact);
+
+        assertThat(MinorUnits.fromMinorUnits(total)).isEqualByComparingTo(expected);
+    }
+
+    @Property
+    void groupTotalsMatchBigDecimalTotals(@ForAll @Size(max = 100) List<@BigRange(min = "0", max = "100000") @Scale(2) BigDecimal> amounts,
+                                          @ForAll @Size(max = 100) List<@IntRange(min = 0, max = 4) Integer> owners,
+                                          @ForAll @Size(max = 100) List<Boolean> splits,
+                                          @ForAll @IntRange(min = 1, max = 5) int memberCount) {
+        List<User> users = new ArrayList<>();
+        List<GroupMember> groupMembers = new ArrayList<>();
+        for (int i = 0; i < memberCount; i++){
+            User user = User.builder().id((long) i).build();
+            users.add(user);
+            groupMembers.add(GroupMember.builder().user(user).build());
+        }
+        int expenseCount = Math.min(amounts.size(), Math.min(owners.size(), splits.size()));
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < expenseCount; i++){
+            expenses.add(Expense.builder()
+                    .amount(amounts.get(i))
+                    .user(users.get(owners.get(i) % memberCount))
+                    .isSplit(splits.get(i))
+                    .build());
+        }
+        SplitGroup splitGroup = SplitGroup.builder().groupMembers(groupMembers).expenses(expenses).build();
+        GroupBalances groupBalances = new GroupBalances(users.stream()
+                .map(u -> MemberBalance.builder()
+                        .user(u)
+                        .unsplitSpend(bigDecimalTotal(expenses, u, true))
+                        .totalSpend(bigDecimalTotal(expenses, u, false))
+                        .build())
+                .collect(Collectors.toList()));
+
+        BigDecimal notSplitTotal = expenses.stream()
+                .filter(e -> !e.isSplit())
+                .map(Expense::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        assertThat(splitGroup.getExpensesNotSplitTotal()).isEqualByComparingTo(notSplitTotal);
+        assertThat(groupBalances.getUnsplitTotal()).isEqualByComparingTo(notSplitTotal);
+        assertThat(groupBalances.getTotal()).isEqualByComparingTo(splitGroup.getExpensesTotal());
+
+        BigDecimal splitGroupBalance = BigDecimal.ZERO;
+        BigDecimal ledgerBalance = BigDecimal.ZERO;
+        for (User user : users){
+            // The BigDecimal calculation which SplitGroup and GroupBalances used before, which can be a minor unit out
+            // either way now that the shares are allocated to sum to the total
+            BigDecimal halfEven = notSplitTotal.divide(BigDecimal.valueOf(memberCount), 2, RoundingMode.HALF_EVEN)
+                    .subtract(bigDecimalTotal(expenses, user, true));
+            BigDecimal outstanding = splitGroup.getOutstandingBalanceByUserId(user.getId());
+
+            assertThat(outstanding.subtract(halfEven).abs()).isLessThanOrEqualTo(new BigDecimal("0.01"));
+            assertThat(groupBalances.getOutstandingBalance(user.getId(), users, splitGroup.getId())).isEqualByComparingTo(outstanding);
+            splitGroupBalance = splitGroupBalance.add(outstanding);
+            ledgerBalance = ledgerBalance.add(groupBalances.getOutstandingBalance(user.getId(), users, splitGroup.getId()));
+        }
+        assertThat(splitGroupBalance).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(ledgerBalance).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
+    @Example
+    void divisorMustBePositive() {
+        assertThrows(ArithmeticException.class, () -> MinorUnits.divideHalfEven(100, 0));
+        assertThrows(ArithmeticException.class, () -> MinorUnits.divideHalfEven(100, -1));
+    }
+
+    @Example
+    void overflowIsAnError() {
+        assertThrows(ArithmeticException.class, () -> MinorUnits.toMinorUnits(BigDecimal.valueOf(Long.MAX_VALUE)));
+    }
+
+    private BigDecimal bigDecimalTotal(List<Expense> expenses, User user, boolean notSplitOnly){
+        return expenses.stream()
+                .filter(e -> e.getUser() == user && !(notSplitOnly && e.isSplit()))
+                .map(Expense::getAmount)
+                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+}
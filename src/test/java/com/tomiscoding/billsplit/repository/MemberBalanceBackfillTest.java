@@ -0,0 +1,129 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.dto.GroupBalances;
+import com.tomiscoding.billsplit.model.MemberBalance;
+import com.tomiscoding.billsplit.service.BalanceLedgerService;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Migrates a MySQL schema to the version before the balance ledger backfill, adds a group with expenses and payments
+ * but no ledger rows - as a group created before the ledger existed - then runs the remaining migrations and checks
+ * that the group's ledger matches its history. Skipped when Docker isn't available.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(BalanceLedgerService.class)
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=true",
+        "spring.flyway.target=12",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQL8Dialect"})
+class MemberBalanceBackfillTest {
+
+    @Container
+    static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0.33");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry){
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    // Helper method to insert the rows of a group as the application stored them before the ledger existed
+    void insertHistory(){
+        jdbcTemplate.update("UPDATE hibernate_sequence SET next_val = 100");
+        for (long userId = 1; userId <= 3; userId++){
+            jdbcTemplate.update("INSERT INTO `user` (id, account_non_expired, account_non_locked, credentials_non_expired, "
+                    + "full_name, is_enabled, password, username) VALUES (?, 1, 1, 1, ?, 1, 'password', ?)",
+                    userId, "User " + userId, "user" + userId);
+        }
+        jdbcTemplate.update("INSERT INTO split_group (id, base_currency, group_name, invite_code) VALUES (10, 'GBP', 'Trip', 'invite')");
+        jdbcTemplate.update("INSERT INTO split_group (id, base_currency, group_name, invite_code) VALUES (11, 'GBP', 'Empty', 'empty')");
+        for (long userId = 1; userId <= 3; userId++){
+            jdbcTemplate.update("INSERT INTO group_member (id, is_admin, split_group_id, user_id) VALUES (?, ?, 10, ?)",
+                    20 + userId, userId == 1, userId);
+        }
+
+        insertExpense(30, 1, "12.50", false);
+        insertExpense(31, 1, "7.25", true);
+        insertExpense(32, 2, "20.00", false);
+        insertExpense(33, 3, "3.33", true);
+
+        insertPayment(40, 3, 1, "4.00", "PAID_CONFIRMED");
+        insertPayment(41, 2, 1, "1.50", "PAID_PENDING");
+        insertPayment(42, 3, 2, "2.75", "NOT_PAID");
+    }
+
+    void insertExpense(long id, long userId, String amount, boolean isSplit){
+        jdbcTemplate.update("INSERT INTO expense (id, amount, currency, currency_amount, expense_date, is_split, name, "
+                + "split_group_id, user_id) VALUES (?, ?, 'GBP', ?, '2023-04-20', ?, ?, 10, ?)",
+                id, new BigDecimal(amount), new BigDecimal(amount), isSplit, "Expense " + id, userId);
+    }
+
+    void insertPayment(long id, long fromUserId, long toUserId, String amount, String paymentStatus){
+        jdbcTemplate.update("INSERT INTO payment (id, amount, calculated_date, payment_status, from_user_id, split_group_id, "
+                + "to_user_id) VALUES (?, ?, '2023-04-21', ?, ?, 10, ?)",
+                id, new BigDecimal(amount), paymentStatus, fromUserId, toUserId);
+    }
+
+    @Test
+    void groupsWithHistoryAreAddedToTheLedger() {
+        insertHistory();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM member_balance", Integer.class)).isZero();
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        GroupBalances groupBalances = balanceLedgerService.getGroupBalances(10L);
+        assertThat(groupBalances.getMemberBalances()).hasSize(3);
+        assertThat(groupBalances.getTotal()).isEqualByComparingTo("43.08");
+        assertThat(groupBalances.getUnsplitTotal()).isEqualByComparingTo("32.50");
+
+        MemberBalance user1 = groupBalances.getMemberBalance(1L);
+        assertThat(user1.getTotalSpend()).isEqualByComparingTo("19.75");
+        assertThat(user1.getUnsplitSpend()).isEqualByComparingTo("12.50");
+        assertThat(user1.getConfirmedIn()).isEqualByComparingTo("4.00");
+        assertThat(user1.getPendingIn()).isEqualByComparingTo("1.50");
+        MemberBalance user3 = groupBalances.getMemberBalance(3L);
+        assertThat(user3.getConfirmedOut()).isEqualByComparingTo("4.00");
+        assertThat(user3.getPendingOut()).isEqualByComparingTo("2.75");
+
+        // The same rows as a rebuild from the expenses and payments, and a group with no history has none
+        assertThat(balanceLedgerService.rebuildGroup(10L)).isEmpty();
+        assertThat(balanceLedgerService.getGroupBalances(11L).getMemberBalances()).isEmpty();
+
+        // New rows take ids after the backfilled ones
+        assertThat(jdbcTemplate.queryForObject("SELECT next_val FROM hibernate_sequence", Long.class))
+                .isGreaterThan(jdbcTemplate.queryForObject("SELECT MAX(id) FROM member_balance", Long.class));
+    }
+}
@@ -0,0 +1,420 @@
+package com.tomiscoding.billsplit.repository;
+
+import com.tomiscoding.billsplit.dto.ExpenseExportRow;
+import com.tomiscoding.billsplit.dto.PaymentExportRow;
+import com.tomiscoding.billsplit.model.*;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.MySQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the repository queries against a MySQL schema built by the Flyway migrations, then runs EXPLAIN on every
+ * SELECT they executed and fails if any of them scans a whole table. Skipped when Docker isn't available.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers(disabledWithoutDocker = true)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(QueryPlanTest.CaptureConfig.class)
+@TestPropertySource(properties = {
+        "spring.flyway.enabled=true",
+        "spring.jpa.hibernate.ddl-auto=validate",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.MySQL8Dialect"})
+class QueryPlanTest {
+
+    // Full scans of tables this small - the authority roles - are cheaper than an index lookup and are allowed
+    private static final long FULL_SCAN_ROW_LIMIT = 10;
+
+    @Container
+    static final MySQLContainer<?> mysql = new MySQLContainer<>("mysql:8.0.33");
+
+    @DynamicPropertySource
+    static void datasource(DynamicPropertyRegistry registry){
+        registry.add("spring.datasource.url", mysql::getJdbcUrl);
+        registry.add("spring.datasource.username", mysql::getUsername);
+        registry.add("spring.datasource.password", mysql::getPassword);
+    }
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AuthorityRepository authorityRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    GroupRepository groupRepository;
+
+    @Autowired
+    GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    ExpenseRepository expenseRepository;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    MemberBalanceRepository memberBalanceRepository;
+
+    @Autowired
+    ExchangeRateRepository exchangeRateRepository;
+
+    @Autowired
+    OutboundEmailRepository outboundEmailRepository;
+
+    @Autowired
+    SettlementRunRepository settlementRunRepository;
+
+    @Autowired
+    InviteCodeReservationRepository inviteCodeReservationRepository;
+
+    private User user;
+    private SplitGroup splitGroup;
+
+    @BeforeAll
+    void seed(){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Authority userAuthority = authorityRepository.save(new Authority(Authority.Roles.ROLE_USER));
+            authorityRepository.save(new Authority(Authority.Roles.ROLE_ADMIN));
+
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < 80; i++){
+                users.add(User.builder()
+                        .username("user" + i)
+                        .fullName("User " + i)
+                        .password("password")
+                        .authorities(new ArrayList<>(List.of(userAuthority)))
+                        .build());
+            }
+            users = userRepository.saveAll(users);
+
+            List<GroupMember> groupMembers = new ArrayList<>();
+            List<Expense> expenses = new ArrayList<>();
+            List<Payment> payments = new ArrayList<>();
+            List<MemberBalance> memberBalances = new ArrayList<>();
+            for (int g = 0; g < 20; g++){
+                SplitGroup group = groupRepository.save(SplitGroup.builder()
+                        .groupName("Group " + g)
+                        .inviteCode("invite" + g)
+                        .baseCurrency(Currency.GBP)
+                        .build());
+                List<User> members = users.subList(g * 4, g * 4 + 4);
+                for (int m = 0; m < members.size(); m++){
+                    groupMembers.add(GroupMember.builder().user(members.get(m)).splitGroup(group).isAdmin(m == 0).build());
+                    memberBalances.add(MemberBalance.builder().user(members.get(m)).splitGroup(group).build());
+                }
+                for (int e = 0; e < 30; e++){
+                    expenses.add(Expense.builder()
+                            .name("Expense " + e)
+                            .amount(BigDecimal.TEN)
+                            .currencyAmount(BigDecimal.TEN)
+                            .currency(Currency.GBP)
+                            .expenseDate(LocalDate.of(2023, 1, 1).plusDays(e))
+                            .isSplit(e % 3 == 0)
+                            .user(members.get(e % members.size()))
+                            .splitGroup(group)
+                            .build());
+                }
+                for (int p = 0; p < 10; p++){
+                    payments.add(Payment.builder()
+                            .fromUser(members.get(p % members.size()))
+                            .toUser(members.get((p + 1) % members.size()))
+                            .splitGroup(group)
+                            .amount(BigDecimal.ONE)
+                            .paymentStatus(PaymentStatus.values()[p % PaymentStatus.values().length])
+                            .calculatedDate(LocalDate.of(2023, 2, 1).plusDays(p))
+                            .build());
+                }
+                if (g == 0){
+                    splitGroup = group;
+                    user = members.get(1);
+                }
+            }
+            groupMemberRepository.saveAll(groupMembers);
+            expenseRepository.saveAll(expenses);
+            paymentRepository.saveAll(payments);
+            memberBalanceRepository.saveAll(memberBalances);
+
+            List<ExchangeRate> exchangeRates = new ArrayList<>();
+            for (int d = 0; d < 60; d++){
+                exchangeRates.add(rate(Currency.GBP, Currency.USD, d));
+                exchangeRates.add(rate(Currency.GBP, Currency.EUR, d));
+                exchangeRates.add(rate(Currency.USD, Currency.EUR, d));
+            }
+            exchangeRateRepository.saveAll(exchangeRates);
+
+            List<OutboundEmail> outboundEmails = new ArrayList<>();
+            for (int i = 0; i < 100; i++){
+                outboundEmails.add(OutboundEmail.builder()
+                        .recipient("user" + i + "@example.com")
+                        .dedupeKey("invite:1:user" + i + "@example.com")
+                        .status(i % 10 == 0 ? EmailStatus.PENDING : EmailStatus.SENT)
+                        .nextAttemptAt(Instant.parse("2023-01-01T00:00:00Z").plusSeconds(i))
+                        .createdAt(Instant.parse("2023-01-01T00:00:00Z"))
+                        .build());
+            }
+            outboundEmailRepository.saveAll(outboundEmails);
+        });
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("ANALYZE TABLE authority, `user`, user_authority, split_group, group_member, expense, " +
+                "payment, member_balance, exchange_rate, outbound_email");
+    }
+
+    // Helper method to create an exchange rate the given number of days into 2023
+    private ExchangeRate rate(Currency baseCurrency, Currency quoteCurrency, int day){
+        return ExchangeRate.builder()
+                .baseCurrency(baseCurrency)
+                .quoteCurrency(quoteCurrency)
+                .rateDate(LocalDate.of(2023, 1, 1).plusDays(day))
+                .rate(BigDecimal.ONE)
+                .build();
+    }
+
+    @Test
+    void expenseRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            expenseRepository.getExpenseByUser(user);
+            expenseRepository.getExpenseBySplitGroup(splitGroup);
+            expenseRepository.getExpensesByUserIdAndSplitGroupId(user.getId(), splitGroup.getId());
+            expenseRepository.getExpensesBySplitGroupIdAndIsSplitAfterCursor(splitGroup.getId(), false,
+                    LocalDate.of(2023, 1, 20), 1000L, PageRequest.of(0, 11));
+            expenseRepository.getExpensesByUserIdAndSplitGroupIdAndIsSplitAfterCursor(user.getId(), splitGroup.getId(), false,
+                    LocalDate.of(2023, 1, 20), 1000L, PageRequest.of(0, 11));
+            expenseRepository.getMaxIdBySplitGroupId(splitGroup.getId());
+            expenseRepository.getUserTotalsBySettlementRunId(1L);
+            expenseRepository.getIdsBySettlementRunId(1L);
+            expenseRepository.countBySplitGroupIdAndIsSplit(splitGroup.getId(), false);
+            expenseRepository.countByUserIdAndSplitGroupIdAndIsSplit(user.getId(), splitGroup.getId(), false);
+            expenseRepository.findTop10BySplitGroupIdOrderByExpenseDateDescIdDesc(splitGroup.getId());
+            expenseRepository.findTop10BySplitGroupIdAndIsSplitOrderByExpenseDateDescIdDesc(splitGroup.getId(), false);
+            expenseRepository.getUserExpenseTotalsBySplitGroupId(splitGroup.getId());
+            expenseRepository.getOwnershipById(1L);
+            try (Stream<ExpenseExportRow> rows = expenseRepository.streamExportRowsBySplitGroupId(splitGroup.getId(), 0L)) {
+                rows.count();
+            }
+        });
+    }
+
+    @Test
+    void paymentRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            paymentRepository.getPaymentsBySplitGroupAndUser(splitGroup, user);
+            paymentRepository.getBySplitGroupId(splitGroup.getId());
+            paymentRepository.getPaymentsBySplitGroupIdAndUserIdAndPaymentStatusNot(splitGroup.getId(), user.getId(), PaymentStatus.PAID_CONFIRMED);
+            paymentRepository.getBySplitGroupIdAndPaymentStatusNot(splitGroup.getId(), PaymentStatus.PAID_CONFIRMED);
+            paymentRepository.getPaymentTotalsToUserBySplitGroupId(splitGroup.getId());
+            paymentRepository.getPaymentTotalsFromUserBySplitGroupId(splitGroup.getId());
+            paymentRepository.getPartiesById(1L);
+            paymentRepository.searchPaymentsAfterCursor(splitGroup.getId(), user.getId(), null, PaymentStatus.NOT_PAID,
+                    LocalDate.of(2023, 2, 10), 1000L, PageRequest.of(0, 11));
+            paymentRepository.countPayments(splitGroup.getId(), null, user.getId(), null);
+            try (Stream<PaymentExportRow> rows = paymentRepository.streamExportRowsBySplitGroupId(splitGroup.getId(), 0L)) {
+                rows.count();
+            }
+        });
+    }
+
+    @Test
+    void groupMemberRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            groupMemberRepository.existsByUserAndSplitGroup(user, splitGroup);
+            groupMemberRepository.existsByUserIdAndSplitGroupIdAndIsAdmin(user.getId(), splitGroup.getId(), true);
+            groupMemberRepository.getByUserIdAndSplitGroupId(user.getId(), splitGroup.getId());
+            groupMemberRepository.getGroupMembersBySplitGroupIdAndIsAdmin(splitGroup.getId(), true);
+            groupMemberRepository.getGroupSummariesByUserId(user.getId());
+            groupMemberRepository.getMemberSummariesBySplitGroupIdIn(List.of(splitGroup.getId()));
+        });
+    }
+
+    @Test
+    void groupRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            groupRepository.findByInviteCode("invite3");
+            groupRepository.getIdByInviteCode("invite3");
+            groupRepository.getByGroupMembers_User(user);
+            groupRepository.getSplitGroupWithGroupMembersByGroupMembers_User(user);
+            groupRepository.getSplitGroupWithExpensesById(splitGroup.getId());
+            groupRepository.getSplitGroupWithGroupMembersById(splitGroup.getId());
+            groupRepository.getSplitGroupWithPaymentsById(splitGroup.getId());
+            groupRepository.findForSettlementById(splitGroup.getId());
+            inviteCodeReservationRepository.getReservedCodesIn(List.of("invite3", "abcdEFG1"));
+            inviteCodeReservationRepository.getCodesAfter("invite3", PageRequest.of(0, 100));
+            inviteCodeReservationRepository.getCodesReservedSince(Instant.now().minusSeconds(60));
+        });
+    }
+
+    @Test
+    void userRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            authorityRepository.findByRole(Authority.Roles.ROLE_USER);
+            userRepository.findByUsername("user7");
+            userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId());
+        });
+    }
+
+    @Test
+    void ledgerRateAndEmailRepositoryQueriesUseIndexes() throws Exception {
+        assertNoFullScans(() -> {
+            memberBalanceRepository.findBySplitGroupIdAndUserId(splitGroup.getId(), user.getId());
+            memberBalanceRepository.findBySplitGroupId(splitGroup.getId());
+            memberBalanceRepository.getBySplitGroupId(splitGroup.getId());
+            exchangeRateRepository.findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc(
+                    Currency.GBP, Currency.USD, LocalDate.of(2023, 2, 1));
+            exchangeRateRepository.getRateDatesByBaseCurrencyBetween(Currency.GBP, LocalDate.of(2023, 1, 10), LocalDate.of(2023, 1, 20));
+            outboundEmailRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(
+                    EmailStatus.PENDING, Instant.parse("2023-01-02T00:00:00Z"), PageRequest.of(0, 10));
+            outboundEmailRepository.findFirstByDedupeKeyOrderByCreatedAtDesc("invite:1:user5@example.com");
+            outboundEmailRepository.countByStatus(EmailStatus.PENDING);
+            settlementRunRepository.findByIdempotencyKey("settlement-key");
+        });
+    }
+
+    /**
+     * Runs the repository calls in a transaction, capturing the SELECTs they execute, then runs EXPLAIN on each with
+     * the same parameters
+     * @param repositoryCalls the repository methods to check
+     */
+    private void assertNoFullScans(Runnable repositoryCalls) throws Exception {
+        CaptureConfig.LISTENER.start();
+        try {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> repositoryCalls.run());
+        } finally {
+            CaptureConfig.LISTENER.stop();
+        }
+
+        List<CapturedQuery> queries = CaptureConfig.LISTENER.queries;
+        assertThat(queries).as("SELECT statements executed").isNotEmpty();
+        try (Connection connection = dataSource.getConnection()) {
+            for (CapturedQuery query : queries){
+                try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + query.sql)) {
+                    for (ParameterSetOperation parameter : query.parameters){
+                        parameter.getMethod().invoke(explain, parameter.getArgs());
+                    }
+                    try (ResultSet plan = explain.executeQuery()) {
+                        while (plan.next()){
+                            boolean fullScan = "ALL".equals(plan.getString("type"));
+                            assertThat(fullScan && plan.getLong("rows") > FULL_SCAN_ROW_LIMIT)
+                                    .as("full scan of %s (%s rows) in: %s", plan.getString("table"), plan.getLong("rows"), query.sql)
+                                    .isFalse();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static class CapturedQuery {
+        private final String sql;
+        private final List<ParameterSetOperation> parameters;
+
+        private CapturedQuery(String sql, List<ParameterSetOperation> parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+    }
+
+    /**
+     * Records the SELECT statements executed while capturing is started
+     */
+    private static class CapturingListener implements QueryExecutionListener {
+        private final List<CapturedQuery> queries = new CopyOnWriteArrayList<>();
+        private volatile boolean capturing;
+
+        void start(){
+            queries.clear();
+            capturing = true;
+        }
+
+        void stop(){
+            capturing = false;
+        }
+
+        @Override
+        public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        }
+
+        @Override
+        public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+            if (!capturing){
+                return;
+            }
+            for (QueryInfo queryInfo : queryInfoList){
+                if (queryInfo.getQuery().trim().toLowerCase().startsWith("select")){
+                    List<ParameterSetOperation> parameters = queryInfo.getParametersList().isEmpty()
+                            ? List.of()
+                            : new ArrayList<>(queryInfo.getParametersList().get(0));
+                    queries.add(new CapturedQuery(queryInfo.getQuery(), parameters));
+                }
+            }
+        }
+    }
+
+    @TestConfiguration
+    static class CaptureConfig {
+
+        static final CapturingListener LISTENER = new CapturingListener();
+
+        @Bean
+        static BeanPostProcessor capturingDataSourcePostProcessor(){
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)){
+                        return ProxyDataSourceBuilder.create((DataSource) bean)
+                                .name(beanName)
+                                .listener(LISTENER)
+                                .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Adds the first expenses of newly joined members from parallel transactions against a real database, and checks
+ * that every one is committed and applied to the member's ledger row exactly once
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({GroupMemberService.class, ExpenseService.class, BalanceLedgerService.class, GroupMembershipIndex.class})
+class BalanceLedgerServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+
+    @MockBean
+    CurrencyConversionService currencyConversionService;
+
+    @Autowired
+    GroupMemberService groupMemberService;
+
+    @Autowired
+    ExpenseService expenseService;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    GroupRepository groupRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    MemberBalanceRepository memberBalanceRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // Helper method to commit a group and join 2 users to it, neither of whom has any expenses or payments yet
+    List<GroupMember> joinGroup(String name) throws Exception {
+        SplitGroup splitGroup = new TransactionTemplate(transactionManager).execute(status -> groupRepository.save(SplitGroup.builder()
+                .groupName(name)
+                .inviteCode(name)
+                .baseCurrency(Currency.GBP)
+                .build()));
+
+        List<GroupMember> groupMembers = new ArrayList<>();
+        for (int i = 0; i < 2; i++){
+            User user = userRepository.save(User.builder()
+                    .username(name + "user" + i)
+                    .fullName(name + "user" + i)
+                    .password("password")
+                    .build());
+            groupMembers.add(groupMemberService.createGroupMember(GroupMember.builder()
+                    .user(user)
+                    .splitGroup(splitGroup)
+                    .build()));
+        }
+        return groupMembers;
+    }
+
+    Expense expense(GroupMember groupMember, int num){
+        BigDecimal amount = BigDecimal.valueOf(1000 + num * 37L, 2);
+        return Expense.builder()
+                .name("expense" + num)
+                .amount(amount)
+                .currencyAmount(amount)
+                .currency(Currency.GBP)
+                .expenseDate(LocalDate.of(2023, 4, 20))
+                .user(groupMember.getUser())
+                .splitGroup(groupMember.getSplitGroup())
+                .build();
+    }
+
+    @Test
+    void parallelFirstExpensesOfNewMembersAreAllApplied() throws Exception {
+        List<GroupMember> groupMembers = joinGroup("first");
+        Long splitGroupId = groupMembers.get(0).getSplitGroup().getId();
+        assertThat(memberBalanceRepository.getBySplitGroupId(splitGroupId)).hasSize(2);
+
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++){
+            expenses.add(expense(groupMembers.get(i % 2), i));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (Expense expense : expenses){
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return expenseService.saveImportedExpenses(List.of(expense));
+                }));
+            }
+            start.countDown();
+            for (Future<Integer> future : futures){
+                assertThat(future.get(30, TimeUnit.SECONDS)).isEqualTo(1);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        List<MemberBalance> balances = memberBalanceRepository.getBySplitGroupId(splitGroupId);
+        assertThat(balances).hasSize(2);
+        assertThat(balances.stream().map(MemberBalance::getTotalSpend).reduce(BigDecimal.ZERO, BigDecimal::add))
+                .isEqualByComparingTo(expenses.stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+        assertThat(balanceLedgerService.rebuildGroup(splitGroupId)).isEmpty();
+    }
+
+    @Test
+    void rejoiningMemberKeepsTheirRow() throws Exception {
+        GroupMember groupMember = joinGroup("rejoin").get(0);
+        Long splitGroupId = groupMember.getSplitGroup().getId();
+
+        balanceLedgerService.openBalance(groupMember.getSplitGroup(), groupMember.getUser());
+
+        assertThat(memberBalanceRepository.getBySplitGroupId(splitGroupId)).hasSize(2);
+    }
+}
@@ -0,0 +1,151 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.BalanceDrift;
+import com.tomiscoding.billsplit.dto.UserExpenseTotal;
+import com.tomiscoding.billsplit.dto.UserPaymentStatusTotal;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = BalanceLedgerService.class)
+class BalanceLedgerServiceTest {
+
+    @MockBean
+    MemberBalanceRepository memberBalanceRepository;
+
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    PaymentRepository paymentRepository;
+
+    @MockBean
+    GroupRepository groupRepository;
+
+    @MockBean
+    UserRepository userRepository;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    User newUser(int num){
+        return User.builder()
+                .id((long) num)
+                .fullName("user" + num)
+                .username("user" + num)
+                .authorities(Collections.singletonList(new Authority(Authority.Roles.ROLE_USER)))
+                .build();
+    }
+
+    SplitGroup newGroup(int num){
+        return SplitGroup.builder()
+                .id((long) num)
+                .groupName("group" + num)
+                .groupDescription("group" + num)
+                .baseCurrency(Currency.GBP)
+                .build();
+    }
+
+    @Test
+    void recordExpenseAddedSuccess() {
+        User user = newUser(1);
+        SplitGroup splitGroup = newGroup(1);
+        MemberBalance memberBalance = MemberBalance.builder()
+                .user(user)
+                .splitGroup(splitGroup)
+                .unsplitSpend(BigDecimal.valueOf(5))
+                .totalSpend(BigDecimal.valueOf(20))
+                .build();
+        Expense expense = Expense.builder()
+                .amount(BigDecimal.valueOf(10))
+                .user(user)
+                .splitGroup(splitGroup)
+                .build();
+
+        when(memberBalanceRepository.findBySplitGroupIdAndUserId(1L, 1L)).thenReturn(Optional.of(memberBalance));
+        balanceLedgerService.recordExpenseAdded(expense);
+
+        verify(memberBalanceRepository).save(argThat(b ->
+                b.getUnsplitSpend().compareTo(BigDecimal.valueOf(15)) == 0 &&
+                b.getTotalSpend().compareTo(BigDecimal.valueOf(30)) == 0));
+    }
+
+    @Test
+    void recordPaymentConfirmedSuccess() {
+        User user1 = newUser(1);
+        User user2 = newUser(2);
+        SplitGroup splitGroup = newGroup(1);
+        MemberBalance toBalance = MemberBalance.builder()
+                .user(user1)
+                .splitGroup(splitGroup)
+                .pendingIn(BigDecimal.valueOf(10))
+                .build();
+        MemberBalance fromBalance = MemberBalance.builder()
+                .user(user2)
+                .splitGroup(splitGroup)
+                .pendingOut(BigDecimal.valueOf(10))
+                .build();
+        Payment payment = Payment.builder()
+                .amount(BigDecimal.valueOf(10))
+                .toUser(user1)
+                .fromUser(user2)
+                .splitGroup(splitGroup)
+                .paymentStatus(PaymentStatus.PAID_CONFIRMED)
+                .build();
+
+        when(memberBalanceRepository.findBySplitGroupIdAndUserId(1L, 1L)).thenReturn(Optional.of(toBalance));
+        when(memberBalanceRepository.findBySplitGroupIdAndUserId(1L, 2L)).thenReturn(Optional.of(fromBalance));
+        balanceLedgerService.recordPaymentConfirmed(payment);
+
+        assertThat(toBalance.getPendingIn()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(toBalance.getConfirmedIn()).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(fromBalance.getPendingOut()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(fromBalance.getConfirmedOut()).isEqualByComparingTo(BigDecimal.TEN);
+    }
+
+    @Test
+    void rebuildGroupReportsDrift() {
+        User user1 = newUser(1);
+        User user2 = newUser(2);
+        SplitGroup splitGroup = newGroup(1);
+        MemberBalance driftedBalance = MemberBalance.builder()
+                .user(user1)
+                .splitGroup(splitGroup)
+                .unsplitSpend(BigDecimal.valueOf(12))
+                .totalSpend(BigDecimal.valueOf(40))
+                .build();
+
+        when(memberBalanceRepository.findBySplitGroupId(1L)).thenReturn(List.of(driftedBalance));
+        when(expenseRepository.getUserExpenseTotalsBySplitGroupId(1L)).thenReturn(List.of(
+                new UserExpenseTotal(1L, BigDecimal.valueOf(40), BigDecimal.valueOf(10)),
+                new UserExpenseTotal(2L, BigDecimal.valueOf(5), BigDecimal.valueOf(5))));
+        when(paymentRepository.getPaymentTotalsToUserBySplitGroupId(1L)).thenReturn(List.of(
+                new UserPaymentStatusTotal(1L, PaymentStatus.PAID_CONFIRMED, BigDecimal.valueOf(3))));
+        when(paymentRepository.getPaymentTotalsFromUserBySplitGroupId(1L)).thenReturn(List.of(
+                new UserPaymentStatusTotal(2L, PaymentStatus.PAID_CONFIRMED, BigDecimal.valueOf(3))));
+        when(groupRepository.getReferenceById(1L)).thenReturn(splitGroup);
+        when(userRepository.getReferenceById(2L)).thenReturn(user2);
+
+        List<BalanceDrift> drift = balanceLedgerService.rebuildGroup(1L);
+
+        assertThat(drift).anyMatch(d -> d.getUserId() == 1L && d.getField().equals("unsplitSpend"));
+        assertThat(drift).anyMatch(d -> d.getUserId() == 1L && d.getField().equals("confirmedIn"));
+        assertThat(driftedBalance.getUnsplitSpend()).isEqualByComparingTo(BigDecimal.TEN);
+        assertThat(driftedBalance.getConfirmedIn()).isEqualByComparingTo(BigDecimal.valueOf(3));
+        verify(memberBalanceRepository).save(argThat(b -> b.getUser().getId() == 2L &&
+                b.getConfirmedOut().compareTo(BigDecimal.valueOf(3)) == 0));
+    }
+}
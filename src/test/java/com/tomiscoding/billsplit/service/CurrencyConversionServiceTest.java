@@ -0,0 +1,138 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.Currency;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {CurrencyConversionService.class, CurrencyRateTable.class})
+class CurrencyConversionServiceTest {
+
+    @MockBean
+    CurrencyApiClient currencyApiClient;
+
+    @MockBean
+    ExchangeRateHistoryService exchangeRateHistoryService;
+
+    @MockBean(name = "currencyApi")
+    HttpDownstream currencyApi;
+
+    @Autowired
+    CurrencyRateTable currencyRateTable;
+
+    @Autowired
+    CurrencyConversionService currencyConversionService;
+
+    final Instant now = Instant.parse("2023-04-20T12:00:00Z");
+
+    Map<Currency, BigDecimal> ratesFrom(Currency baseCurrency, String rate){
+        Map<Currency, BigDecimal> rates = new EnumMap<>(Currency.class);
+        for (Currency currency : Currency.values()){
+            if (!currency.equals(baseCurrency)){
+                rates.put(currency, new BigDecimal(rate));
+            }
+        }
+        return rates;
+    }
+
+    @BeforeEach
+    void setUp() throws CurrencyConversionException {
+        currencyRateTable.setClock(Clock.fixed(now, ZoneOffset.UTC));
+        for (Currency currency : Currency.values()){
+            when(currencyApiClient.getRates(currency)).thenReturn(ratesFrom(currency, "1.10"));
+        }
+        currencyRateTable.refresh();
+    }
+
+    @Test
+    void getCurrencyConversionFromRateTable() throws CurrencyConversionException {
+        assertThat(currencyConversionService.getCurrencyConversion(Currency.EUR, Currency.GBP)).isEqualByComparingTo("1.10");
+        verify(currencyApiClient, never()).getRate(any(), any());
+    }
+
+    @Test
+    void getCurrencyConversionSameCurrency() throws CurrencyConversionException {
+        assertThat(currencyConversionService.getCurrencyConversion(Currency.GBP, Currency.GBP)).isEqualByComparingTo(BigDecimal.ONE);
+    }
+
+    @Test
+    void getCurrencyConversionFallsBackWhenStale() throws CurrencyConversionException {
+        currencyRateTable.setClock(Clock.fixed(now.plus(Duration.ofHours(7)), ZoneOffset.UTC));
+        when(currencyApiClient.getRate(Currency.EUR, Currency.GBP)).thenReturn(new BigDecimal("0.87"));
+
+        assertThat(currencyConversionService.getCurrencyConversion(Currency.EUR, Currency.GBP)).isEqualByComparingTo("0.87");
+    }
+
+    @Test
+    void refreshKeepsPreviousRatesOnFailure() throws CurrencyConversionException {
+        when(currencyApiClient.getRates(Currency.EUR)).thenThrow(new CurrencyConversionException("unavailable"));
+        when(currencyApiClient.getRates(Currency.USD)).thenReturn(ratesFrom(Currency.USD, "0.80"));
+        currencyRateTable.refresh();
+
+        assertThat(currencyRateTable.getRate(Currency.EUR, Currency.GBP)).contains(new BigDecimal("1.10"));
+        assertThat(currencyRateTable.getRate(Currency.USD, Currency.GBP)).contains(new BigDecimal("0.80"));
+    }
+
+    @Test
+    void getCurrencyConversionForPastDate() throws CurrencyConversionException {
+        LocalDate date = LocalDate.of(2022, 6, 1);
+        when(exchangeRateHistoryService.getRate(Currency.EUR, Currency.GBP, date)).thenReturn(Optional.of(new BigDecimal("0.85")));
+
+        assertThat(currencyConversionService.getCurrencyConversion(Currency.EUR, Currency.GBP, date)).isEqualByComparingTo("0.85");
+    }
+
+    @Test
+    void getCurrencyConversionBeforeHistoryUsesLatest() throws CurrencyConversionException {
+        LocalDate date = LocalDate.of(2010, 6, 1);
+        when(exchangeRateHistoryService.getRate(Currency.EUR, Currency.GBP, date)).thenReturn(Optional.empty());
+
+        assertThat(currencyConversionService.getCurrencyConversion(Currency.EUR, Currency.GBP, date)).isEqualByComparingTo("1.10");
+    }
+
+    @Test
+    void getCurrencyConversionAsyncFromRateTableIsAlreadyComplete() {
+        CompletableFuture<BigDecimal> rate = currencyConversionService.getCurrencyConversionAsync(Currency.EUR, Currency.GBP);
+
+        assertThat(rate).isCompleted();
+        assertThat(rate.join()).isEqualByComparingTo("1.10");
+        verify(currencyApi, never()).callAsync(any());
+    }
+
+    @Test
+    void getCurrencyConversionAsyncFallsBackWhenStale() throws Exception {
+        currencyRateTable.setClock(Clock.fixed(now.plus(Duration.ofHours(7)), ZoneOffset.UTC));
+        when(currencyApiClient.getRate(Currency.EUR, Currency.GBP)).thenReturn(new BigDecimal("0.87"));
+        when(currencyApi.callAsync(any())).thenAnswer(invocation -> {
+            HttpDownstream.AsyncCall<?> call = invocation.getArgument(0);
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return call.call();
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+        });
+
+        assertThat(currencyConversionService.getCurrencyConversionAsync(Currency.EUR, Currency.GBP).get(5, TimeUnit.SECONDS))
+                .isEqualByComparingTo("0.87");
+    }
+}
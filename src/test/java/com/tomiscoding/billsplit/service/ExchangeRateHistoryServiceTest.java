@@ -0,0 +1,80 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.ExchangeRate;
+import com.tomiscoding.billsplit.repository.ExchangeRateRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = ExchangeRateHistoryService.class)
+class ExchangeRateHistoryServiceTest {
+
+    @MockBean
+    ExchangeRateRepository exchangeRateRepository;
+
+    @MockBean
+    CurrencyApiClient currencyApiClient;
+
+    @Autowired
+    ExchangeRateHistoryService exchangeRateHistoryService;
+
+    final LocalDate date = LocalDate.of(2022, 6, 1);
+
+    Map<Currency, BigDecimal> ratesFrom(Currency baseCurrency){
+        Map<Currency, BigDecimal> rates = new EnumMap<>(Currency.class);
+        for (Currency currency : Currency.values()){
+            if (!currency.equals(baseCurrency)){
+                rates.put(currency, new BigDecimal("1.10"));
+            }
+        }
+        return rates;
+    }
+
+    @Test
+    void getRateCachesLookups() {
+        when(exchangeRateRepository.findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc(Currency.USD, Currency.GBP, date))
+                .thenReturn(Optional.of(ExchangeRate.builder().rate(new BigDecimal("0.80")).build()));
+
+        assertThat(exchangeRateHistoryService.getRate(Currency.USD, Currency.GBP, date)).contains(new BigDecimal("0.80"));
+        assertThat(exchangeRateHistoryService.getRate(Currency.USD, Currency.GBP, date)).contains(new BigDecimal("0.80"));
+        verify(exchangeRateRepository, times(1))
+                .findFirstByBaseCurrencyAndQuoteCurrencyAndRateDateLessThanEqualOrderByRateDateDesc(Currency.USD, Currency.GBP, date);
+    }
+
+    @Test
+    void ingestStoresEveryPair() throws CurrencyConversionException {
+        for (Currency currency : Currency.values()){
+            when(currencyApiClient.getRates(currency, date)).thenReturn(ratesFrom(currency));
+        }
+
+        int pairs = Currency.values().length * (Currency.values().length - 1);
+        assertThat(exchangeRateHistoryService.ingest(date)).isEqualTo(pairs);
+        verify(exchangeRateRepository, times(Currency.values().length)).saveAll(anyList());
+    }
+
+    @Test
+    void backfillSkipsStoredDates() throws CurrencyConversionException {
+        LocalDate nextDay = date.plusDays(1);
+        when(exchangeRateRepository.getRateDatesByBaseCurrencyBetween(any(), eq(date), eq(nextDay)))
+                .thenReturn(Collections.singletonList(date));
+        for (Currency currency : Currency.values()){
+            when(currencyApiClient.getRates(currency, nextDay)).thenReturn(ratesFrom(currency));
+        }
+
+        exchangeRateHistoryService.backfill(date, nextDay);
+
+        verify(currencyApiClient, never()).getRates(any(), eq(date));
+        verify(currencyApiClient, times(Currency.values().length)).getRates(any(), eq(nextDay));
+    }
+}
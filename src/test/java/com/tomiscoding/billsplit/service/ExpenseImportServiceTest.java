@@ -0,0 +1,146 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.ExpenseImportResult;
+import com.tomiscoding.billsplit.dto.FileFormat;
+import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {ExpenseImportService.class, ExpenseService.class},
+        properties = "billsplit.import.batch-size=2")
+class ExpenseImportServiceTest {
+
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    CurrencyConversionService currencyConversionService;
+
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    ExpenseImportService expenseImportService;
+
+    private User peppaPig() {
+        return User.builder()
+                .id(1L)
+                .fullName("Peppa pig")
+                .username("peppa@pigs.com")
+                .authorities(Collections.singletonList(new Authority(Authority.Roles.ROLE_USER)))
+                .build();
+    }
+
+    private SplitGroup piggies() {
+        return SplitGroup.builder()
+                .id(1L)
+                .groupName("Piggies")
+                .groupDescription("For the piggy family")
+                .baseCurrency(Currency.GBP)
+                .build();
+    }
+
+    private InputStream file(String contents){
+        return new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importCsvInBatches() {
+        String csv = "name,description,amount,currency,date\n" +
+                "Muddy puddles,Boots,10.50,GBP,2023-04-20\n" +
+                "Ice cream,,3,GBP,2023-04-21\n" +
+                "Picnic,Sandwiches,12.25,gbp,2023-04-22\n" +
+                "Boat trip,,20,GBP,2023-04-23\n" +
+                "Train,,5.10,GBP,2023-04-24\n";
+
+        ExpenseImportResult result = expenseImportService.importExpenses(piggies(), peppaPig(), file(csv), FileFormat.CSV);
+
+        assertThat(result.isCompleted()).isTrue();
+        assertThat(result.getImportedRows()).isEqualTo(5);
+        assertThat(result.getFailedRows()).isZero();
+
+        ArgumentCaptor<List<Expense>> batches = ArgumentCaptor.forClass(List.class);
+        verify(expenseRepository, times(3)).saveAll(batches.capture());
+        assertThat(batches.getAllValues()).extracting(List::size).containsExactly(2, 2, 1);
+        verify(balanceLedgerService, times(3)).recordExpensesAdded(any());
+
+        Expense first = batches.getAllValues().get(0).get(0);
+        assertThat(first.getName()).isEqualTo("Muddy puddles");
+        assertThat(first.getAmount()).isEqualTo(new BigDecimal("10.50"));
+        assertThat(first.getExpenseDate()).isEqualTo(LocalDate.of(2023, 4, 20));
+        assertThat(first.getUser().getId()).isEqualTo(1L);
+        assertThat(batches.getAllValues().get(0).get(1).getCurrencyAmount()).isEqualTo(new BigDecimal("3.00"));
+    }
+
+    @Test
+    void importCsvReportsInvalidRows() {
+        String csv = "name,description,amount,currency,date\n" +
+                "Muddy puddles,Boots,10.5015,GBP,2023-04-20\n" +
+                "Ice cream,,3,XYZ,2023-04-21\n" +
+                ",,12.25,GBP,2023-04-22\n" +
+                "Boat trip,,twenty,GBP,2023-04-23\n" +
+                "Train,,5.10,GBP,24/04/2023\n" +
+                "Picnic,,8,GBP,2023-04-25\n";
+
+        ExpenseImportResult result = expenseImportService.importExpenses(piggies(), peppaPig(), file(csv), FileFormat.CSV);
+
+        assertThat(result.isCompleted()).isTrue();
+        assertThat(result.getImportedRows()).isEqualTo(1);
+        assertThat(result.getFailedRows()).isEqualTo(5);
+        assertThat(result.getErrors()).extracting("rowNumber").containsExactly(1L, 2L, 3L, 4L, 5L);
+        assertThat(result.getErrors().get(0).getMessage()).isEqualTo("Amount must have no more than two decimal places");
+    }
+
+    @Test
+    void importJsonConvertsOncePerCurrencyAndDate() throws CurrencyConversionException {
+        when(currencyConversionService.getCurrencyConversion(Currency.USD, Currency.GBP, LocalDate.of(2023, 4, 20)))
+                .thenReturn(new BigDecimal("0.8"));
+        String json = "[" +
+                "{\"name\": \"Muddy puddles\", \"amount\": \"10\", \"currency\": \"USD\", \"date\": \"2023-04-20\"}," +
+                "{\"name\": \"Ice cream\", \"amount\": \"5\", \"currency\": \"USD\", \"date\": \"2023-04-20\", \"extra\": 1}," +
+                "{\"name\": \"Picnic\", \"amount\": \"2.50\", \"currency\": \"USD\", \"date\": \"2023-04-20\"}" +
+                "]";
+
+        ExpenseImportResult result = expenseImportService.importExpenses(piggies(), peppaPig(), file(json), FileFormat.JSON);
+
+        assertThat(result.getImportedRows()).isEqualTo(3);
+        verify(currencyConversionService, times(1)).getCurrencyConversion(Currency.USD, Currency.GBP, LocalDate.of(2023, 4, 20));
+
+        ArgumentCaptor<List<Expense>> batches = ArgumentCaptor.forClass(List.class);
+        verify(expenseRepository, times(2)).saveAll(batches.capture());
+        assertThat(batches.getAllValues().get(0).get(0).getAmount()).isEqualTo(new BigDecimal("8.00"));
+        assertThat(batches.getAllValues().get(1).get(0).getAmount()).isEqualTo(new BigDecimal("2.00"));
+    }
+
+    @Test
+    void importMalformedJsonKeepsPersistedBatches() {
+        String json = "[" +
+                "{\"name\": \"Muddy puddles\", \"amount\": \"10\", \"currency\": \"GBP\", \"date\": \"2023-04-20\"}," +
+                "{\"name\": \"Ice cream\", \"amount\": \"5\", \"currency\": \"GBP\", \"date\": \"2023-04-20\"}," +
+                "{\"name\": \"Picnic\", \"amount\": ";
+
+        ExpenseImportResult result = expenseImportService.importExpenses(piggies(), peppaPig(), file(json), FileFormat.JSON);
+
+        assertThat(result.isCompleted()).isFalse();
+        assertThat(result.getImportedRows()).isEqualTo(2);
+        assertThat(result.getErrors()).hasSize(1);
+        assertThat(result.getErrors().get(0).getRowNumber()).isEqualTo(3L);
+    }
+}
@@ -1,5 +1,6 @@
 package com.tomiscoding.billsplit.service;
 
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
 import com.tomiscoding.billsplit.exceptions.CurrencyConversionException;
 import com.tomiscoding.billsplit.exceptions.ExpenseNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
@@ -29,6 +30,9 @@ class ExpenseServiceTest {
     @MockBean
     CurrencyConversionService currencyConversionService;
 
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
     @Autowired
     ExpenseService expenseService;
 
@@ -95,7 +99,7 @@ class ExpenseServiceTest {
         expenseGoodConverted.setAmount(expenseGoodConverted.getCurrencyAmount().multiply(USDGBPrate).setScale(2, RoundingMode.HALF_EVEN));
 
         when(expenseRepository.save(ArgumentMatchers.argThat(e -> e.getAmount().equals(expenseGoodConverted.getAmount())))).thenReturn(expenseGoodConverted);
-        when(currencyConversionService.getCurrencyConversion(Currency.USD, Currency.GBP)).thenReturn(BigDecimal.valueOf(1.2));
+        when(currencyConversionService.getCurrencyConversion(eq(Currency.USD), eq(Currency.GBP), any())).thenReturn(BigDecimal.valueOf(1.2));
 
         assertThat(expenseService.saveExpense(expenseGood)).isNotNull();
     }
@@ -105,7 +109,7 @@ class ExpenseServiceTest {
         Expense expenseBad = expenseBad();
 
         when(expenseRepository.save(any())).thenReturn(expenseBad);
-        when(currencyConversionService.getCurrencyConversion(Currency.USD, Currency.GBP)).thenReturn(BigDecimal.valueOf(1.2));
+        when(currencyConversionService.getCurrencyConversion(eq(Currency.USD), eq(Currency.GBP), any())).thenReturn(BigDecimal.valueOf(1.2));
 
         assertThrows(ValidationException.class,
                 () -> expenseService.saveExpense(expenseBad));
@@ -117,12 +121,26 @@ class ExpenseServiceTest {
 
         when(expenseRepository.findById(ArgumentMatchers.eq(1L))).thenReturn(Optional.ofNullable(expenseSplit));
         when(expenseRepository.save(ArgumentMatchers.argThat(e -> e.getAmount().equals(expenseSplit.getAmount())))).thenReturn(expenseSplit);
-        when(currencyConversionService.getCurrencyConversion(Currency.USD, Currency.GBP)).thenReturn(BigDecimal.valueOf(1.2));
+        when(currencyConversionService.getCurrencyConversion(eq(Currency.USD), eq(Currency.GBP), any())).thenReturn(BigDecimal.valueOf(1.2));
 
         assertThrows(ValidationException.class,
                 () -> expenseService.editExpense(expenseSplit.getId(), expenseSplit));
     }
 
+    @Test
+    void editExpenseUnchangedAmountNotConverted() throws ValidationException, CurrencyConversionException, ExpenseNotFoundException {
+        Expense existing = expenseGood(Currency.USD, "Red wellies");
+        existing.setId(1L);
+        existing.setAmount(BigDecimal.valueOf(12.60));
+        Expense edited = expenseGood(Currency.USD, "Blue wellies");
+
+        when(expenseRepository.findById(ArgumentMatchers.eq(1L))).thenReturn(Optional.of(existing));
+        when(expenseRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+
+        assertThat(expenseService.editExpense(1L, edited).getAmount()).isEqualByComparingTo("12.60");
+        verify(currencyConversionService, never()).getCurrencyConversion(any(), any(), any());
+    }
+
     @Test
     void deleteExpenseFailure() throws ExpenseNotFoundException {
         Expense expenseSplit = expenseSplit();
@@ -134,30 +152,60 @@ class ExpenseServiceTest {
     }
 
     @Test
-    void deleteExpensesListSuccess() {
+    void deleteExpensesListSuccess() throws ValidationException {
         List<Expense> expenses = new ArrayList<>();
         expenses.add(expenseGood(Currency.GBP, "Red wellies"));
         expenses.add(expenseGood(Currency.GBP, "Blue wellies"));
         expenses.add(expenseGood(Currency.GBP, "Green wellies"));
         expenses.add(expenseSplit());
 
+        when(expenseRepository.deleteUnsplitByIdIn(argThat(it -> it.size() == 3))).thenReturn(3);
+
         expenseService.deleteExpensesList(expenses);
-        verify(expenseRepository).deleteAllInBatch(argThat(it -> ((Collection<?>) it).size() == 3));
+        verify(expenseRepository).deleteUnsplitByIdIn(argThat(it -> it.size() == 3));
+        verify(balanceLedgerService).recordExpensesRemoved(argThat(it -> it.size() == 3));
+    }
+
+    @Test
+    void deleteExpensesListSplitSinceLoaded() {
+        List<Expense> expenses = new ArrayList<>();
+        expenses.add(expenseGood(Currency.GBP, "Red wellies"));
+        expenses.add(expenseGood(Currency.GBP, "Blue wellies"));
+
+        // A settlement run split one of the expenses after they were read
+        when(expenseRepository.deleteUnsplitByIdIn(argThat(it -> it.size() == 2))).thenReturn(1);
+
+        assertThrows(ValidationException.class,
+                () -> expenseService.deleteExpensesList(expenses));
+        verify(balanceLedgerService, never()).recordExpensesRemoved(any());
+    }
+
+    @Test
+    void setExpensesAsSplitBySettlementRunSuccess() {
+        SplitGroup piggies = piggies();
+        SettlementRun settlementRun = SettlementRun.builder().id(3L).splitGroup(piggies).build();
+        List<UserSettlementTotal> totals = List.of(new UserSettlementTotal(1L, new BigDecimal("31.50"), 3L));
+        when(expenseRepository.getMaxIdBySplitGroupId(piggies.getId())).thenReturn(Optional.of(42L));
+        when(expenseRepository.setSplitBySettlementRun(settlementRun, piggies.getId(), 42L)).thenReturn(3);
+        when(expenseRepository.getUserTotalsBySettlementRunId(3L)).thenReturn(totals);
+
+        assertThat(expenseService.setExpensesAsSplitBySettlementRun(settlementRun)).isEqualTo(totals);
+
+        assertThat(settlementRun.getHighWaterExpenseId()).isEqualTo(42L);
+        assertThat(settlementRun.getExpenseCount()).isEqualTo(3);
+        verify(expenseRepository, never()).saveAll(any());
+        verify(balanceLedgerService).recordExpensesSplit(piggies, totals);
     }
 
     @Test
-    void setExpensesAsSplitByGroupSuccess() {
+    void setExpensesAsSplitBySettlementRunWithNothingToSplit() {
         SplitGroup piggies = piggies();
-        List<Expense> piggyExpenses = new ArrayList<>();
-        piggyExpenses.add(expenseGood(Currency.GBP, "Red wellies"));
-        piggyExpenses.add(expenseGood(Currency.GBP, "Blue wellies"));
-        piggyExpenses.add(expenseGood(Currency.GBP, "Green wellies"));
-        piggyExpenses.add(expenseSplit());
-        piggies.setExpenses(piggyExpenses);
+        SettlementRun settlementRun = SettlementRun.builder().id(3L).splitGroup(piggies).build();
+        when(expenseRepository.getMaxIdBySplitGroupId(piggies.getId())).thenReturn(Optional.empty());
 
-        expenseService.setExpensesAsSplitByGroup(piggies);
+        assertThat(expenseService.setExpensesAsSplitBySettlementRun(settlementRun)).isEmpty();
 
-        verify(expenseRepository).saveAll(argThat(it -> ((Collection<?>) it).size() == 3));
-        verify(expenseRepository).saveAll(argThat(it -> ((List<Expense>) it).get(0).isSplit()));
+        assertThat(settlementRun.getExpenseCount()).isZero();
+        verify(expenseRepository, never()).getUserTotalsBySettlementRunId(any());
     }
-}
\ No newline at end of file
+}
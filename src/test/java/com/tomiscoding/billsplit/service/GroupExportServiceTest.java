@@ -0,0 +1,125 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.ExpenseExportRow;
+import com.tomiscoding.billsplit.dto.FileFormat;
+import com.tomiscoding.billsplit.dto.PaymentExportRow;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.model.PaymentStatus;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = GroupExportService.class)
+class GroupExportServiceTest {
+
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    GroupExportService groupExportService;
+
+    private ExpenseExportRow muddyPuddles() {
+        return ExpenseExportRow.builder()
+                .id(5L)
+                .expenseDate(LocalDate.of(2023, 4, 20))
+                .name("Muddy puddles")
+                .description("Boots")
+                .userId(1L)
+                .userName("Peppa pig")
+                .currency(Currency.GBP)
+                .currencyAmount(new BigDecimal("10.50"))
+                .amount(new BigDecimal("10.50"))
+                .split(false)
+                .build();
+    }
+
+    private ExpenseExportRow iceCream() {
+        return ExpenseExportRow.builder()
+                .id(8L)
+                .expenseDate(LocalDate.of(2023, 4, 21))
+                .name("Ice cream")
+                .userId(2L)
+                .userName("George pig")
+                .currency(Currency.USD)
+                .currencyAmount(new BigDecimal("5.00"))
+                .amount(new BigDecimal("4.00"))
+                .split(true)
+                .build();
+    }
+
+    @Test
+    void exportExpensesAsCsv() throws IOException {
+        when(expenseRepository.streamExportRowsBySplitGroupId(1L, 0L)).thenReturn(Stream.of(muddyPuddles(), iceCream()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = groupExportService.exportExpenses(1L, 0L, FileFormat.CSV, outputStream);
+
+        assertThat(count).isEqualTo(2);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,expenseDate,name,description,userId,userName,currency,currencyAmount,amount,split",
+                "5,2023-04-20,\"Muddy puddles\",Boots,1,\"Peppa pig\",GBP,10.50,10.50,false",
+                "8,2023-04-21,\"Ice cream\",,2,\"George pig\",USD,5.00,4.00,true");
+    }
+
+    @Test
+    void exportExpensesAfterIdAsJson() throws IOException {
+        when(expenseRepository.streamExportRowsBySplitGroupId(1L, 5L)).thenReturn(Stream.of(iceCream()));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = groupExportService.exportExpenses(1L, 5L, FileFormat.JSON, outputStream);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo("[{\"id\":8,\"expenseDate\":\"2023-04-21\"," +
+                "\"name\":\"Ice cream\",\"description\":null,\"userId\":2,\"userName\":\"George pig\",\"currency\":\"USD\"," +
+                "\"currencyAmount\":5.00,\"amount\":4.00,\"split\":true}]");
+    }
+
+    @Test
+    void exportNoPaymentsAsEmptyJsonArray() throws IOException {
+        when(paymentRepository.streamExportRowsBySplitGroupId(1L, 0L)).thenReturn(Stream.empty());
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+
+        assertThat(groupExportService.exportPayments(1L, 0L, FileFormat.JSON, json)).isZero();
+
+        assertThat(json.toString(StandardCharsets.UTF_8)).isEqualTo("[]");
+    }
+
+    @Test
+    void exportPaymentsAsCsv() throws IOException {
+        PaymentExportRow payment = PaymentExportRow.builder()
+                .id(3L)
+                .calculatedDate(LocalDate.of(2023, 5, 1))
+                .fromUserId(2L)
+                .fromUserName("George pig")
+                .toUserId(1L)
+                .toUserName("Peppa pig")
+                .amount(new BigDecimal("7.25"))
+                .paymentStatus(PaymentStatus.NOT_PAID)
+                .build();
+        when(paymentRepository.streamExportRowsBySplitGroupId(1L, 0L)).thenReturn(Stream.of(payment));
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        long count = groupExportService.exportPayments(1L, 0L, FileFormat.CSV, outputStream);
+
+        assertThat(count).isEqualTo(1);
+        assertThat(outputStream.toString(StandardCharsets.UTF_8).split("\n")).containsExactly(
+                "id,calculatedDate,fromUserId,fromUserName,toUserId,toUserName,amount,paymentStatus",
+                "3,2023-05-01,2,\"George pig\",1,\"Peppa pig\",7.25,NOT_PAID");
+    }
+}
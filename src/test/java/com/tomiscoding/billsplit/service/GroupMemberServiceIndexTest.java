@@ -0,0 +1,110 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Changes group members in real transactions against a real GroupMembershipIndex, and checks that the evictions are
+ * published to the other instances only once the change commits
+ */
+@DataJpaTest(properties = "billsplit.membership-index.redis-invalidation=true")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({GroupMemberService.class, ExpenseService.class, GroupMembershipIndex.class})
+class GroupMemberServiceIndexTest {
+
+    @MockBean
+    StringRedisTemplate redisTemplate;
+
+    @MockBean
+    CurrencyConversionService currencyConversionService;
+
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    GroupMemberService groupMemberService;
+
+    @Autowired
+    GroupRepository groupRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // Helper method to commit a group and a user who isn't a member of it yet
+    GroupMember newGroupMember(String name){
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SplitGroup splitGroup = groupRepository.save(SplitGroup.builder()
+                    .groupName(name)
+                    .inviteCode(name)
+                    .baseCurrency(Currency.GBP)
+                    .build());
+            User user = userRepository.save(User.builder()
+                    .username(name + "user")
+                    .fullName(name + "user")
+                    .password("password")
+                    .build());
+            return GroupMember.builder()
+                    .user(user)
+                    .splitGroup(splitGroup)
+                    .build();
+        });
+    }
+
+    @Test
+    void createGroupMemberPublishesEvictionsOnCommit() throws Exception {
+        GroupMember groupMember = newGroupMember("created");
+
+        groupMemberService.createGroupMember(groupMember);
+
+        verify(redisTemplate).convertAndSend(GroupMembershipIndex.INVALIDATION_CHANNEL, "user:" + groupMember.getUser().getId());
+        verify(redisTemplate).convertAndSend(GroupMembershipIndex.INVALIDATION_CHANNEL, "group:" + groupMember.getSplitGroup().getId());
+    }
+
+    @Test
+    void updateGroupMemberPublishesEvictionsOnCommit() throws Exception {
+        GroupMember groupMember = groupMemberService.createGroupMember(newGroupMember("updated"));
+        clearInvocations(redisTemplate);
+
+        groupMemberService.makeGroupMemberAdmin(groupMember);
+
+        verify(redisTemplate).convertAndSend(GroupMembershipIndex.INVALIDATION_CHANNEL, "user:" + groupMember.getUser().getId());
+        verify(redisTemplate).convertAndSend(GroupMembershipIndex.INVALIDATION_CHANNEL, "group:" + groupMember.getSplitGroup().getId());
+    }
+
+    @Test
+    void rolledBackChangeIsNotPublished() {
+        GroupMember groupMember = newGroupMember("rolledback");
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            try {
+                groupMemberService.createGroupMember(groupMember);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            status.setRollbackOnly();
+        });
+
+        verify(redisTemplate, never()).convertAndSend(anyString(), anyString());
+    }
+}
@@ -8,6 +8,7 @@ import com.tomiscoding.billsplit.repository.GroupMemberRepository;
 import com.tomiscoding.billsplit.repository.PaymentRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
+import org.mockito.InOrder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
@@ -15,14 +16,12 @@ import org.springframework.boot.test.mock.mockito.SpyBean;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
-import static org.mockito.Mockito.verify;
-import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.*;
 
 @SpringBootTest(classes = {GroupMemberService.class, ExpenseService.class})
 class GroupMemberServiceTest {
@@ -39,6 +38,12 @@ class GroupMemberServiceTest {
     @MockBean
     CurrencyConversionService currencyConversionService;
 
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
+    @MockBean
+    GroupMembershipIndex groupMembershipIndex;
+
     @Autowired
     GroupMemberService groupMemberService;
 
@@ -110,6 +115,10 @@ class GroupMemberServiceTest {
         when(groupMemberRepository.save(ArgumentMatchers.argThat(gm -> gm.getId() == 1L))).thenReturn(groupMember);
 
         assertThat(groupMemberService.createGroupMember(groupMember)).isEqualTo(groupMember);
+        InOrder inOrder = inOrder(groupMemberRepository, groupMembershipIndex);
+        inOrder.verify(groupMemberRepository).save(groupMember);
+        inOrder.verify(groupMembershipIndex).evictUser(1L);
+        inOrder.verify(groupMembershipIndex).evictGroup(1L);
     }
 
     @Test
@@ -231,9 +240,11 @@ class GroupMemberServiceTest {
         when(groupMemberRepository.getGroupMembersBySplitGroupIdAndIsAdmin(longThat(l -> splitGroup.getId() == l), eq(true)))
                 .thenReturn(List.of(admin,admin2));
 
+        when(expenseRepository.deleteUnsplitByIdIn(argThat(it -> it.size() == 2))).thenReturn(2);
+
         groupMemberService.deleteGroupMember(admin, splitGroup.getId());
 
-        verify(expenseRepository).deleteAllInBatch(argThat(it -> ((Collection<?>) it).size() == 2));
+        verify(expenseRepository).deleteUnsplitByIdIn(argThat(it -> it.size() == 2));
         verify(groupMemberRepository).save(argThat(gm -> !gm.isAdmin()));
         verify(groupMemberRepository).delete(argThat(gm -> gm.getId() == admin.getId()));
     }
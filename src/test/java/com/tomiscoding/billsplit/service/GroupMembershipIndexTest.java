@@ -0,0 +1,86 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.dto.GroupSummary;
+import com.tomiscoding.billsplit.dto.MemberSummary;
+import com.tomiscoding.billsplit.repository.GroupMemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = GroupMembershipIndex.class)
+class GroupMembershipIndexTest {
+
+    @MockBean
+    GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    GroupMembershipIndex groupMembershipIndex;
+
+    @BeforeEach
+    void setUp(){
+        for (long id = 1; id <= 3; id++){
+            groupMembershipIndex.evictUser(id);
+            groupMembershipIndex.evictGroup(id);
+        }
+        clearInvocations(groupMemberRepository);
+    }
+
+    MemberSummary member(long splitGroupId, long userId){
+        return MemberSummary.builder()
+                .splitGroupId(splitGroupId)
+                .userId(userId)
+                .fullName("user" + userId)
+                .build();
+    }
+
+    @Test
+    void getGroupsOfUserIndexed() {
+        when(groupMemberRepository.getGroupSummariesByUserId(1L)).thenReturn(List.of(
+                GroupSummary.builder().id(1L).groupName("Piggies").admin(true).build()));
+
+        assertThat(groupMembershipIndex.getGroupsOfUser(1L)).hasSize(1);
+        assertThat(groupMembershipIndex.getMemberships(1L)).containsEntry(1L, true);
+        verify(groupMemberRepository, times(1)).getGroupSummariesByUserId(1L);
+
+        groupMembershipIndex.evictUser(1L);
+        groupMembershipIndex.getGroupsOfUser(1L);
+        verify(groupMemberRepository, times(2)).getGroupSummariesByUserId(1L);
+    }
+
+    @Test
+    void getMembersOfGroupsLoadsMissingGroupsInOneQuery() {
+        when(groupMemberRepository.getMemberSummariesBySplitGroupIdIn(List.of(1L, 2L))).thenReturn(List.of(
+                member(1L, 1L), member(1L, 2L), member(2L, 2L)));
+        when(groupMemberRepository.getMemberSummariesBySplitGroupIdIn(List.of(3L))).thenReturn(List.of());
+
+        Map<Long, List<MemberSummary>> members = groupMembershipIndex.getMembersOfGroups(List.of(1L, 2L));
+        assertThat(members.get(1L)).hasSize(2);
+        assertThat(members.get(2L)).hasSize(1);
+
+        members = groupMembershipIndex.getMembersOfGroups(List.of(1L, 2L, 3L));
+        assertThat(members).containsOnlyKeys(1L, 2L, 3L);
+        assertThat(members.get(3L)).isEmpty();
+        verify(groupMemberRepository, times(2)).getMemberSummariesBySplitGroupIdIn(anyCollection());
+    }
+
+    @Test
+    void onInvalidationEvictsGroup() {
+        when(groupMemberRepository.getMemberSummariesBySplitGroupIdIn(List.of(1L))).thenReturn(List.of(member(1L, 1L)));
+
+        groupMembershipIndex.getMembersOfGroups(List.of(1L));
+        groupMembershipIndex.onInvalidation("group:1");
+        groupMembershipIndex.onInvalidation("group:not-a-number");
+        groupMembershipIndex.getMembersOfGroups(List.of(1L));
+
+        verify(groupMemberRepository, times(2)).getMemberSummariesBySplitGroupIdIn(List.of(1L));
+    }
+}
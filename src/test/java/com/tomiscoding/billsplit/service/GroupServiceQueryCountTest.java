@@ -0,0 +1,136 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.config.QueryMetricsConfig;
+import com.tomiscoding.billsplit.metrics.QueryCapture;
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import com.tomiscoding.billsplit.model.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({GroupService.class, BalanceLedgerService.class, QueryMetricsRecorder.class, QueryMetricsConfig.class})
+class GroupServiceQueryCountTest {
+
+    @MockBean
+    GroupMemberService groupMemberService;
+
+    @MockBean
+    GroupMembershipIndex groupMembershipIndex;
+
+    @MockBean
+    InviteCodeAllocator inviteCodeAllocator;
+
+    @MockBean
+    InviteCodeResolver inviteCodeResolver;
+
+    @Autowired
+    GroupService groupService;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    QueryMetricsRecorder queryMetricsRecorder;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    // Helper method to persist a group of 4 members with the given number of expenses and payments, and its ledger rows
+    SplitGroup persistGroup(String name, int expenseCount, int paymentCount){
+        SplitGroup splitGroup = entityManager.persist(SplitGroup.builder()
+                .groupName(name)
+                .inviteCode(name)
+                .baseCurrency(Currency.GBP)
+                .build());
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++){
+            User user = entityManager.persist(User.builder()
+                    .username(name + "user" + i)
+                    .fullName(name + "user" + i)
+                    .password("password")
+                    .build());
+            entityManager.persist(GroupMember.builder()
+                    .user(user)
+                    .splitGroup(splitGroup)
+                    .isAdmin(i == 0)
+                    .build());
+            users.add(user);
+        }
+
+        for (int i = 0; i < expenseCount; i++){
+            entityManager.persist(Expense.builder()
+                    .name("expense" + i)
+                    .amount(BigDecimal.TEN)
+                    .currencyAmount(BigDecimal.TEN)
+                    .currency(Currency.GBP)
+                    .expenseDate(LocalDate.of(2023, 4, 20).plusDays(i))
+                    .isSplit(i % 2 == 0)
+                    .user(users.get(i % users.size()))
+                    .splitGroup(splitGroup)
+                    .build());
+        }
+
+        for (int i = 0; i < paymentCount; i++){
+            entityManager.persist(Payment.builder()
+                    .fromUser(users.get(i % users.size()))
+                    .toUser(users.get((i + 1) % users.size()))
+                    .splitGroup(splitGroup)
+                    .amount(BigDecimal.ONE)
+                    .calculatedDate(LocalDate.of(2023, 4, 20))
+                    .build());
+        }
+        entityManager.flush();
+        balanceLedgerService.rebuildGroup(splitGroup.getId());
+        entityManager.flush();
+        entityManager.clear();
+        return splitGroup;
+    }
+
+    Long firstUserId(SplitGroup splitGroup){
+        return entityManager.getEntityManager()
+                .createQuery("SELECT m.user.id FROM GroupMember m WHERE m.splitGroup.id = :id AND m.isAdmin = true", Long.class)
+                .setParameter("id", splitGroup.getId())
+                .getSingleResult();
+    }
+
+    @Test
+    void generateGroupOverviewStatementsDoNotGrowWithHistory() throws Exception {
+        SplitGroup smallGroup = persistGroup("small", 5, 2);
+        SplitGroup largeGroup = persistGroup("large", 200, 50);
+
+        for (SplitGroup splitGroup : List.of(smallGroup, largeGroup)){
+            Long userId = firstUserId(splitGroup);
+            // The group check, the members and their authorities, the ledger, the user's payments and recent expenses
+            QueryCapture.assertStatementCount(queryMetricsRecorder, 9,
+                    () -> groupService.generateGroupOverview(splitGroup.getId(), userId));
+            entityManager.clear();
+        }
+    }
+
+    @Test
+    void generateAdminGroupOverviewStatementsDoNotGrowWithHistory() throws Exception {
+        SplitGroup smallGroup = persistGroup("small", 5, 2);
+        SplitGroup largeGroup = persistGroup("large", 200, 50);
+
+        for (SplitGroup splitGroup : List.of(smallGroup, largeGroup)){
+            // The group check, the ledger, the unconfirmed payments and recent expenses
+            QueryCapture.assertStatementCount(queryMetricsRecorder, 4,
+                    () -> groupService.generateAdminGroupOverview(splitGroup.getId()));
+            entityManager.clear();
+        }
+    }
+}
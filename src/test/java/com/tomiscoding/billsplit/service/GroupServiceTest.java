@@ -1,11 +1,15 @@
 package com.tomiscoding.billsplit.service;
 
 import com.tomiscoding.billsplit.dto.GroupOverview;
+import com.tomiscoding.billsplit.dto.GroupBalances;
 import com.tomiscoding.billsplit.exceptions.DuplicateGroupMemberException;
 import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
 import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
+import com.tomiscoding.billsplit.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -17,9 +21,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -35,6 +41,27 @@ class GroupServiceTest {
     @MockBean
     GroupMemberService groupMemberService;
 
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    PaymentRepository paymentRepository;
+
+    @MockBean
+    UserRepository userRepository;
+
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
+    @MockBean
+    GroupMembershipIndex groupMembershipIndex;
+
+    @MockBean
+    InviteCodeAllocator inviteCodeAllocator;
+
+    @MockBean
+    InviteCodeResolver inviteCodeResolver;
+
     SplitGroup newGroup(int num){
         return SplitGroup.builder()
                 .id((long) num)
@@ -78,11 +105,14 @@ class GroupServiceTest {
         SplitGroup splitGroup = newGroup(1);
         User user = newUser(1);
 
-        when(groupRepository.findByInviteCode(any())).thenReturn(Optional.empty());
+        when(inviteCodeAllocator.allocate()).thenReturn("abcdEFG1");
+        when(groupRepository.save(any())).thenAnswer(i -> i.getArgument(0));
         groupService.createGroup(splitGroup, user);
         verify(groupRepository).save(argThat(sg ->
                 sg.getGroupMembers().get(0).isAdmin() &&
-                sg.getInviteCode().length() == 8));
+                sg.getInviteCode().equals("abcdEFG1")));
+        verify(groupRepository, never()).findByInviteCode(any());
+        verify(inviteCodeResolver).register("abcdEFG1", 1L);
     }
 
     @Test
@@ -90,7 +120,8 @@ class GroupServiceTest {
         SplitGroup splitGroup = newGroup(1);
         User user = newUser(1);
 
-        when(groupRepository.findByInviteCode(any())).thenReturn(Optional.ofNullable(splitGroup));
+        when(inviteCodeResolver.resolve("inviteCode")).thenReturn(Optional.of(1L));
+        when(groupRepository.getReferenceById(1L)).thenReturn(splitGroup);
         groupService.addUserToGroupByInviteCode(user, "inviteCode");
         verify(groupMemberService).createGroupMember(argThat(gm ->
                 gm.getSplitGroup().getId() == 1L &&
@@ -102,7 +133,7 @@ class GroupServiceTest {
         SplitGroup splitGroup = newGroup(1);
         User user = newUser(1);
 
-        when(groupRepository.findByInviteCode(any())).thenReturn(Optional.empty());
+        when(inviteCodeResolver.resolve(any())).thenReturn(Optional.empty());
         assertThrows(SplitGroupNotFoundException.class,
                 () -> groupService.addUserToGroupByInviteCode(user, "inviteCode"));
     }
@@ -162,9 +193,35 @@ class GroupServiceTest {
         }
         splitGroup.setPayments(payments);
 
-        when(groupRepository.getSplitGroupWithExpensesById(eq(splitGroup.getId()))).thenReturn(Optional.of(splitGroup));
-        when(groupRepository.getSplitGroupWithGroupMembersById(eq(splitGroup.getId()))).thenReturn(Optional.of(splitGroup));
-        when(groupRepository.getSplitGroupWithPaymentsById(eq(splitGroup.getId()))).thenReturn(Optional.of(splitGroup));
+        List<MemberBalance> memberBalances = groupMembers.stream()
+                .map(GroupMember::getUser)
+                .map(u -> MemberBalance.builder()
+                        .user(u)
+                        .splitGroup(splitGroup)
+                        .unsplitSpend(splitGroup.getExpensesNotSplitTotalByUserId(u.getId()))
+                        .totalSpend(splitGroup.getExpensesTotalByUserId(u.getId()))
+                        .build())
+                .collect(Collectors.toList());
+        memberBalances.get(0).setConfirmedIn(BigDecimal.valueOf(10L));
+        memberBalances.get(0).setConfirmedOut(BigDecimal.valueOf(5L));
+        memberBalances.get(0).setPendingIn(BigDecimal.valueOf(20L));
+        memberBalances.get(0).setPendingOut(BigDecimal.valueOf(10L));
+        List<Expense> recentExpenses = expenses.stream()
+                .sorted((e1,e2) -> e2.getExpenseDate().compareTo(e1.getExpenseDate()))
+                .limit(10)
+                .collect(Collectors.toList());
+        List<Payment> openPayments = payments.stream()
+                .filter(p -> p.getToUser().getId() == user1.getId() || p.getFromUser().getId() == user1.getId())
+                .filter(p -> !p.getPaymentStatus().equals(PaymentStatus.PAID_CONFIRMED))
+                .collect(Collectors.toList());
+
+        when(groupRepository.existsById(eq(splitGroup.getId()))).thenReturn(true);
+        when(userRepository.getByGroupMembers_SplitGroupId(eq(splitGroup.getId())))
+                .thenReturn(List.of(user1, user2, user3, user4));
+        when(balanceLedgerService.getGroupBalances(eq(splitGroup.getId()))).thenReturn(new GroupBalances(memberBalances));
+        when(expenseRepository.findTop10BySplitGroupIdOrderByExpenseDateDescIdDesc(eq(splitGroup.getId()))).thenReturn(recentExpenses);
+        when(paymentRepository.getPaymentsBySplitGroupIdAndUserIdAndPaymentStatusNot(eq(splitGroup.getId()), eq(user1.getId()), eq(PaymentStatus.PAID_CONFIRMED)))
+                .thenReturn(openPayments);
 
         GroupOverview groupOverview = groupService.generateGroupOverview(splitGroup.getId(), user1.getId());
 
@@ -180,6 +237,13 @@ class GroupServiceTest {
         assert(groupOverview.getCurrentUserBalance().compareTo(BigDecimal.valueOf(69L)) == 0);
     }
 
+    @Test
+    void generateGroupOverviewNotFound() {
+        when(groupRepository.existsById(anyLong())).thenReturn(false);
+        assertThrows(SplitGroupNotFoundException.class,
+                () -> groupService.generateGroupOverview(1L, 1L));
+    }
+
     @Test
     void generateAdminGroupOverviewSuccess() {
     }
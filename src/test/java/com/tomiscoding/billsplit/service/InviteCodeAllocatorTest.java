@@ -0,0 +1,91 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.repository.InviteCodeReservationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(classes = InviteCodeAllocator.class)
+class InviteCodeAllocatorTest {
+
+    @MockBean
+    InviteCodeReservationRepository inviteCodeReservationRepository;
+
+    @Autowired
+    InviteCodeAllocator inviteCodeAllocator;
+
+    @Test
+    void parallelAllocationsAreUnique() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++){
+                futures.add(executor.submit(() -> {
+                    List<String> codes = new ArrayList<>();
+                    for (int j = 0; j < 500; j++){
+                        codes.add(inviteCodeAllocator.allocate());
+                    }
+                    return codes;
+                }));
+            }
+            List<String> codes = new ArrayList<>();
+            for (Future<List<String>> future : futures){
+                codes.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+
+            // More codes than the pool holds, so the pool has been refilled while in use
+            assertThat(codes).hasSize(4000).doesNotHaveDuplicates()
+                    .allMatch(c -> c.length() == InviteCodeAllocator.CODE_LENGTH);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void generatedCodesUseTheWholeAlphabet() {
+        Set<Character> used = new HashSet<>();
+        for (int i = 0; i < 20_000; i++){
+            for (char c : InviteCodeAllocator.generateCode().toCharArray()){
+                used.add(c);
+            }
+        }
+
+        Set<Character> alphabet = InviteCodeAllocator.ALPHABET.chars()
+                .mapToObj(c -> (char) c)
+                .collect(Collectors.toSet());
+        assertThat(used).isEqualTo(alphabet);
+    }
+
+    @Test
+    void reserveSkipsCodesAlreadyReserved() {
+        when(inviteCodeReservationRepository.getReservedCodesIn(any())).thenAnswer(i -> {
+            Collection<String> candidates = i.getArgument(0);
+            return List.of(candidates.iterator().next());
+        });
+
+        List<String> reserved = inviteCodeAllocator.reserve(10);
+
+        assertThat(reserved).hasSize(9).doesNotHaveDuplicates();
+        verify(inviteCodeReservationRepository).saveAll(argThat(r -> r instanceof Collection && ((Collection<?>) r).size() == 9));
+    }
+
+    @Test
+    void reserveAbandonsBatchReservedConcurrently() {
+        when(inviteCodeReservationRepository.getReservedCodesIn(any())).thenReturn(List.of());
+        when(inviteCodeReservationRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("duplicate"));
+
+        assertThat(inviteCodeAllocator.reserve(10)).isEmpty();
+    }
+}
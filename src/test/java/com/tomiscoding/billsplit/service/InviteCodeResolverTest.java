@@ -0,0 +1,121 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.InviteCodeReservationRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class InviteCodeResolverTest {
+
+    GroupRepository groupRepository;
+    InviteCodeReservationRepository inviteCodeReservationRepository;
+    SimpleMeterRegistry meterRegistry;
+    InviteCodeResolver inviteCodeResolver;
+
+    @BeforeEach
+    void setUp() {
+        groupRepository = mock(GroupRepository.class);
+        inviteCodeReservationRepository = mock(InviteCodeReservationRepository.class);
+        meterRegistry = new SimpleMeterRegistry();
+        inviteCodeResolver = new InviteCodeResolver(groupRepository, inviteCodeReservationRepository,
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class),
+                3_600_000L, 60_000L, 10_000L);
+
+        when(inviteCodeReservationRepository.getCodesAfter(eq(""), any())).thenReturn(List.of("abcdEFG1", "zyxwVUT9"));
+        when(groupRepository.getIdByInviteCode("abcdEFG1")).thenReturn(Optional.of(1L));
+        when(groupRepository.getIdByInviteCode("zyxwVUT9")).thenReturn(Optional.empty());
+        inviteCodeResolver.load();
+    }
+
+    double lookups(String result){
+        return meterRegistry.get("billsplit.invite.lookups").tag("result", result).counter().count();
+    }
+
+    @Test
+    void codesWhichWereNeverReservedAreRejectedWithoutQuerying() {
+        for (int i = 0; i < 100; i++){
+            assertThat(inviteCodeResolver.resolve("guess" + i)).isEmpty();
+        }
+
+        verify(groupRepository, never()).getIdByInviteCode(any());
+        // A guess can pass the filter as a false positive, at around the configured rate of 1%
+        assertThat(lookups("rejected")).isGreaterThan(90);
+    }
+
+    @Test
+    void resolvedCodesAreCached() {
+        assertThat(inviteCodeResolver.resolve("abcdEFG1")).contains(1L);
+        assertThat(inviteCodeResolver.resolve("abcdEFG1")).contains(1L);
+
+        verify(groupRepository, times(1)).getIdByInviteCode("abcdEFG1");
+        assertThat(lookups("miss")).isEqualTo(1);
+        assertThat(lookups("hit")).isEqualTo(1);
+    }
+
+    @Test
+    void reservedCodesWithoutAGroupAreCachedAsNotFoundUntilRegistered() {
+        assertThat(inviteCodeResolver.resolve("zyxwVUT9")).isEmpty();
+        assertThat(inviteCodeResolver.resolve("zyxwVUT9")).isEmpty();
+        verify(groupRepository, times(1)).getIdByInviteCode("zyxwVUT9");
+
+        inviteCodeResolver.register("zyxwVUT9", 2L);
+
+        assertThat(inviteCodeResolver.resolve("zyxwVUT9")).contains(2L);
+        verify(groupRepository, times(1)).getIdByInviteCode("zyxwVUT9");
+    }
+
+    @Test
+    void refreshAddsCodesReservedByOtherInstances() {
+        when(inviteCodeReservationRepository.getCodesReservedSince(any())).thenReturn(List.of("newCODE2"));
+        when(groupRepository.getIdByInviteCode("newCODE2")).thenReturn(Optional.of(3L));
+
+        inviteCodeResolver.refresh();
+
+        assertThat(inviteCodeResolver.resolve("newCODE2")).contains(3L);
+    }
+
+    @Test
+    void loadPagesThroughEveryReservedCode() {
+        List<String> firstPage = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++){
+            firstPage.add(String.format("a%07d", i));
+        }
+        when(inviteCodeReservationRepository.getCodesAfter(eq(""), any())).thenReturn(firstPage);
+        when(inviteCodeReservationRepository.getCodesAfter(eq("a0009999"), any())).thenReturn(List.of("b0000000"));
+        when(groupRepository.getIdByInviteCode(any())).thenReturn(Optional.of(4L));
+
+        inviteCodeResolver.load();
+
+        assertThat(inviteCodeResolver.resolve("a0000000")).contains(4L);
+        assertThat(inviteCodeResolver.resolve("b0000000")).contains(4L);
+    }
+
+    @Test
+    void bloomFilterHasNoFalseNegatives() {
+        InviteCodeResolver.BloomFilter bloomFilter = new InviteCodeResolver.BloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++){
+            bloomFilter.put(InviteCodeAllocator.generateCode() + i);
+        }
+        List<String> codes = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++){
+            String code = InviteCodeAllocator.generateCode();
+            codes.add(code);
+            bloomFilter.put(code);
+        }
+
+        assertThat(codes).allMatch(bloomFilter::mightContain);
+    }
+}
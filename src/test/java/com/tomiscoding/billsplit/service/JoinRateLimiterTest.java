@@ -0,0 +1,58 @@
+package com.tomiscoding.billsplit.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JoinRateLimiterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+
+    JoinRateLimiter joinRateLimiter(){
+        JoinRateLimiter joinRateLimiter = new JoinRateLimiter(
+                new StaticListableBeanFactory(Map.of("meterRegistry", meterRegistry)).getBeanProvider(MeterRegistry.class));
+        joinRateLimiter.setNanoTime(now::get);
+        return joinRateLimiter;
+    }
+
+    @Test
+    void allowsABurstThenOneAttemptPerInterval() {
+        JoinRateLimiter joinRateLimiter = joinRateLimiter();
+
+        for (int i = 0; i < 10; i++){
+            assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isTrue();
+        }
+        assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isFalse();
+        // Other clients have their own bucket
+        assertThat(joinRateLimiter.tryAcquire("user:peppa")).isTrue();
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isTrue();
+        assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isFalse();
+
+        assertThat(meterRegistry.get("billsplit.invite.join.attempts").tag("result", "throttled").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("billsplit.invite.join.attempts").tag("result", "allowed").counter().count()).isEqualTo(12);
+        assertThat(joinRateLimiter.getRetryAfterSeconds()).isEqualTo(6);
+    }
+
+    @Test
+    void bucketRefillsToCapacityOnly() {
+        JoinRateLimiter joinRateLimiter = joinRateLimiter();
+        joinRateLimiter.tryAcquire("address:10.0.0.1");
+
+        now.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        for (int i = 0; i < 10; i++){
+            assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isTrue();
+        }
+        assertThat(joinRateLimiter.tryAcquire("address:10.0.0.1")).isFalse();
+    }
+}
@@ -0,0 +1,130 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.config.RestTemplateConfig;
+import com.tomiscoding.billsplit.dto.EmailAddress;
+import com.tomiscoding.billsplit.dto.EmailRequest;
+import com.tomiscoding.billsplit.exceptions.EmailSendException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Sends bulk emails through the pooled, circuit-broken mailersend HttpDownstream to a local stub server
+ */
+@SpringBootTest(classes = {MailerSendService.class, RestTemplateConfig.class, SimpleMeterRegistry.class},
+        properties = {
+                "mailersend.key=test",
+                "mailersend.invitetemplate.id=template",
+                "myapplication.domainurl=http://localhost:8080/",
+                "myapplication.fromemail=no-reply@tomiscoding.com",
+                "billsplit.http.mailersend.read-timeout-ms=200",
+                "billsplit.http.circuit.sliding-window-size=4",
+                "billsplit.http.circuit.open-ms=60000"})
+class MailerSendServiceTest {
+
+    static final MailerSendStubServer mailerSend = startStub();
+
+    @Autowired
+    MailerSendService mailerSendService;
+
+    @Autowired
+    CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @DynamicPropertySource
+    static void mailerSendProperties(DynamicPropertyRegistry registry){
+        registry.add("mailersend.bulkurl", mailerSend::bulkEmailUrl);
+    }
+
+    static MailerSendStubServer startStub(){
+        try {
+            return new MailerSendStubServer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopStub(){
+        mailerSend.close();
+    }
+
+    @BeforeEach
+    void reset(){
+        mailerSend.reset();
+        circuitBreakerRegistry.circuitBreaker("mailersend").reset();
+    }
+
+    List<EmailRequest> emails(){
+        return List.of(EmailRequest.builder()
+                .from(new EmailAddress("no-reply@tomiscoding.com"))
+                .to(List.of(new EmailAddress("george@pigs.com")))
+                .templateId("template")
+                .build());
+    }
+
+    @Test
+    void sendBulkEmailAsync() throws Exception {
+        mailerSendService.sendBulkEmailAsync(emails()).get(5, TimeUnit.SECONDS);
+
+        assertThat(mailerSend.getRequestBodies()).hasSize(1);
+        assertThat(mailerSend.getRequestBodies().get(0)).contains("george@pigs.com");
+    }
+
+    @Test
+    void sendBulkEmailAsyncFailure() {
+        mailerSend.respondWith(503);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> mailerSendService.sendBulkEmailAsync(emails()).get(5, TimeUnit.SECONDS));
+        assertThat(e.getCause()).isInstanceOf(EmailSendException.class).hasMessageContaining("503");
+    }
+
+    @Test
+    void circuitOpensAfterServerErrorsAndFailsFast() {
+        for (int i = 0; i < 4; i++){
+            mailerSend.respondWith(503);
+            assertThrows(EmailSendException.class, () -> mailerSendService.sendBulkEmail(emails()));
+        }
+        assertThat(circuitBreakerRegistry.circuitBreaker("mailersend").getState()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        EmailSendException e = assertThrows(EmailSendException.class, () -> mailerSendService.sendBulkEmail(emails()));
+        assertThat(e).hasMessageContaining("unavailable");
+        assertThat(mailerSend.getRequestBodies()).hasSize(4);
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuit() throws EmailSendException {
+        for (int i = 0; i < 4; i++){
+            mailerSend.respondWith(422);
+            assertThrows(EmailSendException.class, () -> mailerSendService.sendBulkEmail(emails()));
+        }
+
+        mailerSendService.sendBulkEmail(emails());
+        assertThat(mailerSend.getRequestBodies()).hasSize(5);
+    }
+
+    @Test
+    void slowResponsesTimeOut() {
+        mailerSend.delayResponses(1000);
+
+        long start = System.nanoTime();
+        assertThrows(EmailSendException.class, () -> mailerSendService.sendBulkEmail(emails()));
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1000);
+    }
+}
@@ -0,0 +1,88 @@
+package com.tomiscoding.billsplit.service;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Stand-in for the MailerSend bulk email endpoint on a random local port. Records the request bodies it receives
+ * and answers 202 Accepted, or the statuses queued with respondWith()
+ */
+class MailerSendStubServer implements AutoCloseable {
+
+    static final String BULK_EMAIL_PATH = "/v1/bulk-email";
+
+    private final HttpServer httpServer;
+    private final List<String> requestBodies = new CopyOnWriteArrayList<>();
+    private final Deque<Integer> statuses = new ArrayDeque<>();
+    private volatile long delayMillis;
+
+    MailerSendStubServer() throws IOException {
+        httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        httpServer.createContext(BULK_EMAIL_PATH, exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                requestBodies.add(new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            if (delayMillis > 0){
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            int status;
+            synchronized (statuses) {
+                status = statuses.isEmpty() ? 202 : statuses.poll();
+            }
+            byte[] response = (status == 202
+                    ? "{\"message\":\"The bulk email is being processed.\",\"bulk_email_id\":\"stub\"}"
+                    : "{\"message\":\"Stubbed failure\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        httpServer.start();
+    }
+
+    String bulkEmailUrl(){
+        return "http://localhost:" + httpServer.getAddress().getPort() + BULK_EMAIL_PATH;
+    }
+
+    void respondWith(int status){
+        synchronized (statuses) {
+            statuses.add(status);
+        }
+    }
+
+    // Holds every response for the given time, to trigger read timeouts
+    void delayResponses(long delayMillis){
+        this.delayMillis = delayMillis;
+    }
+
+    List<String> getRequestBodies(){
+        return requestBodies;
+    }
+
+    void reset(){
+        requestBodies.clear();
+        delayMillis = 0;
+        synchronized (statuses) {
+            statuses.clear();
+        }
+    }
+
+    @Override
+    public void close(){
+        httpServer.stop(0);
+    }
+}
@@ -0,0 +1,194 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.config.RestTemplateConfig;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.OutboundEmailRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {OutboundEmailService.class, MailerSendService.class, RestTemplateConfig.class, SimpleMeterRegistry.class},
+        properties = {
+                "mailersend.key=test",
+                "mailersend.invitetemplate.id=template",
+                "myapplication.domainurl=http://localhost:8080/",
+                "myapplication.fromemail=no-reply@tomiscoding.com",
+                "billsplit.email.max-attempts=3",
+                "billsplit.email.backoff-ms=1000",
+                "billsplit.email.max-backoff-ms=3000"})
+class OutboundEmailServiceTest {
+
+    static final MailerSendStubServer mailerSend = startStub();
+
+    @MockBean
+    OutboundEmailRepository outboundEmailRepository;
+
+    @Autowired
+    OutboundEmailService outboundEmailService;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @DynamicPropertySource
+    static void mailerSendProperties(DynamicPropertyRegistry registry){
+        registry.add("mailersend.bulkurl", mailerSend::bulkEmailUrl);
+    }
+
+    static MailerSendStubServer startStub(){
+        try {
+            return new MailerSendStubServer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @AfterAll
+    static void stopStub(){
+        mailerSend.close();
+    }
+
+    @BeforeEach
+    void resetStub(){
+        mailerSend.reset();
+    }
+
+    private SplitGroup piggies(){
+        return SplitGroup.builder()
+                .id(1L)
+                .groupName("Piggies")
+                .inviteCode("abc123")
+                .build();
+    }
+
+    private User peppaPig(){
+        return User.builder()
+                .fullName("Peppa pig")
+                .username("peppa@pigs.com")
+                .build();
+    }
+
+    private OutboundEmail pending(long id, String recipient){
+        return OutboundEmail.builder()
+                .id(id)
+                .recipient(recipient)
+                .dedupeKey("invite:1:" + recipient)
+                .splitGroupId(1L)
+                .senderName("Peppa pig")
+                .groupName("Piggies")
+                .inviteCode("abc123")
+                .nextAttemptAt(Instant.now())
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private void claim(List<OutboundEmail> batch){
+        when(outboundEmailRepository.findByStatusAndNextAttemptAtLessThanEqualOrderByNextAttemptAt(eq(EmailStatus.PENDING), any(), any()))
+                .thenReturn(batch);
+    }
+
+    @Test
+    void queueInviteEmailNew() {
+        when(outboundEmailRepository.findFirstByDedupeKeyOrderByCreatedAtDesc("invite:1:george@pigs.com")).thenReturn(Optional.empty());
+
+        assertThat(outboundEmailService.queueInviteEmail("George@pigs.com", piggies(), peppaPig())).isTrue();
+        verify(outboundEmailRepository).save(argThat(e -> e.getStatus() == EmailStatus.PENDING
+                && e.getRecipient().equals("George@pigs.com")
+                && e.getInviteCode().equals("abc123")));
+        assertThat(mailerSend.getRequestBodies()).isEmpty();
+    }
+
+    @Test
+    void queueInviteEmailRepeatOfPendingInvite() {
+        OutboundEmail previous = pending(5L, "george@pigs.com");
+        previous.setInviteCode("old123");
+        when(outboundEmailRepository.findFirstByDedupeKeyOrderByCreatedAtDesc("invite:1:george@pigs.com")).thenReturn(Optional.of(previous));
+
+        assertThat(outboundEmailService.queueInviteEmail("george@pigs.com", piggies(), peppaPig())).isFalse();
+        verify(outboundEmailRepository).save(same(previous));
+        assertThat(previous.getInviteCode()).isEqualTo("abc123");
+    }
+
+    @Test
+    void queueInviteEmailRecentlySent() {
+        OutboundEmail previous = pending(5L, "george@pigs.com");
+        previous.setStatus(EmailStatus.SENT);
+        previous.setSentAt(Instant.now().minusSeconds(60));
+        when(outboundEmailRepository.findFirstByDedupeKeyOrderByCreatedAtDesc("invite:1:george@pigs.com")).thenReturn(Optional.of(previous));
+
+        assertThat(outboundEmailService.queueInviteEmail("george@pigs.com", piggies(), peppaPig())).isFalse();
+        verify(outboundEmailRepository, never()).save(any());
+    }
+
+    @Test
+    void dispatchBatchSendsOneBulkRequest() {
+        List<OutboundEmail> batch = List.of(
+                pending(1L, "george@pigs.com"),
+                pending(2L, "suzy@sheep.com"),
+                pending(3L, "george@pigs.com"));
+        claim(batch);
+
+        assertThat(outboundEmailService.dispatchBatch()).isEqualTo(3);
+
+        assertThat(mailerSend.getRequestBodies()).hasSize(1);
+        String body = mailerSend.getRequestBodies().get(0);
+        assertThat(body).startsWith("[").contains("suzy@sheep.com").contains("\"template_id\":\"template\"");
+        assertThat(body.split("\"template_id\"", -1)).hasSize(3);
+        assertThat(batch).allMatch(e -> e.getStatus() == EmailStatus.SENT && e.getSentAt() != null);
+        assertThat(meterRegistry.get("billsplit.email.send").tag("outcome", "success").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void dispatchBatchFailureBacksOff() {
+        OutboundEmail email = pending(1L, "george@pigs.com");
+        claim(List.of(email));
+        mailerSend.respondWith(503);
+        mailerSend.respondWith(503);
+        mailerSend.respondWith(503);
+
+        Instant before = Instant.now();
+        outboundEmailService.dispatchBatch();
+        assertThat(email.getStatus()).isEqualTo(EmailStatus.PENDING);
+        assertThat(email.getAttempts()).isEqualTo(1);
+        assertThat(email.getNextAttemptAt()).isAfterOrEqualTo(before.plusMillis(1000));
+        assertThat(email.getLastError()).contains("503");
+
+        outboundEmailService.dispatchBatch();
+        assertThat(email.getNextAttemptAt()).isAfterOrEqualTo(before.plusMillis(2000));
+
+        outboundEmailService.dispatchBatch();
+        assertThat(email.getStatus()).isEqualTo(EmailStatus.FAILED);
+        assertThat(mailerSend.getRequestBodies()).hasSize(3);
+    }
+
+    @Test
+    void nextBackoffMillisIsCapped() {
+        assertThat(outboundEmailService.nextBackoffMillis(1)).isEqualTo(1000);
+        assertThat(outboundEmailService.nextBackoffMillis(2)).isEqualTo(2000);
+        assertThat(outboundEmailService.nextBackoffMillis(3)).isEqualTo(3000);
+        assertThat(outboundEmailService.nextBackoffMillis(40)).isEqualTo(3000);
+    }
+
+    @Test
+    void refreshQueueDepth() {
+        when(outboundEmailRepository.countByStatus(EmailStatus.PENDING)).thenReturn(7L);
+
+        outboundEmailService.refreshQueueDepth();
+        assertThat(meterRegistry.get("billsplit.email.queue.depth").gauge().value()).isEqualTo(7.0);
+    }
+}
@@ -1,8 +1,14 @@
 package com.tomiscoding.billsplit.service;
 
+import com.tomiscoding.billsplit.config.SettlementConfig;
+import com.tomiscoding.billsplit.dto.GroupBalances;
+import com.tomiscoding.billsplit.dto.UserSettlementTotal;
+import com.tomiscoding.billsplit.exceptions.SplitGroupNotFoundException;
 import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.repository.GroupRepository;
 import com.tomiscoding.billsplit.repository.PaymentRepository;
+import com.tomiscoding.billsplit.repository.SettlementRunRepository;
 import com.tomiscoding.billsplit.repository.UserRepository;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -16,13 +22,16 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
-@SpringBootTest(classes = {PaymentService.class})
+@SpringBootTest(classes = {PaymentService.class, SettlementConfig.class})
 class PaymentServiceTest {
 
     @MockBean
@@ -34,6 +43,15 @@ class PaymentServiceTest {
     @MockBean
     UserRepository userRepository;
 
+    @MockBean
+    BalanceLedgerService balanceLedgerService;
+
+    @MockBean
+    GroupRepository groupRepository;
+
+    @MockBean
+    SettlementRunRepository settlementRunRepository;
+
     @Autowired
     PaymentService paymentService;
 
@@ -149,7 +167,7 @@ class PaymentServiceTest {
 
 
     @Test
-    void calculateAndSavePayments() {
+    void calculateAndSavePayments() throws SplitGroupNotFoundException {
         //Creating users, group, group members and expenses
         User user1 = newUser(1);
         User user2 = newUser(2);
@@ -185,12 +203,25 @@ class PaymentServiceTest {
         }
         splitGroup.setExpenses(expenses);
 
+        when(groupRepository.findForSettlementById(splitGroup.getId())).thenReturn(Optional.of(splitGroup));
+        when(settlementRunRepository.saveAndFlush(any())).thenAnswer(i -> i.getArgument(0));
+        when(settlementRunRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        List<UserSettlementTotal> totals = users.stream()
+                .map(u -> new UserSettlementTotal(u.getId(), splitGroup.getExpensesTotalByUserId(u.getId()), (long) u.getId()))
+                .collect(Collectors.toList());
+        when(expenseService.setExpensesAsSplitBySettlementRun(any())).thenReturn(totals);
+        when(paymentRepository.saveAll(any())).thenAnswer(i -> i.getArgument(0));
         when(userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId())).thenReturn(users);
-        paymentService.calculateAndSavePayments(splitGroup);
+        SettlementRun settlementRun = paymentService.calculateAndSavePayments(splitGroup.getId(), "key", user1);
 
-        verify(expenseService).setExpensesAsSplitByGroup(argThat(sg -> sg.getId() == splitGroup.getId()));
+        verify(expenseService).setExpensesAsSplitBySettlementRun(argThat(r -> r.getSplitGroup().getId() == splitGroup.getId()));
         verify(paymentRepository).saveAll(paymentsCaptor.capture());
+        verify(balanceLedgerService).recordPaymentsCreated(any());
+        assertThat(settlementRun.getIdempotencyKey()).isEqualTo("key");
+        assertThat(settlementRun.getExpenseTotal()).isEqualByComparingTo(splitGroup.getExpensesTotal());
+        assertThat(settlementRun.getPaymentCount()).isEqualTo(paymentsCaptor.getValue().size());
         List<Payment> payments = paymentsCaptor.getValue();
+        assertThat(payments).allMatch(p -> p.getSettlementRun() == settlementRun);
 
         List<BigDecimal> balances = new ArrayList<>();
         for(User eachUser : users){
@@ -214,4 +245,47 @@ class PaymentServiceTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void calculatedPaymentsSettleTheOverviewBalances() throws SplitGroupNotFoundException {
+        List<User> users = List.of(newUser(1), newUser(2), newUser(3));
+        // Each run gets an id other than its group's
+        when(settlementRunRepository.saveAndFlush(any())).thenAnswer(i -> {
+            SettlementRun settlementRun = i.getArgument(0);
+            settlementRun.setId(100L + settlementRun.getSplitGroup().getId());
+            return settlementRun;
+        });
+        when(settlementRunRepository.save(any())).thenAnswer(i -> i.getArgument(0));
+        when(paymentRepository.saveAll(any())).thenAnswer(i -> i.getArgument(0));
+
+        for (int groupNum = 1; groupNum <= 5; groupNum++){
+            SplitGroup splitGroup = newGroup(groupNum);
+
+            // 100.00 paid by user 1 doesn't split evenly, so one member's share is a penny more than the others'
+            List<UserSettlementTotal> totals = List.of(new UserSettlementTotal(1L, new BigDecimal("100.00"), 1L));
+            GroupBalances groupBalances = new GroupBalances(List.of(MemberBalance.builder()
+                    .user(users.get(0))
+                    .splitGroup(splitGroup)
+                    .unsplitSpend(new BigDecimal("100.00"))
+                    .build()));
+
+            clearInvocations(paymentRepository);
+            when(groupRepository.findForSettlementById(splitGroup.getId())).thenReturn(Optional.of(splitGroup));
+            when(expenseService.setExpensesAsSplitBySettlementRun(any())).thenReturn(totals);
+            when(userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId())).thenReturn(users);
+            paymentService.calculateAndSavePayments(splitGroup.getId(), "key" + groupNum, users.get(0));
+
+            verify(paymentRepository).saveAll(paymentsCaptor.capture());
+            List<Payment> payments = paymentsCaptor.getValue();
+            for (User user : users){
+                BigDecimal settled = payments.stream()
+                        .map(p -> p.getFromUser().getId() == user.getId() ? p.getAmount()
+                                : p.getToUser().getId() == user.getId() ? p.getAmount().negate() : BigDecimal.ZERO)
+                        .reduce(BigDecimal.ZERO, BigDecimal::add);
+                assertThat(settled)
+                        .as("group %d user %d", splitGroup.getId(), user.getId())
+                        .isEqualByComparingTo(groupBalances.getOutstandingBalance(user.getId(), users, splitGroup.getId()));
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.config.QueryMetricsConfig;
+import com.tomiscoding.billsplit.dto.KeysetSlice;
+import com.tomiscoding.billsplit.metrics.QueryCapture;
+import com.tomiscoding.billsplit.metrics.QueryMetricsRecorder;
+import com.tomiscoding.billsplit.model.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Import({SearchService.class, GroupMembershipIndex.class, SearchCountCache.class, QueryMetricsRecorder.class, QueryMetricsConfig.class})
+class SearchServiceQueryCountTest {
+
+    @Autowired
+    SearchService searchService;
+
+    @Autowired
+    QueryMetricsRecorder queryMetricsRecorder;
+
+    @Autowired
+    TestEntityManager entityManager;
+
+    // Helper method to persist a group of 4 members with the given number of unsplit expenses and payments
+    List<User> persistGroup(String name, int expenseCount, int paymentCount){
+        SplitGroup splitGroup = entityManager.persist(SplitGroup.builder()
+                .groupName(name)
+                .inviteCode(name)
+                .baseCurrency(Currency.GBP)
+                .build());
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 4; i++){
+            User user = entityManager.persist(User.builder()
+                    .username(name + "user" + i)
+                    .fullName(name + "user" + i)
+                    .password("password")
+                    .build());
+            entityManager.persist(GroupMember.builder()
+                    .user(user)
+                    .splitGroup(splitGroup)
+                    .isAdmin(i == 0)
+                    .build());
+            users.add(user);
+        }
+
+        for (int i = 0; i < expenseCount; i++){
+            entityManager.persist(Expense.builder()
+                    .name("expense" + i)
+                    .amount(BigDecimal.TEN)
+                    .currencyAmount(BigDecimal.TEN)
+                    .currency(Currency.GBP)
+                    .expenseDate(LocalDate.of(2023, 4, 20).plusDays(i))
+                    .user(users.get(i % users.size()))
+                    .splitGroup(splitGroup)
+                    .build());
+        }
+
+        for (int i = 0; i < paymentCount; i++){
+            entityManager.persist(Payment.builder()
+                    .fromUser(users.get(i % users.size()))
+                    .toUser(users.get((i + 1) % users.size()))
+                    .splitGroup(splitGroup)
+                    .amount(BigDecimal.ONE)
+                    .calculatedDate(LocalDate.of(2023, 4, 20).plusDays(i))
+                    .build());
+        }
+        entityManager.flush();
+        entityManager.clear();
+        return users;
+    }
+
+    Long splitGroupId(User user){
+        return entityManager.getEntityManager()
+                .createQuery("SELECT m.splitGroup.id FROM GroupMember m WHERE m.user.id = :id", Long.class)
+                .setParameter("id", user.getId())
+                .getSingleResult();
+    }
+
+    @Test
+    void searchExpensesStatementsDoNotGrowWithHistory() throws Exception {
+        List<User> smallGroup = persistGroup("small", 15, 0);
+        List<User> largeGroup = persistGroup("large", 200, 0);
+
+        for (List<User> users : List.of(smallGroup, largeGroup)){
+            Long splitGroupId = splitGroupId(users.get(0));
+            AtomicReference<KeysetSlice<Expense>> slice = new AtomicReference<>();
+
+            // The page and the count
+            QueryCapture.assertStatementCount(queryMetricsRecorder, 2,
+                    () -> slice.set(searchService.searchExpenses(splitGroupId, null, false, null)));
+            assertThat(slice.get().getContent()).hasSize(SearchService.PAGE_SIZE);
+            entityManager.clear();
+
+            // The next page reuses the cached count
+            String nextCursor = slice.get().getNextCursor();
+            QueryCapture.assertStatementCount(queryMetricsRecorder, 1,
+                    () -> searchService.searchExpenses(splitGroupId, null, false, nextCursor));
+            entityManager.clear();
+        }
+    }
+
+    @Test
+    void searchPaymentsStatementsDoNotGrowWithHistory() throws Exception {
+        List<User> smallGroup = persistGroup("small", 0, 15);
+        List<User> largeGroup = persistGroup("large", 0, 200);
+
+        for (List<User> users : List.of(smallGroup, largeGroup)){
+            Long splitGroupId = splitGroupId(users.get(0));
+
+            // The page and the count
+            QueryCapture.assertStatementCount(queryMetricsRecorder, 2,
+                    () -> searchService.searchPayments(splitGroupId, users.get(0).getId(), null, null, null));
+            entityManager.clear();
+        }
+    }
+
+    @Test
+    void searchOptionsAreReadFromTheMembershipIndex() throws Exception {
+        List<User> users = persistGroup("options", 5, 5);
+
+        // The user's groups and the members of those groups, then nothing until the index is evicted
+        QueryCapture.assertStatementCount(queryMetricsRecorder, 2,
+                () -> searchService.populateExpenseSearchOptions(users.get(0)));
+        QueryCapture.assertStatementCount(queryMetricsRecorder, 0,
+                () -> searchService.populatePaymentSearchOptions(users.get(0)));
+    }
+}
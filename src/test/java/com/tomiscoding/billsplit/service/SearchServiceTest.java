@@ -1,34 +1,47 @@
 package com.tomiscoding.billsplit.service;
 
-import com.tomiscoding.billsplit.dto.ExpenseSearchFilter;
+import com.tomiscoding.billsplit.dto.*;
 import com.tomiscoding.billsplit.exceptions.SplitGroupListNotFoundException;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
 import com.tomiscoding.billsplit.model.*;
-import com.tomiscoding.billsplit.repository.GroupRepository;
+import com.tomiscoding.billsplit.repository.ExpenseRepository;
+import com.tomiscoding.billsplit.repository.PaymentRepository;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SpringBootTest(classes = SearchService.class)
 class SearchServiceTest {
 
-    @MockBean
-    GroupRepository groupRepository;
-
     @Autowired
     SearchService searchService;
 
     @MockBean
-    GroupService groupService;
+    GroupMembershipIndex groupMembershipIndex;
+
+    @MockBean
+    ExpenseRepository expenseRepository;
+
+    @MockBean
+    PaymentRepository paymentRepository;
+
+    @MockBean
+    SearchCountCache searchCountCache;
 
     private User createUser(String name, String username, Long id)
     {
@@ -40,14 +53,23 @@ class SearchServiceTest {
                 .build();
     }
 
-    private SplitGroup createGroup(int num) {
-        return SplitGroup.builder()
+    private GroupSummary createGroup(int num) {
+        return GroupSummary.builder()
+                .id((long) num)
                 .groupName("Group" + num)
                 .groupDescription("Description")
                 .baseCurrency(Currency.GBP)
                 .build();
     }
 
+    private MemberSummary member(long splitGroupId, User user){
+        return MemberSummary.builder()
+                .splitGroupId(splitGroupId)
+                .userId(user.getId())
+                .fullName(user.getFullName())
+                .build();
+    }
+
     @Test
     void populateExpenseSearchOptions() throws SplitGroupListNotFoundException {
         User activeUser = createUser("Active user", "activeUser", 10L);
@@ -58,53 +80,120 @@ class SearchServiceTest {
             users.add(user);
         }
 
-        SplitGroup group1 = createGroup(1);
-        SplitGroup group2 = createGroup(2);
-
-        List<GroupMember> group1Members = new ArrayList<>();
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(0))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(1))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(2))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(activeUser)
-                .build());
-        group1.setGroupMembers(group1Members);
-
-        List<GroupMember> group2Members = new ArrayList<>();
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(2))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(3))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(users.get(4))
-                .build());
-        group1Members.add(GroupMember.builder()
-                .splitGroup(group1)
-                .user(activeUser)
-                .build());
-        group2.setGroupMembers(group2Members);
-
-        when(groupService.getGroupsByUser(any())).thenReturn(List.of(group1, group2));
+        List<MemberSummary> group1Members = List.of(
+                member(1L, users.get(0)),
+                member(1L, users.get(1)),
+                member(1L, users.get(2)),
+                member(1L, activeUser));
+        List<MemberSummary> group2Members = List.of(
+                member(2L, users.get(2)),
+                member(2L, users.get(3)),
+                member(2L, users.get(4)),
+                member(2L, activeUser));
+
+        when(groupMembershipIndex.getGroupsOfUser(10L)).thenReturn(List.of(createGroup(1), createGroup(2)));
+        when(groupMembershipIndex.getMembersOfGroups(List.of(1L, 2L))).thenReturn(Map.of(1L, group1Members, 2L, group2Members));
 
         ExpenseSearchFilter expenseSearchFilter = searchService.populateExpenseSearchOptions(activeUser);
 
         assertThat(expenseSearchFilter.getUsers().size()).isEqualTo(6);
         assertThat(expenseSearchFilter.getSplitGroups().size()).isEqualTo(2);
+        assertThat(expenseSearchFilter.getSplitGroups().get(0).getGroupName()).isEqualTo("Group1");
+    }
+
+    @Test
+    void populateExpenseSearchOptionsNoGroups() {
+        when(groupMembershipIndex.getGroupsOfUser(any())).thenReturn(List.of());
+
+        assertThrows(SplitGroupListNotFoundException.class,
+                () -> searchService.populateExpenseSearchOptions(createUser("Active user", "activeUser", 10L)));
+    }
+
+    private List<Expense> createExpenses(int count){
+        List<Expense> expenses = new ArrayList<>();
+        for (int i = 0; i < count; i++){
+            expenses.add(Expense.builder()
+                    .id(100L - i)
+                    .expenseDate(LocalDate.of(2023, 6, 30).minusDays(i))
+                    .build());
+        }
+        return expenses;
+    }
+
+    @Test
+    void searchExpensesFirstPageHasNextCursor() throws ValidationException {
+        when(expenseRepository.getExpensesBySplitGroupIdAndIsSplitAfterCursor(
+                eq(1L), eq(false), eq(KeysetCursor.FIRST.getDate()), eq(KeysetCursor.FIRST.getId()), any(Pageable.class)))
+                .thenReturn(createExpenses(SearchService.PAGE_SIZE + 1));
+        when(searchCountCache.count(anyString(), any())).thenReturn(25L);
+
+        KeysetSlice<Expense> slice = searchService.searchExpenses(1L, null, false, null);
+
+        assertThat(slice.getContent()).hasSize(SearchService.PAGE_SIZE);
+        assertThat(slice.hasNext()).isTrue();
+        assertThat(slice.getApproximateTotal()).isEqualTo(25L);
+        KeysetCursor next = KeysetCursor.decode(slice.getNextCursor());
+        Expense last = slice.getContent().get(SearchService.PAGE_SIZE - 1);
+        assertThat(next.getDate()).isEqualTo(last.getExpenseDate());
+        assertThat(next.getId()).isEqualTo(last.getId());
+    }
+
+    @Test
+    void searchExpensesLastPageHasNoNextCursor() throws ValidationException {
+        String cursor = new KeysetCursor(LocalDate.of(2023, 6, 1), 50L).encode();
+        when(expenseRepository.getExpensesByUserIdAndSplitGroupIdAndIsSplitAfterCursor(
+                eq(2L), eq(1L), eq(false), eq(LocalDate.of(2023, 6, 1)), eq(50L), any(Pageable.class)))
+                .thenReturn(createExpenses(3));
+
+        KeysetSlice<Expense> slice = searchService.searchExpenses(1L, 2L, false, cursor);
+
+        assertThat(slice.getContent()).hasSize(3);
+        assertThat(slice.hasNext()).isFalse();
+        verify(expenseRepository, never()).getExpensesBySplitGroupIdAndIsSplitAfterCursor(any(), any(), any(), any(), any());
     }
 
-}
\ No newline at end of file
+    @Test
+    void searchExpensesInvalidCursor() {
+        assertThrows(ValidationException.class, () -> searchService.searchExpenses(1L, null, false, "not-a-cursor"));
+    }
+
+    @Test
+    void selectPageNextAndPrevious() {
+        String firstCursor = KeysetCursor.FIRST.encode();
+        String secondCursor = new KeysetCursor(LocalDate.of(2023, 6, 1), 50L).encode();
+
+        ExpenseSearchFilter submitted = ExpenseSearchFilter.builder()
+                .cursor(firstCursor)
+                .nextCursor(secondCursor)
+                .direction("next")
+                .build();
+        ExpenseSearchFilter target = new ExpenseSearchFilter();
+
+        assertThat(searchService.selectPage(submitted, target)).isEqualTo(secondCursor);
+        assertThat(target.getCurrentPageNum()).isEqualTo(1);
+        assertThat(target.getPreviousCursors()).isEqualTo(firstCursor);
+
+        ExpenseSearchFilter back = ExpenseSearchFilter.builder()
+                .cursor(secondCursor)
+                .previousCursors(target.getPreviousCursors())
+                .direction("previous")
+                .build();
+        ExpenseSearchFilter backTarget = new ExpenseSearchFilter();
+
+        assertThat(searchService.selectPage(back, backTarget)).isEqualTo(firstCursor);
+        assertThat(backTarget.getCurrentPageNum()).isEqualTo(0);
+        assertThat(backTarget.getPreviousCursors()).isEmpty();
+    }
+
+    @Test
+    void selectPageFilterChangeResets() {
+        ExpenseSearchFilter submitted = ExpenseSearchFilter.builder()
+                .cursor(new KeysetCursor(LocalDate.of(2023, 6, 1), 50L).encode())
+                .previousCursors(KeysetCursor.FIRST.encode())
+                .build();
+        ExpenseSearchFilter target = new ExpenseSearchFilter();
+
+        assertThat(searchService.selectPage(submitted, target)).isEqualTo(KeysetCursor.FIRST.encode());
+        assertThat(target.getCurrentPageNum()).isEqualTo(0);
+    }
+}
@@ -0,0 +1,230 @@
+package com.tomiscoding.billsplit.service;
+
+import com.tomiscoding.billsplit.config.SettlementConfig;
+import com.tomiscoding.billsplit.exceptions.ValidationException;
+import com.tomiscoding.billsplit.model.*;
+import com.tomiscoding.billsplit.model.Currency;
+import com.tomiscoding.billsplit.repository.*;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Fires settlement requests at one group in parallel against a real database, committing each run, and checks that
+ * every expense is settled by exactly one run however the requests interleave
+ */
+@DataJpaTest(properties = "billsplit.settlement.max-attempts=10")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ActiveProfiles("test")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({SettlementService.class, PaymentService.class, ExpenseService.class, BalanceLedgerService.class, SettlementConfig.class})
+class SettlementServiceConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int EXPENSES = 40;
+
+    @MockBean
+    CurrencyConversionService currencyConversionService;
+
+    @Autowired
+    SettlementService settlementService;
+
+    @Autowired
+    ExpenseService expenseService;
+
+    @Autowired
+    BalanceLedgerService balanceLedgerService;
+
+    @Autowired
+    GroupRepository groupRepository;
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Autowired
+    GroupMemberRepository groupMemberRepository;
+
+    @Autowired
+    ExpenseRepository expenseRepository;
+
+    @Autowired
+    PaymentRepository paymentRepository;
+
+    @Autowired
+    SettlementRunRepository settlementRunRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    // Helper method to commit a group of 4 members with EXPENSES 'un-split' expenses added to the balance ledger
+    SplitGroup persistGroup(String name){
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            SplitGroup splitGroup = groupRepository.save(SplitGroup.builder()
+                    .groupName(name)
+                    .inviteCode(name)
+                    .baseCurrency(Currency.GBP)
+                    .build());
+
+            List<User> users = new ArrayList<>();
+            for (int i = 0; i < 4; i++){
+                User user = userRepository.save(User.builder()
+                        .username(name + "user" + i)
+                        .fullName(name + "user" + i)
+                        .password("password")
+                        .build());
+                groupMemberRepository.save(GroupMember.builder()
+                        .user(user)
+                        .splitGroup(splitGroup)
+                        .isAdmin(i == 0)
+                        .build());
+                users.add(user);
+            }
+
+            List<Expense> expenses = new ArrayList<>();
+            for (int i = 0; i < EXPENSES; i++){
+                BigDecimal amount = BigDecimal.valueOf(1000 + i * 37L, 2);
+                expenses.add(Expense.builder()
+                        .name("expense" + i)
+                        .amount(amount)
+                        .currencyAmount(amount)
+                        .currency(Currency.GBP)
+                        .expenseDate(LocalDate.of(2023, 4, 20))
+                        .user(users.get(i % 3))
+                        .splitGroup(splitGroup)
+                        .build());
+            }
+            expenseService.saveImportedExpenses(expenses);
+            return splitGroup;
+        });
+    }
+
+    // Helper method to start every call at once and collect the runs returned, or the exceptions thrown
+    List<Object> runInParallel(int count, Function<Integer, Callable<SettlementRun>> call) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(count);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<SettlementRun>> futures = new ArrayList<>();
+            for (int i = 0; i < count; i++){
+                Callable<SettlementRun> settle = call.apply(i);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return settle.call();
+                }));
+            }
+            start.countDown();
+
+            List<Object> results = new ArrayList<>();
+            for (Future<SettlementRun> future : futures){
+                try {
+                    results.add(future.get(30, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertThat(e.getCause()).isInstanceOf(DataAccessException.class);
+                    results.add(e.getCause());
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    User admin(SplitGroup splitGroup){
+        return userRepository.getByGroupMembers_SplitGroupId(splitGroup.getId()).get(0);
+    }
+
+    List<SettlementRun> runsOf(List<Object> results){
+        return results.stream()
+                .filter(SettlementRun.class::isInstance)
+                .map(SettlementRun.class::cast)
+                .collect(Collectors.toList());
+    }
+
+    // Helper method to check that every expense was split by exactly one run and paid for by that run's payments
+    void assertSettledOnce(SplitGroup splitGroup){
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Expense> expenses = expenseRepository.getExpenseBySplitGroup(splitGroup);
+            assertThat(expenses).hasSize(EXPENSES).allMatch(e -> e.isSplit() && e.getSettlementRun() != null);
+            Set<Long> splittingRuns = expenses.stream()
+                    .map(e -> e.getSettlementRun().getId())
+                    .collect(Collectors.toSet());
+            assertThat(splittingRuns).hasSize(1);
+
+            List<SettlementRun> runs = settlementRunRepository.findAll().stream()
+                    .filter(r -> r.getSplitGroup().getId() == splitGroup.getId())
+                    .collect(Collectors.toList());
+            assertThat(runs.stream().mapToInt(SettlementRun::getExpenseCount).sum()).isEqualTo(EXPENSES);
+            assertThat(runs.stream().map(SettlementRun::getExpenseTotal).reduce(BigDecimal.ZERO, BigDecimal::add))
+                    .isEqualByComparingTo(expenses.stream().map(Expense::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add));
+
+            List<Payment> payments = paymentRepository.getBySplitGroupId(splitGroup.getId());
+            assertThat(payments).isNotEmpty()
+                    .allMatch(p -> splittingRuns.contains(p.getSettlementRun().getId()));
+            assertThat(runs.stream().mapToInt(SettlementRun::getPaymentCount).sum()).isEqualTo(payments.size());
+        });
+        // The ledger rows match the expenses and payments, so nothing was applied twice
+        assertThat(balanceLedgerService.rebuildGroup(splitGroup.getId())).isEmpty();
+    }
+
+    @Test
+    void parallelRunsOfOneGroupSettleEachExpenseOnce() throws Exception {
+        SplitGroup splitGroup = persistGroup("parallel");
+        User admin = admin(splitGroup);
+
+        List<Object> results = runInParallel(THREADS,
+                i -> () -> settlementService.settle(splitGroup.getId(), "parallel-" + i, admin));
+
+        assertThat(runsOf(results)).isNotEmpty();
+        assertThat(runsOf(results).stream().filter(r -> r.getExpenseCount() > 0)).hasSize(1);
+        assertSettledOnce(splitGroup);
+    }
+
+    @Test
+    void repeatedRequestsWithOneKeyCreateOneRun() throws Exception {
+        SplitGroup splitGroup = persistGroup("repeated");
+        User admin = admin(splitGroup);
+
+        List<Object> results = runInParallel(THREADS,
+                i -> () -> settlementService.settle(splitGroup.getId(), "repeated", admin));
+
+        List<SettlementRun> runs = runsOf(results);
+        assertThat(runs).isNotEmpty();
+        assertThat(runs.stream().map(SettlementRun::getId).distinct()).hasSize(1);
+        assertThat(settlementRunRepository.findByIdempotencyKey("repeated")).isPresent();
+        assertSettledOnce(splitGroup);
+
+        // Sequential repeats return the same run without settling again
+        SettlementRun repeat = settlementService.settle(splitGroup.getId(), "repeated", admin);
+        assertThat(repeat.getId()).isEqualTo(runs.get(0).getId());
+    }
+
+    @Test
+    void keyOfAnotherGroupIsRejected() throws Exception {
+        SplitGroup splitGroup = persistGroup("first");
+        SplitGroup otherGroup = persistGroup("other");
+        settlementService.settle(splitGroup.getId(), "first", admin(splitGroup));
+
+        assertThrows(ValidationException.class,
+                () -> settlementService.settle(otherGroup.getId(), "first", admin(otherGroup)));
+        assertThrows(ValidationException.class,
+                () -> settlementService.settle(otherGroup.getId(), " ", admin(otherGroup)));
+    }
+}
@@ -0,0 +1,100 @@
+package com.tomiscoding.billsplit.settlement;
+
+import net.jqwik.api.Example;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.constraints.LongRange;
+import net.jqwik.api.constraints.Size;
+import net.jqwik.api.constraints.UniqueElements;
+
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LargestRemainderAllocatorTest {
+
+    @Property
+    void equalSharesSumToTotalAndDifferByAtMostOne(@ForAll @LongRange(min = -1_000_000_000L, max = 1_000_000_000L) long total,
+                                                   @ForAll @Size(min = 1, max = 50) @UniqueElements List<Long> ids,
+                                                   @ForAll long seed) {
+        long[] shares = LargestRemainderAllocator.allocateEqually(total, toArray(ids), seed);
+
+        assertThat(LongStream.of(shares).sum()).isEqualTo(total);
+        long floor = Math.floorDiv(total, ids.size());
+        assertThat(LongStream.of(shares).allMatch(s -> s == floor || s == floor + 1)).isTrue();
+    }
+
+    @Property
+    void weightedSharesAreWithinOneOfExactShare(@ForAll @LongRange(min = 0, max = 1_000_000_000L) long total,
+                                                @ForAll @Size(min = 1, max = 50) List<@LongRange(min = 0, max = 1000) Long> weights,
+                                                @ForAll long seed) {
+        long weightTotal = weights.stream().mapToLong(Long::longValue).sum();
+        if (weightTotal == 0){
+            return;
+        }
+        long[] ids = LongStream.range(0, weights.size()).toArray();
+        long[] shares = LargestRemainderAllocator.allocate(total, toArray(weights), ids, seed);
+
+        assertThat(LongStream.of(shares).sum()).isEqualTo(total);
+        long smallestRemainderRounded = Long.MAX_VALUE;
+        long largestRemainderNotRounded = -1;
+        for (int i = 0; i < shares.length; i++){
+            long floor = total * weights.get(i) / weightTotal;
+            long remainder = total * weights.get(i) % weightTotal;
+            assertThat(shares[i]).isBetween(floor, floor + 1);
+            if (shares[i] > floor){
+                smallestRemainderRounded = Math.min(smallestRemainderRounded, remainder);
+            } else {
+                largestRemainderNotRounded = Math.max(largestRemainderNotRounded, remainder);
+            }
+        }
+        // The leftover units went to the largest remainders
+        if (smallestRemainderRounded != Long.MAX_VALUE){
+            assertThat(smallestRemainderRounded).isGreaterThanOrEqualTo(largestRemainderNotRounded);
+        }
+    }
+
+    @Property
+    void sharesFollowTheMemberNotTheirPosition(@ForAll @LongRange(min = 0, max = 1_000_000L) long total,
+                                               @ForAll @Size(min = 2, max = 20) @UniqueElements List<Long> ids,
+                                               @ForAll long seed) {
+        long[] forwards = toArray(ids);
+        long[] backwards = new long[forwards.length];
+        for (int i = 0; i < forwards.length; i++){
+            backwards[i] = forwards[forwards.length - 1 - i];
+        }
+
+        long[] shares = LargestRemainderAllocator.allocateEqually(total, forwards, seed);
+        long[] reversedShares = LargestRemainderAllocator.allocateEqually(total, backwards, seed);
+
+        for (int i = 0; i < shares.length; i++){
+            assertThat(reversedShares[shares.length - 1 - i]).isEqualTo(shares[i]);
+        }
+    }
+
+    @Example
+    void leftoverUnitsMoveWithTheSeed() {
+        long[] ids = {1, 2, 3};
+
+        assertThat(LargestRemainderAllocator.allocateEqually(100, ids, 7)).containsExactly(33, 34, 33);
+        assertThat(LargestRemainderAllocator.allocateEqually(100, ids, 8)).containsExactly(33, 33, 34);
+        assertThat(LargestRemainderAllocator.allocateEqually(99, ids, 7)).containsExactly(33, 33, 33);
+    }
+
+    @Example
+    void invalidWeightsAreRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> LargestRemainderAllocator.allocate(100, new long[]{1, -1}, new long[]{1, 2}, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> LargestRemainderAllocator.allocate(100, new long[]{0, 0}, new long[]{1, 2}, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> LargestRemainderAllocator.allocateEqually(100, new long[0], 0));
+        assertThat(LargestRemainderAllocator.allocateEqually(0, new long[0], 0)).isEmpty();
+    }
+
+    private long[] toArray(List<Long> values){
+        return values.stream().mapToLong(Long::longValue).toArray();
+    }
+}
@@ -0,0 +1,106 @@
+package com.tomiscoding.billsplit.settlement;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SettlementStrategyTest {
+
+    // Helper method to apply the transfers and return what is left of each balance
+    long[] applyTransfers(long[] balances, List<Transfer> transfers){
+        long[] remaining = balances.clone();
+        for (Transfer transfer : transfers){
+            assertThat(transfer.getAmount()).isPositive();
+            remaining[transfer.getFromIndex()] -= transfer.getAmount();
+            remaining[transfer.getToIndex()] += transfer.getAmount();
+        }
+        return remaining;
+    }
+
+    long[] randomBalances(int members, long seed){
+        Random random = new Random(seed);
+        long[] balances = new long[members];
+        long total = 0;
+        for (int i = 0; i < members - 1; i++){
+            balances[i] = (random.nextInt(40) - 20) * 250L;
+            total += balances[i];
+        }
+        balances[members - 1] = -total;
+        return balances;
+    }
+
+    @Test
+    void greedySettlesAllBalances() {
+        long[] balances = randomBalances(50, 1);
+        List<Transfer> transfers = new GreedySettlementStrategy().settle(balances);
+
+        assertThat(applyTransfers(balances, transfers)).containsOnly(0L);
+        assertThat(transfers.size()).isLessThanOrEqualTo(49);
+    }
+
+    @Test
+    void greedySkipsSettledMembers() {
+        long[] balances = {1000, 0, -1000, 0};
+        List<Transfer> transfers = new GreedySettlementStrategy().settle(balances);
+
+        assertThat(transfers).containsExactly(new Transfer(0, 2, 1000));
+    }
+
+    @Test
+    void zeroSumSettlesAllBalances() {
+        SettlementStrategy strategy = new ZeroSumSubgroupSettlementStrategy(20, 1000);
+        for (int members : new int[]{2, 10, 20, 300}){
+            long[] balances = randomBalances(members, members);
+            List<Transfer> transfers = strategy.settle(balances);
+
+            assertThat(applyTransfers(balances, transfers)).containsOnly(0L);
+            assertThat(transfers.size()).isLessThanOrEqualTo(new GreedySettlementStrategy().settle(balances).size());
+        }
+    }
+
+    @Test
+    void zeroSumFindsMinimumTransfers() {
+        // Three zero-sum subgroups: {300, -100, -200}, {500, -500}, {7, -3, -4}
+        long[] balances = {300, -100, 7, -200, 500, -3, -500, -4};
+        List<Transfer> transfers = new ZeroSumSubgroupSettlementStrategy(20, 1000).settle(balances);
+
+        assertThat(applyTransfers(balances, transfers)).containsOnly(0L);
+        assertThat(transfers).hasSize(5);
+    }
+
+    @Test
+    void zeroSumFallsBackToGreedyWhenTooLarge() {
+        long[] balances = {300, -100, 7, -200, -3, -4};
+        List<Transfer> transfers = new ZeroSumSubgroupSettlementStrategy(0, 1000).settle(balances);
+
+        assertThat(applyTransfers(balances, transfers)).containsOnly(0L);
+        assertThat(transfers).isEqualTo(new GreedySettlementStrategy().settle(balances));
+    }
+
+    @Test
+    void zeroSumLeavesRoundingResidualWithOneMember() {
+        long[] balances = {334, 333, -666};
+        long[] remaining = applyTransfers(balances, new ZeroSumSubgroupSettlementStrategy(20, 1000).settle(balances));
+
+        assertThat(remaining[0] + remaining[1] + remaining[2]).isEqualTo(1L);
+        assertThat(LongStream.of(remaining).filter(r -> r != 0).count()).isLessThanOrEqualTo(1L);
+    }
+
+    @Test
+    void meteredStrategyRecordsSettlementSize() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        SettlementStrategy strategy = new MeteredSettlementStrategy(new GreedySettlementStrategy(), "greedy", meterRegistry);
+        long[] balances = {1000, 500, -1500};
+
+        List<Transfer> transfers = strategy.settle(balances);
+
+        assertThat(meterRegistry.get("billsplit.settlement.members").tag("strategy", "greedy").summary().totalAmount()).isEqualTo(3);
+        assertThat(meterRegistry.get("billsplit.settlement.transfers").summary().totalAmount()).isEqualTo(transfers.size());
+        assertThat(meterRegistry.get("billsplit.settlement").timer().count()).isEqualTo(1);
+    }
+}